@@ -50,6 +50,8 @@ public class CanvasFabricMod implements ClientModInitializer {
 		KeyBindingHelper.registerKeyBinding(CanvasMod.RECOMPILE);
 		KeyBindingHelper.registerKeyBinding(CanvasMod.FLAWLESS_TOGGLE);
 		KeyBindingHelper.registerKeyBinding(CanvasMod.PROFILER_TOGGLE);
+		KeyBindingHelper.registerKeyBinding(CanvasMod.REGION_CAPTURE_TOGGLE);
+		KeyBindingHelper.registerKeyBinding(CanvasMod.REGION_REPLAY);
 
 		FabricLoader.getInstance().getModContainer(CanvasMod.MODID).ifPresent(modContainer -> {
 			ResourceManagerHelper.registerBuiltinResourcePack(new ResourceLocation("canvas:canvas_default"), modContainer, ResourcePackActivationType.DEFAULT_ENABLED);
@@ -18,35 +18,25 @@
  * included from other projects. For more information, see ATTRIBUTION.md.
  */
 
-package grondag.canvas.terrain.util;
+package grondag.canvas.benchmark;
 
-import java.util.concurrent.ArrayBlockingQueue;
-
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-
-import net.minecraft.util.BitStorage;
-
-import grondag.canvas.mixinterface.BitStorageExt;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
 
 /**
- * Minimize new allocation for chunk storage copies by recycling the arrays.
+ * Initializes block and fluid registries once per JVM so benchmarks can use real
+ * block states without a client or GL context.
  */
-public class PackedIntegerStorageHelper {
-	private static final ArrayBlockingQueue<IntArrayList> POOL = new ArrayBlockingQueue<>(1024);
+public final class MinecraftBootstrap {
+	private MinecraftBootstrap() { }
 
-	private static IntArrayList claimList() {
-		final IntArrayList list = POOL.poll();
-		return list == null ? new IntArrayList(512) : list;
-	}
-
-	public static void release(IntArrayList list) {
-		list.clear();
-		POOL.offer(list);
-	}
+	private static boolean isInitialized = false;
 
-	public static IntArrayList claim(BitStorage array) {
-		final IntArrayList list = claimList();
-		((BitStorageExt) array).canvas_fastForEach(list);
-		return list;
+	public static synchronized void init() {
+		if (!isInitialized) {
+			isInitialized = true;
+			SharedConstants.tryDetectVersion();
+			Bootstrap.bootStrap();
+		}
 	}
 }
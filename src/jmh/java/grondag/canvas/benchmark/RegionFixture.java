@@ -0,0 +1,336 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.benchmark;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.REGION_PADDING;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Synthetic render region content for benchmarks. Positions are classified as air, solid
+ * (renders and occludes) or open (renders but doesn't occlude - leaves, water, redstone)
+ * which is all the occlusion and light paths need to know about block states.
+ *
+ * <p>Content is generated from a fixed seed so results are comparable between runs.
+ * Coordinates are relative to the region origin and can extend past the region padding
+ * for consumers such as light smoothing that sample a wider area.
+ */
+public final class RegionFixture {
+	public static final byte AIR = 0;
+	public static final byte SOLID = 1;
+	public static final byte OPEN = 2;
+
+	/** Light values as packed by the light cache - 16 per level. */
+	public static final int FULL_LIGHT = 240;
+
+	/** Fixtures are generated over this range on each axis, relative to region origin. */
+	private static final int MIN = -8;
+	private static final int DIAMETER = 32;
+
+	/** Largest region offset on each axis for which the padded region stays inside the fixture. */
+	public static final int MAX_REGION_OFFSET = -MIN - REGION_PADDING;
+
+	public enum Terrain {
+		/** Deep stone. Every position occludes. */
+		ALL_SOLID,
+		/** Stone with connected tunnels, some flooded. */
+		CAVES,
+		/** Uneven grass surface with trees and undergrowth. */
+		FOREST,
+		/** Sea floor under a full column of water. */
+		OCEAN,
+		/** Layers of wiring, components and sparse blocks. */
+		REDSTONE
+	}
+
+	public final Terrain terrain;
+	private final byte[] kinds = new byte[DIAMETER * DIAMETER * DIAMETER];
+	private final int[] blockLight = new int[DIAMETER * DIAMETER * DIAMETER];
+
+	private RegionFixture(Terrain terrain) {
+		this.terrain = terrain;
+		final Random random = new Random(terrain.ordinal() * 31L + 7L);
+
+		switch (terrain) {
+			case ALL_SOLID -> fill(SOLID);
+			case CAVES -> generateCaves(random);
+			case FOREST -> generateForest(random);
+			case OCEAN -> generateOcean(random);
+			case REDSTONE -> generateRedstone(random);
+			default -> throw new IllegalArgumentException();
+		}
+
+		propagateBlockLight();
+	}
+
+	public static RegionFixture create(Terrain terrain) {
+		return new RegionFixture(terrain);
+	}
+
+	private static int index(int x, int y, int z) {
+		return (x - MIN) + (y - MIN) * DIAMETER + (z - MIN) * DIAMETER * DIAMETER;
+	}
+
+	private static boolean inRange(int x, int y, int z) {
+		return x >= MIN && y >= MIN && z >= MIN && x < MIN + DIAMETER && y < MIN + DIAMETER && z < MIN + DIAMETER;
+	}
+
+	/** Kind of position relative to region origin. Positions outside the fixture are solid. */
+	public byte kind(int x, int y, int z) {
+		return inRange(x, y, z) ? kinds[index(x, y, z)] : SOLID;
+	}
+
+	private void set(int x, int y, int z, byte kind) {
+		if (inRange(x, y, z)) {
+			kinds[index(x, y, z)] = kind;
+		}
+	}
+
+	/** Kind of each padded region position, indexed by region index. */
+	public byte[] regionKinds() {
+		return regionKinds(0, 0, 0);
+	}
+
+	/**
+	 * Kind of each padded position of a region whose origin is offset from the fixture origin.
+	 * Offsets within {@link #MAX_REGION_OFFSET} keep the padded region inside the generated area.
+	 */
+	public byte[] regionKinds(int offsetX, int offsetY, int offsetZ) {
+		final byte[] result = new byte[TOTAL_STATE_COUNT];
+		final int limit = 16 + REGION_PADDING;
+
+		for (int x = -REGION_PADDING; x < limit; ++x) {
+			for (int y = -REGION_PADDING; y < limit; ++y) {
+				for (int z = -REGION_PADDING; z < limit; ++z) {
+					final int i = regionIndex(x, y, z);
+
+					if (i >= 0) {
+						result[i] = kind(x + offsetX, y + offsetY, z + offsetZ);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/** Closed interior positions in the same layout as occlusion bits. */
+	public long[] closedInteriorBits() {
+		final long[] result = new long[INTERIOR_CACHE_WORDS];
+
+		for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+			if (kind(i & 15, (i >> 4) & 15, i >> 8) == SOLID) {
+				result[i >> 6] |= 1L << (i & 63);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Sky light reaches down each column until the first solid position. Open positions
+	 * below that are unlit, same as a cave or water column far from any opening.
+	 */
+	public int skyLight(int x, int y, int z) {
+		for (int h = MIN + DIAMETER - 1; h > y; --h) {
+			if (kind(x, h, z) == SOLID) {
+				return 0;
+			}
+		}
+
+		return FULL_LIGHT;
+	}
+
+	public int blockLight(int x, int y, int z) {
+		return inRange(x, y, z) ? blockLight[index(x, y, z)] : 0;
+	}
+
+	private void fill(byte kind) {
+		Arrays.fill(kinds, kind);
+	}
+
+	private void generateCaves(Random random) {
+		fill(SOLID);
+
+		for (int worm = 0; worm < 6; ++worm) {
+			double x = MIN + random.nextDouble() * DIAMETER;
+			double y = MIN + random.nextDouble() * DIAMETER;
+			double z = MIN + random.nextDouble() * DIAMETER;
+			double yaw = random.nextDouble() * Math.PI * 2;
+			double pitch = (random.nextDouble() - 0.5) * 0.5;
+			final boolean flooded = worm % 3 == 0;
+
+			for (int step = 0; step < 48; ++step) {
+				final double radius = 1.5 + random.nextDouble() * 1.5;
+				carve(x, y, z, radius, flooded ? OPEN : AIR);
+				x += Math.cos(yaw) * Math.cos(pitch);
+				y += Math.sin(pitch);
+				z += Math.sin(yaw) * Math.cos(pitch);
+				yaw += (random.nextDouble() - 0.5) * 0.6;
+				pitch = pitch * 0.7 + (random.nextDouble() - 0.5) * 0.3;
+			}
+		}
+	}
+
+	private void carve(double cx, double cy, double cz, double radius, byte kind) {
+		final int r = (int) Math.ceil(radius);
+		final double r2 = radius * radius;
+
+		for (int x = (int) cx - r; x <= (int) cx + r; ++x) {
+			for (int y = (int) cy - r; y <= (int) cy + r; ++y) {
+				for (int z = (int) cz - r; z <= (int) cz + r; ++z) {
+					final double dx = x - cx;
+					final double dy = y - cy;
+					final double dz = z - cz;
+
+					if (dx * dx + dy * dy + dz * dz <= r2) {
+						set(x, y, z, kind);
+					}
+				}
+			}
+		}
+	}
+
+	private int surfaceHeight(int x, int z) {
+		return 6 + (int) Math.round(2.0 * Math.sin(x * 0.35) + 1.5 * Math.cos(z * 0.27));
+	}
+
+	private void generateForest(Random random) {
+		for (int x = MIN; x < MIN + DIAMETER; ++x) {
+			for (int z = MIN; z < MIN + DIAMETER; ++z) {
+				final int h = surfaceHeight(x, z);
+
+				for (int y = MIN; y < MIN + DIAMETER; ++y) {
+					set(x, y, z, y < h ? SOLID : AIR);
+				}
+
+				// grass and flowers
+				if (random.nextInt(3) == 0) {
+					set(x, h, z, OPEN);
+				}
+			}
+		}
+
+		for (int tree = 0; tree < 14; ++tree) {
+			final int x = MIN + random.nextInt(DIAMETER);
+			final int z = MIN + random.nextInt(DIAMETER);
+			final int base = surfaceHeight(x, z);
+			final int top = base + 4 + random.nextInt(3);
+
+			for (int y = top - 2; y <= top + 1; ++y) {
+				for (int dx = -2; dx <= 2; ++dx) {
+					for (int dz = -2; dz <= 2; ++dz) {
+						if (Math.abs(dx) + Math.abs(dz) + Math.max(0, y - top) <= 3 && kind(x + dx, y, z + dz) == AIR) {
+							set(x + dx, y, z + dz, OPEN);
+						}
+					}
+				}
+			}
+
+			for (int y = base; y < top; ++y) {
+				set(x, y, z, SOLID);
+			}
+		}
+	}
+
+	private void generateOcean(Random random) {
+		for (int x = MIN; x < MIN + DIAMETER; ++x) {
+			for (int z = MIN; z < MIN + DIAMETER; ++z) {
+				final int floor = 1 + random.nextInt(2);
+
+				for (int y = MIN; y < MIN + DIAMETER; ++y) {
+					set(x, y, z, y < floor ? SOLID : OPEN);
+				}
+			}
+		}
+	}
+
+	private void generateRedstone(Random random) {
+		fill(AIR);
+
+		for (int x = MIN; x < MIN + DIAMETER; ++x) {
+			for (int z = MIN; z < MIN + DIAMETER; ++z) {
+				for (int y = MIN; y < MIN + DIAMETER; ++y) {
+					final int layer = Math.floorMod(y, 4);
+
+					if (y < 0) {
+						set(x, y, z, SOLID);
+					} else if (layer == 0) {
+						// floor of each layer is mostly open for wiring between layers
+						set(x, y, z, random.nextInt(10) < 3 ? SOLID : AIR);
+					} else if (layer == 1) {
+						// wire, repeaters, comparators, torches
+						set(x, y, z, random.nextInt(4) != 0 ? OPEN : AIR);
+					} else if (layer == 2 && random.nextInt(8) == 0) {
+						set(x, y, z, OPEN);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Light sources are a fraction of open positions: torches in redstone and forest,
+	 * glow lichen in caves. Spreads with one level of falloff per step through non-solid positions.
+	 */
+	private void propagateBlockLight() {
+		final Random random = new Random(terrain.ordinal() * 17L + 3L);
+		final int sourceChance = terrain == Terrain.REDSTONE ? 12 : 60;
+
+		for (int i = 0; i < kinds.length; ++i) {
+			if (kinds[i] == OPEN && terrain != Terrain.OCEAN && random.nextInt(sourceChance) == 0) {
+				blockLight[i] = 14 * 16;
+			}
+		}
+
+		boolean changed = true;
+
+		while (changed) {
+			changed = false;
+
+			for (int x = MIN; x < MIN + DIAMETER; ++x) {
+				for (int y = MIN; y < MIN + DIAMETER; ++y) {
+					for (int z = MIN; z < MIN + DIAMETER; ++z) {
+						final int i = index(x, y, z);
+
+						if (kinds[i] == SOLID) {
+							continue;
+						}
+
+						final int light = Math.max(Math.max(Math.max(blockLight(x - 1, y, z), blockLight(x + 1, y, z)),
+								Math.max(blockLight(x, y - 1, z), blockLight(x, y + 1, z))),
+								Math.max(blockLight(x, y, z - 1), blockLight(x, y, z + 1))) - 16;
+
+						if (light > blockLight[i]) {
+							blockLight[i] = light;
+							changed = true;
+						}
+					}
+				}
+			}
+		}
+	}
+}
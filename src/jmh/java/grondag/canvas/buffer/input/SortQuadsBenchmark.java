@@ -0,0 +1,92 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.buffer.input;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+
+/**
+ * Translucent quad sorting for a region-sized volume of unit quads, as for water
+ * and glass. Small camera moves exercise the nearly-sorted path and opposite
+ * corners force a full reorder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortQuadsBenchmark {
+	@Param({"256", "1024", "4096"})
+	public int quadCount;
+
+	private SortingVertexCollector collector;
+	private int frame;
+
+	@Setup
+	public void setup() {
+		final int[] target = new int[CanvasVertexFormats.STANDARD_QUAD_STRIDE];
+		final int vertexStride = CanvasVertexFormats.STANDARD_VERTEX_STRIDE;
+		collector = new SortingVertexCollector(null, false, target);
+		final Random random = new Random(42);
+
+		for (int q = 0; q < quadCount; ++q) {
+			final float x = random.nextInt(16);
+			final float y = random.nextInt(16);
+			final float z = random.nextInt(16);
+			// horizontal quads like a water surface, with some vertical panes
+			final boolean vertical = random.nextInt(4) == 0;
+
+			for (int v = 0; v < 4; ++v) {
+				final int i = v * vertexStride;
+				final float u = (v == 1 || v == 2) ? 1 : 0;
+				final float w = v >= 2 ? 1 : 0;
+				target[i] = Float.floatToRawIntBits(x + u);
+				target[i + 1] = Float.floatToRawIntBits(vertical ? y + w : y + 0.9f);
+				target[i + 2] = Float.floatToRawIntBits(vertical ? z : z + w);
+			}
+
+			collector.commit(target.length);
+		}
+
+		collector.sortQuads(-8, 8, -8);
+	}
+
+	@Benchmark
+	public boolean smallMove() {
+		final float offset = (++frame & 1) == 0 ? 0.05f : -0.05f;
+		return collector.sortQuads(-8 + offset, 8, -8 + offset);
+	}
+
+	@Benchmark
+	public boolean oppositeCorners() {
+		final float p = (++frame & 1) == 0 ? -8 : 24;
+		return collector.sortQuads(p, 8, p);
+	}
+}
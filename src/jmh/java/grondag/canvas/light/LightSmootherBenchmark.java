@@ -0,0 +1,111 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.light;
+
+import static grondag.canvas.light.LightSmoother.MARGIN;
+import static grondag.canvas.light.LightSmoother.OPAQUE;
+import static grondag.canvas.light.LightSmoother.POS_COUNT;
+import static grondag.canvas.light.LightSmoother.POS_DIAMETER;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import grondag.canvas.benchmark.RegionFixture;
+
+/**
+ * Smoothing of block and sky light for one region, from light values already
+ * gathered from the world. Channels with uniform light are skipped, same as in game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LightSmootherBenchmark {
+	@Param
+	public RegionFixture.Terrain terrain;
+
+	private final int[] blockSource = new int[POS_COUNT];
+	private final int[] skySource = new int[POS_COUNT];
+	private final int[] block = new int[POS_COUNT];
+	private final int[] sky = new int[POS_COUNT];
+	private final int[] work = new int[POS_COUNT];
+	private boolean smoothBlock;
+	private boolean smoothSky;
+
+	@Setup
+	public void setup() {
+		final RegionFixture fixture = RegionFixture.create(terrain);
+		int blockMin = Integer.MAX_VALUE;
+		int blockMax = Integer.MIN_VALUE;
+		int skyMin = Integer.MAX_VALUE;
+		int skyMax = Integer.MIN_VALUE;
+
+		for (int z = 0; z < POS_DIAMETER; z++) {
+			for (int y = 0; y < POS_DIAMETER; y++) {
+				for (int x = 0; x < POS_DIAMETER; x++) {
+					final int i = LightSmoother.index(x, y, z);
+					final int fx = x - MARGIN;
+					final int fy = y - MARGIN;
+					final int fz = z - MARGIN;
+
+					if (fixture.kind(fx, fy, fz) == RegionFixture.SOLID) {
+						blockSource[i] = OPAQUE;
+						skySource[i] = OPAQUE;
+					} else {
+						final int b = fixture.blockLight(fx, fy, fz);
+						final int k = fixture.skyLight(fx, fy, fz);
+						blockSource[i] = b;
+						skySource[i] = k;
+						blockMin = Math.min(blockMin, b);
+						blockMax = Math.max(blockMax, b);
+						skyMin = Math.min(skyMin, k);
+						skyMax = Math.max(skyMax, k);
+					}
+				}
+			}
+		}
+
+		smoothBlock = blockMax > blockMin;
+		smoothSky = skyMax > skyMin;
+	}
+
+	@Benchmark
+	public int smooth() {
+		if (smoothBlock) {
+			System.arraycopy(blockSource, 0, block, 0, POS_COUNT);
+			LightSmoother.smoothChannel(block, work);
+		}
+
+		if (smoothSky) {
+			System.arraycopy(skySource, 0, sky, 0, POS_COUNT);
+			LightSmoother.smoothChannel(sky, work);
+		}
+
+		return block[POS_COUNT / 2] + sky[POS_COUNT / 2];
+	}
+}
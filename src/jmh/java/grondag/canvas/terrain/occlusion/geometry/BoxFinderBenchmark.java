@@ -0,0 +1,57 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import grondag.canvas.benchmark.RegionFixture;
+
+/** Occluder box search for the closed interior positions of each fixture. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BoxFinderBenchmark {
+	@Param
+	public RegionFixture.Terrain terrain;
+
+	private final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
+	private long[] closedBits;
+
+	@Setup
+	public void setup() {
+		closedBits = RegionFixture.create(terrain).closedInteriorBits();
+	}
+
+	@Benchmark
+	public int findBoxes() {
+		boxFinder.findBoxes(closedBits, 0);
+		return boxFinder.boxes.size();
+	}
+}
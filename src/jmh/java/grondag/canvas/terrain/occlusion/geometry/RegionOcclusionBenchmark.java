@@ -0,0 +1,117 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+
+import grondag.canvas.benchmark.MinecraftBootstrap;
+import grondag.canvas.benchmark.RegionFixture;
+
+/**
+ * Capture of region visibility followed by the exterior fill and, with advanced culling,
+ * box search. Each call uses the next region of a batch cut from the fixture at random
+ * offsets, so branch history and caches don't settle on a single input.
+ *
+ * <p>The result cache is cleared in each call so box search is always measured. It holds
+ * at most one entry at that point, so the clear is a negligible part of the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegionOcclusionBenchmark {
+	private static final int BATCH_SIZE = 64;
+	private static final int BATCH_MASK = BATCH_SIZE - 1;
+
+	@Param
+	public RegionFixture.Terrain terrain;
+
+	@Param({"false", "true"})
+	public boolean advancedCulling;
+
+	private RegionFixture fixture;
+	private Random random;
+	private final byte[][] batch = new byte[BATCH_SIZE][];
+	private int batchIndex;
+	private byte[] kinds;
+	private RegionOcclusionCalculator calculator;
+
+	@Setup
+	public void setup() {
+		MinecraftBootstrap.init();
+		fixture = RegionFixture.create(terrain);
+		random = new Random(terrain.ordinal() * 31L + 11L);
+
+		final BlockState[] states = {Blocks.AIR.defaultBlockState(), Blocks.STONE.defaultBlockState(), Blocks.OAK_LEAVES.defaultBlockState()};
+
+		calculator = new RegionOcclusionCalculator() {
+			@Override
+			protected BlockState blockStateAtIndex(int regionIndex) {
+				return states[kinds[regionIndex]];
+			}
+
+			@Override
+			protected boolean closedAtRelativePos(BlockState blockState, int regionIndex) {
+				return kinds[regionIndex] == RegionFixture.SOLID;
+			}
+
+			@Override
+			protected boolean advancedTerrainCulling() {
+				return advancedCulling;
+			}
+		};
+	}
+
+	@Setup(Level.Iteration)
+	public void prepareBatch() {
+		final int range = RegionFixture.MAX_REGION_OFFSET * 2 + 1;
+
+		for (int i = 0; i < BATCH_SIZE; ++i) {
+			final int x = random.nextInt(range) - RegionFixture.MAX_REGION_OFFSET;
+			final int y = random.nextInt(range) - RegionFixture.MAX_REGION_OFFSET;
+			final int z = random.nextInt(range) - RegionFixture.MAX_REGION_OFFSET;
+			batch[i] = fixture.regionKinds(x, y, z);
+		}
+
+		batchIndex = 0;
+	}
+
+	@Benchmark
+	public OcclusionResult build() {
+		kinds = batch[batchIndex++ & BATCH_MASK];
+		OcclusionResultCache.clear();
+		calculator.prepare();
+		return calculator.build(false);
+	}
+}
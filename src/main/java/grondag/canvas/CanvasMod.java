@@ -62,6 +62,8 @@ public class CanvasMod {
 	public static KeyMapping RECOMPILE = new KeyMapping("key.canvas.recompile", Character.valueOf('='), "key.canvas.category");
 	public static KeyMapping FLAWLESS_TOGGLE = new KeyMapping("key.canvas.flawless_toggle", -1, "key.canvas.category");
 	public static KeyMapping PROFILER_TOGGLE = new KeyMapping("key.canvas.profiler_toggle", -1, "key.canvas.category");
+	public static KeyMapping REGION_CAPTURE_TOGGLE = new KeyMapping("key.canvas.region_capture_toggle", -1, "key.canvas.category");
+	public static KeyMapping REGION_REPLAY = new KeyMapping("key.canvas.region_replay", -1, "key.canvas.category");
 	public static String versionString = "unknown";
 
 	public static void init() {
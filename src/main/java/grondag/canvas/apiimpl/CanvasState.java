@@ -35,12 +35,14 @@ import grondag.canvas.perf.ChunkRebuildCounters;
 import grondag.canvas.perf.Timekeeper;
 import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.pipeline.config.PipelineLoader;
+import grondag.canvas.render.world.CanvasParticleRenderer;
 import grondag.canvas.shader.GlMaterialProgramManager;
 import grondag.canvas.shader.GlProgramManager;
 import grondag.canvas.shader.GlShader;
 import grondag.canvas.shader.GlShaderManager;
 import grondag.canvas.shader.PreReleaseShaderCompat;
 import grondag.canvas.shader.data.ShaderDataManager;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResultCache;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
 import grondag.canvas.terrain.util.ChunkColorCache;
 
@@ -67,7 +69,9 @@ public class CanvasState {
 		CanvasEntityBlockRenderContext.reload();
 		CanvasItemRenderContext.reload();
 		ChunkRebuildCounters.reset();
+		OcclusionResultCache.clear();
 		ChunkColorCache.invalidate();
+		CanvasParticleRenderer.reload();
 		AoFace.clampExteriorVertices(Configurator.clampExteriorVertices);
 
 		recompile();
@@ -29,17 +29,25 @@ import net.minecraft.CrashReport;
 import net.minecraft.CrashReportCategory;
 import net.minecraft.ReportedException;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.block.BlockRenderDispatcher;
 import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.BlockPos.MutableBlockPos;
 import net.minecraft.world.level.BlockAndTintGetter;
 import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.Vec3;
 
+import io.vram.frex.api.math.FastMatrix3f;
+import io.vram.frex.api.math.FastMatrix4f;
 import io.vram.frex.api.math.MatrixStack;
 import io.vram.frex.api.math.PackedSectionPos;
 import io.vram.frex.api.model.BlockModel;
+import io.vram.frex.api.model.fluid.FluidModel;
 import io.vram.frex.api.world.RenderRegionBakeListener.BlockStateRenderer;
 import io.vram.frex.api.world.RenderRegionBakeListener.RenderRegionContext;
 import io.vram.frex.base.renderer.ao.AoCalculator;
@@ -50,8 +58,10 @@ import io.vram.frex.base.renderer.util.EncoderUtil;
 import grondag.canvas.apiimpl.rendercontext.encoder.TerrainQuadEncoder;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.light.LightSmoother;
+import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.terrain.region.input.InputRegion;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
+import grondag.canvas.terrain.region.input.RegionCapture;
 import grondag.canvas.terrain.util.RenderRegionStateIndexer;
 
 /**
@@ -152,6 +162,81 @@ public class CanvasTerrainRenderContext extends BlockRenderContext<BlockAndTintG
 		return this;
 	}
 
+	/** For replay of recorded regions. Same as {@link #prepareForRegion(PackedInputRegion)} otherwise. */
+	public CanvasTerrainRenderContext prepareForRegion(RegionCapture capture) {
+		nonCullBlockEntities.clear();
+		addedBlockEntities.clear();
+		removedBlockEntities.clear();
+		region.prepare(capture);
+		encoder.animationBits.clear();
+
+		if (Configurator.lightSmoothing) {
+			LightSmoother.computeSmoothedBrightness(region);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Renders blocks and fluids of the prepared region that aren't hidden by neighbors.
+	 * Occlusion must already have been built for the region.
+	 *
+	 * @return Number of fluid blocks rendered.
+	 */
+	public int renderTerrain() {
+		final int xOrigin = region.originX();
+		final int yOrigin = region.originY();
+		final int zOrigin = region.originZ();
+
+		final FastMatrix4f modelMatrix = matrixStack.modelMatrix();
+		final FastMatrix3f normalMatrix = matrixStack.normalMatrix();
+		normalMatrix.f_setIdentity();
+
+		final BlockRenderDispatcher blockRenderManager = Minecraft.getInstance().getBlockRenderer();
+		final RegionOcclusionCalculator occlusionRegion = region.occlusion;
+		int fluidCount = 0;
+
+		for (int i = 0; i < RenderRegionStateIndexer.INTERIOR_STATE_COUNT; i++) {
+			if (occlusionRegion.shouldRender(i)) {
+				final BlockState blockState = region.getLocalBlockState(i);
+				final FluidState fluidState = blockState.getFluidState();
+				final int x = i & 0xF;
+				final int y = (i >> 4) & 0xF;
+				final int z = (i >> 8) & 0xF;
+				searchPos.set(xOrigin + x, yOrigin + y, zOrigin + z);
+
+				final boolean hasFluid = !fluidState.isEmpty();
+				final boolean hasBlock = blockState.getRenderShape() != RenderShape.INVISIBLE;
+
+				if (hasFluid || hasBlock) {
+					// Vanilla does a push/pop for each block but that creates needless allocation spam.
+					modelMatrix.f_setIdentity();
+					modelMatrix.f_translate(x, y, z);
+
+					if (hasFluid) {
+						++fluidCount;
+						renderFluid(blockState, searchPos, false, FluidModel.get(fluidState.getType()));
+					}
+
+					if (hasBlock) {
+						if (blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
+							final Vec3 vec3d = blockState.getOffset(region, searchPos);
+
+							if (vec3d != Vec3.ZERO) {
+								modelMatrix.f_translate((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
+							}
+						}
+
+						final BakedModel model = blockRenderManager.getBlockModel(blockState);
+						renderBlock(blockState, searchPos, model);
+					}
+				}
+			}
+		}
+
+		return fluidCount;
+	}
+
 	public void renderBakeListeners() {
 		final var bakeListeners = region.bakeListeners;
 
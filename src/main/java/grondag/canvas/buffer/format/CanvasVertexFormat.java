@@ -76,6 +76,17 @@ public class CanvasVertexFormat {
 		}
 	}
 
+	/** Attribute names in binding order. Identifies the attribute bindings of linked programs. */
+	public String attributeBindingKey() {
+		final StringBuilder result = new StringBuilder();
+
+		for (final CanvasVertexFormatElement e : elements) {
+			result.append(e.attributeName).append(';');
+		}
+
+		return result.toString();
+	}
+
 	public int attributeCount() {
 		return elements.length;
 	}
@@ -37,7 +37,7 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 	public ArrayVertexCollector(RenderState renderState, int[] target) {
 		super(renderState, target);
 		arrayCount.incrementAndGet();
-		arryBytes.addAndGet(capacity);
+		arryBytes.addAndGet(capacity * 4);
 	}
 
 	protected final void grow(int newSize) {
@@ -47,7 +47,7 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 			final int newCapacity = Mth.smallestEncompassingPowerOfTwo(newSize);
 			final int[] newData = new int[newCapacity];
 			System.arraycopy(vertexData, 0, newData, 0, oldCapacity);
-			arryBytes.addAndGet(newCapacity - oldCapacity);
+			arryBytes.addAndGet((newCapacity - oldCapacity) * 4);
 			capacity = newCapacity;
 			vertexData = newData;
 		}
@@ -91,41 +91,28 @@ public abstract class ArrayVertexCollector extends BaseVertexCollector {
 	}
 
 	@Override
-	public final int[] saveState(int[] priorState) {
-		final int integerSize = this.integerSize;
-
-		if (integerSize == 0) {
-			return null;
-		}
-
-		int[] result = priorState;
-
-		if (result == null || result.length != integerSize) {
-			result = new int[integerSize];
-		}
-
-		if (integerSize > 0) {
-			System.arraycopy(vertexData, 0, result, 0, integerSize);
-		}
+	public TranslucentSortState saveState(TranslucentSortState priorState) {
+		throw new UnsupportedOperationException("Unsorted vertex collector does not support saveState.");
+	}
 
-		return result;
+	@Override
+	public void loadState(TranslucentSortState state) {
+		throw new UnsupportedOperationException("Unsorted vertex collector does not support loadState.");
 	}
 
 	@Override
-	public final void loadState(int[] stateData) {
-		clear();
-
-		if (stateData != null) {
-			final int size = stateData.length;
-			grow(size);
-			System.arraycopy(stateData, 0, vertexData, 0, size);
-			integerSize = size;
-		}
+	public void toIndexBuffer(TransferBuffer targetBuffer) {
+		throw new UnsupportedOperationException("Unsorted vertex collector does not support toIndexBuffer.");
 	}
 
 	private static AtomicInteger arrayCount = new AtomicInteger();
 	private static AtomicInteger arryBytes = new AtomicInteger();
 
+	/** For collectors that hold arrays other than vertex data, so that they are included in {@link #debugReport()}. */
+	protected static void trackArrayBytes(int deltaBytes) {
+		arryBytes.addAndGet(deltaBytes);
+	}
+
 	public static String debugReport() {
 		return String.format("Vertex collectors: %d %4.1fMb", arrayCount.get(), arryBytes.get() / 1048576f);
 	}
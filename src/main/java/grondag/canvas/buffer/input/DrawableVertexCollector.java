@@ -57,10 +57,18 @@ public interface DrawableVertexCollector extends VertexCollector {
 
 	boolean sortTerrainQuads(Vec3 sortPos, RegionRenderSector sector);
 
+	/**
+	 * Saves collected quads for later resort. Reuses the prior state instance when possible.
+	 */
 	@Nullable
-	int[] saveState(@Nullable int[] translucentState);
+	TranslucentSortState saveState(@Nullable TranslucentSortState priorState);
+
+	void loadState(TranslucentSortState state);
 
-	void loadState(int[] state);
+	/**
+	 * Writes element indices that draw quads in sorted order. Only supported by sorting collectors.
+	 */
+	void toIndexBuffer(TransferBuffer targetBuffer);
 
 	FaceBucket[] faceBuckets();
 
@@ -108,15 +108,20 @@ public class ShadowVertexCollector extends BaseVertexCollector {
 	}
 
 	@Override
-	public @Nullable int[] saveState(@Nullable int[] translucentState) {
+	public @Nullable TranslucentSortState saveState(@Nullable TranslucentSortState priorState) {
 		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support saveState.");
 	}
 
 	@Override
-	public void loadState(int[] state) {
+	public void loadState(TranslucentSortState state) {
 		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support loadState");
 	}
 
+	@Override
+	public void toIndexBuffer(TransferBuffer targetBuffer) {
+		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support toIndexBuffer.");
+	}
+
 	@Override
 	public FaceBucket[] faceBuckets() {
 		throw new UnsupportedOperationException("ShadowVertexCollector vertex collector does not support vertexBuckets");
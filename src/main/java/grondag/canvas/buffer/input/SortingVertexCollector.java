@@ -20,25 +20,77 @@
 
 package grondag.canvas.buffer.input;
 
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.util.Arrays;
 
 import net.minecraft.util.Mth;
 import net.minecraft.world.phys.Vec3;
 
+import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
 
 public class SortingVertexCollector extends SimpleVertexCollector {
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+
+	/**
+	 * Insertion sort is abandoned for radix sort once it has shifted this many
+	 * keys per quad. Small camera moves usually need far fewer.
+	 */
+	private static final int INSERTION_SHIFT_LIMIT_PER_QUAD = 4;
+
+	/** Six element indices per quad, four bytes each. */
+	public static final int INDEX_BYTES_PER_QUAD = 6 * 4;
+
+	/** Per-quad bytes of distance, sort key and radix scratch arrays. */
+	private static final int SORT_BYTES_PER_QUAD = 4 + 8 + 8;
+
+	/** Per-quad bytes of centroid, quad order and order scratch arrays. */
+	private static final int ORDER_BYTES_PER_QUAD = 3 * 4 + 4 + 4;
+
 	private float[] perQuadDistance = new float[512];
-	private final int[] swapData;
-	private boolean didSwap = false;
-	final QuadDistanceFunc distanceFunc;
+	private long[] sortKeys = new long[512];
+	private long[] radixScratch = new long[512];
+	private final int[] radixCounts = new int[RADIX_SIZE];
+
+	/**
+	 * Quad centroids in the order quads were collected, three values per quad.
+	 * Vertex data is never reordered, so these never need to move.
+	 */
+	private float[] centroids = new float[512 * 3];
+
+	/** Quad index at each position in draw order, farthest first after sorting. */
+	private int[] quadOrder = new int[512];
+	private int[] orderScratch = new int[512];
+	private int[] indexScratch;
+
+	/**
+	 * Number of quads described by centroids and quad order, or -1 if not yet computed.
+	 * Can be non-zero with no vertex data present when state was loaded for resort.
+	 */
+	private int sortQuadCount = -1;
+
+	/** State instance last loaded, so that saving it again only copies what the sort changed. */
+	private TranslucentSortState loadedState;
+	private int changedQuadStart;
+	private int changedQuadEnd;
+
+	final QuadCentroidFunc centroidFunc;
 
 	public SortingVertexCollector(RenderState renderState, boolean isTerrain, int[] target) {
 		super(renderState, target);
-		swapData = new int[quadStrideInts * 2];
-		distanceFunc = isTerrain ? this::getDistanceSqTerrain : this::getDistanceSq;
+		centroidFunc = isTerrain ? this::getCentroidTerrain : this::getCentroid;
+		trackArrayBytes(perQuadDistance.length * SORT_BYTES_PER_QUAD + quadOrder.length * ORDER_BYTES_PER_QUAD + RADIX_SIZE * 4);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		loadedState = null;
+		sortQuadCount = -1;
+		changedQuadStart = 0;
+		changedQuadEnd = 0;
 	}
 
 	@Override
@@ -50,59 +102,293 @@ public class SortingVertexCollector extends SimpleVertexCollector {
 		);
 	}
 
-	private boolean sortQuads(float x, float y, float z) {
-		final int quadCount = quadCount();
-		final QuadDistanceFunc distanceFunc = this.distanceFunc;
+	/**
+	 * Orders quads farthest first. Vertex data isn't moved - the result is a quad
+	 * order that is written out as element indices by {@link #toIndexBuffer(TransferBuffer)}.
+	 * Ties keep their existing relative order.
+	 *
+	 * <p>The order from the previous sort is the starting point, so after a small
+	 * camera move the input is nearly sorted. That case is handled with an insertion
+	 * sort, falling back to radix sort if the order turns out to have changed a lot.
+	 * Package-private for benchmarks.
+	 *
+	 * @return True if the quad order changed.
+	 */
+	boolean sortQuads(float x, float y, float z) {
+		final int quadCount = prepareSortInputs();
 
 		if (perQuadDistance.length < quadCount) {
-			perQuadDistance = new float[Mth.smallestEncompassingPowerOfTwo(quadCount)];
+			final int newSize = Mth.smallestEncompassingPowerOfTwo(quadCount);
+			trackArrayBytes((newSize - perQuadDistance.length) * SORT_BYTES_PER_QUAD);
+			perQuadDistance = new float[newSize];
+			sortKeys = new long[newSize];
+			radixScratch = new long[newSize];
 		}
 
+		final float[] centroids = this.centroids;
+		final int[] quadOrder = this.quadOrder;
+		final float[] perQuadDistance = this.perQuadDistance;
+		int firstUnsorted = -1;
+
 		for (int j = 0; j < quadCount; ++j) {
-			perQuadDistance[j] = distanceFunc.compute(x, y, z, j);
+			final int c = quadOrder[j] * 3;
+			final float dx = centroids[c] - x;
+			final float dy = centroids[c + 1] - y;
+			final float dz = centroids[c + 2] - z;
+			final float dist = dx * dx + dy * dy + dz * dz;
+			perQuadDistance[j] = dist;
+
+			if (firstUnsorted == -1 && j > 0 && dist > perQuadDistance[j - 1]) {
+				firstUnsorted = j;
+			}
 		}
 
-		didSwap = false;
+		changedQuadStart = 0;
+		changedQuadEnd = 0;
 
-		// sort the indexes by distance - farthest first
-		// mergesort is important here - quicksort causes problems
-		// PERF: consider sorting primitive packed long array with distance in high bits
-		// and then use result to reorder the array. Will need to copy vertex data.
-		it.unimi.dsi.fastutil.Arrays.mergeSort(0, quadCount, comparator, swapper);
+		// An unchanged permutation shows up here as distances that are already non-increasing.
+		if (firstUnsorted == -1) {
+			return false;
+		}
+
+		final long[] keys = this.sortKeys;
+
+		for (int j = 0; j < quadCount; ++j) {
+			// Bits of a non-negative float sort the same as its value when compared unsigned.
+			// Inverting them gives farthest first. Current position goes in the low word.
+			final long distKey = ~Float.floatToRawIntBits(perQuadDistance[j]) & 0xFFFFFFFFL;
+			keys[j] = (distKey << 32) | j;
+		}
+
+		final long[] sortedKeys = insertionSort(keys, firstUnsorted, quadCount) ? keys : radixSortHighWord(keys, radixScratch, quadCount);
+		reorder(sortedKeys, quadCount);
 
-		return didSwap;
+		return true;
 	}
 
-	private interface QuadDistanceFunc {
-		float compute(float x, float y, float z, int quadIndex);
+	/**
+	 * Centroids and quad order are kept across resorts when state is loaded,
+	 * and otherwise computed here from collected vertex data in collection order.
+	 *
+	 * @return Number of quads to be sorted.
+	 */
+	private int prepareSortInputs() {
+		if (sortQuadCount == -1) {
+			final int quadCount = quadCount();
+			ensureSortCapacity(quadCount);
+
+			final QuadCentroidFunc centroidFunc = this.centroidFunc;
+			final float[] centroids = this.centroids;
+			final int[] quadOrder = this.quadOrder;
+
+			for (int j = 0; j < quadCount; ++j) {
+				centroidFunc.compute(j, centroids, j * 3);
+				quadOrder[j] = j;
+			}
+
+			sortQuadCount = quadCount;
+		}
+
+		return sortQuadCount;
+	}
+
+	private void ensureSortCapacity(int quadCount) {
+		if (quadOrder.length < quadCount) {
+			final int newSize = Mth.smallestEncompassingPowerOfTwo(quadCount);
+			trackArrayBytes((newSize - quadOrder.length) * ORDER_BYTES_PER_QUAD);
+			centroids = new float[newSize * 3];
+			quadOrder = new int[newSize];
+			orderScratch = new int[newSize];
+		}
+	}
+
+	/**
+	 * Sorts keys ascending, starting at the first out-of-order key. Stable because
+	 * keys are unique and ties in distance are broken by current position.
+	 *
+	 * @return False if the shift limit was reached and the keys are only partially sorted.
+	 * Ties in the partially sorted result remain in position order.
+	 */
+	private static boolean insertionSort(long[] keys, int start, int count) {
+		int shiftBudget = count * INSERTION_SHIFT_LIMIT_PER_QUAD;
+
+		for (int i = start; i < count; ++i) {
+			final long k = keys[i];
+			int j = i - 1;
+
+			while (j >= 0 && keys[j] > k) {
+				keys[j + 1] = keys[j];
+				--j;
+			}
+
+			keys[j + 1] = k;
+			shiftBudget -= i - 1 - j;
+
+			if (shiftBudget < 0) {
+				return false;
+			}
+		}
+
+		return true;
 	}
 
-	private final IntComparator comparator = new IntComparator() {
-		@Override
-		public int compare(int a, int b) {
-			return Float.compare(perQuadDistance[b], perQuadDistance[a]);
+	/**
+	 * Stable LSD radix sort of the upper 32 bits of each key. Passes where every
+	 * key has the same digit are skipped, which is common for the exponent byte
+	 * because distances within a region fall in a narrow range.
+	 *
+	 * @return Whichever of the two input arrays holds the sorted result.
+	 */
+	private long[] radixSortHighWord(long[] keys, long[] scratch, int count) {
+		final int[] counts = radixCounts;
+		long[] from = keys;
+		long[] to = scratch;
+
+		for (int shift = 32; shift < 64; shift += RADIX_BITS) {
+			Arrays.fill(counts, 0);
+
+			for (int i = 0; i < count; ++i) {
+				++counts[(int) (from[i] >>> shift) & RADIX_MASK];
+			}
+
+			if (counts[(int) (from[0] >>> shift) & RADIX_MASK] == count) {
+				continue;
+			}
+
+			int sum = 0;
+
+			for (int d = 0; d < RADIX_SIZE; ++d) {
+				final int c = counts[d];
+				counts[d] = sum;
+				sum += c;
+			}
+
+			for (int i = 0; i < count; ++i) {
+				final long k = from[i];
+				to[counts[(int) (k >>> shift) & RADIX_MASK]++] = k;
+			}
+
+			final long[] swap = from;
+			from = to;
+			to = swap;
 		}
-	};
 
-	private final Swapper swapper = new Swapper() {
-		@Override
-		public void swap(int a, int b) {
-			didSwap = true;
-			final float distSwap = perQuadDistance[a];
-			perQuadDistance[a] = perQuadDistance[b];
-			perQuadDistance[b] = distSwap;
+		return from;
+	}
+
+	/** Applies sorted keys to the span of the quad order that actually changed. */
+	private void reorder(long[] sortedKeys, int quadCount) {
+		int start = 0;
+
+		while (start < quadCount && (int) sortedKeys[start] == start) {
+			++start;
+		}
 
-			final int aIndex = a * quadStrideInts;
-			final int bIndex = b * quadStrideInts;
+		int end = quadCount;
 
-			System.arraycopy(vertexData, aIndex, swapData, 0, quadStrideInts);
-			System.arraycopy(vertexData, bIndex, swapData, quadStrideInts, quadStrideInts);
-			System.arraycopy(swapData, 0, vertexData, bIndex, quadStrideInts);
-			System.arraycopy(swapData, quadStrideInts, vertexData, aIndex, quadStrideInts);
+		while (end > start && (int) sortedKeys[end - 1] == end - 1) {
+			--end;
 		}
-	};
 
-	private float getDistanceSq(float x, float y, float z, int quadIndex) {
+		changedQuadStart = start;
+		changedQuadEnd = end;
+
+		final int[] quadOrder = this.quadOrder;
+		final int[] scratch = orderScratch;
+
+		for (int j = start; j < end; ++j) {
+			scratch[j] = quadOrder[(int) sortedKeys[j]];
+		}
+
+		System.arraycopy(scratch, start, quadOrder, start, end - start);
+	}
+
+	@Override
+	public TranslucentSortState saveState(TranslucentSortState priorState) {
+		final int quadCount = prepareSortInputs();
+
+		if (quadCount == 0) {
+			return null;
+		}
+
+		if (priorState != null && priorState == loadedState && priorState.quadCount() == quadCount) {
+			// State was loaded from this instance and then sorted, so only the changed span differs.
+			final int start = changedQuadStart;
+			final int end = changedQuadEnd;
+
+			if (start < end) {
+				System.arraycopy(quadOrder, start, priorState.quadOrder, start, end - start);
+			}
+
+			return priorState;
+		}
+
+		final TranslucentSortState result = priorState == null ? new TranslucentSortState() : priorState;
+
+		if (result.quadCount() != quadCount) {
+			result.centroids = new float[quadCount * 3];
+			result.quadOrder = new int[quadCount];
+		}
+
+		System.arraycopy(centroids, 0, result.centroids, 0, quadCount * 3);
+		System.arraycopy(quadOrder, 0, result.quadOrder, 0, quadCount);
+		return result;
+	}
+
+	/**
+	 * Loads sort inputs only. Vertex data stays in GPU storage in its original
+	 * order and is not needed to sort, so this collector will report itself empty.
+	 */
+	@Override
+	public void loadState(TranslucentSortState state) {
+		clear();
+
+		if (state != null) {
+			final int quadCount = state.quadCount();
+			ensureSortCapacity(quadCount);
+			System.arraycopy(state.centroids, 0, centroids, 0, quadCount * 3);
+			System.arraycopy(state.quadOrder, 0, quadOrder, 0, quadCount);
+			sortQuadCount = quadCount;
+			loadedState = state;
+		}
+	}
+
+	/**
+	 * Writes two triangles per quad, in current quad order, as element indices
+	 * relative to the first collected vertex. Winding matches SlabIndex.
+	 */
+	@Override
+	public void toIndexBuffer(TransferBuffer targetBuffer) {
+		final int quadCount = prepareSortInputs();
+		final int indexCount = quadCount * 6;
+		int[] indices = indexScratch;
+
+		if (indices == null || indices.length < indexCount) {
+			indices = new int[Mth.smallestEncompassingPowerOfTwo(indexCount)];
+			trackArrayBytes((indices.length - (indexScratch == null ? 0 : indexScratch.length)) * 4);
+			indexScratch = indices;
+		}
+
+		final int[] quadOrder = this.quadOrder;
+
+		for (int j = 0, i = 0; j < quadCount; ++j) {
+			final int v = quadOrder[j] * 4;
+			indices[i++] = v;
+			indices[i++] = v + 1;
+			indices[i++] = v + 2;
+			indices[i++] = v + 2;
+			indices[i++] = v + 3;
+			indices[i++] = v;
+		}
+
+		targetBuffer.put(indices, 0, 0, indexCount);
+	}
+
+	private interface QuadCentroidFunc {
+		void compute(int quadIndex, float[] target, int targetIndex);
+	}
+
+	private void getCentroid(int quadIndex, float[] target, int targetIndex) {
 		final int integerStride = quadStrideInts / 4;
 
 		// unpack vertex coordinates
@@ -126,17 +412,15 @@ public class SortingVertexCollector extends SimpleVertexCollector {
 		final float y3 = Float.intBitsToFloat(vertexData[i + 1]);
 		final float z3 = Float.intBitsToFloat(vertexData[i + 2]);
 
-		// compute average distance by component
-		final float dx = (x0 + x1 + x2 + x3) * 0.25f - x;
-		final float dy = (y0 + y1 + y2 + y3) * 0.25f - y;
-		final float dz = (z0 + z1 + z2 + z3) * 0.25f - z;
-
-		return dx * dx + dy * dy + dz * dz;
+		// average by component
+		target[targetIndex] = (x0 + x1 + x2 + x3) * 0.25f;
+		target[targetIndex + 1] = (y0 + y1 + y2 + y3) * 0.25f;
+		target[targetIndex + 2] = (z0 + z1 + z2 + z3) * 0.25f;
 	}
 
 	private static final float POS_CONVERSION = 1f / 0xFFFF;
 
-	private float getDistanceSqTerrain(float x, float y, float z, int quadIndex) {
+	private void getCentroidTerrain(int quadIndex, float[] target, int targetIndex) {
 		final int integerStride = quadStrideInts / 4;
 
 		// unpack vertex coordinates
@@ -164,12 +448,10 @@ public class SortingVertexCollector extends SimpleVertexCollector {
 		final float y3 = ((pos3 >> 8) & 0xFF) + (vertexData[i + 1] & 0xFFFF) * POS_CONVERSION;
 		final float z3 = ((pos3 >> 16) & 0xFF) + (vertexData[i + 1] >>> 16) * POS_CONVERSION;
 
-		// compute average distance by component
-		final float dx = (x0 + x1 + x2 + x3) * 0.25f - x;
-		final float dy = (y0 + y1 + y2 + y3) * 0.25f - y;
-		final float dz = (z0 + z1 + z2 + z3) * 0.25f - z;
-
-		return dx * dx + dy * dy + dz * dz;
+		// average by component
+		target[targetIndex] = (x0 + x1 + x2 + x3) * 0.25f;
+		target[targetIndex + 1] = (y0 + y1 + y2 + y3) * 0.25f;
+		target[targetIndex + 2] = (z0 + z1 + z2 + z3) * 0.25f;
 	}
 
 	@Override
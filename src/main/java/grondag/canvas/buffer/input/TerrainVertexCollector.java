@@ -120,15 +120,20 @@ public class TerrainVertexCollector extends BaseVertexCollector {
 	}
 
 	@Override
-	public @Nullable int[] saveState(@Nullable int[] translucentState) {
+	public @Nullable TranslucentSortState saveState(@Nullable TranslucentSortState priorState) {
 		throw new UnsupportedOperationException("Compound vertex collector does not support saveState.");
 	}
 
 	@Override
-	public void loadState(int[] state) {
+	public void loadState(TranslucentSortState state) {
 		throw new UnsupportedOperationException("Compound vertex collector does not support loadState");
 	}
 
+	@Override
+	public void toIndexBuffer(TransferBuffer targetBuffer) {
+		throw new UnsupportedOperationException("Compound vertex collector does not support toIndexBuffer.");
+	}
+
 	@Override
 	public FaceBucket faceBucket(int index) {
 		throw new UnsupportedOperationException("Compound vertex collector does not support faceBucket");
@@ -0,0 +1,43 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.buffer.input;
+
+/**
+ * Sort inputs for the translucent quads of a built region, retained for later resorting.
+ *
+ * <p>Vertex data is uploaded once in the order it was collected and is not kept here.
+ * Resorting only needs quad centroids and the draw order from the previous sort,
+ * which is the starting point for the next one. The result of a resort is a new
+ * element index buffer for the region.
+ *
+ * <p>Content is only read and written by vertex collectors.
+ */
+public class TranslucentSortState {
+	/** Three values per quad, in the order quads were collected. */
+	float[] centroids;
+
+	/** Quad index at each draw position. */
+	int[] quadOrder;
+
+	public int quadCount() {
+		return quadOrder == null ? 0 : quadOrder.length;
+	}
+}
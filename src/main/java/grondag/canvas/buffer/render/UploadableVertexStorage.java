@@ -24,4 +24,12 @@ public interface UploadableVertexStorage {
 	UploadableVertexStorage release();
 
 	default void upload() { }
+
+	/**
+	 * Replaces element indices for storage drawn in sorted order.
+	 * Takes ownership of the buffer and always releases it.
+	 */
+	default void uploadIndices(TransferBuffer indices) {
+		indices.release();
+	}
 }
@@ -81,6 +81,11 @@ public class DrawableStream implements AutoCloseable {
 	}
 
 	public void draw(boolean isShadow) {
+		draw(isShadow, 1);
+	}
+
+	/** Instance counts above one are used by layered shadow rendering to draw into every cascade at once. */
+	public void draw(boolean isShadow, int instanceCount) {
 		if (buffer != null) {
 			buffer.bind();
 
@@ -96,7 +101,12 @@ public class DrawableStream implements AutoCloseable {
 				final RenderSystem.AutoStorageIndexBuffer indexBuffer = RenderSystem.getSequentialBuffer(Mode.QUADS, elementCount);
 				GFX.bindBuffer(GFX.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.name());
 				final int elementType = indexBuffer.type().asGLType;
-				GFX.drawElementsBaseVertex(Mode.QUADS.asGLMode, elementCount, elementType, 0L, startIndex);
+
+				if (instanceCount == 1) {
+					GFX.drawElementsBaseVertex(Mode.QUADS.asGLMode, elementCount, elementType, 0L, startIndex);
+				} else {
+					GFX.drawElementsInstancedBaseVertex(Mode.QUADS.asGLMode, elementCount, elementType, 0L, instanceCount, startIndex);
+				}
 			}
 
 			RenderState.disable();
@@ -79,6 +79,12 @@ class ConfigData {
 	boolean cullParticles = true;
 	@Comment("Use Canvas thread pool for rendering and local server tasks. May reduce lag spikes caused by thread contention.")
 	boolean useCombinedThreadPool = false;
+	@Comment("Terrain rebuilds use per-thread work queues with work stealing. May improve rebuild throughput on CPUs with many cores. Ignored if useCombinedThreadPool is enabled. Requires restart.")
+	boolean useWorkStealingExecutor = false;
+	@Comment("Off-thread rebuilds of regions in the same chunk column are captured together and run as one task. Reduces main-thread capture cost when many regions load at once.")
+	boolean batchRegionRebuilds = false;
+	@Comment("Main-thread region capture and rebuild is limited by a learned per-region cost model instead of a fixed deadline, and nearer visible regions go first. May smooth frame pacing while terrain loads.")
+	boolean adaptiveRebuildScheduling = false;
 	@Comment("When enabled, F3 debug screen output is refreshed 20X per second instead of every frame. Improves accuracy and reduces variability of FPS measurement.")
 	boolean steadyDebugScreen = true;
 	@Comment("When true, animated sprites not in view are not updated. Improves frame rate.")
@@ -87,6 +93,10 @@ class ConfigData {
 	boolean groupAnimatedSprites = true;
 	@Comment("When true, terrain facing away from the camera is not rendered.  Usually improves frame rate.")
 	boolean cullBackfacingTerrain = true;
+	@Comment("Submit terrain draws from a GPU command buffer when OpenGL 4.3 is available.")
+	boolean indirectTerrainDraw = true;
+	@Comment("Renders all shadow cascades in a single pass when vertex shaders can select the output layer. Pipeline shadow shaders must use frxu_cascade.")
+	boolean layeredShadowRender = false;
 	@Comment("Enabling may help performance by drawing fewer regions but some regions may flicker as you move around nearby blocks.")
 	boolean enableNearOccluders = false;
 	@Comment("Method used to transfer data to GPU. AUTO is recommended but performance can be specific to your system. Other options are DIRECT, HYBRID, and MAPPED")
@@ -99,6 +109,10 @@ class ConfigData {
 	boolean shaderDebug = false;
 	@Comment("Pre-process OpenGL source before compilation. Makes source more concise but possibly harder to read.")
 	boolean preprocessShaderSource = true;
+	@Comment("Store linked shader programs on disk and reuse them when sources are unchanged.")
+	boolean programBinaryCache = true;
+	@Comment("Compile replacement material shaders in the background and keep using prior shaders until ready.")
+	boolean asyncShaderCompile = true;
 	//@Comment("Shows HD lightmap pixels for debug purposes. Also looks cool.")
 	//boolean lightmapDebug = false;
 	@Comment("Summarizes multiple errors and warnings to single-line entries in the log.")
@@ -22,7 +22,10 @@ package grondag.canvas.config;
 
 import static grondag.canvas.config.ConfigManager.DEFAULTS;
 import static grondag.canvas.config.ConfigManager.parse;
+import static grondag.canvas.config.Configurator.adaptiveRebuildScheduling;
 import static grondag.canvas.config.Configurator.advancedTerrainCulling;
+import static grondag.canvas.config.Configurator.asyncShaderCompile;
+import static grondag.canvas.config.Configurator.batchRegionRebuilds;
 import static grondag.canvas.config.Configurator.blendFluidColors;
 import static grondag.canvas.config.Configurator.clampExteriorVertices;
 import static grondag.canvas.config.Configurator.conciseErrors;
@@ -44,6 +47,8 @@ import static grondag.canvas.config.Configurator.fixLuminousBlockShading;
 import static grondag.canvas.config.Configurator.forceJmxModelLoading;
 import static grondag.canvas.config.Configurator.greedyRenderThread;
 import static grondag.canvas.config.Configurator.groupAnimatedSprites;
+import static grondag.canvas.config.Configurator.indirectTerrainDraw;
+import static grondag.canvas.config.Configurator.layeredShadowRender;
 import static grondag.canvas.config.Configurator.logGlStateChanges;
 import static grondag.canvas.config.Configurator.logMachineInfo;
 import static grondag.canvas.config.Configurator.logMaterials;
@@ -55,6 +60,7 @@ import static grondag.canvas.config.Configurator.preventDepthFighting;
 import static grondag.canvas.config.Configurator.profilerDetailLevel;
 import static grondag.canvas.config.Configurator.profilerDisplayMode;
 import static grondag.canvas.config.Configurator.profilerOverlayScale;
+import static grondag.canvas.config.Configurator.programBinaryCache;
 import static grondag.canvas.config.Configurator.reduceResolutionOnMac;
 import static grondag.canvas.config.Configurator.reload;
 import static grondag.canvas.config.Configurator.renderLagSpikeFps;
@@ -69,6 +75,7 @@ import static grondag.canvas.config.Configurator.traceOcclusionEdgeCases;
 import static grondag.canvas.config.Configurator.traceTextureLoad;
 import static grondag.canvas.config.Configurator.transferBufferMode;
 import static grondag.canvas.config.Configurator.useCombinedThreadPool;
+import static grondag.canvas.config.Configurator.useWorkStealingExecutor;
 import static grondag.canvas.config.Configurator.wavyGrass;
 
 import java.lang.ref.WeakReference;
@@ -347,6 +354,34 @@ public class ConfigGui {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.use_work_stealing_executor"), useWorkStealingExecutor)
+				.setDefaultValue(DEFAULTS.useWorkStealingExecutor)
+				.setTooltip(parse("config.canvas.help.use_work_stealing_executor"))
+				.requireRestart()
+				.setSaveConsumer(b -> {
+					useWorkStealingExecutor = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.batch_region_rebuilds"), batchRegionRebuilds)
+				.setDefaultValue(DEFAULTS.batchRegionRebuilds)
+				.setTooltip(parse("config.canvas.help.batch_region_rebuilds"))
+				.setSaveConsumer(b -> {
+					batchRegionRebuilds = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.adaptive_rebuild_scheduling"), adaptiveRebuildScheduling)
+				.setDefaultValue(DEFAULTS.adaptiveRebuildScheduling)
+				.setTooltip(parse("config.canvas.help.adaptive_rebuild_scheduling"))
+				.setSaveConsumer(b -> {
+					adaptiveRebuildScheduling = b;
+				})
+				.build());
+
 		tweaks.addEntry(ENTRY_BUILDER.startEnumSelector(new TranslatableComponent("config.canvas.value.transfer_buffer_mode"),
 				TransferBuffers.Config.class,
 				transferBufferMode)
@@ -395,6 +430,26 @@ public class ConfigGui {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.indirect_terrain_draw"), indirectTerrainDraw)
+				.setDefaultValue(DEFAULTS.indirectTerrainDraw)
+				.setTooltip(parse("config.canvas.help.indirect_terrain_draw"))
+				.setSaveConsumer(b -> {
+					reload |= indirectTerrainDraw != b;
+					indirectTerrainDraw = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.layered_shadow_render"), layeredShadowRender)
+				.setDefaultValue(DEFAULTS.layeredShadowRender)
+				.setTooltip(parse("config.canvas.help.layered_shadow_render"))
+				.setSaveConsumer(b -> {
+					reload |= layeredShadowRender != b;
+					layeredShadowRender = b;
+				})
+				.build());
+
 		// DEBUG
 		final ConfigCategory debug = builder.getOrCreateCategory(new TranslatableComponent("config.canvas.category.debug"));
 
@@ -415,6 +470,24 @@ public class ConfigGui {
 				})
 				.build());
 
+		debug.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.program_binary_cache"), programBinaryCache)
+				.setDefaultValue(DEFAULTS.programBinaryCache)
+				.setTooltip(parse("config.canvas.help.program_binary_cache"))
+				.setSaveConsumer(b -> {
+					programBinaryCache = b;
+				})
+				.build());
+
+		debug.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableComponent("config.canvas.value.async_shader_compile"), asyncShaderCompile)
+				.setDefaultValue(DEFAULTS.asyncShaderCompile)
+				.setTooltip(parse("config.canvas.help.async_shader_compile"))
+				.setSaveConsumer(b -> {
+					asyncShaderCompile = b;
+				})
+				.build());
+
 		//		debug.addEntry(ENTRY_BUILDER
 		//				.startBooleanToggle(new TranslatableText("config.canvas.value.shader_debug_lightmap"), lightmapDebug)
 		//				.setDefaultValue(DEFAULTS.lightmapDebug)
@@ -52,8 +52,13 @@ public class Configurator {
 	public static int dynamicFrustumPadding = DEFAULTS.dynamicFrustumPadding;
 	public static boolean cullParticles = DEFAULTS.cullParticles;
 	public static boolean useCombinedThreadPool = DEFAULTS.useCombinedThreadPool;
+	public static boolean useWorkStealingExecutor = DEFAULTS.useWorkStealingExecutor;
+	public static boolean batchRegionRebuilds = DEFAULTS.batchRegionRebuilds;
+	public static boolean adaptiveRebuildScheduling = DEFAULTS.adaptiveRebuildScheduling;
 	public static boolean shaderDebug = DEFAULTS.shaderDebug;
 	public static boolean preprocessShaderSource = DEFAULTS.preprocessShaderSource;
+	public static boolean programBinaryCache = DEFAULTS.programBinaryCache;
+	public static boolean asyncShaderCompile = DEFAULTS.asyncShaderCompile;
 	// public static boolean lightmapDebug = DEFAULTS.lightmapDebug;
 	public static boolean conciseErrors = DEFAULTS.conciseErrors;
 	public static boolean logMachineInfo = DEFAULTS.logMachineInfo;
@@ -81,6 +86,8 @@ public class Configurator {
 	public static boolean disableUnseenSpriteAnimation = DEFAULTS.disableUnseenSpriteAnimation;
 	public static boolean groupAnimatedSprites = DEFAULTS.groupAnimatedSprites;
 	public static boolean cullBackfacingTerrain = DEFAULTS.cullBackfacingTerrain;
+	public static boolean indirectTerrainDraw = DEFAULTS.indirectTerrainDraw;
+	public static boolean layeredShadowRender = DEFAULTS.layeredShadowRender;
 	public static boolean debugSpriteAtlas = DEFAULTS.debugSpriteAtlas;
 	public static boolean traceTextureLoad = DEFAULTS.traceTextureLoad;
 
@@ -112,6 +119,8 @@ public class Configurator {
 
 		shaderDebug = config.shaderDebug;
 		preprocessShaderSource = config.preprocessShaderSource;
+		programBinaryCache = config.programBinaryCache;
+		asyncShaderCompile = config.asyncShaderCompile;
 		//maxLightmapDelayFrames = config.maxLightmapDelayFrames;
 		//moreLightmap = config.moreLightmap;
 
@@ -135,6 +144,9 @@ public class Configurator {
 		staticFrustumPadding = Mth.clamp(config.staticFrustumPadding, 0, 30);
 		cullParticles = config.cullParticles;
 		useCombinedThreadPool = config.useCombinedThreadPool;
+		useWorkStealingExecutor = config.useWorkStealingExecutor;
+		batchRegionRebuilds = config.batchRegionRebuilds;
+		adaptiveRebuildScheduling = config.adaptiveRebuildScheduling;
 		transferBufferMode = config.transferBufferMode;
 		steadyDebugScreen = config.steadyDebugScreen;
 
@@ -162,6 +174,8 @@ public class Configurator {
 		disableUnseenSpriteAnimation = config.disableUnseenSpriteAnimation;
 		groupAnimatedSprites = config.groupAnimatedSprites;
 		cullBackfacingTerrain = config.cullBackfacingTerrain;
+		indirectTerrainDraw = config.indirectTerrainDraw;
+		layeredShadowRender = config.layeredShadowRender;
 		debugSpriteAtlas = config.debugSpriteAtlas;
 		traceTextureLoad = config.traceTextureLoad;
 	}
@@ -174,6 +188,8 @@ public class Configurator {
 
 		config.shaderDebug = shaderDebug;
 		config.preprocessShaderSource = preprocessShaderSource;
+		config.programBinaryCache = programBinaryCache;
+		config.asyncShaderCompile = asyncShaderCompile;
 		//config.maxLightmapDelayFrames = maxLightmapDelayFrames;
 
 		// config.hdLightmaps = hdLightmaps;
@@ -196,6 +212,9 @@ public class Configurator {
 		config.dynamicFrustumPadding = dynamicFrustumPadding;
 		config.cullParticles = cullParticles;
 		config.useCombinedThreadPool = useCombinedThreadPool;
+		config.useWorkStealingExecutor = useWorkStealingExecutor;
+		config.batchRegionRebuilds = batchRegionRebuilds;
+		config.adaptiveRebuildScheduling = adaptiveRebuildScheduling;
 		config.transferBufferMode = transferBufferMode;
 		config.steadyDebugScreen = steadyDebugScreen;
 
@@ -223,6 +242,8 @@ public class Configurator {
 		config.disableUnseenSpriteAnimation = disableUnseenSpriteAnimation;
 		config.groupAnimatedSprites = groupAnimatedSprites;
 		config.cullBackfacingTerrain = cullBackfacingTerrain;
+		config.indirectTerrainDraw = indirectTerrainDraw;
+		config.layeredShadowRender = layeredShadowRender;
 		config.debugSpriteAtlas = debugSpriteAtlas;
 		config.traceTextureLoad = traceTextureLoad;
 	}
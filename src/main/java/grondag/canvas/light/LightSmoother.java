@@ -32,15 +32,14 @@ import grondag.canvas.terrain.region.input.InputRegion;
 public class LightSmoother {
 	public static final int OPAQUE = -1;
 	private static final int BLUR_RADIUS = 2;
-	private static final int MARGIN = BLUR_RADIUS + 2;
-	private static final int POS_DIAMETER = 16 + MARGIN * 2;
-	private static final int POS_COUNT = POS_DIAMETER * POS_DIAMETER * POS_DIAMETER;
+	static final int MARGIN = BLUR_RADIUS + 2;
+	static final int POS_DIAMETER = 16 + MARGIN * 2;
+	static final int POS_COUNT = POS_DIAMETER * POS_DIAMETER * POS_DIAMETER;
 	private static final int Y_INC = POS_DIAMETER;
 	private static final int Z_INC = POS_DIAMETER * POS_DIAMETER;
 	private static final ThreadLocal<Helper> helpers = ThreadLocal.withInitial(Helper::new);
 	private static final int INNER_DIST = 28966; // fractional part of 0xFFFF
 	private static final int OUTER_DIST = (0xFFFF - INNER_DIST) / 2;
-	private static final int INNER_PLUS = INNER_DIST + OUTER_DIST;
 
 	public static void computeSmoothedBrightness(InputRegion region) {
 		final Helper help = helpers.get();
@@ -52,50 +51,53 @@ public class LightSmoother {
 		final int minY = region.originY() - MARGIN;
 		final int minZ = region.originZ() - MARGIN;
 
-		for (int x = 0; x < POS_DIAMETER; x++) {
+		// Range of non-opaque values, to detect light that smoothing can't change
+		int blockMin = Integer.MAX_VALUE;
+		int blockMax = Integer.MIN_VALUE;
+		int skyMin = Integer.MAX_VALUE;
+		int skyMax = Integer.MIN_VALUE;
+
+		for (int z = 0; z < POS_DIAMETER; z++) {
 			for (int y = 0; y < POS_DIAMETER; y++) {
-				for (int z = 0; z < POS_DIAMETER; z++) {
+				for (int x = 0; x < POS_DIAMETER; x++) {
 					final int bx = x + minX;
 					final int by = y + minY;
 					final int bz = z + minZ;
 					smoothPos.set(bx, by, bz);
 
 					final BlockState state = region.getBlockState(bx, by, bz);
-					// don't use cache here because we are populating the cache
-					final int packedLight = region.directBrightness(smoothPos);
-
-					final boolean opaque = state.isSolidRender(region, smoothPos);
-
 					final int i = index(x, y, z);
 
-					if (opaque) {
+					if (state.isSolidRender(region, smoothPos)) {
 						block[i] = OPAQUE;
 						sky[i] = OPAQUE;
-					} else if (packedLight == 0) {
-						block[i] = 0;
-						sky[i] = 0;
 					} else {
-						block[i] = (packedLight & 0xFF);
-						sky[i] = ((packedLight >>> 16) & 0xFF);
+						// don't use cache here because we are populating the cache
+						final int packedLight = region.directBrightness(state, smoothPos);
+						final int b = packedLight & 0xFF;
+						final int k = (packedLight >>> 16) & 0xFF;
+						block[i] = b;
+						sky[i] = k;
+						blockMin = Math.min(blockMin, b);
+						blockMax = Math.max(blockMax, b);
+						skyMin = Math.min(skyMin, k);
+						skyMax = Math.max(skyMax, k);
 					}
 				}
 			}
 		}
 
 		final int[] work = help.c;
-		smooth(BLUR_RADIUS + 1, block, work);
-		smooth(BLUR_RADIUS, work, block);
-		//        smooth(1, block, work);
-		//        float[] swap = block;
-		//        block = work;
-		//        work = swap;
-
-		smooth(BLUR_RADIUS + 1, sky, work);
-		smooth(BLUR_RADIUS, work, sky);
-		//        smooth(1, sky, work);
-		//        swap = sky;
-		//        sky = work;
-		//        work = swap;
+
+		// Blur of uniform light is the same uniform light, which is common
+		// for open sky and unlit caves, so only smooth when values differ.
+		if (blockMax > blockMin) {
+			smoothChannel(block, work);
+		}
+
+		if (skyMax > skyMin) {
+			smoothChannel(sky, work);
+		}
 
 		final int limit = 16 + MARGIN + 1;
 
@@ -111,116 +113,55 @@ public class LightSmoother {
 		}
 	}
 
-	private static int index(int x, int y, int z) {
+	static int index(int x, int y, int z) {
 		return x + y * Y_INC + z * Z_INC;
 	}
 
-	private static void smooth(int margin, int[] src, int[] dest) {
-		final int xBase = MARGIN - margin;
-		final int xLimit = POS_DIAMETER - MARGIN + margin;
-
-		final int yBase = xBase * Y_INC;
-		final int yLimit = xLimit * Y_INC;
-		final int zBase = xBase * Z_INC;
-		final int zLimit = xLimit * Z_INC;
-
-		// X PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					final int c = src[i];
-
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
-
-					//                    int a = src[index(x + 1, y, z)];
-					//                    int b = src[index(x - 1, y, z)];
-					final int a = src[i + 1];
-					final int b = src[i - 1];
-
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
-				}
-			}
-		}
-
-		// Y PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					// Note arrays are swapped here
-					final int c = dest[i];
-
-					if (c == OPAQUE) {
-						src[i] = OPAQUE;
-						continue;
-					}
-
-					//                    int a = dest[index(x, y - 1, z)];
-					//                    int b = dest[index(x, y + 1, z)];
-					final int a = dest[i + Y_INC];
-					final int b = dest[i - Y_INC];
-
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							src[i] = c;
-						} else {
-							src[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						src[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						src[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
-				}
-			}
-		}
+	/**
+	 * Two blur passes over one light channel, result in the input array.
+	 * Arrays are {@link #POS_COUNT} values laid out by {@link #index(int, int, int)}.
+	 * Package-private for benchmarks.
+	 */
+	static void smoothChannel(int[] light, int[] work) {
+		smooth(BLUR_RADIUS + 1, light, work);
+		smooth(BLUR_RADIUS, work, light);
+	}
 
-		// Z PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
+	private static void smooth(int margin, int[] src, int[] dest) {
+		final int base = MARGIN - margin;
+		final int limit = POS_DIAMETER - MARGIN + margin;
+
+		blur(base, limit, 1, src, dest);
+		// Note arrays are swapped here
+		blur(base, limit, Y_INC, dest, src);
+		// Arrays are swapped back to original roles here
+		blur(base, limit, Z_INC, src, dest);
+	}
 
-					// Arrays are swapped back to original roles here
+	/**
+	 * One pass of the three-tap kernel along the axis with the given index stride.
+	 * An opaque neighbor contributes the center value in its place and an opaque center
+	 * stays opaque. Written without branches and with the inner loop over contiguous
+	 * cells so that the JIT can vectorize it.
+	 */
+	private static void blur(int base, int limit, int stride, int[] src, int[] dest) {
+		final int rowLength = limit - base;
+
+		for (int z = base; z < limit; z++) {
+			for (int y = base; y < limit; y++) {
+				final int rowStart = index(base, y, z);
+				final int rowEnd = rowStart + rowLength;
+
+				for (int i = rowStart; i < rowEnd; i++) {
 					final int c = src[i];
+					final int a = src[i + stride];
+					final int b = src[i - stride];
 
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
+					// OPAQUE is -1, so the sign bit selects the center value in place of an opaque neighbor
+					final int aOrC = a + ((c - a) & (a >> 31));
+					final int bOrC = b + ((c - b) & (b >> 31));
 
-					//                    int a = src[index(x, y, z - 1)];
-					//                    int b = src[index(x, y, z + 1)];
-					final int a = src[i + Z_INC];
-					final int b = src[i - Z_INC];
-
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
-					}
+					dest[i] = (((aOrC + bOrC) * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16) | (c >> 31);
 				}
 			}
 		}
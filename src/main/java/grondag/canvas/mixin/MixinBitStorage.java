@@ -20,7 +20,6 @@
 
 package grondag.canvas.mixin;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 
@@ -33,27 +32,42 @@ public abstract class MixinBitStorage implements BitStorageExt {
 	@Shadow private long[] data;
 	@Shadow private int bits;
 	@Shadow private long mask;
-	@Shadow private int size;
 	@Shadow private int valuesPerLong;
 
 	@Override
-	public void canvas_fastForEach(IntArrayList list) {
-		int i = 0;
+	public boolean canvas_copyWords(long[] target) {
 		final long[] data = this.data;
 		final int wordLimit = data.length;
-		final int elementsPerWord = valuesPerLong;
+		long any = 0;
 
 		for (int wordIndex = 0; wordIndex < wordLimit; ++wordIndex) {
-			long l = data[wordIndex];
+			final long l = data[wordIndex];
+			target[wordIndex] = l;
+			any |= l;
+		}
 
-			for (int j = 0; j < elementsPerWord; ++j) {
-				list.add((int) (l & mask));
-				l = (l >> bits);
+		return any != 0;
+	}
 
-				if (++i >= size) {
-					return;
-				}
-			}
-		}
+	@Override
+	public int canvas_wordCount() {
+		return data.length;
+	}
+
+	@Override
+	public int canvas_bits() {
+		return bits;
+	}
+
+	@Override
+	public int canvas_valuesPerLong() {
+		return valuesPerLong;
+	}
+
+	@Override
+	public int canvas_get(int index) {
+		final int wordIndex = index / valuesPerLong;
+		final int shift = (index - wordIndex * valuesPerLong) * bits;
+		return (int) ((data[wordIndex] >>> shift) & mask);
 	}
 }
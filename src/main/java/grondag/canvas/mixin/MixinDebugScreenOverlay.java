@@ -55,7 +55,9 @@ import grondag.canvas.config.Configurator;
 import grondag.canvas.mixinterface.BufferBuilderExt;
 import grondag.canvas.render.terrain.cluster.SlabAllocator;
 import grondag.canvas.render.world.CanvasWorldRenderer;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResultCache;
 import grondag.canvas.terrain.util.TerrainExecutor;
+import grondag.canvas.texture.CombinedSpriteAnimation;
 import grondag.canvas.varia.AutoImmediate;
 import grondag.canvas.varia.CanvasGlHelper;
 
@@ -214,6 +216,8 @@ public class MixinDebugScreenOverlay extends GuiComponent {
 		result.add("Translucent " + worldRenderState.translucentClusterRealm.debugSummary());
 		result.add(worldRenderState.drawlistDebugSummary());
 		result.add(SlabAllocator.debugSummary());
+		result.add(CombinedSpriteAnimation.debugString());
+		result.add(OcclusionResultCache.debugString());
 
 		return result;
 	}
@@ -28,6 +28,7 @@ import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.Palette;
 import net.minecraft.world.level.chunk.PalettedContainer;
 
+import grondag.canvas.mixinterface.BitStorageExt;
 import grondag.canvas.mixinterface.PalettedContainerExt;
 import grondag.canvas.terrain.util.ChunkPaletteCopier;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
@@ -43,4 +44,17 @@ public abstract class MixinPalettedContainer<T> implements PalettedContainerExt
 	public PaletteCopy canvas_paletteCopy() {
 		return ChunkPaletteCopier.captureCopy((Palette<BlockState>) palette, storage, (BlockState) defaultValue);
 	}
+
+	@Override
+	public void canvas_copyStates(int[] sectionIndices, BlockState[] target, int targetIndex) {
+		final BitStorageExt storage = (BitStorageExt) this.storage;
+		final Palette<T> palette = this.palette;
+		final T defaultValue = this.defaultValue;
+		final int limit = sectionIndices.length;
+
+		for (int n = 0; n < limit; ++n) {
+			final T val = palette.valueFor(storage.canvas_get(sectionIndices[n]));
+			target[targetIndex + n] = (BlockState) (val == null ? defaultValue : val);
+		}
+	}
 }
@@ -117,6 +117,10 @@ public abstract class MixinTextureAtlas extends AbstractTexture implements Textu
 				CanvasMod.LOG.info(String.format("Combined dimensions are (%d, %d) to (%d, %d) with LOD count %d", animationMinX, animationMinY, animationMaxX, animationMaxY, lodCount));
 			}
 
+			if (combined != null) {
+				combined.close();
+			}
+
 			combined = new CombinedSpriteAnimation((TextureAtlas) (Object) this, animationMinX, animationMinY, animationMaxX, animationMaxY, lodCount);
 
 			for (final TextureAtlasSprite sprite : sprites) {
@@ -193,10 +197,6 @@ public abstract class MixinTextureAtlas extends AbstractTexture implements Textu
 	@SuppressWarnings("resource")
 	@Inject(at = @At("HEAD"), method = "cycleAnimationFrames")
 	private void beforeTick(CallbackInfo ci) {
-		if (combined != null) {
-			combined.reset();
-		}
-
 		if (Configurator.disableUnseenSpriteAnimation && (TextureAtlas) (Object) this == TerrainRenderStates.SOLID.texture.spriteIndex().atlas()) {
 			animationBits.clear();
 			animationBits.or(perFrameBits);
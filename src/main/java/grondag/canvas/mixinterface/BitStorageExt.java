@@ -20,8 +20,20 @@
 
 package grondag.canvas.mixinterface;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-
 public interface BitStorageExt {
-	void canvas_fastForEach(IntArrayList list);
+	/**
+	 * Copies packed storage words to the target, which must have room for
+	 * {@link #canvas_wordCount()} values.
+	 * @return False if every word is zero, meaning every stored value is zero.
+	 */
+	boolean canvas_copyWords(long[] target);
+
+	int canvas_wordCount();
+
+	int canvas_bits();
+
+	int canvas_valuesPerLong();
+
+	/** Same as BitStorage.get but without range validation. */
+	int canvas_get(int index);
 }
@@ -20,8 +20,16 @@
 
 package grondag.canvas.mixinterface;
 
+import net.minecraft.world.level.block.state.BlockState;
+
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
 
 public interface PalettedContainerExt {
 	PaletteCopy canvas_paletteCopy();
+
+	/**
+	 * Copies states at the given container indices to consecutive
+	 * target positions starting at targetIndex.
+	 */
+	void canvas_copyStates(int[] sectionIndices, BlockState[] target, int targetIndex);
 }
@@ -21,6 +21,7 @@
 package grondag.canvas.perf;
 
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import com.mojang.blaze3d.vertex.PoseStack;
@@ -72,10 +73,21 @@ public abstract class Timekeeper {
 
 	private static long threshold;
 
+	/** Status lines not set again within this time are removed from the overlay. */
+	private static final long STATUS_EXPIRY_NANOS = 1_000_000_000L;
+
 	public abstract void startFrame(ProfilerGroup group, String token);
 	public abstract void swap(ProfilerGroup group, String token);
 	public abstract void completePass();
 
+	/**
+	 * Shows a line of text below the timings in the profiler overlay, replacing
+	 * any earlier text with the same label. For systems that make per-frame
+	 * decisions from a time budget to show what they decided. Lines that aren't
+	 * set again within {@link #STATUS_EXPIRY_NANOS} are removed.
+	 */
+	public void setStatus(String label, String status) { }
+
 	private static class Active extends Timekeeper {
 		private static final int CONTAINER_SETUP_FRAME = 0;
 		private static final int GPU_SETUP_FRAME = 1;
@@ -83,6 +95,8 @@ public abstract class Timekeeper {
 
 		private Object2LongOpenHashMap<String> cpuElapsed;
 		private Object2LongOpenHashMap<String> gpuElapsed;
+		private final Object2ObjectLinkedOpenHashMap<String, String> status = new Object2ObjectLinkedOpenHashMap<>();
+		private final Object2LongOpenHashMap<String> statusTime = new Object2LongOpenHashMap<>();
 		private Group[] groups;
 		private int[] gpuQueryId;
 		private boolean gpuEnabled = false;
@@ -176,6 +190,27 @@ public abstract class Timekeeper {
 			swap(null, null);
 		}
 
+		@Override
+		public void setStatus(String label, String status) {
+			this.status.put(label, status);
+			statusTime.put(label, Util.getNanos());
+		}
+
+		/** Removes status lines that haven't been set recently, for example because the reporting system was disabled. */
+		private void expireStatus() {
+			final long expiry = Util.getNanos() - STATUS_EXPIRY_NANOS;
+			final var iterator = status.keySet().iterator();
+
+			while (iterator.hasNext()) {
+				final String label = iterator.next();
+
+				if (statusTime.getLong(label) < expiry) {
+					iterator.remove();
+					statusTime.removeLong(label);
+				}
+			}
+		}
+
 		public boolean populateResult() {
 			if (frameSinceReload < GPU_SETUP_FRAME || !gpuEnabled) {
 				return false;
@@ -392,9 +427,22 @@ public abstract class Timekeeper {
 			}
 		}
 
+		active.expireStatus();
+
+		for (final var entry : active.status.object2ObjectEntrySet()) {
+			renderStatus(entry.getKey(), entry.getValue(), i, ms, fr);
+		}
+
 		ms.popPose();
 	}
 
+	private static void renderStatus(String label, String status, int[] i, PoseStack ms, Font fr) {
+		final int xo = fr.width(label) + 12;
+		renderBack(i, 0, xo + fr.width(status), 0x99000000, ms);
+		renderText(label, i, 0, 0xFFFFFFFF, ms, fr);
+		renderLine(status, i, xo, 0xFFFFFFFF, ms, fr);
+	}
+
 	private static void renderTime(String label, int xo, long cpu, long gpu, int[] i, PoseStack ms, Font fr) {
 		final int forecolor;
 		final int backcolor;
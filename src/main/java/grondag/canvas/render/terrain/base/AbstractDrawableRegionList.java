@@ -23,33 +23,73 @@ package grondag.canvas.render.terrain.base;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import grondag.canvas.material.state.RenderState;
+import grondag.canvas.terrain.occlusion.VisibleRegionList;
+import grondag.canvas.terrain.region.RenderRegion;
 
 public abstract class AbstractDrawableRegionList implements DrawableRegionList {
-	protected final ObjectArrayList<DrawableRegion> regions;
-	private boolean isClosed = false;
+	/** Drawables retained by this list, in draw order. */
+	protected ObjectArrayList<DrawableRegion> regions = new ObjectArrayList<>();
+	/** Content before the last update. Only valid during {@link #onUpdate()}, otherwise kept empty for reuse. */
+	protected ObjectArrayList<DrawableRegion> priorRegions = new ObjectArrayList<>();
 	public final RenderState renderState;
+	protected final boolean isTranslucent;
 
-	protected AbstractDrawableRegionList(final ObjectArrayList<DrawableRegion> regions, RenderState renderState) {
-		this.regions = regions;
+	protected AbstractDrawableRegionList(RenderState renderState, boolean isTranslucent) {
 		this.renderState = renderState;
+		this.isTranslucent = isTranslucent;
 	}
 
 	@Override
-	public final void close() {
-		if (!isClosed) {
-			for (DrawableRegion region : regions) {
-				region.releaseFromDrawList();
-			}
+	public final void update(VisibleRegionList visibleRegions) {
+		final var swap = priorRegions;
+		priorRegions = regions;
+		regions = swap;
+		assert regions.isEmpty();
+
+		final int count = visibleRegions.size();
+		final int startIndex = isTranslucent ? count - 1 : 0;
+		final int endIndex = isTranslucent ? -1 : count;
+		final int step = isTranslucent ? -1 : 1;
 
-			isClosed = true;
-			closeInner();
+		for (int regionLoopIndex = startIndex; regionLoopIndex != endIndex; regionLoopIndex += step) {
+			final RenderRegion region = visibleRegions.get(regionLoopIndex);
+			final DrawableRegion drawable = isTranslucent ? region.translucentDrawable() : region.solidDrawable();
+
+			if (drawable != null && drawable != DrawableRegion.EMPTY_DRAWABLE) {
+				regions.add(drawable);
+				drawable.retainFromDrawList();
+			}
 		}
-	}
 
-	protected abstract void closeInner();
+		onUpdate();
+
+		// Released after the update so that drawables in both lists are never closed in between.
+		releaseAll(priorRegions);
+	}
 
 	@Override
-	public boolean isClosed() {
-		return isClosed;
+	public final void clear() {
+		final var swap = priorRegions;
+		priorRegions = regions;
+		regions = swap;
+		onUpdate();
+		releaseAll(priorRegions);
+		onClear();
 	}
+
+	private static void releaseAll(ObjectArrayList<DrawableRegion> list) {
+		final int limit = list.size();
+
+		for (int i = 0; i < limit; ++i) {
+			list.get(i).releaseFromDrawList();
+		}
+
+		list.clear();
+	}
+
+	/** Called after {@link #regions} has new content and before prior content is released. */
+	protected abstract void onUpdate();
+
+	/** Called at the end of {@link #clear()} to drop anything kept for reuse. */
+	protected void onClear() { }
 }
@@ -20,19 +20,21 @@
 
 package grondag.canvas.render.terrain.base;
 
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-
-import grondag.canvas.material.state.RenderState;
-import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.render.terrain.drawlist.RealmDrawList;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.terrain.occlusion.VisibleRegionList;
-import grondag.canvas.terrain.region.RenderRegion;
 
+/**
+ * Drawable regions of one realm for one view, kept across frames.
+ * Updated in place when visibility changes so that state for unchanged
+ * parts of the list can be reused.
+ */
 public interface DrawableRegionList {
-	void close();
+	/** Replaces content with the drawable regions in the given visible region list. */
+	void update(VisibleRegionList visibleRegions);
 
-	boolean isClosed();
+	/** Releases all content. The list can be updated again afterwards. */
+	void clear();
 
 	void draw(WorldRenderState worldRenderState);
 
@@ -40,13 +42,13 @@ public interface DrawableRegionList {
 
 	DrawableRegionList EMPTY = new DrawableRegionList() {
 		@Override
-		public void close() {
+		public void update(VisibleRegionList visibleRegions) {
 			// NOOP
 		}
 
 		@Override
-		public boolean isClosed() {
-			return false;
+		public void clear() {
+			// NOOP
 		}
 
 		@Override
@@ -60,34 +62,7 @@ public interface DrawableRegionList {
 		}
 	};
 
-	static DrawableRegionList build(
-			final VisibleRegionList visibleRegions,
-			boolean isTranslucent,
-			boolean isShadowMap
-	) {
-		final ObjectArrayList<DrawableRegion> drawables = new ObjectArrayList<>();
-
-		final int count = visibleRegions.size();
-		final int startIndex = isTranslucent ? count - 1 : 0;
-		final int endIndex = isTranslucent ? -1 : count;
-		final int step = isTranslucent ? -1 : 1;
-
-		for (int regionLoopIndex = startIndex; regionLoopIndex != endIndex; regionLoopIndex += step) {
-			final RenderRegion region = visibleRegions.get(regionLoopIndex);
-			final DrawableRegion drawable = isTranslucent ? region.translucentDrawable() : region.solidDrawable();
-
-			if (drawable != null && drawable != DrawableRegion.EMPTY_DRAWABLE) {
-				drawables.add(drawable);
-				drawable.retainFromDrawList();
-			}
-		}
-
-		final var renderState = isTranslucent ? TerrainRenderStates.TRANSLUCENT : TerrainRenderStates.SOLID;
-		return drawables.isEmpty() ? DrawableRegionList.EMPTY : RealmDrawList.build(drawables, renderState, isShadowMap);
-	}
-
-	@FunctionalInterface
-	interface DrawableRegionListFunc {
-		DrawableRegionList apply(ObjectArrayList<DrawableRegion> regions, RenderState renderState, boolean isShadowMap);
+	static DrawableRegionList create(boolean isTranslucent, boolean isShadowMap) {
+		return RealmDrawList.create(isTranslucent, isShadowMap);
 	}
 }
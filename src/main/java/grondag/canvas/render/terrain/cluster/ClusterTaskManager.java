@@ -30,13 +30,22 @@ public class ClusterTaskManager {
 		boolean run(long deadlineNanos);
 	}
 
+	/** Limits GPU buffer copies done by cluster tasks in a single frame. */
+	private static final int MAX_TRANSFER_BYTES_PER_FRAME = 0x200000;
+
 	private static final ArrayDeque<ClusterTask> TASKS = new ArrayDeque<>();
+	private static long frameTransferBytes = 0;
+	private static long frameTransferLimit = MAX_TRANSFER_BYTES_PER_FRAME;
 
 	private ClusterTaskManager() { }
 
 	public static void run(long deadlineNanos) {
+		frameTransferBytes = 0;
+		frameTransferLimit = MAX_TRANSFER_BYTES_PER_FRAME;
+
 		if (FlawlessFrames.isActive()) {
 			deadlineNanos = Long.MAX_VALUE;
+			frameTransferLimit = Long.MAX_VALUE;
 		}
 
 		do {
@@ -48,11 +57,26 @@ public class ClusterTaskManager {
 				if (!task.run(deadlineNanos)) {
 					// reschedule for next frame if not complete
 					TASKS.offerFirst(task);
+					break;
 				}
 			}
 		} while (System.nanoTime() < deadlineNanos);
 	}
 
+	/**
+	 * Claims part of the per-frame copy budget. Always succeeds for the first claim
+	 * in a frame so that copies larger than the budget still make progress.
+	 * @return True if the caller may copy the given number of bytes this frame.
+	 */
+	static boolean claimTransferBytes(int bytes) {
+		if (frameTransferBytes > 0 && frameTransferBytes + bytes > frameTransferLimit) {
+			return false;
+		}
+
+		frameTransferBytes += bytes;
+		return true;
+	}
+
 	static void schedule(ClusterTask task) {
 		TASKS.offer(task);
 	}
@@ -24,6 +24,7 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import grondag.canvas.buffer.input.DrawableVertexCollector;
 import grondag.canvas.buffer.input.FaceBucket;
+import grondag.canvas.buffer.input.SortingVertexCollector;
 import grondag.canvas.buffer.input.VertexCollectorList;
 import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.buffer.render.TransferBuffers;
@@ -58,10 +59,19 @@ public class ClusteredDrawableRegion extends AbstractDrawableRegion<ClusteredDra
 		final TransferBuffer transferBuffer = TransferBuffers.claim(byteCount);
 		final FaceBucket[] buckets = translucent ? null : collector.faceBuckets();
 		collector.toBuffer(transferBuffer, 0);
+
+		// Translucent vertex data is uploaded in collection order and drawn through sorted indices.
+		TransferBuffer indexTransferBuffer = null;
+
+		if (translucent) {
+			indexTransferBuffer = TransferBuffers.claim(collector.quadCount() * SortingVertexCollector.INDEX_BYTES_PER_QUAD);
+			collector.toIndexBuffer(indexTransferBuffer);
+		}
+
 		final ClusteredDrawableStorage storage = new ClusteredDrawableStorage(
 				realm,
 				transferBuffer, byteCount, origin, collector.quadCount() * 4,
-				buckets);
+				buckets, indexTransferBuffer);
 
 		return new ClusteredDrawableRegion(collector.quadCount() * 4, storage);
 	}
@@ -20,11 +20,14 @@
 
 package grondag.canvas.render.terrain.cluster;
 
+import org.jetbrains.annotations.Nullable;
+
 import com.mojang.blaze3d.systems.RenderSystem;
 
 import grondag.canvas.buffer.input.FaceBucket;
 import grondag.canvas.buffer.render.TransferBuffer;
 import grondag.canvas.buffer.render.UploadableVertexStorage;
+import grondag.canvas.render.terrain.cluster.IndexSlab.IndexAllocation;
 import grondag.canvas.render.terrain.cluster.VertexCluster.RegionAllocation;
 import grondag.canvas.terrain.region.RegionPosition;
 
@@ -41,9 +44,14 @@ public class ClusteredDrawableStorage implements UploadableVertexStorage {
 	private boolean isClosed = false;
 	private RegionAllocation allocation = null;
 
-	public ClusteredDrawableStorage(VertexClusterRealm owner, TransferBuffer transferBuffer, int byteCount, RegionPosition regionOrigin, int quadVertexCount, FaceBucket[] buckets) {
+	/** Present for translucent regions, which are drawn in sorted order with their own element indices. */
+	private @Nullable TransferBuffer indexTransferBuffer;
+	private @Nullable IndexAllocation indexAllocation;
+
+	public ClusteredDrawableStorage(VertexClusterRealm owner, TransferBuffer transferBuffer, int byteCount, RegionPosition regionOrigin, int quadVertexCount, FaceBucket[] buckets, @Nullable TransferBuffer indexTransferBuffer) {
 		realm = owner;
 		this.transferBuffer = transferBuffer;
+		this.indexTransferBuffer = indexTransferBuffer;
 		this.byteCount = byteCount;
 		this.quadVertexCount = quadVertexCount;
 		faceBuckets = buckets;
@@ -74,6 +82,15 @@ public class ClusteredDrawableStorage implements UploadableVertexStorage {
 				transferBuffer = transferBuffer.release();
 			}
 
+			if (indexTransferBuffer != null) {
+				indexTransferBuffer = indexTransferBuffer.release();
+			}
+
+			if (indexAllocation != null) {
+				indexAllocation.release();
+				indexAllocation = null;
+			}
+
 			if (allocation != null) {
 				allocation.onRegionClosed();
 				allocation = null;
@@ -93,6 +110,31 @@ public class ClusteredDrawableStorage implements UploadableVertexStorage {
 	public void upload() {
 		assert allocation == null;
 		allocation = realm.allocate(this);
+
+		if (indexTransferBuffer != null) {
+			if (indexTransferBuffer.sizeBytes() > 0) {
+				indexAllocation = IndexSlab.allocateAndLoad(indexTransferBuffer);
+			}
+
+			indexTransferBuffer = indexTransferBuffer.release();
+		}
+	}
+
+	@Override
+	public void uploadIndices(TransferBuffer indices) {
+		assert RenderSystem.isOnRenderThread();
+
+		// Indices from a resort can arrive after the region was rebuilt with a different quad count.
+		if (!isClosed && indexAllocation != null && indexAllocation.isLive() && indices.sizeBytes() == indexAllocation.sizeBytes()) {
+			indexAllocation.load(indices);
+		}
+
+		indices.release();
+	}
+
+	/** Sorted element indices of a translucent region, relative to its first vertex. Null for solid regions. */
+	public @Nullable IndexAllocation indexAllocation() {
+		return indexAllocation;
 	}
 
 	/** Flag 6 (unassigned) will always be set. */
@@ -0,0 +1,157 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.render.terrain.cluster;
+
+import java.util.Arrays;
+
+/**
+ * Free space of a sub-allocated buffer, as ranges of units kept in address order.
+ * Units are whatever the owner allocates: vertices for {@link Slab} and indices for
+ * {@link IndexSlab}. Freed ranges are merged with adjacent free ranges.
+ */
+class FreeRanges {
+	/** Start of each free range, in ascending order. */
+	private int[] starts = new int[8];
+	/** Length of each free range. Ranges are never empty and never adjacent. */
+	private int[] lengths = new int[8];
+	private int count;
+
+	/** Starts with one free range covering the whole capacity, or none if capacity is zero. */
+	FreeRanges(int capacity) {
+		if (capacity > 0) {
+			starts[0] = 0;
+			lengths[0] = capacity;
+			count = 1;
+		}
+	}
+
+	int count() {
+		return count;
+	}
+
+	int largestLength() {
+		int result = 0;
+
+		for (int i = 0; i < count; ++i) {
+			result = Math.max(result, lengths[i]);
+		}
+
+		return result;
+	}
+
+	/** Takes space from the first range that fits. Returns the start of the space, or -1 if none fits. */
+	int allocateFirstFit(int length) {
+		for (int i = 0; i < count; ++i) {
+			if (lengths[i] >= length) {
+				return take(i, length);
+			}
+		}
+
+		return -1;
+	}
+
+	/** Takes space from the smallest range that fits. Returns the start of the space, or -1 if none fits. */
+	int allocateBestFit(int length) {
+		int result = -1;
+		int resultLength = Integer.MAX_VALUE;
+
+		for (int i = 0; i < count; ++i) {
+			final int rangeLength = lengths[i];
+
+			if (rangeLength >= length && rangeLength < resultLength) {
+				result = i;
+				resultLength = rangeLength;
+
+				if (rangeLength == length) {
+					break;
+				}
+			}
+		}
+
+		return result == -1 ? -1 : take(result, length);
+	}
+
+	private int take(int index, int length) {
+		final int start = starts[index];
+
+		if (lengths[index] == length) {
+			remove(index);
+		} else {
+			starts[index] += length;
+			lengths[index] -= length;
+		}
+
+		return start;
+	}
+
+	void free(int start, int length) {
+		final int end = start + length;
+
+		// first range starting after the freed range
+		int next = 0;
+		int high = count;
+
+		while (next < high) {
+			final int mid = (next + high) >>> 1;
+
+			if (starts[mid] < start) {
+				next = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		assert next == count || starts[next] >= end : "Freed range overlaps free space";
+		final boolean joinPrior = next > 0 && starts[next - 1] + lengths[next - 1] == start;
+		final boolean joinNext = next < count && starts[next] == end;
+
+		if (joinPrior && joinNext) {
+			lengths[next - 1] += length + lengths[next];
+			remove(next);
+		} else if (joinPrior) {
+			lengths[next - 1] += length;
+		} else if (joinNext) {
+			starts[next] = start;
+			lengths[next] += length;
+		} else {
+			insert(next, start, length);
+		}
+	}
+
+	private void insert(int index, int start, int length) {
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+			lengths = Arrays.copyOf(lengths, count * 2);
+		}
+
+		System.arraycopy(starts, index, starts, index + 1, count - index);
+		System.arraycopy(lengths, index, lengths, index + 1, count - index);
+		starts[index] = start;
+		lengths[index] = length;
+		++count;
+	}
+
+	private void remove(int index) {
+		--count;
+		System.arraycopy(starts, index + 1, starts, index, count - index);
+		System.arraycopy(lengths, index + 1, lengths, index, count - index);
+	}
+}
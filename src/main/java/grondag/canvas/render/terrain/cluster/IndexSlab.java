@@ -0,0 +1,181 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.render.terrain.cluster;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import grondag.canvas.buffer.render.AbstractGlBuffer;
+import grondag.canvas.buffer.render.TransferBuffer;
+import grondag.canvas.buffer.util.BufferSynchronizer;
+import grondag.canvas.buffer.util.BufferSynchronizer.SynchronizedBuffer;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Element buffer shared by many translucent regions, each holding its sorted indices
+ * in a sub-allocated range. Indices are relative to the first vertex of the region,
+ * so regions that share a vertex slab and an index slab can be drawn with one
+ * multi-draw call using a base vertex for each region.
+ *
+ * <p>Ranges keep their position for the life of the region. A resort has the same
+ * quad count, so new indices are written in place without changing draw lists.
+ *
+ * <p>One empty slab of normal capacity is kept rather than released, so that a region
+ * whose indices are repeatedly replaced doesn't create and delete a buffer each time.
+ *
+ * <p>Bound to the copy target for creation and upload so that loading doesn't alter
+ * the element binding of whatever vertex array happens to be bound at the time.
+ */
+public class IndexSlab extends AbstractGlBuffer implements SynchronizedBuffer {
+	/** Normal capacity. A region with more indices than this gets a slab of its own. */
+	private static final int INDEX_SLAB_BYTES = 0x400000;
+	private static final int BYTES_PER_INDEX = 4;
+
+	/** Render thread only. */
+	private static final ObjectArrayList<IndexSlab> SLABS = new ObjectArrayList<>();
+
+	private final int maxIndexCount;
+	private int usedIndexCount;
+
+	private final FreeRanges freeRanges;
+
+	private IndexSlab(int capacityBytes) {
+		super(capacityBytes, GFX.GL_COPY_WRITE_BUFFER, GFX.GL_DYNAMIC_DRAW);
+		maxIndexCount = capacityBytes / BYTES_PER_INDEX;
+		freeRanges = new FreeRanges(maxIndexCount);
+	}
+
+	/** Allocates space for the given indices and loads them. */
+	static IndexAllocation allocateAndLoad(TransferBuffer indices) {
+		assert RenderSystem.isOnRenderThread();
+		final int indexCount = indices.sizeBytes() / BYTES_PER_INDEX;
+		final int limit = SLABS.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final var result = SLABS.get(i).allocate(indexCount);
+
+			if (result != null) {
+				result.load(indices);
+				return result;
+			}
+		}
+
+		final IndexSlab slab = new IndexSlab(Math.max(INDEX_SLAB_BYTES, indexCount * BYTES_PER_INDEX));
+		SLABS.add(slab);
+		final var result = slab.allocate(indexCount);
+		result.load(indices);
+		return result;
+	}
+
+	/** First fit. Regions are similar in size, so smaller leftover ranges are soon reused. */
+	private IndexAllocation allocate(int indexCount) {
+		final int start = freeRanges.allocateFirstFit(indexCount);
+
+		if (start == -1) {
+			return null;
+		}
+
+		usedIndexCount += indexCount;
+		return new IndexAllocation(start, indexCount);
+	}
+
+	private void free(int start, int length) {
+		usedIndexCount -= length;
+		assert usedIndexCount >= 0;
+		freeRanges.free(start, length);
+
+		if (usedIndexCount == 0 && (maxIndexCount * BYTES_PER_INDEX > INDEX_SLAB_BYTES || hasOtherEmptySlab())) {
+			// Draws issued this frame may still read the buffer.
+			SLABS.remove(this);
+			BufferSynchronizer.accept(this);
+		}
+	}
+
+	private boolean hasOtherEmptySlab() {
+		final int limit = SLABS.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final IndexSlab slab = SLABS.get(i);
+
+			if (slab != this && slab.usedIndexCount == 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void onBufferSync() {
+		shutdown();
+	}
+
+	@Override
+	protected void onShutdown() {
+		// NOOP
+	}
+
+	/** Sorted indices of one region. */
+	public class IndexAllocation {
+		/** Position of the first index in the slab, in indices. */
+		public final int firstIndex;
+		public final int indexCount;
+		private boolean isClosed = false;
+
+		private IndexAllocation(int firstIndex, int indexCount) {
+			this.firstIndex = firstIndex;
+			this.indexCount = indexCount;
+		}
+
+		public IndexSlab slab() {
+			return IndexSlab.this;
+		}
+
+		/** False once released or if the slab has been shut down. */
+		boolean isLive() {
+			return !isClosed && !IndexSlab.this.isClosed;
+		}
+
+		int sizeBytes() {
+			return indexCount * BYTES_PER_INDEX;
+		}
+
+		/** Writes indices in place. Size must match the allocation. */
+		void load(TransferBuffer indices) {
+			assert RenderSystem.isOnRenderThread();
+			assert isLive();
+			assert indices.sizeBytes() == indexCount * BYTES_PER_INDEX;
+			GFX.bindBuffer(bindTarget, glBufferId());
+			indices.transferToBoundBuffer(bindTarget, firstIndex * BYTES_PER_INDEX, 0, indexCount * BYTES_PER_INDEX);
+			GFX.bindBuffer(bindTarget, 0);
+		}
+
+		void release() {
+			assert RenderSystem.isOnRenderThread();
+
+			if (!isClosed) {
+				isClosed = true;
+				free(firstIndex, indexCount);
+			}
+		}
+	}
+}
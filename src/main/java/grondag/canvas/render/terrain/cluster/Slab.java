@@ -37,38 +37,46 @@ import grondag.canvas.render.terrain.cluster.VertexCluster.RegionAllocation.Slab
 import grondag.canvas.render.terrain.cluster.VertexCluster.SlabAllocationFactory;
 import grondag.canvas.varia.GFX;
 
+/**
+ * GPU buffer holding vertex data for one or more regions of a cluster.
+ *
+ * <p>Space is sub-allocated from a free list of vertex ranges kept in address order.
+ * Allocations take the smallest range that fits, and freed ranges are merged with
+ * adjacent free ranges so that space released by rebuilt or unloaded regions can be
+ * reused without copying anything.
+ */
 public class Slab extends AbstractGlBuffer implements SynchronizedBuffer {
 	private final TransferSlab transferSlab = new TransferSlab();
-	private int headVertexIndex = 0;
 	private int usedVertexCount;
 	private final int maxVertexCount;
 
+	private final FreeRanges freeRanges;
+	private int largestFreeVertexCount;
+
 	Slab(int capacityBytes) {
 		// NB: STATIC makes a huge positive difference on AMD at least
 		super(capacityBytes, GFX.GL_ARRAY_BUFFER, GFX.GL_STATIC_DRAW);
 		assert RenderSystem.isOnRenderThread();
 		maxVertexCount = (capacityBytes / BYTES_PER_SLAB_VERTEX) & ~3;
+		freeRanges = new FreeRanges(maxVertexCount);
+		largestFreeVertexCount = maxVertexCount;
+		SlabAllocator.addToFreeRanges(freeRanges.count(), 0);
 	}
 
 	TransferBuffer asTransferBuffer() {
 		return transferSlab;
 	}
 
-	/** How much vertex capacity is remaining. */
+	/** How much vertex capacity is remaining, including space lost to fragmentation. */
 	int availableVertexCount() {
 		assert RenderSystem.isOnRenderThread();
-		assert headVertexIndex <= maxVertexCount;
-		return maxVertexCount - headVertexIndex;
+		return maxVertexCount - usedVertexCount;
 	}
 
 	int usedVertexCount() {
 		return usedVertexCount;
 	}
 
-	/**
-	 * Excludes bytes no longer used by their allocation.
-	 * Thus, may not match {@link #capacityBytes()} - {@link #availableBytes()}.
-	 */
 	int usedBytes() {
 		return usedVertexCount * BYTES_PER_SLAB_VERTEX;
 	}
@@ -77,8 +85,21 @@ public class Slab extends AbstractGlBuffer implements SynchronizedBuffer {
 		return availableVertexCount() * BYTES_PER_SLAB_VERTEX;
 	}
 
+	/** Size of the largest allocation that can currently succeed. */
+	int largestFreeVertexCount() {
+		return largestFreeVertexCount;
+	}
+
+	int freeRangeCount() {
+		return freeRanges.count();
+	}
+
+	boolean canFit(int vertexCount) {
+		return vertexCount <= largestFreeVertexCount;
+	}
+
 	public boolean isFull() {
-		return availableVertexCount() == 0;
+		return largestFreeVertexCount == 0;
 	}
 
 	boolean isEmpty() {
@@ -89,7 +110,6 @@ public class Slab extends AbstractGlBuffer implements SynchronizedBuffer {
 	void release() {
 		assert RenderSystem.isOnRenderThread();
 		assert usedVertexCount == 0;
-		headVertexIndex = 0;
 		BufferSynchronizer.accept(this);
 	}
 
@@ -121,30 +141,50 @@ public class Slab extends AbstractGlBuffer implements SynchronizedBuffer {
 			return null;
 		}
 
-		final int newHeadVertexIndex = headVertexIndex + allocatedVertexCount;
-		final var allocation = factory.create(this, headVertexIndex, allocatedVertexCount);
+		assert canFit(allocatedVertexCount) : "Slab allocation without sufficient contiguous space";
+		final int oldFragmentedVertexCount = fragmentedVertexCount();
+		final int oldRangeCount = freeRanges.count();
+		final int baseVertexIndex = freeRanges.allocateBestFit(allocatedVertexCount);
+		assert baseVertexIndex >= 0;
+
+		final var allocation = factory.create(this, baseVertexIndex, allocatedVertexCount);
 		addToVertexCounts(allocatedVertexCount);
+		onFreeRangesChanged(oldRangeCount, oldFragmentedVertexCount);
 
 		GFX.bindBuffer(bindTarget, glBufferId());
 		buffer.transferToBoundBuffer(bindTarget,
-				headVertexIndex * BYTES_PER_SLAB_VERTEX,
+				baseVertexIndex * BYTES_PER_SLAB_VERTEX,
 				sourceStartVertexIndex * BYTES_PER_SLAB_VERTEX,
 				allocatedVertexCount * BYTES_PER_SLAB_VERTEX);
 
-		headVertexIndex = newHeadVertexIndex;
 		return allocation;
 	}
 
 	void removeAllocation(SlabAllocation allocation) {
 		assert RenderSystem.isOnRenderThread();
 		assert !isClosed;
+		final int oldFragmentedVertexCount = fragmentedVertexCount();
+		final int oldRangeCount = freeRanges.count();
 		addToVertexCounts(-allocation.quadVertexCount);
+		freeRanges.free(allocation.baseQuadVertexIndex, allocation.quadVertexCount);
+		onFreeRangesChanged(oldRangeCount, oldFragmentedVertexCount);
+	}
+
+	/** Free vertices outside the largest free range - space that can't be used by the largest possible allocation. */
+	private int fragmentedVertexCount() {
+		return maxVertexCount - usedVertexCount - largestFreeVertexCount;
+	}
+
+	private void onFreeRangesChanged(int oldRangeCount, int oldFragmentedVertexCount) {
+		largestFreeVertexCount = freeRanges.largestLength();
+		SlabAllocator.addToFreeRanges(freeRanges.count() - oldRangeCount, fragmentedVertexCount() - oldFragmentedVertexCount);
 	}
 
 	@Override
 	protected void onShutdown() {
 		assert RenderSystem.isOnRenderThread();
 		assert usedVertexCount == 0;
+		SlabAllocator.addToFreeRanges(-freeRanges.count(), -fragmentedVertexCount());
 		SlabAllocator.notifyShutdown(this);
 	}
 
@@ -28,11 +28,23 @@ public class SlabAllocator {
 	private static int slabCount = 0;
 	private static long usedBytes = 0;
 	private static long capacityBytes = 0;
+	private static int freeRangeCount = 0;
+	private static long fragmentedVertexCount = 0;
+	private static long defragBytes = 0;
 
 	static void addToVertexCount(int vertexCount) {
 		usedBytes += vertexCount * BYTES_PER_SLAB_VERTEX;
 	}
 
+	static void addToFreeRanges(int rangeCount, int fragmentedVertexCount) {
+		freeRangeCount += rangeCount;
+		SlabAllocator.fragmentedVertexCount += fragmentedVertexCount;
+	}
+
+	static void addToDefragBytes(int bytes) {
+		defragBytes += bytes;
+	}
+
 	static void notifyShutdown(Slab slab) {
 		assert slab.usedVertexCount() == 0;
 		--slabCount;
@@ -43,6 +55,13 @@ public class SlabAllocator {
 	public static final int BYTES_PER_SLAB_VERTEX = 28;
 	static final int SLAB_BYTES_INCREMENT = SLAB_QUAD_VERTEX_COUNT_INCREMENT * BYTES_PER_SLAB_VERTEX;
 
+	/**
+	 * Upper limit for slabs added to a cluster that already has content. New slabs are sized
+	 * to match what the cluster already holds, up to this size, so that busy clusters don't
+	 * end up with many small slabs. Regions larger than this still get a slab big enough.
+	 */
+	static final int MAX_GROWTH_SLAB_BYTES = SLAB_BYTES_INCREMENT * 32;
+
 	static {
 		// Want IDE to show actual numbers above, so check here at run time that nothing changed and got missed.
 		assert BYTES_PER_SLAB_VERTEX == TerrainEncoder.TERRAIN_MATERIAL.vertexStrideBytes : "Slab vertex size doesn't match vertex format";
@@ -56,10 +75,24 @@ public class SlabAllocator {
 		return result;
 	}
 
+	/** Capacity for a new slab in a cluster that already holds the given number of bytes. */
+	static int growthCapacityBytes(int clusterActiveBytes, int minCapacityBytes) {
+		return Math.max(minCapacityBytes, Math.min(clusterActiveBytes, MAX_GROWTH_SLAB_BYTES));
+	}
+
+	/**
+	 * Fragmentation is the share of free bytes outside the largest free range of each slab.
+	 * Moved bytes are the cumulative total copied by incremental defragmentation.
+	 */
 	public static String debugSummary() {
-		return String.format("%d slabs %dMb occ:%d",
+		final long freeBytes = capacityBytes - usedBytes;
+
+		return String.format("%d slabs %dMb occ:%d frag:%d holes:%d moved:%dMb",
 				slabCount,
 				capacityBytes / 0x100000L,
-				capacityBytes > 0 ? usedBytes * 100L / capacityBytes : 0);
+				capacityBytes > 0 ? usedBytes * 100L / capacityBytes : 0,
+				freeBytes > 0 ? fragmentedVertexCount * BYTES_PER_SLAB_VERTEX * 100L / freeBytes : 0,
+				freeRangeCount,
+				defragBytes / 0x100000L);
 	}
 }
@@ -44,7 +44,6 @@ public class VertexCluster implements ClusterTask {
 	final long clusterPos;
 
 	private ObjectArrayList<Slab> slabs = new ObjectArrayList<>();
-	private @Nullable Slab hungrySlab = null;
 	private boolean isScheduled = false;
 	private boolean itMe = false;
 
@@ -57,14 +56,37 @@ public class VertexCluster implements ClusterTask {
 		return activeBytes;
 	}
 
-	private Slab getHungrySlab(int slabBytes) {
-		if (hungrySlab == null || hungrySlab.availableBytes() < slabBytes) {
-			// We want to use the new slab for compaction so request one big enough to hold everything we have
-			hungrySlab = SlabAllocator.claim(activeBytes + slabBytes);
-			slabs.add(hungrySlab);
+	/**
+	 * Finds space for a new allocation in existing slabs, preferring the fullest slab
+	 * so that sparse slabs can drain and be released. Claims a new slab only if no
+	 * slab has a free range large enough.
+	 */
+	private Slab slabForAllocation(int allocationBytes) {
+		final int vertexCount = allocationBytes / SlabAllocator.BYTES_PER_SLAB_VERTEX;
+		final Slab result = fullestSlabThatFits(vertexCount, null);
+
+		if (result != null) {
+			return result;
 		}
 
-		return hungrySlab;
+		final Slab newSlab = SlabAllocator.claim(SlabAllocator.growthCapacityBytes(activeBytes, allocationBytes));
+		slabs.add(newSlab);
+		return newSlab;
+	}
+
+	private @Nullable Slab fullestSlabThatFits(int vertexCount, @Nullable Slab exclude) {
+		Slab result = null;
+		final int limit = slabs.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final Slab slab = slabs.get(i);
+
+			if (slab != exclude && slab.canFit(vertexCount) && (result == null || slab.availableVertexCount() < result.availableVertexCount())) {
+				result = slab;
+			}
+		}
+
+		return result;
 	}
 
 	void close() {
@@ -119,73 +141,117 @@ public class VertexCluster implements ClusterTask {
 	}
 
 	private void scheduleIfNeeded() {
-		if (!isClosed && slabs.size() > 1 && !isScheduled) {
+		if (!isClosed && !isScheduled && defragSource() != null) {
 			isScheduled = true;
 			ClusterTaskManager.schedule(this);
 		}
 	}
 
+	/**
+	 * The least-occupied slab, if the content of that slab would fit in the free
+	 * space of the other slabs. Null if there is nothing to be gained by moving data.
+	 */
+	private @Nullable Slab defragSource() {
+		final int limit = slabs.size();
+
+		if (limit < 2) {
+			return null;
+		}
+
+		Slab result = null;
+		int totalAvailable = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final Slab slab = slabs.get(i);
+			totalAvailable += slab.availableVertexCount();
+
+			if (result == null || slab.usedVertexCount() < result.usedVertexCount()) {
+				result = slab;
+			}
+		}
+
+		return totalAvailable - result.availableVertexCount() >= result.usedVertexCount() ? result : null;
+	}
+
 	public int slabCount() {
 		return slabs.size();
 	}
 
+	/**
+	 * Empties sparse slabs by moving regions into free space of other slabs in the cluster.
+	 * Copies are limited by the frame budget of {@link ClusterTaskManager}, so a cluster with
+	 * much to move is handled over several frames instead of in a single copy of everything.
+	 */
 	@Override
 	public boolean run(long deadlineNanos) {
-		if (isScheduled) {
+		if (!isScheduled) {
+			return true;
+		}
+
+		if (isClosed) {
 			isScheduled = false;
-			compact();
+			return true;
 		}
 
-		return true;
-	}
+		boolean didMove = false;
+		Slab source;
 
-	private void compact() {
-		if (slabs.size() < 2) {
-			// nothing to do
-			return;
-		}
+		while ((source = defragSource()) != null) {
+			for (final var region : allocatedRegions.values()) {
+				final var oldAllocation = region.getAllocation();
+
+				if (oldAllocation == null || oldAllocation.slab != source) {
+					continue;
+				}
 
-		// NB: hungry slab can't be null here because we have at least two slabs. But
-		// it may not be big enough. Ensure hungry slab can hold everything, including own contents
-		assert hungrySlab.usedBytes() >= 0;
-		assert hungrySlab.usedBytes() <= hungrySlab.capacityBytes();
+				final Slab target = fullestSlabThatFits(oldAllocation.quadVertexCount, source);
 
-		if (hungrySlab.availableBytes() < activeBytes - hungrySlab.usedBytes()) {
-			hungrySlab = SlabAllocator.claim(activeBytes);
-			slabs.add(hungrySlab);
-		}
+				if (target == null) {
+					// Free space is too fragmented to take this region. Allocation changes will reschedule.
+					isScheduled = false;
+					invalidateHoldingListsIf(didMove);
+					return true;
+				}
 
-		final Slab hungrySlab = this.hungrySlab;
+				final int bytes = oldAllocation.quadVertexCount * SlabAllocator.BYTES_PER_SLAB_VERTEX;
 
-		for (final var region : allocatedRegions.values()) {
-			final var oldAllocation = region.getAllocation();
+				if (System.nanoTime() >= deadlineNanos || !ClusterTaskManager.claimTransferBytes(bytes)) {
+					invalidateHoldingListsIf(didMove);
+					return false;
+				}
 
-			if (oldAllocation.slab != hungrySlab) {
-				final var newAllocation = hungrySlab.transferFromSlabAllocation(region.factory, oldAllocation);
+				final var newAllocation = target.transferFromSlabAllocation(region.factory, oldAllocation);
 				region.setAllocation(newAllocation);
+				// NB: releases the source slab when it becomes empty
 				oldAllocation.release();
+				SlabAllocator.addToDefragBytes(bytes);
+				didMove = true;
 			}
+
+			assert !slabs.contains(source) : "Slab not released after defragmentation";
 		}
 
-		assert slabs.size() == 1;
-		assert slabs.get(0) == hungrySlab;
+		isScheduled = false;
+		invalidateHoldingListsIf(didMove);
+		return true;
+	}
 
-		if (!holdingLists.isEmpty()) {
+	private void invalidateHoldingListsIf(boolean didMove) {
+		if (didMove && !holdingLists.isEmpty()) {
 			for (final var list : holdingLists) {
 				list.invalidate();
 			}
 		}
 	}
 
-	void addListListener(ClusterDrawList listener) {
+	public void addListListener(ClusterDrawList listener) {
 		assert !holdingLists.contains(listener);
 		assert !isClosed;
 		holdingLists.add(listener);
 	}
 
-	void removeListListener(ClusterDrawList listener) {
+	public void removeListListener(ClusterDrawList listener) {
 		assert holdingLists.contains(listener);
-		assert !isClosed;
 		holdingLists.remove(listener);
 	}
 
@@ -200,7 +266,7 @@ public class VertexCluster implements ClusterTask {
 		private RegionAllocation(ClusteredDrawableStorage region) {
 			this.region = region;
 			final var transferBuffer = region.getAndClearTransferBuffer();
-			slabAllocation = getHungrySlab(region.byteCount).allocateAndLoad(factory, transferBuffer);
+			slabAllocation = slabForAllocation(region.byteCount).allocateAndLoad(factory, transferBuffer);
 			assert slabAllocation.quadVertexCount == region.quadVertexCount;
 			transferBuffer.release();
 			allocatedRegions.put(region, this);
@@ -278,7 +344,7 @@ public class VertexCluster implements ClusterTask {
 					slab.removeAllocation(this);
 					scheduleIfNeeded();
 
-					if (slab.isEmpty() && slab != hungrySlab) {
+					if (slab.isEmpty()) {
 						if (slabs.remove(slab)) {
 							slab.release();
 						} else {
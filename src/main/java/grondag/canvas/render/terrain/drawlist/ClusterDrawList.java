@@ -20,113 +20,259 @@
 
 package grondag.canvas.render.terrain.drawlist;
 
-import java.util.IdentityHashMap;
-
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import grondag.canvas.config.Configurator;
 import grondag.canvas.render.terrain.cluster.ClusteredDrawableStorage;
+import grondag.canvas.render.terrain.cluster.IndexSlab;
 import grondag.canvas.render.terrain.cluster.Slab;
 import grondag.canvas.render.terrain.cluster.VertexCluster;
 import grondag.canvas.render.terrain.cluster.VertexCluster.RegionAllocation.SlabAllocation;
-import grondag.canvas.varia.GFX;
 
+/**
+ * Draws the regions of one cluster in a {@link RealmDrawList}. Instances are pooled by
+ * the owning list and reassigned to other clusters, so all state is reset on claim and retire.
+ * The indirect command buffer is kept across rebuilds so commands can be patched in place
+ * instead of uploaded into a new buffer, but is released on retire so pooled lists hold no GPU memory.
+ */
 public class ClusterDrawList {
-	final ObjectArrayList<ClusteredDrawableStorage> regions = new ObjectArrayList<>();
-	final VertexCluster cluster;
+	/** Render thread only. Reused to group allocations by slab without allocating. */
+	private static final ObjectArrayList<SlabAllocation> ALLOCATIONS = new ObjectArrayList<>();
+	private static final ObjectArrayList<SlabAllocation> SLAB_ALLOCATIONS = new ObjectArrayList<>();
+
+	ObjectArrayList<ClusteredDrawableStorage> regions = new ObjectArrayList<>();
+	private ObjectArrayList<ClusteredDrawableStorage> priorRegions = new ObjectArrayList<>();
+	/** Visible face flags of each region when draw specs depend on them, zero otherwise. Layered shadow lists also include the cascade count. */
+	private IntArrayList faceFlags = new IntArrayList();
+	private IntArrayList priorFaceFlags = new IntArrayList();
+	VertexCluster cluster;
 	final RealmDrawList owner;
 	private final ObjectArrayList<DrawSpec> drawSpecs = new ObjectArrayList<>();
+	/** Null unless multi-draw indirect is in use. */
+	@Nullable private IndirectCommandBuffer commands;
 	private int quadCount;
+	private boolean isInvalid = true;
 
-	ClusterDrawList(VertexCluster cluster, RealmDrawList owner) {
-		this.cluster = cluster;
+	ClusterDrawList(RealmDrawList owner) {
 		this.owner = owner;
 	}
 
+	void claim(VertexCluster cluster) {
+		assert this.cluster == null;
+		assert regions.isEmpty();
+		this.cluster = cluster;
+		isInvalid = true;
+		// Defragmentation moves regions between slabs, which makes draw specs stale.
+		cluster.addListListener(this);
+	}
+
 	public int quadCount() {
 		return quadCount;
 	}
 
-	void build() {
-		assert drawSpecs.isEmpty();
+	boolean isEmpty() {
+		return regions.isEmpty();
+	}
+
+	/** Moves current content to prior content for comparison after new regions are added. */
+	void beginUpdate() {
+		final var swapRegions = priorRegions;
+		priorRegions = regions;
+		regions = swapRegions;
+		regions.clear();
+
+		final var swapFlags = priorFaceFlags;
+		priorFaceFlags = faceFlags;
+		faceFlags = swapFlags;
+		faceFlags.clear();
+	}
+
+	void add(ClusteredDrawableStorage region) {
+		assert region.allocation().cluster() == cluster;
+		regions.add(region);
+
+		int flags = 0;
+
+		if (!cluster.realm.isTranslucent && Configurator.cullBackfacingTerrain) {
+			flags = owner.isShadowMap ? region.shadowVisibleFaceFlags() : region.visibleFaceFlags();
+		}
+
+		if (owner.isLayered) {
+			// instance count is part of the draw spec, so a cascade change needs a rebuild
+			flags |= layerCount(region) << 8;
+		}
+
+		faceFlags.add(flags);
+	}
+
+	/** Cascades are nested, so a region in cascade N is drawn into cascades 0 through N. */
+	static int layerCount(ClusteredDrawableStorage region) {
+		return Math.max(0, region.regionOrigin.shadowCascade() + 1);
+	}
+
+	void rebuildIfChanged() {
+		if (isInvalid || !regions.equals(priorRegions) || !faceFlags.equals(priorFaceFlags)) {
+			rebuild();
+		}
+
+		priorRegions.clear();
+		priorFaceFlags.clear();
+	}
+
+	private void rebuild() {
+		isInvalid = false;
+		releaseDrawSpecs();
 
 		if (cluster.realm.isTranslucent) {
 			buildTranslucent();
 		} else {
 			buildSolid();
 		}
+
+		if (DrawSpec.useIndirect()) {
+			writeCommands();
+		} else if (commands != null) {
+			commands.release();
+			commands = null;
+		}
 	}
 
-	/** Maintains region sort order at the cost of extra binds/calls if needed. */
+	private void writeCommands() {
+		if (commands == null) {
+			commands = new IndirectCommandBuffer();
+		}
+
+		final int limit = drawSpecs.size();
+		int commandCount = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			commandCount += drawSpecs.get(i).size();
+		}
+
+		commands.begin(commandCount);
+		int firstCommand = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final DrawSpec spec = drawSpecs.get(i);
+			spec.writeCommands(commands, firstCommand);
+			firstCommand += spec.size();
+		}
+
+		commands.end();
+	}
+
+	/**
+	 * Maintains region sort order. Consecutive regions that share a vertex slab and an
+	 * index slab become one draw spec, so a cluster is usually a single multi-draw.
+	 */
 	private void buildTranslucent() {
+		final var specAllocations = ALLOCATIONS;
 		Slab lastSlab = null;
-		final ObjectArrayList<SlabAllocation> specAllocations = new ObjectArrayList<>();
+		IndexSlab lastIndexSlab = null;
 		int quadCount = 0;
 
 		for (final var region : regions) {
+			final var indexAllocation = region.indexAllocation();
+
+			if (indexAllocation == null) {
+				continue;
+			}
+
 			final var alloc = region.allocation().getAllocation();
 
-			if (alloc.slab != lastSlab) {
+			if (alloc.slab != lastSlab || indexAllocation.slab() != lastIndexSlab) {
 				// NB: builder checks for empty region list (will be true for first region)
 				// and also clears the list when done.
-				quadCount += DrawSpecBuilder.build(specAllocations, drawSpecs, false, false);
+				quadCount += DrawSpecBuilder.buildTranslucent(specAllocations, drawSpecs);
 				lastSlab = alloc.slab;
+				lastIndexSlab = indexAllocation.slab();
 			}
 
 			specAllocations.add(alloc);
 		}
 
-		quadCount += DrawSpecBuilder.build(specAllocations, drawSpecs, false, false);
+		quadCount += DrawSpecBuilder.buildTranslucent(specAllocations, drawSpecs);
 
 		this.quadCount = quadCount;
 	}
 
 	/** Minimizes binds/calls. */
 	private void buildSolid() {
-		final IdentityHashMap<Slab, ObjectArrayList<SlabAllocation>> map = new IdentityHashMap<>();
-
-		// first group regions by slab
-		for (final var region : regions) {
-			final var alloc = region.allocation().getAllocation();
-			var list = map.get(alloc.slab);
-
-			if (list == null) {
-				list = new ObjectArrayList<>();
-				map.put(alloc.slab, list);
-			}
+		final var allocations = ALLOCATIONS;
+		final var slabAllocations = SLAB_ALLOCATIONS;
+		final int limit = regions.size();
 
-			list.add(alloc);
+		for (int i = 0; i < limit; ++i) {
+			allocations.add(regions.get(i).allocation().getAllocation());
 		}
 
 		int quadCount = 0;
 
-		for (final var list: map.values()) {
-			quadCount += DrawSpecBuilder.build(list, drawSpecs, owner.isShadowMap, Configurator.cullBackfacingTerrain);
+		// Clusters rarely have more than a few slabs, so group by slab with repeated passes
+		while (!allocations.isEmpty()) {
+			final Slab slab = allocations.get(0).slab;
+			int remaining = 0;
+			final int count = allocations.size();
+
+			for (int i = 0; i < count; ++i) {
+				final var alloc = allocations.get(i);
+
+				if (alloc.slab == slab) {
+					slabAllocations.add(alloc);
+				} else {
+					allocations.set(remaining++, alloc);
+				}
+			}
+
+			allocations.size(remaining);
+			quadCount += DrawSpecBuilder.build(slabAllocations, drawSpecs, owner.isShadowMap, Configurator.cullBackfacingTerrain, owner.isLayered);
 		}
 
 		this.quadCount = quadCount;
 	}
 
 	public void draw() {
+		if (isInvalid) {
+			// Rarely happens because slab reallocation typically happen
+			// in response to player movement, which will naturally force
+			// the list to be updated.
+			rebuild();
+		}
+
 		final int limit = drawSpecs.size();
 
 		for (int i = 0; i < limit; ++i) {
-			final var spec = drawSpecs.get(i);
-			spec.bind();
-			GFX.glMultiDrawElementsBaseVertex(GFX.GL_TRIANGLES, spec.triVertexCount(), GFX.GL_UNSIGNED_SHORT, spec.triIndexOffset(), spec.baseQuadVertexOffset());
+			drawSpecs.get(i).draw(commands);
 		}
 	}
 
-	public void add(ClusteredDrawableStorage region) {
-		assert region.allocation().cluster() == cluster;
-		regions.add(region);
+	public void invalidate() {
+		isInvalid = true;
 	}
 
-	public void invalidate() {
-		owner.invalidate();
+	/** Releases all state so the instance can be pooled. */
+	void retire() {
+		assert regions.isEmpty();
+		cluster.removeListListener(this);
+		cluster = null;
+		releaseDrawSpecs();
+		quadCount = 0;
+
+		if (commands != null) {
+			commands.release();
+			commands = null;
+		}
 	}
 
-	public void release() {
-		drawSpecs.forEach(DrawSpec::release);
+	private void releaseDrawSpecs() {
+		final int limit = drawSpecs.size();
+
+		for (int i = 0; i < limit; ++i) {
+			drawSpecs.get(i).release();
+		}
+
+		drawSpecs.clear();
 	}
 }
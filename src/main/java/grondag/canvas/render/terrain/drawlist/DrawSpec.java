@@ -21,22 +21,55 @@
 package grondag.canvas.render.terrain.drawlist;
 
 import java.nio.IntBuffer;
+import java.util.Arrays;
 
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryUtil;
 
+import grondag.canvas.config.Configurator;
+import grondag.canvas.render.terrain.cluster.IndexSlab;
 import grondag.canvas.render.terrain.cluster.Slab;
-
+import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Draw calls for the regions of one draw list that share a slab. Count and offset arrays
+ * are kept in client memory for glMultiDrawElementsBaseVertex. When multi-draw indirect is
+ * available and enabled, the owning list also writes the same draws into its
+ * {@link IndirectCommandBuffer} and the spec draws its range of commands from there.
+ *
+ * <p>Solid specs draw from the shared {@link SlabIndex} with short indices. Translucent specs
+ * draw the sorted int indices of each region from an {@link IndexSlab}, so regions sharing
+ * both a vertex slab and an index slab are still a single call.
+ *
+ * <p>Layered shadow specs also carry an instance count per draw, one instance for each
+ * cascade the region is drawn into. Without indirect draw these become individual
+ * glDrawElementsInstancedBaseVertex calls.
+ */
 class DrawSpec {
 	private IntBuffer triVertexCount;
 	private IntBuffer baseQuadVertexOffset;
 	private PointerBuffer triIndexOffset;
+	@Nullable private final int[] firstIndex;
+	@Nullable private final int[] instanceCount;
 	private final int size;
+	private final int elementType;
 	private final TerrainVAO vao;
+	/** Position of this spec's first command in the owning list's command buffer. */
+	private int firstCommand;
 	private boolean isClosed = false;
 
-	DrawSpec (Slab slab, int size, int[] triVertexCount, int[] baseQuadVertexOffset) {
+	/**
+	 * @param indexSlab source of element indices, or null to use the shared {@link SlabIndex}
+	 * @param firstIndex position of the first element index of each draw, or null if all draws start at zero
+	 */
+	DrawSpec (Slab slab, @Nullable IndexSlab indexSlab, int size, int[] triVertexCount, @Nullable int[] firstIndex, int[] baseQuadVertexOffset, @Nullable int[] instanceCount) {
 		this.size = size;
+		elementType = indexSlab == null ? GFX.GL_UNSIGNED_SHORT : GFX.GL_UNSIGNED_INT;
+		this.firstIndex = firstIndex == null ? null : Arrays.copyOf(firstIndex, size);
+		this.instanceCount = instanceCount == null ? null : Arrays.copyOf(instanceCount, size);
+
 		this.triVertexCount = MemoryUtil.memAllocInt(size);
 		this.triVertexCount.put(0, triVertexCount, 0, size);
 
@@ -44,14 +77,34 @@ class DrawSpec {
 		this.baseQuadVertexOffset.put(0, baseQuadVertexOffset, 0, size);
 
 		triIndexOffset = MemoryUtil.memAllocPointer(size);
+		final long indexBytes = indexSlab == null ? 2 : 4;
 
 		for (int i = 0; i < size; ++i) {
-			triIndexOffset.put(i, 0L);
+			triIndexOffset.put(i, firstIndex == null ? 0L : firstIndex[i] * indexBytes);
 		}
 
 		triIndexOffset.position(0);
 
-		vao = new TerrainVAO(() -> slab.glBufferId(), () -> SlabIndex.get().glBufferId(), 0);
+		vao = new TerrainVAO(() -> slab.glBufferId(), indexSlab == null ? () -> SlabIndex.get().glBufferId() : indexSlab::glBufferId, 0);
+	}
+
+	static boolean useIndirect() {
+		return Configurator.indirectTerrainDraw && CanvasGlHelper.supportsMultiDrawIndirect();
+	}
+
+	int size() {
+		return size;
+	}
+
+	/** Adds this spec's draws to a command set started with {@link IndirectCommandBuffer#begin(int)}. */
+	void writeCommands(IndirectCommandBuffer commands, int firstCommand) {
+		this.firstCommand = firstCommand;
+		final IntBuffer triVertexCount = triVertexCount();
+		final IntBuffer baseQuadVertexOffset = baseQuadVertexOffset();
+
+		for (int i = 0; i < size; ++i) {
+			commands.put(firstCommand + i, triVertexCount.get(i), firstIndex == null ? 0 : firstIndex[i], baseQuadVertexOffset.get(i), instanceCount == null ? 1 : instanceCount[i]);
+		}
 	}
 
 	IntBuffer baseQuadVertexOffset() {
@@ -94,4 +147,27 @@ class DrawSpec {
 	public void bind() {
 		vao.bind();
 	}
+
+	/**
+	 * @param commands the owning list's command buffer after {@link #writeCommands}, or null to draw from client arrays
+	 */
+	void draw(@Nullable IndirectCommandBuffer commands) {
+		vao.bind();
+
+		if (commands != null) {
+			commands.draw(elementType, firstCommand, size);
+		} else if (instanceCount != null) {
+			final IntBuffer triVertexCount = triVertexCount();
+			final IntBuffer baseQuadVertexOffset = baseQuadVertexOffset();
+			final int[] instanceCount = this.instanceCount;
+
+			for (int i = 0; i < size; ++i) {
+				if (instanceCount[i] > 0) {
+					GFX.drawElementsInstancedBaseVertex(GFX.GL_TRIANGLES, triVertexCount.get(i), elementType, triIndexOffset().get(i), instanceCount[i], baseQuadVertexOffset.get(i));
+				}
+			}
+		} else {
+			GFX.glMultiDrawElementsBaseVertex(GFX.GL_TRIANGLES, triVertexCount(), elementType, triIndexOffset(), baseQuadVertexOffset());
+		}
+	}
 }
@@ -31,10 +31,12 @@ abstract class DrawSpecBuilder {
 	private static boolean isShadowMap = false;
 	private static final IntArrayList triVertexCount = new IntArrayList();
 	private static final IntArrayList baseQuadVertexOffset = new IntArrayList();
+	private static final IntArrayList instanceCount = new IntArrayList();
+	private static final IntArrayList firstIndex = new IntArrayList();
 	private static int quadCount;
 
 	/** NOT THREAD-SAFE. */
-	public static int build(ObjectArrayList<SlabAllocation> inputs, ObjectArrayList<DrawSpec> output, boolean isShadowMap, boolean cullBackFace) {
+	public static int build(ObjectArrayList<SlabAllocation> inputs, ObjectArrayList<DrawSpec> output, boolean isShadowMap, boolean cullBackFace, boolean isLayered) {
 		assert RenderSystem.isOnRenderThread();
 
 		if (inputs.isEmpty()) {
@@ -48,20 +50,65 @@ abstract class DrawSpecBuilder {
 		final int limit = inputs.size();
 		triVertexCount.clear();
 		baseQuadVertexOffset.clear();
+		instanceCount.clear();
 
-		if (cullBackFace) {
-			for (int i = 0; i < limit; ++i) {
-				assert inputs.get(i).slab == slab;
-				acceptAllocBucketed(inputs.get(i));
+		for (int i = 0; i < limit; ++i) {
+			final var alloc = inputs.get(i);
+			assert alloc.slab == slab;
+
+			if (cullBackFace) {
+				acceptAllocBucketed(alloc);
+			} else {
+				acceptAlloc(alloc);
 			}
-		} else {
-			for (int i = 0; i < limit; ++i) {
-				assert inputs.get(i).slab == slab;
-				acceptAlloc(inputs.get(i));
+
+			if (isLayered) {
+				final int layerCount = ClusterDrawList.layerCount(alloc.region());
+
+				while (instanceCount.size() < triVertexCount.size()) {
+					instanceCount.add(layerCount);
+				}
 			}
 		}
 
-		output.add(new DrawSpec(slab, triVertexCount.size(), triVertexCount.elements(), baseQuadVertexOffset.elements()));
+		output.add(new DrawSpec(slab, null, triVertexCount.size(), triVertexCount.elements(), null, baseQuadVertexOffset.elements(), isLayered ? instanceCount.elements() : null));
+		inputs.clear();
+		return quadCount;
+	}
+
+	/**
+	 * Builds one draw spec for translucent regions that share a vertex slab and an index slab,
+	 * with one draw per region in input order. Inputs are expected in region sort order.
+	 * NOT THREAD-SAFE.
+	 */
+	public static int buildTranslucent(ObjectArrayList<SlabAllocation> inputs, ObjectArrayList<DrawSpec> output) {
+		assert RenderSystem.isOnRenderThread();
+
+		if (inputs.isEmpty()) {
+			return 0;
+		}
+
+		final var slab = inputs.get(0).slab;
+		final var indexSlab = inputs.get(0).region().indexAllocation().slab();
+		final int limit = inputs.size();
+		triVertexCount.clear();
+		baseQuadVertexOffset.clear();
+		firstIndex.clear();
+		int quadCount = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final var alloc = inputs.get(i);
+			final var indexAllocation = alloc.region().indexAllocation();
+			assert alloc.slab == slab && indexAllocation.slab() == indexSlab;
+
+			// Sorted indices are ints relative to the first vertex of the region, so no split is needed.
+			triVertexCount.add(indexAllocation.indexCount);
+			firstIndex.add(indexAllocation.firstIndex);
+			baseQuadVertexOffset.add(alloc.baseQuadVertexIndex);
+			quadCount += alloc.quadVertexCount;
+		}
+
+		output.add(new DrawSpec(slab, indexSlab, limit, triVertexCount.elements(), firstIndex.elements(), baseQuadVertexOffset.elements(), null));
 		inputs.clear();
 		return quadCount;
 	}
@@ -0,0 +1,281 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.render.terrain.drawlist;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import grondag.canvas.buffer.render.AbstractGlBuffer;
+import grondag.canvas.buffer.util.BufferSynchronizer;
+import grondag.canvas.buffer.util.BufferSynchronizer.SynchronizedBuffer;
+import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.GFX;
+
+/**
+ * DrawElementsIndirectCommand records for all draw specs of one {@link ClusterDrawList}.
+ *
+ * <p>One buffer is kept for the life of the draw list and reused across rebuilds.
+ * It is split into {@link #SECTION_COUNT} sections used in rotation. A rebuild that
+ * changes any command moves to the next section, waits on the fence placed when that
+ * section was last left, and then rewrites only the commands that differ from what the
+ * section already holds. The GPU can therefore keep reading the prior sections while
+ * the new one is patched, and an unchanged rebuild writes nothing.
+ *
+ * <p>When buffer storage is available the mapping is persistent. Otherwise each patch maps
+ * the section unsynchronized, which is safe because the section fence has already passed.
+ * Storage is only reallocated when the command count outgrows the sections, and the old
+ * storage is released through {@link BufferSynchronizer}.
+ */
+class IndirectCommandBuffer {
+	/** Count, instance count, first index, base vertex, base instance. */
+	static final int INTS_PER_COMMAND = 5;
+	static final int BYTES_PER_COMMAND = INTS_PER_COMMAND * 4;
+	static final int SECTION_COUNT = 3;
+	private static final int MIN_CAPACITY = 16;
+	private static final long WAIT_NANOS = 1_000_000L;
+
+	/** Commands for the next section, written by draw specs during rebuild. */
+	private int[] pending = new int[MIN_CAPACITY * INTS_PER_COMMAND];
+	private int pendingCount;
+	/** Client copy of what each section holds on the GPU, so patches can skip unchanged commands. */
+	private final int[][] sectionCommands = new int[SECTION_COUNT][];
+	private final long[] sectionFences = new long[SECTION_COUNT];
+	private int section = 0;
+	/** Capacity of each section in commands. */
+	private int capacity = 0;
+	private CommandStorage storage;
+
+	/** Starts a new command set. Commands must then be written with {@link #put} before {@link #end()}. */
+	void begin(int commandCount) {
+		assert RenderSystem.isOnRenderThread();
+		final int ints = commandCount * INTS_PER_COMMAND;
+
+		if (pending.length < ints) {
+			pending = new int[Math.max(ints, pending.length * 2)];
+		}
+
+		pendingCount = commandCount;
+	}
+
+	/** Writes one indexed draw to the pending command set. */
+	void put(int commandIndex, int triVertexCount, int firstIndex, int baseQuadVertexIndex, int instanceCount) {
+		assert commandIndex < pendingCount;
+		final int[] data = pending;
+		final int offset = commandIndex * INTS_PER_COMMAND;
+		data[offset] = triVertexCount;
+		data[offset + 1] = instanceCount;
+		data[offset + 2] = firstIndex;
+		data[offset + 3] = baseQuadVertexIndex;
+		data[offset + 4] = 0;
+	}
+
+	/** Makes the pending command set current, patching the GPU copy only if it changed. */
+	void end() {
+		final int ints = pendingCount * INTS_PER_COMMAND;
+
+		if (storage != null && pendingCount <= capacity && Arrays.equals(pending, 0, ints, sectionCommands[section], 0, ints)) {
+			return;
+		}
+
+		if (storage == null || pendingCount > capacity) {
+			allocate(Math.max(MIN_CAPACITY, Math.max(pendingCount, capacity * 2)));
+		} else {
+			sectionFences[section] = GFX.fenceSynch();
+			section = (section + 1) % SECTION_COUNT;
+			awaitSection(section);
+		}
+
+		patchSection();
+	}
+
+	private void allocate(int newCapacity) {
+		if (storage != null) {
+			BufferSynchronizer.accept(storage);
+		}
+
+		deleteFences();
+		capacity = newCapacity;
+		section = 0;
+		storage = new CommandStorage(newCapacity * SECTION_COUNT * BYTES_PER_COMMAND);
+
+		for (int i = 0; i < SECTION_COUNT; ++i) {
+			// New storage content is undefined, so every command must be written
+			final int[] commands = new int[newCapacity * INTS_PER_COMMAND];
+			Arrays.fill(commands, -1);
+			sectionCommands[i] = commands;
+		}
+	}
+
+	/** Waits until the GPU is done with draws issued before the section was last left. */
+	private void awaitSection(int section) {
+		final long fence = sectionFences[section];
+
+		if (fence == 0) {
+			return;
+		}
+
+		int status = GFX.clientWaitSync(fence, GFX.GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_NANOS);
+
+		// Three rebuilds with changes inside one frame is unusual, so stall explicitly rather than draw stale commands
+		while (status == GFX.GL_TIMEOUT_EXPIRED) {
+			status = GFX.clientWaitSync(fence, 0, WAIT_NANOS);
+		}
+
+		assert status != GFX.GL_WAIT_FAILED;
+		GFX.deleteSync(fence);
+		sectionFences[section] = 0;
+	}
+
+	/** Writes runs of changed commands to the current section and updates the client copy. */
+	private void patchSection() {
+		final int[] commands = sectionCommands[section];
+		final int[] data = pending;
+		final int limit = pendingCount;
+		final long sectionOffset = (long) section * capacity * BYTES_PER_COMMAND;
+		final int baseOffset = (int) storage.mappedOffset(sectionOffset);
+		ByteBuffer buffer = null;
+		int runStart = -1;
+
+		for (int i = 0; i <= limit; ++i) {
+			final boolean changed = i < limit && !Arrays.equals(data, i * INTS_PER_COMMAND, (i + 1) * INTS_PER_COMMAND, commands, i * INTS_PER_COMMAND, (i + 1) * INTS_PER_COMMAND);
+
+			if (changed) {
+				if (buffer == null) {
+					buffer = storage.map(sectionOffset);
+				}
+
+				if (runStart < 0) {
+					runStart = i;
+				}
+
+				final int offset = baseOffset + i * BYTES_PER_COMMAND;
+				final int intOffset = i * INTS_PER_COMMAND;
+
+				for (int j = 0; j < INTS_PER_COMMAND; ++j) {
+					buffer.putInt(offset + j * 4, data[intOffset + j]);
+				}
+			} else if (runStart >= 0) {
+				GFX.flushMappedBufferRange(GFX.GL_DRAW_INDIRECT_BUFFER, baseOffset + runStart * BYTES_PER_COMMAND, (i - runStart) * BYTES_PER_COMMAND);
+				runStart = -1;
+			}
+		}
+
+		if (buffer != null) {
+			storage.unmap();
+		}
+
+		System.arraycopy(data, 0, commands, 0, limit * INTS_PER_COMMAND);
+	}
+
+	/** Assumes the vertex array and element buffer for the commands are bound. */
+	void draw(int elementType, int firstCommand, int commandCount) {
+		assert firstCommand + commandCount <= pendingCount;
+		GFX.bindBuffer(GFX.GL_DRAW_INDIRECT_BUFFER, storage.glBufferId());
+		GFX.multiDrawElementsIndirect(GFX.GL_TRIANGLES, elementType, ((long) section * capacity + firstCommand) * BYTES_PER_COMMAND, commandCount, 0);
+	}
+
+	void release() {
+		if (storage != null) {
+			BufferSynchronizer.accept(storage);
+			storage = null;
+		}
+
+		deleteFences();
+		capacity = 0;
+		section = 0;
+		pendingCount = 0;
+	}
+
+	private void deleteFences() {
+		for (int i = 0; i < SECTION_COUNT; ++i) {
+			if (sectionFences[i] != 0) {
+				GFX.deleteSync(sectionFences[i]);
+				sectionFences[i] = 0;
+			}
+		}
+	}
+
+	/** GL storage for all sections. Persistently mapped when buffer storage is available. */
+	private static class CommandStorage extends AbstractGlBuffer implements SynchronizedBuffer {
+		private final boolean isPersistent = CanvasGlHelper.supportsPersistentMapped();
+		private final int sectionBytes;
+		private ByteBuffer mappedBuffer;
+
+		CommandStorage(int capacityBytes) {
+			super(capacityBytes, GFX.GL_DRAW_INDIRECT_BUFFER, GFX.GL_DYNAMIC_DRAW);
+			sectionBytes = capacityBytes / SECTION_COUNT;
+		}
+
+		@Override
+		protected void createBuffer() {
+			if (isPersistent) {
+				GFX.bufferStorage(bindTarget, capacityBytes, GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_PERSISTENT_BIT);
+				mappedBuffer = GFX.mapBufferRange(bindTarget, 0, capacityBytes, GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_FLUSH_EXPLICIT_BIT | GFX.GL_MAP_PERSISTENT_BIT);
+			} else {
+				super.createBuffer();
+			}
+		}
+
+		/**
+		 * Binds the buffer and returns a mapping that includes one section, starting at {@link #mappedOffset(long)}.
+		 * Leaves the buffer bound for flushes until {@link #unmap()}.
+		 */
+		ByteBuffer map(long sectionOffset) {
+			GFX.bindBuffer(bindTarget, glBufferId());
+
+			if (isPersistent) {
+				return mappedBuffer;
+			} else {
+				return GFX.mapBufferRange(bindTarget, sectionOffset, sectionBytes, GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_UNSYNCHRONIZED_BIT | GFX.GL_MAP_FLUSH_EXPLICIT_BIT);
+			}
+		}
+
+		/** Start of the section within the mapping, which is the whole buffer when persistent. */
+		long mappedOffset(long sectionOffset) {
+			return isPersistent ? sectionOffset : 0;
+		}
+
+		void unmap() {
+			if (!isPersistent) {
+				GFX.unmapBuffer(bindTarget);
+			}
+
+			GFX.bindBuffer(bindTarget, 0);
+		}
+
+		@Override
+		public void onBufferSync() {
+			shutdown();
+		}
+
+		@Override
+		protected void onShutdown() {
+			if (isPersistent && mappedBuffer != null) {
+				GFX.bindBuffer(bindTarget, glBufferId());
+				GFX.unmapBuffer(bindTarget);
+				GFX.bindBuffer(bindTarget, 0);
+				mappedBuffer = null;
+			}
+		}
+	}
+}
@@ -20,29 +20,48 @@
 
 package grondag.canvas.render.terrain.drawlist;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 
 import grondag.canvas.material.state.RenderState;
+import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.render.terrain.base.AbstractDrawableRegionList;
 import grondag.canvas.render.terrain.base.DrawableRegion;
-import grondag.canvas.render.terrain.base.DrawableRegionList;
 import grondag.canvas.render.terrain.cluster.ClusteredDrawableRegion;
 import grondag.canvas.render.terrain.cluster.ClusteredDrawableStorage;
+import grondag.canvas.render.terrain.cluster.VertexCluster;
+import grondag.canvas.render.world.SkyShadowRenderer;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.varia.GFX;
 
+/**
+ * Draw list for one realm and view that lives as long as the world renderer.
+ *
+ * <p>Cluster lists are kept across updates, keyed by cluster. On each update the new
+ * regions are distributed to cluster lists and only lists whose regions or visible faces
+ * changed rebuild their draw specs. Lists for clusters that are no longer visible are
+ * returned to a pool, so a visibility change does not allocate once the pool is warm.
+ * The pool is emptied when the list is cleared.
+ */
 public class RealmDrawList extends AbstractDrawableRegionList {
+	private final Reference2ObjectOpenHashMap<VertexCluster, ClusterDrawList> clusterMap = new Reference2ObjectOpenHashMap<>();
+	/** All lists in the map, for iteration without allocating. */
+	private final ObjectArrayList<ClusterDrawList> activeLists = new ObjectArrayList<>();
+	/** Lists with at least one region, in draw order. */
 	final ObjectArrayList<ClusterDrawList> clusterLists = new ObjectArrayList<>();
+	private final ObjectArrayList<ClusterDrawList> pool = new ObjectArrayList<>();
 	final boolean isShadowMap;
+	/** True when regions are drawn with one instance per shadow cascade. Captured at each update. */
+	boolean isLayered;
 	private int quadCount;
 
-	boolean isInvalid = false;
-
-	private RealmDrawList(final ObjectArrayList<DrawableRegion> regions, RenderState renderState, boolean isShadowMap) {
-		super(regions, renderState);
+	private RealmDrawList(RenderState renderState, boolean isTranslucent, boolean isShadowMap) {
+		super(renderState, isTranslucent);
 		this.isShadowMap = isShadowMap;
-		build();
+	}
+
+	public static RealmDrawList create(boolean isTranslucent, boolean isShadowMap) {
+		return new RealmDrawList(isTranslucent ? TerrainRenderStates.TRANSLUCENT : TerrainRenderStates.SOLID, isTranslucent, isShadowMap);
 	}
 
 	@Override
@@ -50,53 +69,85 @@ public class RealmDrawList extends AbstractDrawableRegionList {
 		return quadCount;
 	}
 
-	private void build() {
-		final Long2ObjectOpenHashMap<ClusterDrawList> map = new Long2ObjectOpenHashMap<>();
+	@Override
+	protected void onUpdate() {
+		isLayered = isShadowMap && SkyShadowRenderer.isLayered();
+		final int activeCount = activeLists.size();
+
+		for (int i = 0; i < activeCount; ++i) {
+			activeLists.get(i).beginUpdate();
+		}
+
+		clusterLists.clear();
 		final int limit = regions.size();
 
 		for (int regionIndex = 0; regionIndex < limit; ++regionIndex) {
-			final ClusteredDrawableStorage storage = ((ClusteredDrawableRegion) regions.get(regionIndex)).storage();
-
-			ClusterDrawList clusterList = map.get(storage.clusterPos);
+			final DrawableRegion region = regions.get(regionIndex);
+			final ClusteredDrawableStorage storage = ((ClusteredDrawableRegion) region).storage();
+			final VertexCluster cluster = storage.allocation().cluster();
+			ClusterDrawList clusterList = clusterMap.get(cluster);
 
 			if (clusterList == null) {
-				clusterList = new ClusterDrawList(storage.allocation().cluster(), this);
+				clusterList = pool.isEmpty() ? new ClusterDrawList(this) : pool.pop();
+				clusterList.claim(cluster);
+				clusterMap.put(cluster, clusterList);
+				activeLists.add(clusterList);
+			}
+
+			if (clusterList.isEmpty()) {
 				clusterLists.add(clusterList);
-				map.put(storage.clusterPos, clusterList);
 			}
 
 			clusterList.add(storage);
 		}
 
+		retireEmptyLists();
 		quadCount = 0;
+		final int clusterCount = clusterLists.size();
 
-		clusterLists.forEach(cl -> {
-			cl.build();
-			quadCount += cl.quadCount();
-		});
+		for (int i = 0; i < clusterCount; ++i) {
+			final var clusterList = clusterLists.get(i);
+			clusterList.rebuildIfChanged();
+			quadCount += clusterList.quadCount();
+		}
 	}
 
-	private void rebuildIfInvalid() {
-		if (isInvalid) {
-			// Rarely happens because slab reallocation typically happen
-			// in response to player movement, which will naturally force
-			// a new draw list to be created.
-			isInvalid = false;
-			closeInner();
-			build();
-		}
+	@Override
+	protected void onClear() {
+		pool.clear();
 	}
 
-	public static DrawableRegionList build(final ObjectArrayList<DrawableRegion> regions, RenderState renderState, boolean isShadowMap) {
-		return regions.isEmpty() ? DrawableRegionList.EMPTY : new RealmDrawList(regions, renderState, isShadowMap);
+	private void retireEmptyLists() {
+		int i = 0;
+
+		while (i < activeLists.size()) {
+			final ClusterDrawList clusterList = activeLists.get(i);
+
+			if (clusterList.isEmpty()) {
+				clusterMap.remove(clusterList.cluster);
+				clusterList.retire();
+				pool.add(clusterList);
+
+				// swap with last to avoid shifting
+				final int last = activeLists.size() - 1;
+				activeLists.set(i, activeLists.get(last));
+				activeLists.size(last);
+			} else {
+				++i;
+			}
+		}
 	}
 
 	@Override
 	public void draw(WorldRenderState worldRenderState) {
-		rebuildIfInvalid();
+		final int limit = clusterLists.size();
+
+		if (limit == 0) {
+			return;
+		}
+
 		final var sectorManager = worldRenderState.sectorManager;
 		renderState.enable(sectorManager.originBlockX(), 0, sectorManager.originBlockZ());
-		final int limit = clusterLists.size();
 		GFX.bindVertexArray(0);
 
 		for (int i = 0; i < limit; ++i) {
@@ -105,16 +156,7 @@ public class RealmDrawList extends AbstractDrawableRegionList {
 
 		GFX.bindVertexArray(0);
 		GFX.bindBuffer(GFX.GL_ELEMENT_ARRAY_BUFFER, 0);
+		GFX.bindBuffer(GFX.GL_DRAW_INDIRECT_BUFFER, 0);
 		RenderState.disable();
 	}
-
-	@Override
-	protected void closeInner() {
-		clusterLists.forEach(ClusterDrawList::release);
-		clusterLists.clear();
-	}
-
-	void invalidate() {
-		isInvalid = true;
-	}
 }
@@ -20,9 +20,11 @@
 
 package grondag.canvas.render.world;
 
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 
-import com.google.common.util.concurrent.Runnables;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.BufferBuilder;
@@ -40,6 +42,7 @@ import net.minecraft.client.particle.ParticleRenderType;
 import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.client.renderer.texture.TextureAtlas;
+import net.minecraft.core.particles.ParticleType;
 
 import io.vram.frex.api.material.MaterialConstants;
 import io.vram.frex.api.material.MaterialFinder;
@@ -51,20 +54,47 @@ import grondag.canvas.mixinterface.ParticleEngineExt;
 import grondag.canvas.mixinterface.ParticleExt;
 import grondag.canvas.render.frustum.RegionCullingFrustum;
 
+/**
+ * Particles on the sheets Canvas handles are routed to collectors by material and drawn with
+ * one call per material. Draws are deferred until a sheet on the vanilla path, or the end
+ * of the frame, so consecutive sheets that share a material are drawn together while
+ * vanilla and modded sheets still render in their place in the sheet order.
+ */
 public class CanvasParticleRenderer {
+	private static final int VANILLA_SHEET = -1;
+	private static final int TERRAIN_SHEET = 0;
+	private static final int OPAQUE_OR_LIT_SHEET = 1;
+	private static final int TRANSLUCENT_SHEET = 2;
+	private static final int SHEET_COUNT = 3;
+
+	private static final int EMISSIVE_UNKNOWN = -1;
+	private static final int EMISSIVE_FALSE = 0;
+	private static final int EMISSIVE_TRUE = 1;
+
+	/** Emissive mapping for each particle type, from material maps. Cleared on reload because material maps can change. */
+	private static final Reference2IntOpenHashMap<ParticleType<?>> EMISSIVE_TYPES = new Reference2IntOpenHashMap<>();
+
+	static {
+		EMISSIVE_TYPES.defaultReturnValue(EMISSIVE_UNKNOWN);
+	}
+
 	private Tesselator tessellator;
 	private BufferBuilder bufferBuilder;
 	private LightTexture lightmapTextureManager;
 	private ParticleEngineExt ext;
-	private Runnable drawHandler = Runnables.doNothing();
-	private CanvasRenderMaterial baseMat;
-	private CanvasRenderMaterial emissiveMat;
 	private final RegionCullingFrustum cullingFrustum;
+	/** Canvas sheet indices emitted but not yet drawn, in emission order. */
+	private final int[] pendingSheets = new int[SHEET_COUNT];
+	private int pendingCount;
 
 	public CanvasParticleRenderer(RegionCullingFrustum cullingFrustum) {
 		this.cullingFrustum = cullingFrustum;
 	}
 
+	public static void reload() {
+		EMISSIVE_TYPES.clear();
+	}
+
 	public void renderParticles(ParticleEngine pm, PoseStack matrixStack, VertexCollectorList collectors, LightTexture lightmapTextureManager, Camera camera, float tickDelta) {
 		cullingFrustum.enableRegionCulling = false;
 		final PoseStack renderMatrix = RenderSystem.getModelViewStack();
@@ -76,52 +106,151 @@ public class CanvasParticleRenderer {
 		tessellator = Tesselator.getInstance();
 		bufferBuilder = tessellator.getBuilder();
 		ext = (ParticleEngineExt) pm;
-		final Iterator<ParticleRenderType> sheets = ext.canvas_textureSheets().iterator();
 
-		while (sheets.hasNext()) {
-			final ParticleRenderType particleTextureSheet = sheets.next();
-			final Iterable<Particle> iterable = ext.canvas_particles().get(particleTextureSheet);
+		final List<ParticleRenderType> sheets = ext.canvas_textureSheets();
+		final Map<ParticleRenderType, Queue<Particle>> particleMap = ext.canvas_particles();
 
-			if (iterable == null) {
+		for (final ParticleRenderType sheet : sheets) {
+			final Queue<Particle> particles = particleMap.get(sheet);
+
+			if (particles == null || particles.isEmpty()) {
 				continue;
 			}
 
-			final Iterator<Particle> particles = iterable.iterator();
+			RenderSystem.setShader(GameRenderer::getParticleShader);
+			RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
+
+			final int sheetIndex = canvasSheetIndex(sheet);
 
-			if (!particles.hasNext()) continue;
+			if (sheetIndex == VANILLA_SHEET) {
+				// Vanilla and modded sheets draw immediately, so anything emitted before them must draw first
+				drawPending(collectors);
+				renderVanillaSheet(sheet, particles, camera, tickDelta);
+			} else {
+				addPending(sheetIndex, collectors);
+				emitCanvasSheet(sheet, particles, BASE_MATERIALS[sheetIndex], EMISSIVE_MATERIALS[sheetIndex], collectors, camera, tickDelta);
+			}
+		}
 
-			final VertexConsumer consumer = beginSheet(particleTextureSheet, collectors);
+		drawPending(collectors);
 
-			while (particles.hasNext()) {
-				final Particle particle = particles.next();
+		renderMatrix.popPose();
+		RenderSystem.applyModelViewMatrix();
+		teardownVanillaParticleRender();
+	}
 
-				if (!cullingFrustum.isVisible(particle.getBoundingBox())) {
-					continue;
+	/**
+	 * Sheets that share a material are drawn together, but only if no other pending
+	 * material was emitted after it. Otherwise pending draws are flushed so sheet order holds.
+	 */
+	private void addPending(int sheetIndex, VertexCollectorList collectors) {
+		final int count = pendingCount;
+
+		for (int i = 0; i < count; ++i) {
+			if (pendingSheets[i] == sheetIndex) {
+				if (i == count - 1) {
+					return;
 				}
 
-				try {
-					if (baseMat != null) {
-						// FEAT: enhanced material maps for particles - shaders for animation in particular
-						final var mat = MaterialMap.getForParticle(((ParticleExt) particle).canvas_particleType()).getMapped(null);
-						collectors.emitter.defaultMaterial(mat == null || !mat.emissive() ? baseMat : emissiveMat);
-					}
-
-					particle.render(consumer, camera, tickDelta);
-				} catch (final Throwable exception) {
-					final CrashReport crashReport = CrashReport.forThrowable(exception, "Rendering Particle");
-					final CrashReportCategory crashReportSection = crashReport.addCategory("Particle being rendered");
-					crashReportSection.setDetail("Particle", particle::toString);
-					crashReportSection.setDetail("Particle Type", particleTextureSheet::toString);
-					throw new ReportedException(crashReport);
+				drawPending(collectors);
+				break;
+			}
+		}
+
+		pendingSheets[pendingCount++] = sheetIndex;
+	}
+
+	/** Draws emitted Canvas sheets in the order they were emitted, one draw per material. */
+	private void drawPending(VertexCollectorList collectors) {
+		final int count = pendingCount;
+
+		for (int i = 0; i < count; ++i) {
+			collectors.get(BASE_MATERIALS[pendingSheets[i]]).draw(true);
+		}
+
+		pendingCount = 0;
+	}
+
+	private void emitCanvasSheet(ParticleRenderType sheet, Iterable<Particle> particles, CanvasRenderMaterial baseMat, CanvasRenderMaterial emissiveMat, VertexCollectorList collectors, Camera camera, float tickDelta) {
+		final VertexCollectorList.Emitter emitter = collectors.emitter;
+		final VertexConsumer consumer = emitter.prepare(baseMat);
+		ParticleType<?> lastType = null;
+		CanvasRenderMaterial lastMat = baseMat;
+		boolean first = true;
+
+		for (final Particle particle : particles) {
+			if (!cullingFrustum.isVisible(particle.getBoundingBox())) {
+				continue;
+			}
+
+			try {
+				final ParticleType<?> type = ((ParticleExt) particle).canvas_particleType();
+
+				// particles of the same type usually come in runs
+				if (first || type != lastType) {
+					first = false;
+					lastType = type;
+					lastMat = isEmissive(type) ? emissiveMat : baseMat;
 				}
+
+				emitter.defaultMaterial(lastMat);
+				particle.render(consumer, camera, tickDelta);
+			} catch (final Throwable exception) {
+				throw particleCrash(exception, particle, sheet);
 			}
+		}
+	}
 
-			drawHandler.run();
+	private void renderVanillaSheet(ParticleRenderType sheet, Iterable<Particle> particles, Camera camera, float tickDelta) {
+		setupVanillaParticleRender();
+		sheet.begin(bufferBuilder, ext.canvas_textureManager());
+
+		for (final Particle particle : particles) {
+			if (!cullingFrustum.isVisible(particle.getBoundingBox())) {
+				continue;
+			}
+
+			try {
+				particle.render(bufferBuilder, camera, tickDelta);
+			} catch (final Throwable exception) {
+				throw particleCrash(exception, particle, sheet);
+			}
 		}
 
-		renderMatrix.popPose();
-		RenderSystem.applyModelViewMatrix();
-		teardownVanillaParticleRender();
+		sheet.end(tessellator);
+	}
+
+	private static ReportedException particleCrash(Throwable exception, Particle particle, ParticleRenderType sheet) {
+		final CrashReport crashReport = CrashReport.forThrowable(exception, "Rendering Particle");
+		final CrashReportCategory crashReportSection = crashReport.addCategory("Particle being rendered");
+		crashReportSection.setDetail("Particle", particle::toString);
+		crashReportSection.setDetail("Particle Type", sheet::toString);
+		return new ReportedException(crashReport);
+	}
+
+	private static boolean isEmissive(ParticleType<?> type) {
+		int result = EMISSIVE_TYPES.getInt(type);
+
+		if (result == EMISSIVE_UNKNOWN) {
+			// FEAT: enhanced material maps for particles - shaders for animation in particular
+			final var mat = MaterialMap.getForParticle(type).getMapped(null);
+			result = mat != null && mat.emissive() ? EMISSIVE_TRUE : EMISSIVE_FALSE;
+			EMISSIVE_TYPES.put(type, result);
+		}
+
+		return result == EMISSIVE_TRUE;
+	}
+
+	private static int canvasSheetIndex(ParticleRenderType sheet) {
+		if (sheet == ParticleRenderType.TERRAIN_SHEET) {
+			return TERRAIN_SHEET;
+		} else if (sheet == ParticleRenderType.PARTICLE_SHEET_LIT || sheet == ParticleRenderType.PARTICLE_SHEET_OPAQUE) {
+			return OPAQUE_OR_LIT_SHEET;
+		} else if (sheet == ParticleRenderType.PARTICLE_SHEET_TRANSLUCENT) {
+			return TRANSLUCENT_SHEET;
+		} else {
+			return VANILLA_SHEET;
+		}
 	}
 
 	private void setupVanillaParticleRender() {
@@ -136,36 +265,6 @@ public class CanvasParticleRenderer {
 		lightmapTextureManager.turnOffLightLayer();
 	}
 
-	private VertexConsumer beginSheet(ParticleRenderType particleTextureSheet, VertexCollectorList collectors) {
-		RenderSystem.setShader(GameRenderer::getParticleShader);
-		RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
-
-		// PERF: consolidate these draws
-		if (particleTextureSheet == ParticleRenderType.TERRAIN_SHEET) {
-			baseMat = RENDER_STATE_TERRAIN;
-			emissiveMat = RENDER_STATE_TERRAIN_EMISSIVE;
-			drawHandler = () -> collectors.get(baseMat).draw(true);
-			return collectors.emitter.prepare(baseMat);
-		} else if (particleTextureSheet == ParticleRenderType.PARTICLE_SHEET_LIT || particleTextureSheet == ParticleRenderType.PARTICLE_SHEET_OPAQUE) {
-			baseMat = RENDER_STATE_OPAQUE_OR_LIT;
-			emissiveMat = RENDER_STATE_OPAQUE_OR_LIT_EMISSIVE;
-			drawHandler = () -> collectors.get(baseMat).draw(true);
-			return collectors.emitter.prepare(baseMat);
-		} else if (particleTextureSheet == ParticleRenderType.PARTICLE_SHEET_TRANSLUCENT) {
-			baseMat = RENDER_STATE_TRANSLUCENT;
-			emissiveMat = RENDER_STATE_TRANSLUCENT_EMISSIVE;
-			drawHandler = () -> collectors.get(baseMat).draw(true);
-			return collectors.emitter.prepare(baseMat);
-		}
-
-		setupVanillaParticleRender();
-		particleTextureSheet.begin(bufferBuilder, ext.canvas_textureManager());
-		drawHandler = () -> particleTextureSheet.end(tessellator);
-		baseMat = null;
-		emissiveMat = null;
-		return bufferBuilder;
-	}
-
 	private static MaterialFinder baseFinder() {
 		return MaterialFinder.threadLocal()
 				.depthTest(MaterialConstants.DEPTH_TEST_LEQUAL)
@@ -209,4 +308,7 @@ public class CanvasParticleRenderer {
 	private static final CanvasRenderMaterial RENDER_STATE_TRANSLUCENT_EMISSIVE = (CanvasRenderMaterial) baseFinder().copyFrom(RENDER_STATE_TRANSLUCENT)
 			.emissive(true)
 			.find();
+
+	private static final CanvasRenderMaterial[] BASE_MATERIALS = {RENDER_STATE_TERRAIN, RENDER_STATE_OPAQUE_OR_LIT, RENDER_STATE_TRANSLUCENT};
+	private static final CanvasRenderMaterial[] EMISSIVE_MATERIALS = {RENDER_STATE_TERRAIN_EMISSIVE, RENDER_STATE_OPAQUE_OR_LIT_EMISSIVE, RENDER_STATE_TRANSLUCENT_EMISSIVE};
 }
@@ -121,6 +121,8 @@ import grondag.canvas.terrain.occlusion.SortableVisibleRegionList;
 import grondag.canvas.terrain.occlusion.TerrainIterator;
 import grondag.canvas.terrain.region.RegionRebuildManager;
 import grondag.canvas.terrain.region.RenderRegionStorage;
+import grondag.canvas.terrain.region.input.RegionCaptureRecorder;
+import grondag.canvas.terrain.region.input.RegionReplay;
 import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.varia.GFX;
 
@@ -829,6 +831,8 @@ public class CanvasWorldRenderer extends LevelRenderer {
 		TransferBuffers.update();
 		PipelineManager.reloadIfNeeded(false);
 		FlawlessFramesController.handleToggle();
+		RegionCaptureRecorder.handleToggle();
+		RegionReplay.handleKey();
 
 		if (wasFabulous != Pipeline.isFabulous()) {
 			vanillaWorldRenderer.canvas_setupFabulousBuffers();
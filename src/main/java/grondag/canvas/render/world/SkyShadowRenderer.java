@@ -25,9 +25,11 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import net.minecraft.client.Minecraft;
 
 import grondag.canvas.buffer.util.DrawableStream;
+import grondag.canvas.config.Configurator;
 import grondag.canvas.pipeline.Pipeline;
 import grondag.canvas.pipeline.PipelineManager;
 import grondag.canvas.shader.data.ShadowMatrixData;
+import grondag.canvas.varia.CanvasGlHelper;
 import grondag.canvas.varia.GFX;
 
 public class SkyShadowRenderer {
@@ -52,14 +54,23 @@ public class SkyShadowRenderer {
 		return active;
 	}
 
+	/**
+	 * True when all cascades are rendered in a single pass. Depth vertex shaders then take the
+	 * cascade from the instance index and write it to gl_Layer, and each draw is instanced once
+	 * per cascade that needs it. Changes require shader recompile and draw list rebuild.
+	 */
+	public static boolean isLayered() {
+		return Configurator.layeredShadowRender && CanvasGlHelper.supportsVertexShaderLayer();
+	}
+
 	public static void render(CanvasWorldRenderer canvasWorldRenderer, DrawableStream entityBuffer, DrawableStream shadowExtrasBuffer) {
 		if (Pipeline.shadowsEnabled()) {
 			begin();
 
-			for (cascade = 0; cascade < ShadowMatrixData.CASCADE_COUNT; ++cascade) {
-				Pipeline.skyShadowFbo.bind();
-				GFX.framebufferTextureLayer(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, Pipeline.shadowMapDepth, 0, cascade);
-				renderInner(canvasWorldRenderer, entityBuffer, shadowExtrasBuffer);
+			if (isLayered()) {
+				renderLayered(canvasWorldRenderer, entityBuffer, shadowExtrasBuffer);
+			} else {
+				renderCascades(canvasWorldRenderer, entityBuffer, shadowExtrasBuffer);
 			}
 
 			Pipeline.defaultFbo.bind();
@@ -68,6 +79,14 @@ public class SkyShadowRenderer {
 		}
 	}
 
+	private static void renderCascades(CanvasWorldRenderer canvasWorldRenderer, DrawableStream entityBuffer, DrawableStream shadowExtrasBuffer) {
+		for (cascade = 0; cascade < ShadowMatrixData.CASCADE_COUNT; ++cascade) {
+			Pipeline.skyShadowFbo.bind();
+			GFX.framebufferTextureLayer(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, Pipeline.shadowMapDepth, 0, cascade);
+			renderInner(canvasWorldRenderer, entityBuffer, shadowExtrasBuffer);
+		}
+	}
+
 	private static void renderInner(CanvasWorldRenderer canvasWorldRenderer, DrawableStream entityBuffer, DrawableStream shadowExtrasBuffer) {
 		Pipeline.skyShadowFbo.clear();
 
@@ -79,6 +98,24 @@ public class SkyShadowRenderer {
 		}
 	}
 
+	/**
+	 * Attaches every layer of the shadow map and draws once. The first shadow draw list holds all
+	 * shadow regions with instance counts that cover their cascades. Entities are drawn into all cascades.
+	 */
+	private static void renderLayered(CanvasWorldRenderer canvasWorldRenderer, DrawableStream entityBuffer, DrawableStream shadowExtrasBuffer) {
+		cascade = 0;
+		Pipeline.skyShadowFbo.bind();
+		GFX.framebufferTexture(GFX.GL_FRAMEBUFFER, GFX.GL_DEPTH_ATTACHMENT, Pipeline.shadowMapDepth, 0);
+		Pipeline.skyShadowFbo.clear();
+
+		canvasWorldRenderer.worldRenderState.renderShadowLayer(0);
+
+		if (Pipeline.config().skyShadow.allowEntities && Minecraft.getInstance().options.entityShadows) {
+			entityBuffer.draw(true, ShadowMatrixData.CASCADE_COUNT);
+			shadowExtrasBuffer.draw(true, ShadowMatrixData.CASCADE_COUNT);
+		}
+	}
+
 	/** Preserves entityShadows option state, overwriting it temporarily if needed to prevent vanilla from rendering shadows. */
 	public static void suppressEntityShadows(Minecraft mc) {
 		if (Pipeline.shadowsEnabled()) {
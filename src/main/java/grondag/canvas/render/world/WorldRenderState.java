@@ -72,8 +72,8 @@ public class WorldRenderState {
 	public final SortableVisibleRegionList cameraVisibleRegions = new SortableVisibleRegionList();
 	public final VisibleRegionList[] shadowVisibleRegions = new VisibleRegionList[ShadowMatrixData.CASCADE_COUNT];
 
-	private DrawableRegionList solidDrawList = DrawableRegionList.EMPTY;
-	private DrawableRegionList translucentDrawList = DrawableRegionList.EMPTY;
+	private final DrawableRegionList solidDrawList = DrawableRegionList.create(false, false);
+	private final DrawableRegionList translucentDrawList = DrawableRegionList.create(true, false);
 	private final DrawableRegionList[] shadowDrawLists = new DrawableRegionList[ShadowMatrixData.CASCADE_COUNT];
 
 	private RenderRegionBuilder regionBuilder;
@@ -96,7 +96,7 @@ public class WorldRenderState {
 
 		for (int i = 0; i < ShadowMatrixData.CASCADE_COUNT; ++i) {
 			shadowVisibleRegions[i] = new VisibleRegionList();
-			shadowDrawLists[i] = DrawableRegionList.EMPTY;
+			shadowDrawLists[i] = DrawableRegionList.create(false, true);
 		}
 	}
 
@@ -178,10 +178,8 @@ public class WorldRenderState {
 
 		areDrawListsValid = true;
 
-		solidDrawList.close();
-		solidDrawList = DrawableRegionList.build(cameraVisibleRegions, false, false);
-		translucentDrawList.close();
-		translucentDrawList = DrawableRegionList.build(cameraVisibleRegions, true, false);
+		solidDrawList.update(cameraVisibleRegions);
+		translucentDrawList.update(cameraVisibleRegions);
 
 		terrainAnimationBits.clear();
 		final int cameraLimit = cameraVisibleRegions.size();
@@ -193,11 +191,18 @@ public class WorldRenderState {
 		if (shadowsEnabled()) {
 			int shadowQuadCount = 0;
 
+			// list zero has all shadow regions and covers every cascade when layered
+			final boolean isLayered = SkyShadowRenderer.isLayered();
+
 			for (int i = 0; i < 4; ++i) {
 				final var shadowList = shadowVisibleRegions[i];
-				shadowDrawLists[i].close();
-				shadowDrawLists[i] = DrawableRegionList.build(shadowList, false, true);
-				shadowQuadCount += shadowDrawLists[i].quadCount();
+
+				if (isLayered && i > 0) {
+					shadowDrawLists[i].clear();
+				} else {
+					shadowDrawLists[i].update(shadowList);
+					shadowQuadCount += shadowDrawLists[i].quadCount();
+				}
 
 				final int shadowLimit = shadowList.size();
 
@@ -208,6 +213,10 @@ public class WorldRenderState {
 
 			drawlistDebugSummary = String.format("Visible quads: %,ds  %,dt  %,dsh", solidDrawList.quadCount(), translucentDrawList.quadCount(), shadowQuadCount);
 		} else {
+			for (int i = 0; i < 4; ++i) {
+				shadowDrawLists[i].clear();
+			}
+
 			drawlistDebugSummary = String.format("Visible quads: %,ds  %,dt", solidDrawList.quadCount(), translucentDrawList.quadCount());
 		}
 	}
@@ -235,15 +244,11 @@ public class WorldRenderState {
 	}
 
 	void clearDrawSpecs() {
-		solidDrawList.close();
-		solidDrawList = DrawableRegionList.EMPTY;
-
-		translucentDrawList.close();
-		translucentDrawList = DrawableRegionList.EMPTY;
+		solidDrawList.clear();
+		translucentDrawList.clear();
 
 		for (int i = 0; i < 4; ++i) {
-			shadowDrawLists[i].close();
-			shadowDrawLists[i] = DrawableRegionList.EMPTY;
+			shadowDrawLists[i].clear();
 		}
 	}
 
@@ -65,6 +65,11 @@ public class GlMaterialProgram extends GlProgram {
 		guiViewProjMatrix = uniformMatrix4f("_cvu_guiViewProjMatrix", UniformRefreshFrequency.ON_LOAD, u -> { });
 	}
 
+	@Override
+	protected int reloadVersion() {
+		return MaterialShaderIndexer.INSTANCE.version();
+	}
+
 	public void setModelOrigin(int x, int y, int z) {
 		switch (MatrixState.get()) {
 			case CAMERA:
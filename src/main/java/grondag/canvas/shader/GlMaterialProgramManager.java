@@ -24,10 +24,7 @@ import grondag.canvas.CanvasMod;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.canvas.buffer.format.TerrainEncoder;
 import grondag.canvas.config.Configurator;
-import grondag.canvas.render.terrain.TerrainSectorMap;
-import grondag.canvas.render.world.CanvasWorldRenderer;
 import grondag.canvas.shader.data.ShaderUniforms;
-import grondag.canvas.shader.data.UniformRefreshFrequency;
 import grondag.canvas.varia.GFX;
 
 public final class GlMaterialProgramManager {
@@ -51,11 +48,6 @@ public final class GlMaterialProgramManager {
 			final Shader fs = new GlMaterialShader(programType.fragmentSource, GFX.GL_FRAGMENT_SHADER, programType);
 			result = new GlMaterialProgram(vs, fs, programType.isTerrain ? TerrainEncoder.TERRAIN_MATERIAL : CanvasVertexFormats.STANDARD_MATERIAL_FORMAT, programType);
 			ShaderUniforms.MATERIAL_UNIFORM_SETUP.accept(result);
-
-			if (programType.isTerrain) {
-				result.uniformArrayi("_cvu_sectors_int", UniformRefreshFrequency.PER_FRAME, u -> u.set(CanvasWorldRenderer.instance().worldRenderState.sectorManager.uniformData()), TerrainSectorMap.UNIFORM_ARRAY_LENGTH);
-			}
-
 			materialPrograms[key] = result;
 		}
 
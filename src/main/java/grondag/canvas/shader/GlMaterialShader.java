@@ -34,10 +34,51 @@ import grondag.canvas.shader.data.ShaderStrings;
 
 // PERF: emit switch statements on non-Mac
 public class GlMaterialShader extends GlShader {
+	/** Material shader sources captured on the render thread for background assembly. Null when assembled on the render thread. */
+	private volatile MaterialSources capturedSources;
+
 	GlMaterialShader(ResourceLocation shaderSource, int shaderType, ProgramType programType) {
 		super(shaderSource, shaderType, programType);
 	}
 
+	/**
+	 * Material shader indices in use, the source location of each, and the pipeline source that follows them.
+	 * Reading these touches the renderer, shader managers and pipeline config, so it is done on the render thread.
+	 */
+	private record MaterialSources(int[] indices, ResourceLocation[] sourceIds, ResourceLocation pipelineSourceId) {
+		static MaterialSources capture(ProgramType programType, boolean isFragment) {
+			final var shaderManager = (BaseMaterialShaderManager) Renderer.get().shaders();
+			final int[] indices = isFragment ? MaterialShaderIndexer.fragmentIds(programType) : MaterialShaderIndexer.vertexIds(programType);
+			final ResourceLocation[] sourceIds = new ResourceLocation[indices.length];
+
+			for (int i = 0; i < indices.length; ++i) {
+				sourceIds[i] = isFragment ? shaderManager.fragmentIdFromIndex(indices[i]) : shaderManager.vertexIdFromIndex(indices[i]);
+			}
+
+			final var skyShadow = Pipeline.config().skyShadow;
+			final var materialProgram = Pipeline.config().materialProgram;
+			final ResourceLocation pipelineSourceId;
+
+			if (programType.isDepth && skyShadow != null) {
+				pipelineSourceId = isFragment ? skyShadow.fragmentSource : skyShadow.vertexSource;
+			} else {
+				pipelineSourceId = isFragment ? materialProgram.fragmentSource : materialProgram.vertexSource;
+			}
+
+			return new MaterialSources(indices, sourceIds, pipelineSourceId);
+		}
+	}
+
+	@Override
+	public void captureSourceInputs() {
+		capturedSources = MaterialSources.capture(programType, shaderType == GL21.GL_FRAGMENT_SHADER);
+	}
+
+	@Override
+	protected void discardSourceInputs() {
+		capturedSources = null;
+	}
+
 	// all material shaders use the same source so only append extension to keep debug source file names of reasonable length
 	@Override
 	protected String debugSourceString() {
@@ -46,28 +87,34 @@ public class GlMaterialShader extends GlShader {
 
 	@Override
 	protected String preprocessSource(ResourceManager resourceManager, String baseSource) {
-		if (shaderType == GL21.GL_FRAGMENT_SHADER) {
-			baseSource = preprocessFragmentSource(resourceManager, baseSource);
+		final boolean isFragment = shaderType == GL21.GL_FRAGMENT_SHADER;
+		MaterialSources sources = capturedSources;
+
+		if (sources == null) {
+			sources = MaterialSources.capture(programType, isFragment);
+		}
+
+		if (isFragment) {
+			baseSource = preprocessFragmentSource(resourceManager, baseSource, sources);
 		} else {
-			baseSource = preprocessVertexSource(resourceManager, baseSource);
+			baseSource = preprocessVertexSource(resourceManager, baseSource, sources);
 		}
 
 		return super.preprocessSource(resourceManager, baseSource);
 	}
 
-	private String preprocessFragmentSource(ResourceManager resourceManager, String baseSource) {
+	private String preprocessFragmentSource(ResourceManager resourceManager, String baseSource, MaterialSources sources) {
 		String starts;
 		String impl;
-		final var shaderManager = (BaseMaterialShaderManager) Renderer.get().shaders();
 
-		final int[] shaders = MaterialShaderIndexer.fragmentIds(programType);
+		final int[] shaders = sources.indices();
 		final int limit = shaders.length;
 
 		if (limit == 0) {
 			starts = "\t// NOOP";
 			impl = "";
 		} else if (limit == 1) {
-			impl = loadMaterialFragmentShader(resourceManager, shaderManager.fragmentIdFromIndex(shaders[0]));
+			impl = loadMaterialFragmentShader(resourceManager, sources.sourceIds()[0]);
 
 			if (impl.contains("frx_startFragment")) {
 				starts = "\tfrx_startFragment(compatData);";
@@ -89,7 +136,7 @@ public class GlMaterialShader extends GlShader {
 				startsBuilder.append(index);
 				startsBuilder.append(": ");
 
-				String src = loadMaterialFragmentShader(resourceManager, shaderManager.fragmentIdFromIndex(index));
+				String src = loadMaterialFragmentShader(resourceManager, sources.sourceIds()[i]);
 
 				// UGLY: some pre-release compat handling here - should eventually be removed
 				if (src.contains("frx_startFragment")) {
@@ -120,10 +167,7 @@ public class GlMaterialShader extends GlShader {
 			starts = startsBuilder.toString();
 		}
 
-		final ResourceLocation sourceId = programType.isDepth && Pipeline.config().skyShadow != null
-			? Pipeline.config().skyShadow.fragmentSource
-			: Pipeline.config().materialProgram.fragmentSource;
-
+		final ResourceLocation sourceId = sources.pipelineSourceId();
 		final String pipelineSource = loadShaderSource(resourceManager, sourceId);
 
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.API_TARGET, impl + pipelineSource);
@@ -131,19 +175,18 @@ public class GlMaterialShader extends GlShader {
 		return baseSource;
 	}
 
-	private String preprocessVertexSource(ResourceManager resourceManager, String baseSource) {
+	private String preprocessVertexSource(ResourceManager resourceManager, String baseSource, MaterialSources sources) {
 		String starts;
 		String impl;
 
-		final int[] shaders = MaterialShaderIndexer.vertexIds(programType);
-		final var shaderManager = (BaseMaterialShaderManager) Renderer.get().shaders();
+		final int[] shaders = sources.indices();
 		final int limit = shaders.length;
 
 		if (limit == 0) {
 			starts = "\t// NOOP";
 			impl = "\t// NOOP";
 		} else if (limit == 1) {
-			impl = loadMaterialVertexShader(resourceManager, shaderManager.vertexIdFromIndex(shaders[0]));
+			impl = loadMaterialVertexShader(resourceManager, sources.sourceIds()[0]);
 
 			// prevent abandoned endVertex calls from conflicting
 			impl = StringUtils.replace(impl, "frx_endVertex", "frx_endVertex_UNUSED");
@@ -162,7 +205,7 @@ public class GlMaterialShader extends GlShader {
 				startsBuilder.append(index);
 				startsBuilder.append(": ");
 
-				String src = loadMaterialVertexShader(resourceManager, shaderManager.vertexIdFromIndex(index));
+				String src = loadMaterialVertexShader(resourceManager, sources.sourceIds()[i]);
 
 				// prevent abandoned endVertex calls from conflicting
 				src = StringUtils.replace(src, "frx_endVertex", "frx_endVertex" + i + "_UNUSED");
@@ -187,10 +230,7 @@ public class GlMaterialShader extends GlShader {
 			starts = startsBuilder.toString();
 		}
 
-		final ResourceLocation sourceId = programType.isDepth && Pipeline.config().skyShadow != null
-				? Pipeline.config().skyShadow.vertexSource
-				: Pipeline.config().materialProgram.vertexSource;
-
+		final ResourceLocation sourceId = sources.pipelineSourceId();
 		final String pipelineSource = PreReleaseShaderCompat.compatifyPipelineVertex(loadShaderSource(resourceManager, sourceId), sourceId);
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.API_TARGET, impl + pipelineSource);
 		baseSource = StringUtils.replace(baseSource, ShaderStrings.VERTEX_START, starts);
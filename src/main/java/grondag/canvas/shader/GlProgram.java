@@ -22,6 +22,7 @@ package grondag.canvas.shader;
 
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
@@ -32,6 +33,7 @@ import org.lwjgl.system.MemoryUtil;
 import com.mojang.math.Matrix3f;
 import com.mojang.math.Matrix4f;
 
+import net.minecraft.Util;
 import net.minecraft.client.resources.language.I18n;
 
 import io.vram.frex.api.math.FastMatrix4f;
@@ -40,8 +42,9 @@ import io.vram.frex.api.math.FastMatrix3f;
 import grondag.canvas.CanvasMod;
 import grondag.canvas.buffer.format.CanvasVertexFormat;
 import grondag.canvas.config.Configurator;
-import grondag.canvas.shader.data.ShaderUniforms;
+import grondag.canvas.shader.data.UniformBlocks;
 import grondag.canvas.shader.data.UniformRefreshFrequency;
+import grondag.canvas.varia.CanvasGlHelper;
 import grondag.canvas.varia.GFX;
 
 public class GlProgram {
@@ -66,6 +69,13 @@ public class GlProgram {
 	private int progID = -1;
 	private boolean isErrored = false;
 	private boolean needsLoad = true;
+	private boolean needsLabel = false;
+
+	/** Value of {@link #reloadVersion()} when the current program was built. */
+	private int loadedVersion;
+
+	/** Replacement program being built in the background, if any. The current program is used until it is ready. */
+	private PendingLink pendingLink;
 
 	GlProgram(String name, Shader vertexShader, Shader fragmentShader, CanvasVertexFormat format, ProgramType programType) {
 		this.name = name;
@@ -73,7 +83,6 @@ public class GlProgram {
 		this.fragmentShader = fragmentShader;
 		this.programType = programType;
 		vertexFormat = format;
-		ShaderUniforms.COMMON_UNIFORM_SETUP.accept(this);
 	}
 
 	public static void deactivate() {
@@ -166,7 +175,15 @@ public class GlProgram {
 	}
 
 	public final void activate() {
-		final boolean created = needsLoad;
+		if (pendingLink != null) {
+			pollPendingLink();
+		} else if (!needsLoad && loadedVersion != reloadVersion()) {
+			if (Configurator.asyncShaderCompile && !isErrored && progID > 0) {
+				startPendingLink();
+			} else {
+				forceReload();
+			}
+		}
 
 		if (needsLoad) {
 			load();
@@ -177,15 +194,29 @@ public class GlProgram {
 			return;
 		}
 
+		UniformBlocks.uploadIfNeeded();
+
 		if (activeProgram != this) {
 			activeProgram = this;
 			activateInner();
 
 			// Label needs to be set after binding the program
-			if (created) GFX.objectLabel(GFX.GL_PROGRAM, programId(), "PRO " + name);
+			if (needsLabel) {
+				needsLabel = false;
+				GFX.objectLabel(GFX.GL_PROGRAM, programId(), "PRO " + name);
+			}
 		}
 	}
 
+	/**
+	 * Version of inputs to shader source that can change after the program is built,
+	 * for example the set of registered material shaders. The program is rebuilt when
+	 * this changes, in the background when possible.
+	 */
+	protected int reloadVersion() {
+		return 0;
+	}
+
 	private void activateInner() {
 		if (isErrored) {
 			return;
@@ -249,6 +280,8 @@ public class GlProgram {
 	}
 
 	public void load() {
+		cancelPendingLink();
+		loadedVersion = reloadVersion();
 		isErrored = true;
 
 		// prevent accumulation of uniforms in programs that aren't activated after
@@ -273,18 +306,130 @@ public class GlProgram {
 		}
 
 		if (!isErrored) {
-			findActiveUniforms();
-			final int limit = activeUniforms.size();
+			onLinked();
+		}
+	}
 
-			for (int i = 0; i < limit; i++) {
-				activeUniforms.get(i).load(progID);
+	private void onLinked() {
+		UniformBlocks.bindProgram(progID);
+		findActiveUniforms();
+		final int limit = activeUniforms.size();
+
+		for (int i = 0; i < limit; i++) {
+			activeUniforms.get(i).load(progID);
+		}
+
+		GlProgramManager.INSTANCE.add(this);
+		needsLabel = true;
+	}
+
+	/**
+	 * Begins assembling new shader source off the render thread. Compile and link are
+	 * issued from {@link #pollPendingLink()} once source is ready.
+	 */
+	private void startPendingLink() {
+		final int version = reloadVersion();
+		vertexShader.forceReload();
+		fragmentShader.forceReload();
+		// renderer and shader manager state is only safe to read here
+		vertexShader.captureSourceInputs();
+		fragmentShader.captureSourceInputs();
+
+		final CompletableFuture<Void> sources = CompletableFuture.runAsync(() -> {
+			vertexShader.getSource();
+			fragmentShader.getSource();
+		}, Util.backgroundExecutor());
+
+		pendingLink = new PendingLink(version, sources);
+	}
+
+	private void pollPendingLink() {
+		final PendingLink link = pendingLink;
+
+		if (link.programId == -1) {
+			if (!link.sources.isDone()) {
+				return;
 			}
 
-			GlProgramManager.INSTANCE.add(this);
+			if (link.sources.isCompletedExceptionally()) {
+				CanvasMod.LOG.warn(String.format("Unable to prepare shader source for program %s in background. Reloading in foreground.", name));
+				forceReload();
+				return;
+			}
+
+			if (!link.issue()) {
+				failPendingLink(link);
+			}
+
+			// give the driver at least until the next activation
+			return;
+		}
+
+		if (CanvasGlHelper.supportsParallelShaderCompile() && GFX.getProgramInfo(link.programId, GFX.GL_COMPLETION_STATUS_KHR) == GFX.GL_FALSE) {
+			return;
+		}
+
+		pendingLink = null;
+
+		if (!link.isBinary && !(vertexShader.finishCompile() & fragmentShader.finishCompile())) {
+			failPendingLink(link);
+			return;
+		}
+
+		if (GFX.getProgramInfo(link.programId, GFX.GL_LINK_STATUS) == GFX.GL_FALSE) {
+			CanvasMod.LOG.error(GFX.getProgramInfoLog(link.programId));
+			failPendingLink(link);
+			return;
+		}
+
+		if (progID > 0) {
+			GFX.deleteProgram(progID);
+		}
+
+		progID = link.programId;
+		loadedVersion = link.version;
+
+		if (link.cacheKey != null && !link.isBinary) {
+			ProgramBinaryCache.save(progID, link.cacheKey);
+		}
+
+		// new program id must be bound and all uniforms uploaded
+		if (activeProgram == this) {
+			activeProgram = null;
+		}
+
+		hasDirty = false;
+		onLinked();
+	}
+
+	/** Discards the replacement program and keeps the current one, without retrying until inputs change again. */
+	private void failPendingLink(PendingLink link) {
+		pendingLink = null;
+		loadedVersion = link.version;
+
+		if (link.programId > 0) {
+			GFX.deleteProgram(link.programId);
+		}
+
+		CanvasMod.LOG.warn(String.format("Unable to rebuild program %s in background. Previous program will be retained.", name));
+	}
+
+	private void cancelPendingLink() {
+		final PendingLink link = pendingLink;
+
+		if (link != null) {
+			pendingLink = null;
+			link.sources.cancel(false);
+
+			if (link.programId > 0) {
+				GFX.deleteProgram(link.programId);
+			}
 		}
 	}
 
 	public final void unload() {
+		cancelPendingLink();
+
 		for (final Uniform<?> u : uniforms) {
 			u.unload();
 		}
@@ -306,12 +451,23 @@ public class GlProgram {
 			return false;
 		}
 
+		final String cacheKey = ProgramBinaryCache.isActive() ? ProgramBinaryCache.key(vertexShader, fragmentShader, vertexFormat) : null;
+
+		// Shaders compile lazily on attach, so a cache hit skips compilation entirely
+		if (cacheKey != null && ProgramBinaryCache.load(programID, cacheKey)) {
+			return true;
+		}
+
 		if (!vertexShader.attach(programID) || !fragmentShader.attach(programID)) {
 			return false;
 		}
 
 		vertexFormat.bindProgramAttributes(programID);
 
+		if (cacheKey != null) {
+			ProgramBinaryCache.prepareForLink(programID);
+		}
+
 		GFX.linkProgram(programID);
 
 		if (GFX.getProgramInfo(programID, GFX.GL_LINK_STATUS) == GFX.GL_FALSE) {
@@ -319,6 +475,10 @@ public class GlProgram {
 			return false;
 		}
 
+		if (cacheKey != null) {
+			ProgramBinaryCache.save(programID, cacheKey);
+		}
+
 		return true;
 	}
 
@@ -1126,7 +1286,53 @@ public class GlProgram {
 		}
 	}
 
+	private class PendingLink {
+		private final int version;
+		private final CompletableFuture<Void> sources;
+		private int programId = -1;
+		private String cacheKey;
+		private boolean isBinary;
+
+		private PendingLink(int version, CompletableFuture<Void> sources) {
+			this.version = version;
+			this.sources = sources;
+		}
+
+		/**
+		 * Creates the program and issues compile and link without waiting for results.
+		 * Return true on success.
+		 */
+		private boolean issue() {
+			programId = GFX.createProgram();
+
+			if (programId <= 0) {
+				return false;
+			}
+
+			cacheKey = ProgramBinaryCache.isActive() ? ProgramBinaryCache.key(vertexShader, fragmentShader, vertexFormat) : null;
+
+			if (cacheKey != null && ProgramBinaryCache.load(programId, cacheKey)) {
+				isBinary = true;
+				return true;
+			}
+
+			if (!vertexShader.attachAsync(programId) || !fragmentShader.attachAsync(programId)) {
+				return false;
+			}
+
+			vertexFormat.bindProgramAttributes(programId);
+
+			if (cacheKey != null) {
+				ProgramBinaryCache.prepareForLink(programId);
+			}
+
+			GFX.linkProgram(programId);
+			return true;
+		}
+	}
+
 	public void forceReload() {
+		cancelPendingLink();
 		fragmentShader.forceReload();
 		vertexShader.forceReload();
 		needsLoad = true;
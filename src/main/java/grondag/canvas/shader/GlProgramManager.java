@@ -26,6 +26,7 @@ import io.vram.sc.unordered.SimpleUnorderedArrayList;
 
 import grondag.canvas.CanvasMod;
 import grondag.canvas.config.Configurator;
+import grondag.canvas.shader.data.UniformBlocks;
 
 public class GlProgramManager {
 	public static final GlProgramManager INSTANCE = new GlProgramManager();
@@ -47,6 +48,7 @@ public class GlProgramManager {
 	}
 
 	public void onRenderTick() {
+		UniformBlocks.onRenderTick();
 		final int limit = programs.size();
 
 		for (int i = 0; i < limit; i++) {
@@ -59,22 +59,27 @@ import io.vram.frex.api.material.MaterialConstants;
 import grondag.canvas.CanvasMod;
 import grondag.canvas.config.Configurator;
 import grondag.canvas.pipeline.Pipeline;
+import grondag.canvas.render.world.SkyShadowRenderer;
 import grondag.canvas.varia.CanvasGlHelper;
 import grondag.canvas.varia.GFX;
 
 public class GlShader implements Shader {
 	static final Pattern PATTERN = Pattern.compile("^#include\\s+(\\\"*[\\w]+:[\\w/\\.]+)[ \\t]*.*", Pattern.MULTILINE);
-	private static final HashSet<String> INCLUDED = new HashSet<>();
 	private static boolean isErrorNoticeComplete = false;
 	private static boolean needsClearDebugOutputWarning = true;
 	private static boolean needsDebugOutputWarning = true;
 	private final ResourceLocation shaderSourceId;
 	protected final int shaderType;
 	protected final ProgramType programType;
+	/** Guarded by this. Source can be assembled off the render thread for background compiles. */
 	private String source = null;
+	private int sourceVersion = 0;
 	private int glId = -1;
 	private boolean needsLoad = true;
 	private boolean isErrored = false;
+	private boolean isCompilePending = false;
+	private boolean needsCheck = false;
+	private String compileError = null;
 
 	public GlShader(ResourceLocation shaderSource, int shaderType, ProgramType programType) {
 		shaderSourceId = shaderSource;
@@ -128,16 +133,25 @@ public class GlShader implements Shader {
 	private int glId() {
 		if (needsLoad) {
 			load();
+		} else {
+			checkCompile();
 		}
 
 		return isErrored ? -1 : glId;
 	}
 
 	private void load() {
+		issueCompile();
+		checkCompile();
+	}
+
+	/** Creates the shader object if needed and submits source for compilation without waiting for the result. */
+	private void issueCompile() {
 		needsLoad = false;
 		isErrored = false;
-		String source = null;
-		String error = null;
+		isCompilePending = false;
+		needsCheck = false;
+		compileError = null;
 
 		try {
 			if (glId <= 0) {
@@ -150,10 +164,30 @@ public class GlShader implements Shader {
 				}
 			}
 
-			source = getSource();
-
-			safeShaderSource(glId, source);
+			safeShaderSource(glId, getSource());
 			GFX.glCompileShader(glId);
+			isCompilePending = true;
+		} catch (final Exception e) {
+			isErrored = true;
+			compileError = e.getMessage();
+		}
+
+		needsCheck = true;
+	}
+
+	/** Waits for a submitted compile if needed, then reports errors and debug output. Does nothing if already checked. */
+	private void checkCompile() {
+		if (!needsCheck) {
+			return;
+		}
+
+		needsCheck = false;
+		final String source = this.source;
+		String error = compileError;
+		compileError = null;
+
+		if (isCompilePending) {
+			isCompilePending = false;
 
 			if (GFX.glGetShaderi(glId, GFX.GL_COMPILE_STATUS) == GFX.GL_FALSE) {
 				isErrored = true;
@@ -163,9 +197,6 @@ public class GlShader implements Shader {
 					error = "Unknown OpenGL Error.";
 				}
 			}
-		} catch (final Exception e) {
-			isErrored = true;
-			error = e.getMessage();
 		}
 
 		if (isErrored) {
@@ -278,65 +309,93 @@ public class GlShader implements Shader {
 		}
 	}
 
-	private String getSource() {
-		String result = source;
-
-		if (result == null) {
-			result = getCombinedShaderSource();
+	@Override
+	public String getSource() {
+		final int version;
 
-			if (Pipeline.config().enablePBR) {
-				result = StringUtils.replace(result, "//#define PBR_ENABLED", "#define PBR_ENABLED");
+		synchronized (this) {
+			if (source != null) {
+				return source;
 			}
 
-			if (!PreReleaseShaderCompat.needsFragmentShaderStubs()) {
-				result = StringUtils.replace(result, "#define _CV_FRAGMENT_COMPAT", "//#define _CV_FRAGMENT_COMPAT");
-			}
+			version = sourceVersion;
+		}
 
-			if (programType.isTerrain) {
-				result = StringUtils.replace(result, "#define _CV_VERTEX_DEFAULT", "#define _CV_VERTEX_TERRAIN");
-			}
+		String result = getCombinedShaderSource();
 
-			if (programType.hasVertexProgramControl) {
-				result = StringUtils.replace(result, "#define PROGRAM_BY_UNIFORM", "//#define PROGRAM_BY_UNIFORM");
-			}
+		if (Pipeline.config().enablePBR) {
+			result = StringUtils.replace(result, "//#define PBR_ENABLED", "#define PBR_ENABLED");
+		}
 
-			if (shaderType == GL21.GL_FRAGMENT_SHADER) {
-				result = StringUtils.replace(result, "#define VERTEX_SHADER", "#define FRAGMENT_SHADER");
-			}
+		if (!PreReleaseShaderCompat.needsFragmentShaderStubs()) {
+			result = StringUtils.replace(result, "#define _CV_FRAGMENT_COMPAT", "//#define _CV_FRAGMENT_COMPAT");
+		}
 
-			if (!Configurator.wavyGrass) {
-				result = StringUtils.replace(result, "#define ANIMATED_FOLIAGE", "//#define ANIMATED_FOLIAGE");
-			}
+		if (programType.isTerrain) {
+			result = StringUtils.replace(result, "#define _CV_VERTEX_DEFAULT", "#define _CV_VERTEX_TERRAIN");
+		}
 
-			if (programType.isDepth) {
-				result = StringUtils.replace(result, "//#define DEPTH_PASS", "#define DEPTH_PASS");
-			}
+		if (programType.hasVertexProgramControl) {
+			result = StringUtils.replace(result, "#define PROGRAM_BY_UNIFORM", "//#define PROGRAM_BY_UNIFORM");
+		}
 
-			if (Pipeline.shadowsEnabled()) {
-				result = StringUtils.replace(result, "#define SHADOW_MAP_SIZE 1024", "#define SHADOW_MAP_SIZE " + Pipeline.skyShadowSize);
-			} else {
-				result = StringUtils.replace(result, "#define SHADOW_MAP_PRESENT", "//#define SHADOW_MAP_PRESENT");
-				result = StringUtils.replace(result, "#define SHADOW_MAP_SIZE 1024", "//#define SHADOW_MAP_SIZE 1024");
-			}
+		if (shaderType == GL21.GL_FRAGMENT_SHADER) {
+			result = StringUtils.replace(result, "#define VERTEX_SHADER", "#define FRAGMENT_SHADER");
+		}
+
+		if (!Configurator.wavyGrass) {
+			result = StringUtils.replace(result, "#define ANIMATED_FOLIAGE", "//#define ANIMATED_FOLIAGE");
+		}
 
-			result = StringUtils.replace(result, "#define _CV_MAX_SHADER_COUNT 0", "#define _CV_MAX_SHADER_COUNT " + MaterialConstants.MAX_SHADERS);
+		if (programType.isDepth) {
+			result = StringUtils.replace(result, "//#define DEPTH_PASS", "#define DEPTH_PASS");
+		}
 
-			// prepend GLSL version
-			result = "#version " + Pipeline.config().glslVersion + "\n\n" + result;
+		final boolean isLayeredShadow = programType.isDepth && SkyShadowRenderer.isLayered();
 
-			//if (Configurator.hdLightmaps()) {
-			//	result = StringUtils.replace(result, "#define VANILLA_LIGHTING", "//#define VANILLA_LIGHTING");
-			//
-			//	if (Configurator.lightmapNoise) {
-			//		result = StringUtils.replace(result, "//#define ENABLE_LIGHT_NOISE", "#define ENABLE_LIGHT_NOISE");
-			//	}
-			//}
+		if (isLayeredShadow) {
+			// cascade comes from the instance index and selects the output layer,
+			// then reaches the fragment stage as a flat varying
+			result = StringUtils.replace(result, "//#define _CV_LAYERED_SHADOW", "#define _CV_LAYERED_SHADOW");
+			result = StringUtils.replace(result, "uniform int frxu_cascade;", shaderType == GL21.GL_VERTEX_SHADER
+					? "#define frxu_cascade gl_InstanceID" : "#define frxu_cascade _cvv_cascade");
+		}
 
-			if (Configurator.preprocessShaderSource) {
-				result = glslPreprocessSource(result);
-			}
+		if (Pipeline.shadowsEnabled()) {
+			result = StringUtils.replace(result, "#define SHADOW_MAP_SIZE 1024", "#define SHADOW_MAP_SIZE " + Pipeline.skyShadowSize);
+		} else {
+			result = StringUtils.replace(result, "#define SHADOW_MAP_PRESENT", "//#define SHADOW_MAP_PRESENT");
+			result = StringUtils.replace(result, "#define SHADOW_MAP_SIZE 1024", "//#define SHADOW_MAP_SIZE 1024");
+		}
+
+		result = StringUtils.replace(result, "#define _CV_MAX_SHADER_COUNT 0", "#define _CV_MAX_SHADER_COUNT " + MaterialConstants.MAX_SHADERS);
+
+		// prepend GLSL version
+		result = "#version " + Pipeline.config().glslVersion + "\n\n" + result;
+
+		//if (Configurator.hdLightmaps()) {
+		//	result = StringUtils.replace(result, "#define VANILLA_LIGHTING", "//#define VANILLA_LIGHTING");
+		//
+		//	if (Configurator.lightmapNoise) {
+		//		result = StringUtils.replace(result, "//#define ENABLE_LIGHT_NOISE", "#define ENABLE_LIGHT_NOISE");
+		//	}
+		//}
+
+		if (Configurator.preprocessShaderSource) {
+			result = glslPreprocessSource(result);
+		}
+
+		if (isLayeredShadow && shaderType == GL21.GL_VERTEX_SHADER) {
+			// extensions must directly follow the version directive
+			final int versionEnd = result.indexOf('\n', result.indexOf("#version")) + 1;
+			result = result.substring(0, versionEnd) + "#extension " + CanvasGlHelper.vertexShaderLayerExtension() + " : require\n" + result.substring(versionEnd);
+		}
 
-			source = result;
+		synchronized (this) {
+			// discard if reloaded while assembling
+			if (version == sourceVersion) {
+				source = result;
+			}
 		}
 
 		return result;
@@ -344,10 +403,9 @@ public class GlShader implements Shader {
 
 	private String getCombinedShaderSource() {
 		final ResourceManager resourceManager = Minecraft.getInstance().getResourceManager();
-		INCLUDED.clear();
 		String result = loadShaderSource(resourceManager, shaderSourceId);
 		result = preprocessSource(resourceManager, result);
-		return processSourceIncludes(resourceManager, result);
+		return processSourceIncludes(resourceManager, result, new HashSet<>());
 	}
 
 	protected String preprocessSource(ResourceManager resourceManager, String baseSource) {
@@ -375,18 +433,18 @@ public class GlShader implements Shader {
 		return result == null || result.isBlank() ? "" : PreReleaseShaderCompat.compatify(result, shaderSourceId);
 	}
 
-	private String processSourceIncludes(ResourceManager resourceManager, String source) {
+	private String processSourceIncludes(ResourceManager resourceManager, String source, HashSet<String> included) {
 		final Matcher m = PATTERN.matcher(source);
 
 		while (m.find()) {
 			// allow quoted arguments to #include for nicer IDE support
 			final String id = StringUtils.replace(m.group(1), "\"", "");
 
-			if (INCLUDED.contains(id)) {
+			if (included.contains(id)) {
 				source = StringUtils.replace(source, m.group(0), "");
 			} else {
-				INCLUDED.add(id);
-				final String src = processSourceIncludes(resourceManager, loadShaderSource(resourceManager, new ResourceLocation(id)));
+				included.add(id);
+				final String src = processSourceIncludes(resourceManager, loadShaderSource(resourceManager, new ResourceLocation(id)), included);
 				source = StringUtils.replace(source, m.group(0), src, 1);
 			}
 		}
@@ -399,8 +457,40 @@ public class GlShader implements Shader {
 	 */
 	@Override
 	public final void forceReload() {
+		synchronized (this) {
+			++sourceVersion;
+			source = null;
+		}
+
+		discardSourceInputs();
 		needsLoad = true;
-		source = null;
+	}
+
+	/** Drops state from {@link #captureSourceInputs()} so the next assembly reads current state. */
+	protected void discardSourceInputs() { }
+
+	@Override
+	public void compileAsync() {
+		if (needsLoad) {
+			issueCompile();
+		}
+	}
+
+	@Override
+	public boolean attachAsync(int program) {
+		compileAsync();
+
+		if (isErrored || glId <= 0) {
+			return false;
+		}
+
+		GL21.glAttachShader(program, glId);
+		return true;
+	}
+
+	@Override
+	public boolean finishCompile() {
+		return glId() > 0;
 	}
 
 	@Override
@@ -29,6 +29,8 @@ import grondag.canvas.config.Configurator;
 public final class MaterialShaderIndexer {
 	public static final MaterialShaderIndexer INSTANCE = new MaterialShaderIndexer();
 
+	private volatile int version;
+
 	private MaterialShaderIndexer() {
 		if (Configurator.enableLifeCycleDebug) {
 			CanvasMod.LOG.info("Lifecycle Event: MaterialShaderIndexer init");
@@ -51,11 +53,20 @@ public final class MaterialShaderIndexer {
 
 			// ensure shaders are recompiled when new sub-shader source referenced
 			if (isNew) {
-				GlProgramManager.INSTANCE.reload();
+				++version;
 			}
 		}
 	}
 
+	/**
+	 * Incremented when a new sub-shader is referenced. Material programs compare this
+	 * to the version they were built with and rebuild on the render thread when it changes.
+	 * Registration can happen off the render thread, so programs are never reloaded here directly.
+	 */
+	int version() {
+		return version;
+	}
+
 	/** Tracks which vertex sub-shaders are in use by materials. */
 	private static final IntOpenHashSet VERTEX_INDEXES = new IntOpenHashSet();
 
@@ -75,11 +86,16 @@ public final class MaterialShaderIndexer {
 		return programType.ordinal() | ((long) fragmentShaderIndex << 16) | ((long) vertexShaderIndex << 32);
 	}
 
+	// synchronized with register because source may be assembled off the render thread
 	static int[] vertexIds(ProgramType programType) {
-		return programType.isDepth ? DEPTH_VERTEX_INDEXES.toIntArray() : VERTEX_INDEXES.toIntArray();
+		synchronized (INSTANCE) {
+			return programType.isDepth ? DEPTH_VERTEX_INDEXES.toIntArray() : VERTEX_INDEXES.toIntArray();
+		}
 	}
 
 	static int[] fragmentIds(ProgramType programType) {
-		return programType.isDepth ? DEPTH_FRAGMENT_INDEXES.toIntArray() : FRAGMENT_INDEXES.toIntArray();
+		synchronized (INSTANCE) {
+			return programType.isDepth ? DEPTH_FRAGMENT_INDEXES.toIntArray() : FRAGMENT_INDEXES.toIntArray();
+		}
 	}
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.shader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import net.minecraft.client.Minecraft;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.buffer.format.CanvasVertexFormat;
+import grondag.canvas.config.Configurator;
+import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Saves linked program binaries in the game directory so that programs can be
+ * restored with glProgramBinary instead of compiling and linking from source.
+ *
+ * <p>Entries are keyed by a hash of the final shader sources, vertex attribute bindings and
+ * the GL vendor, renderer and version. Pipeline options and config that affect shaders
+ * are part of the final source and so are covered by the hash. The whole cache is discarded
+ * when the GL context or Canvas version changes, and an entry the driver rejects is deleted
+ * and the program is compiled normally.
+ *
+ * <p>Changing pipeline options produces new entries without invalidating old ones, so the
+ * cache is also capped at {@link #MAX_CACHE_BYTES}. Loading an entry refreshes its modified
+ * time, and the least recently used entries are deleted when the cache is first validated.
+ *
+ * <p>Render thread only.
+ */
+final class ProgramBinaryCache {
+	private static final int MAGIC = 0x43564250;
+	private static final String IDENTITY_FILE = "cache.id";
+	private static final String EXTENSION = ".bin";
+	private static final int HEADER_BYTES = 12;
+	private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+	private static boolean isValidated = false;
+	private static boolean needsWarning = true;
+
+	private ProgramBinaryCache() { }
+
+	static boolean isActive() {
+		return Configurator.programBinaryCache && CanvasGlHelper.supportsProgramBinary();
+	}
+
+	@SuppressWarnings("resource")
+	private static Path cachePath() {
+		return Minecraft.getInstance().gameDirectory.toPath().normalize().resolve("canvas_shader_cache");
+	}
+
+	private static String identity() {
+		return CanvasMod.versionString + " | " + CanvasGlHelper.glIdentity();
+	}
+
+	/** Clears the cache if it was written by a different driver or Canvas version. */
+	private static void validate() throws IOException {
+		if (isValidated) {
+			return;
+		}
+
+		isValidated = true;
+		final Path path = cachePath();
+		final Path idPath = path.resolve(IDENTITY_FILE);
+		final String identity = identity();
+
+		if (Files.isRegularFile(idPath) && Files.readString(idPath, StandardCharsets.UTF_8).equals(identity)) {
+			prune(path.toFile());
+			return;
+		}
+
+		final File dir = path.toFile();
+
+		if (dir.exists()) {
+			final File[] files = dir.listFiles();
+
+			if (files != null) {
+				for (final File f : files) {
+					f.delete();
+				}
+			}
+		} else {
+			Files.createDirectories(path);
+		}
+
+		Files.writeString(idPath, identity, StandardCharsets.UTF_8);
+	}
+
+	/** Deletes abandoned temporary files and then the oldest entries until the cache fits its cap. */
+	private static void prune(File dir) {
+		final File[] files = dir.listFiles();
+
+		if (files == null) {
+			return;
+		}
+
+		final ObjectArrayList<File> entries = new ObjectArrayList<>();
+		long totalBytes = 0;
+
+		for (final File f : files) {
+			final String name = f.getName();
+
+			if (name.endsWith(EXTENSION)) {
+				entries.add(f);
+				totalBytes += f.length();
+			} else if (!name.equals(IDENTITY_FILE)) {
+				f.delete();
+			}
+		}
+
+		if (totalBytes <= MAX_CACHE_BYTES) {
+			return;
+		}
+
+		entries.sort(Comparator.comparingLong(File::lastModified));
+
+		for (final File f : entries) {
+			if (totalBytes <= MAX_CACHE_BYTES) {
+				break;
+			}
+
+			final long length = f.length();
+
+			if (f.delete()) {
+				totalBytes -= length;
+			}
+		}
+	}
+
+	static String key(Shader vertexShader, Shader fragmentShader, CanvasVertexFormat format) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(CanvasGlHelper.glIdentity().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(vertexShader.getSource().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(fragmentShader.getSource().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(format.attributeBindingKey().getBytes(StandardCharsets.UTF_8));
+
+			final byte[] hash = digest.digest();
+			final StringBuilder result = new StringBuilder(hash.length * 2);
+
+			for (final byte b : hash) {
+				result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+
+			return result.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			// SHA-256 is required of every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Must be called before linking for the driver to keep a retrievable binary. */
+	static void prepareForLink(int programId) {
+		GFX.programParameteri(programId, GFX.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GFX.GL_TRUE);
+	}
+
+	/**
+	 * Restores the program from a cached binary.
+	 * @return True if the program is linked and ready to use. False if there was no usable entry.
+	 */
+	static boolean load(int programId, String key) {
+		final Path file = cachePath().resolve(key + EXTENSION);
+		ByteBuffer binary = null;
+
+		try {
+			validate();
+
+			if (!Files.isRegularFile(file)) {
+				return false;
+			}
+
+			final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.nativeOrder());
+
+			if (bytes.remaining() < HEADER_BYTES || bytes.getInt() != MAGIC) {
+				Files.deleteIfExists(file);
+				return false;
+			}
+
+			final int binaryFormat = bytes.getInt();
+			final int length = bytes.getInt();
+
+			if (length <= 0 || length != bytes.remaining()) {
+				Files.deleteIfExists(file);
+				return false;
+			}
+
+			binary = MemoryUtil.memAlloc(length);
+			binary.put(bytes).flip();
+			GFX.programBinary(programId, binaryFormat, binary);
+
+			if (GFX.getProgramInfo(programId, GFX.GL_LINK_STATUS) == GFX.GL_TRUE) {
+				// Marks the entry as recently used for pruning
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+				return true;
+			}
+
+			// Driver rejected it - usually after a driver update that didn't change the version string
+			Files.deleteIfExists(file);
+			return false;
+		} catch (final IOException e) {
+			warn(e);
+			return false;
+		} finally {
+			if (binary != null) {
+				MemoryUtil.memFree(binary);
+			}
+		}
+	}
+
+	/** Saves the binary of a successfully linked program. */
+	static void save(int programId, String key) {
+		final int length = GFX.getProgramInfo(programId, GFX.GL_PROGRAM_BINARY_LENGTH);
+
+		if (length <= 0) {
+			return;
+		}
+
+		final ByteBuffer data = MemoryUtil.memAlloc(HEADER_BYTES + length);
+
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			validate();
+
+			final IntBuffer lengthOut = stack.mallocInt(1);
+			final IntBuffer formatOut = stack.mallocInt(1);
+			GFX.getProgramBinary(programId, lengthOut, formatOut, data.position(HEADER_BYTES).slice());
+
+			if (lengthOut.get(0) != length) {
+				return;
+			}
+
+			data.position(0);
+			data.putInt(MAGIC).putInt(formatOut.get(0)).putInt(length);
+			data.position(0);
+
+			final byte[] bytes = new byte[HEADER_BYTES + length];
+			data.get(bytes);
+
+			// Write then move so that a partial file is never read as a cache entry
+			final Path path = cachePath();
+			final Path temp = path.resolve(key + ".tmp");
+			Files.write(temp, bytes);
+			Files.move(temp, path.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+		} catch (final IOException e) {
+			warn(e);
+		} finally {
+			MemoryUtil.memFree(data);
+		}
+	}
+
+	private static void warn(IOException e) {
+		if (needsWarning) {
+			CanvasMod.LOG.warn("Unable to use shader program cache in " + cachePath() + " due to exception.", e);
+			needsWarning = false;
+		}
+	}
+}
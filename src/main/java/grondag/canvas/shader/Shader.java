@@ -36,6 +36,34 @@ public interface Shader {
 	 */
 	boolean attach(int program);
 
+	/**
+	 * Captures render thread state needed to assemble source, so that {@link #getSource()}
+	 * can then be called from another thread. Call on the render thread after {@link #forceReload()}.
+	 */
+	default void captureSourceInputs() { }
+
+	/**
+	 * Submits source for compilation if needed without waiting for the result.
+	 * Source is assembled on the calling thread if not already available.
+	 */
+	void compileAsync();
+
+	/**
+	 * Like {@link #attach(int)} but does not wait for compilation to finish.
+	 * Call {@link #finishCompile()} after the program is linked to report errors.
+	 *
+	 * @param program The program object to which this shader object will be attached
+	 * @return False if the shader could not be created
+	 */
+	boolean attachAsync(int program);
+
+	/**
+	 * Waits for compilation to finish if needed and reports errors.
+	 *
+	 * @return True if compiled successfully
+	 */
+	boolean finishCompile();
+
 	/**
 	 * @param type Uniform type
 	 * @param name Uniform name
@@ -43,6 +71,11 @@ public interface Shader {
 	 */
 	boolean containsUniformSpec(String type, String name);
 
+	/**
+	 * @return Final source passed to the compiler, after includes, defines and preprocessing
+	 */
+	String getSource();
+
 	/**
 	 * @return The shader source location, typically for debugging
 	 */
@@ -0,0 +1,287 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+package grondag.canvas.shader.data;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryUtil;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+
+import io.vram.frex.api.math.FastMatrix3f;
+
+import grondag.canvas.buffer.render.AbstractGlBuffer;
+import grondag.canvas.render.terrain.TerrainSectorMap;
+import grondag.canvas.render.world.CanvasWorldRenderer;
+import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Per-frame shader data shared by all programs through std140 uniform blocks.
+ *
+ * <p>World, flag, matrix and terrain sector data are written once per frame into one slot
+ * of a triple-buffered uniform buffer and bound at fixed binding points. Programs only map
+ * their block indices to those binding points after linking, so the cost of per-frame data
+ * no longer grows with the number of programs and passes a pipeline defines.
+ *
+ * <p>Same as the per-program uniforms this replaces, data is captured on the first program
+ * activation after {@link #onRenderTick()} and is fixed for the rest of the frame.
+ *
+ * <p>Layout must match the block declarations in {@code canvas:shaders/internal/world.glsl}
+ * and {@code canvas:shaders/internal/vertex.glsl}.
+ */
+public final class UniformBlocks {
+	private UniformBlocks() { }
+
+	public static final int FRAME_DATA_BINDING = 0;
+	public static final int MATRIX_DATA_BINDING = 1;
+	public static final int SECTOR_DATA_BINDING = 2;
+	private static final int BLOCK_COUNT = 3;
+
+	private static final String[] BLOCK_NAMES = {"_cvu_frame_data", "_cvu_matrix_data", "_cvu_sector_data"};
+
+	// std140 offsets within the frame data block, in bytes
+	private static final int WORLD_UINT_OFFSET = FloatData.FLOAT_VECTOR_LENGTH * 4;
+	private static final int FLAGS_OFFSET = WORLD_UINT_OFFSET + 16;
+	// mat3 is stored as three vec4 columns
+	private static final int NORMAL_MATRIX_OFFSET = FLAGS_OFFSET + 16;
+	private static final int FRAME_DATA_BYTES = NORMAL_MATRIX_OFFSET + 48;
+
+	private static final int MATRIX_DATA_BYTES = MatrixData.COUNT * 64;
+
+	/** Sector ints are packed four to an ivec4 to avoid the 16-byte std140 stride of scalar arrays. */
+	private static final int SECTOR_DATA_BYTES = (TerrainSectorMap.UNIFORM_ARRAY_LENGTH + 3) / 4 * 16;
+
+	/** Frames that can be in flight before a slot is rewritten. */
+	private static final int SLOT_COUNT = 3;
+	private static final long WAIT_NANOS = 1_000_000L;
+
+	static {
+		// uint data is declared as uvec4 in shaders
+		assert IntData.UINT_COUNT <= 4;
+		assert IntData.INT_LENGTH <= 4;
+	}
+
+	private static final FloatBuffer NORMAL_MATRIX = BufferUtils.createFloatBuffer(9);
+	private static final int[] blockOffsets = new int[BLOCK_COUNT];
+	private static final int[] blockSizes = {FRAME_DATA_BYTES, MATRIX_DATA_BYTES, SECTOR_DATA_BYTES};
+
+	private static SlotBuffer buffer;
+	private static int slotBytes;
+	private static int slot;
+	/** Fence placed when draws stopped using each slot, zero if none is pending. Only used when persistently mapped. */
+	private static final long[] slotFences = new long[SLOT_COUNT];
+	private static boolean needsUpload = true;
+
+	/**
+	 * Maps uniform blocks declared by the program to the shared binding points.
+	 * Call after each successful link. Blocks the program doesn't declare are ignored.
+	 */
+	public static void bindProgram(int programId) {
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			final int blockIndex = GFX.getUniformBlockIndex(programId, BLOCK_NAMES[i]);
+
+			if (blockIndex != GFX.GL_INVALID_INDEX) {
+				GFX.uniformBlockBinding(programId, blockIndex, i);
+			}
+		}
+	}
+
+	/** Causes data to be captured and uploaded on the next program activation. */
+	public static void onRenderTick() {
+		needsUpload = true;
+	}
+
+	/** Called on program activation. Uploads new frame data if it hasn't been uploaded since the last render tick. */
+	public static void uploadIfNeeded() {
+		if (needsUpload) {
+			needsUpload = false;
+			upload();
+		}
+	}
+
+	private static void upload() {
+		assert RenderSystem.isOnRenderThread();
+
+		if (buffer == null) {
+			createBuffer();
+		} else if (buffer.isPersistent) {
+			// draws issued so far read the slot being left
+			slotFences[slot] = GFX.fenceSynch();
+		}
+
+		slot = (slot + 1) % SLOT_COUNT;
+		final SlotBuffer buffer = UniformBlocks.buffer;
+
+		if (buffer.isPersistent) {
+			awaitSlot(slot);
+		}
+		final int slotOffset = slot * slotBytes;
+		final ByteBuffer target = buffer.beginWrite();
+		final int base = buffer.writeBase(slotOffset);
+
+		writeFrameData(target, base + blockOffsets[FRAME_DATA_BINDING]);
+		MemoryUtil.memCopy(MemoryUtil.memAddress(MatrixData.MATRIX_DATA), MemoryUtil.memAddress(target, base + blockOffsets[MATRIX_DATA_BINDING]), MATRIX_DATA_BYTES);
+		writeSectorData(target, base + blockOffsets[SECTOR_DATA_BINDING]);
+
+		buffer.endWrite(slotOffset);
+
+		final int bufferId = buffer.glBufferId();
+
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			GFX.bindBufferRange(GFX.GL_UNIFORM_BUFFER, i, bufferId, slotOffset + blockOffsets[i], blockSizes[i]);
+		}
+	}
+
+	/** Waits until the GPU is done with draws issued before the slot was last left. */
+	private static void awaitSlot(int slot) {
+		final long fence = slotFences[slot];
+
+		if (fence == 0) {
+			return;
+		}
+
+		int status = GFX.clientWaitSync(fence, GFX.GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_NANOS);
+
+		// Only happens if the GPU is more than two frames behind, so stall rather than overwrite data still in use
+		while (status == GFX.GL_TIMEOUT_EXPIRED) {
+			status = GFX.clientWaitSync(fence, 0, WAIT_NANOS);
+		}
+
+		assert status != GFX.GL_WAIT_FAILED;
+		GFX.deleteSync(fence);
+		slotFences[slot] = 0;
+	}
+
+	private static void writeFrameData(ByteBuffer target, int offset) {
+		MemoryUtil.memCopy(MemoryUtil.memAddress(FloatData.FLOAT_VECTOR_DATA), MemoryUtil.memAddress(target, offset), WORLD_UINT_OFFSET);
+
+		for (int i = 0; i < IntData.UINT_COUNT; ++i) {
+			target.putInt(offset + WORLD_UINT_OFFSET + i * 4, IntData.UINT_DATA.get(i));
+		}
+
+		for (int i = 0; i < IntData.INT_LENGTH; ++i) {
+			target.putInt(offset + FLAGS_OFFSET + i * 4, IntData.INT_DATA.get(i));
+		}
+
+		((FastMatrix3f) (Object) MatrixData.viewNormalMatrix).f_writeToBuffer(NORMAL_MATRIX);
+
+		for (int column = 0; column < 3; ++column) {
+			for (int row = 0; row < 3; ++row) {
+				target.putFloat(offset + NORMAL_MATRIX_OFFSET + column * 16 + row * 4, NORMAL_MATRIX.get(column * 3 + row));
+			}
+		}
+	}
+
+	private static void writeSectorData(ByteBuffer target, int offset) {
+		final CanvasWorldRenderer worldRenderer = CanvasWorldRenderer.instance();
+
+		if (worldRenderer == null) {
+			return;
+		}
+
+		final int[] sectors = worldRenderer.worldRenderState.sectorManager.uniformData();
+		final int limit = sectors.length;
+
+		for (int i = 0; i < limit; ++i) {
+			target.putInt(offset + i * 4, sectors[i]);
+		}
+	}
+
+	private static void createBuffer() {
+		final int alignment = Math.max(16, GFX.getInteger(GFX.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT));
+		int offset = 0;
+
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			blockOffsets[i] = offset;
+			offset = align(offset + blockSizes[i], alignment);
+		}
+
+		slotBytes = offset;
+		buffer = new SlotBuffer(slotBytes * SLOT_COUNT, slotBytes);
+	}
+
+	private static int align(int value, int alignment) {
+		return (value + alignment - 1) / alignment * alignment;
+	}
+
+	/**
+	 * Backing store for all slots. Persistently mapped when buffer storage is available,
+	 * otherwise slots are staged in client memory and copied with glBufferSubData.
+	 * Mapped slots are fenced by {@link UniformBlocks#upload()} because the driver does
+	 * not synchronize writes through the mapping.
+	 */
+	private static class SlotBuffer extends AbstractGlBuffer {
+		private final boolean isPersistent = CanvasGlHelper.supportsPersistentMapped();
+		private final ByteBuffer stagingBuffer;
+		private ByteBuffer mappedBuffer;
+
+		private SlotBuffer(int capacityBytes, int slotBytes) {
+			super(capacityBytes, GFX.GL_UNIFORM_BUFFER, GFX.GL_DYNAMIC_DRAW);
+			stagingBuffer = isPersistent ? null : BufferUtils.createByteBuffer(slotBytes);
+			// Force buffer creation and mapping
+			glBufferId();
+		}
+
+		@Override
+		protected void createBuffer() {
+			if (isPersistent) {
+				GFX.bufferStorage(bindTarget, capacityBytes, GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_PERSISTENT_BIT);
+				mappedBuffer = GFX.mapBufferRange(bindTarget, 0, capacityBytes, GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_FLUSH_EXPLICIT_BIT | GFX.GL_MAP_PERSISTENT_BIT);
+			} else {
+				super.createBuffer();
+			}
+		}
+
+		private ByteBuffer beginWrite() {
+			return isPersistent ? mappedBuffer : stagingBuffer;
+		}
+
+		/** Position of the slot within the buffer returned by {@link #beginWrite()}. */
+		private int writeBase(int slotOffset) {
+			return isPersistent ? slotOffset : 0;
+		}
+
+		private void endWrite(int slotOffset) {
+			final int slotBytes = UniformBlocks.slotBytes;
+			GFX.bindBuffer(bindTarget, glBufferId());
+
+			if (isPersistent) {
+				GFX.flushMappedBufferRange(bindTarget, slotOffset, slotBytes);
+			} else {
+				GFX.bufferSubData(bindTarget, slotOffset, slotBytes, stagingBuffer);
+			}
+
+			GFX.bindBuffer(bindTarget, 0);
+		}
+
+		@Override
+		protected void onShutdown() {
+			if (isPersistent && mappedBuffer != null) {
+				GFX.bindBuffer(bindTarget, glBufferId());
+				GFX.unmapBuffer(bindTarget);
+				GFX.bindBuffer(bindTarget, 0);
+				mappedBuffer = null;
+			}
+		}
+	}
+}
@@ -51,6 +51,7 @@ import grondag.canvas.terrain.region.RegionBuildState;
 import grondag.canvas.terrain.region.RenderRegion;
 import grondag.canvas.terrain.region.RenderRegionIndexer;
 import grondag.canvas.terrain.region.RenderRegionStorage;
+import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.terrain.util.TerrainExecutorTask;
 import grondag.canvas.varia.CircleHacks;
 
@@ -76,6 +77,10 @@ public class TerrainIterator implements TerrainExecutorTask {
 	 * camera is outside world range.  Otherwise will match the origin of the camera region.
 	 */
 	private long cameraChunkOrigin;
+
+	/** Camera region origin for which queued terrain tasks were last notified of priority change. */
+	private long prioritizedCameraOrigin = -1;
+
 	private int renderDistance;
 	private boolean chunkCullingEnabled = true;
 	private volatile boolean cancelled = false;
@@ -210,6 +215,12 @@ public class TerrainIterator implements TerrainExecutorTask {
 		worldRenderState.renderRegionStorage.updateRegionPositionAndVisibility();
 		worldRenderState.drawListCullingHlper.update();
 
+		if (prioritizedCameraOrigin != cameraChunkOrigin) {
+			// Region distances have just been recomputed for the new camera region
+			prioritizedCameraOrigin = cameraChunkOrigin;
+			TerrainExecutor.INSTANCE.onCameraRegionChange();
+		}
+
 		if (resetCameraOccluder) {
 			visibleRegions.clear();
 			primeCameraRegions();
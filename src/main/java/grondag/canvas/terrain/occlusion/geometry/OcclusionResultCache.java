@@ -0,0 +1,157 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_CACHE_WORDS;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+/**
+ * Bounded cache of occlusion results for advanced terrain culling, keyed by a 128-bit
+ * hash of the closed interior positions and renderable bounds that determine the result.
+ *
+ * <p>Many regions are identical after interior positions that can't be seen are closed -
+ * solid underground sections, flat ocean floor, open air with a single surface layer -
+ * so box finding can be skipped for most of them. Results are immutable and shared by
+ * every region with the same key. Least-recently used entries are evicted when the
+ * estimated size exceeds {@link #MAX_BYTES}.
+ *
+ * <p>Called from terrain builder threads. All access is synchronized.
+ */
+public final class OcclusionResultCache {
+	private OcclusionResultCache() { }
+
+	private static final int MAX_BYTES = 4 * 1024 * 1024;
+
+	/** Rough heap cost of key, result record, map slot and array header, excluding box data. */
+	private static final int ENTRY_OVERHEAD_BYTES = 112;
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432e57237fL;
+
+	private static final Object2ObjectLinkedOpenHashMap<Key, OcclusionResult> MAP = new Object2ObjectLinkedOpenHashMap<>();
+	private static int bytes;
+	private static long hitCount;
+	private static long missCount;
+
+	public record Key(long h1, long h2) { }
+
+	/**
+	 * MurmurHash3 x64 128-bit of the interior closed words followed by the renderable bounds.
+	 * Strong enough that collisions can be ignored, so keys don't retain the source words.
+	 */
+	public static Key key(long[] closedBits, int renderableBounds) {
+		long h1 = 0;
+		long h2 = 0;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; i += 2) {
+			long k1 = closedBits[i];
+			long k2 = closedBits[i + 1];
+
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		long k1 = renderableBounds & 0xFFFFFFFFL;
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		h1 ^= k1;
+
+		final long length = INTERIOR_CACHE_WORDS * 8 + 4;
+		h1 ^= length;
+		h2 ^= length;
+
+		h1 += h2;
+		h2 += h1;
+
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+
+		h1 += h2;
+		h2 += h1;
+
+		return new Key(h1, h2);
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	/** Returns the shared result for the key, or null if not cached. */
+	public static synchronized OcclusionResult get(Key key) {
+		final OcclusionResult result = MAP.getAndMoveToLast(key);
+
+		if (result == null) {
+			++missCount;
+		} else {
+			++hitCount;
+		}
+
+		return result;
+	}
+
+	public static synchronized void put(Key key, OcclusionResult result) {
+		if (MAP.putAndMoveToLast(key, result) == null) {
+			bytes += entryBytes(result);
+
+			while (bytes > MAX_BYTES && !MAP.isEmpty()) {
+				bytes -= entryBytes(MAP.removeFirst());
+			}
+		}
+	}
+
+	private static int entryBytes(OcclusionResult result) {
+		return ENTRY_OVERHEAD_BYTES + result.occlusionData().length * 4;
+	}
+
+	public static synchronized void clear() {
+		MAP.clear();
+		bytes = 0;
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	public static synchronized String debugString() {
+		final long total = hitCount + missCount;
+		return String.format("Occlusion cache: %d entries %dKb  hits %d%% of %,d", MAP.size(), bytes / 1024, total == 0 ? 0 : hitCount * 100 / total, total);
+	}
+}
@@ -26,7 +26,8 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_CACHE_W
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
 
-import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import java.util.Arrays;
+
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import net.minecraft.world.level.block.Blocks;
@@ -44,6 +45,8 @@ public abstract class RegionOcclusionCalculator {
 	public static final int OCCLUSION_RESULT_FIRST_BOX_INDEX = 1;
 	public static final int[] EMPTY_OCCLUSION_DATA = {PackedBox.EMPTY_BOX};
 	public static final OcclusionResult EMPTY_OCCLUSION_RESULT = new OcclusionResult(EMPTY_OCCLUSION_DATA, -1L);
+	/** Renderable bounds and the only occluder box are the full region. Shared by all regions without open interior positions. */
+	private static final OcclusionResult FULL_OCCLUSION_RESULT = new OcclusionResult(new int[] {PackedBox.FULL_BOX, PackedBox.FULL_BOX}, 0L);
 
 	private static final int RENDERABLE_OFFSET = TOTAL_CACHE_WORDS;
 	private static final int EXTERIOR_VISIBLE_OFFSET = RENDERABLE_OFFSET + TOTAL_CACHE_WORDS;
@@ -63,9 +66,63 @@ public abstract class RegionOcclusionCalculator {
 		}
 	}
 
+	/** Clears bits shifted into x = 0 from the x = 15 position of the prior row. */
+	private static final long NOT_X0 = ~0x0001000100010001L;
+	/** Clears bits shifted into x = 15 from the x = 0 position of the next row. */
+	private static final long NOT_X15 = ~0x8000800080008000L;
+
+	/**
+	 * Interior positions that count toward each visited face, six groups of
+	 * {@code INTERIOR_CACHE_WORDS} words. Edge and corner positions
+	 * count only for the first matching face in west, east, down, up, north, south order.
+	 */
+	private static final long[] FACE_TRACKING_MASKS = new long[INTERIOR_CACHE_WORDS * 6];
+	private static final int[] FACE_TRACKING_FLAGS = {FaceUtil.WEST_FLAG, FaceUtil.EAST_FLAG, FaceUtil.DOWN_FLAG, FaceUtil.UP_FLAG, FaceUtil.NORTH_FLAG, FaceUtil.SOUTH_FLAG};
+
+	static {
+		for (int i = 0; i < INTERIOR_STATE_COUNT; i++) {
+			final int x = i & 15;
+			final int y = (i >> 4) & 15;
+			final int z = (i >> 8) & 15;
+			final int face = trackingFace(x, y, z);
+
+			if (face >= 0) {
+				FACE_TRACKING_MASKS[face * INTERIOR_CACHE_WORDS + (i >> 6)] |= (1L << (i & 63));
+			}
+		}
+	}
+
+	/** Index in {@link #FACE_TRACKING_FLAGS} of the face an interior position counts toward, or -1 if not on a face. */
+	private static int trackingFace(int x, int y, int z) {
+		if (x == 0) {
+			return 0;
+		} else if (x == 15) {
+			return 1;
+		} else if (y == 0) {
+			return 2;
+		} else if (y == 15) {
+			return 3;
+		} else if (z == 0) {
+			return 4;
+		} else if (z == 15) {
+			return 5;
+		} else {
+			return -1;
+		}
+	}
+
 	public final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
-	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
 	private final long[] bits = new long[WORD_COUNT];
+
+	/** Surface positions where a fill can start, from {@link #captureSeeds(int, int)}. */
+	private final long[] seeds = new long[INTERIOR_CACHE_WORDS];
+
+	/** Open positions reached by the current fill. */
+	private final long[] fill = new long[INTERIOR_CACHE_WORDS];
+
+	/** Open positions reached by all fills so far. */
+	private final long[] reached = new long[INTERIOR_CACHE_WORDS];
+
 	private int openCount;
 	private int minRenderableX;
 	private int minRenderableY;
@@ -74,19 +131,18 @@ public abstract class RegionOcclusionCalculator {
 	private int maxRenderableY;
 	private int maxRenderableZ;
 
-	/**
-	 * Accumulates exterior faces visited during fill to track which exterior
-	 * faces are connected. Used for occlusion.
-	 */
-	private int visitedFacesMask;
-
 	public void prepare() {
-		System.arraycopy(EMPTY_BITS, 0, bits, 0, WORD_COUNT);
+		prepareEmpty();
 		captureExterior();
-		openCount = INTERIOR_STATE_COUNT;
 		captureInterior();
 	}
 
+	/** Resets to a region with no closed or renderable positions. Visibility can then be set without block states. */
+	void prepareEmpty() {
+		System.arraycopy(EMPTY_BITS, 0, bits, 0, WORD_COUNT);
+		openCount = INTERIOR_STATE_COUNT;
+	}
+
 	protected abstract BlockState blockStateAtIndex(int regionIndex);
 
 	protected abstract boolean closedAtRelativePos(BlockState blockState, int regionIndex);
@@ -95,6 +151,16 @@ public abstract class RegionOcclusionCalculator {
 		return (bits[(index >> 6)] & (1L << (index & 63))) != 0;
 	}
 
+	/** Valid after {@link #build(boolean)} with advanced culling, when the region has open interior positions. */
+	boolean isExteriorVisible(int interiorIndex) {
+		return (bits[(interiorIndex >> 6) + EXTERIOR_VISIBLE_OFFSET] & (1L << (interiorIndex & 63))) != 0;
+	}
+
+	/** Normally set by the active pipeline. Overridden to choose the mode in tests and benchmarks. */
+	protected boolean advancedTerrainCulling() {
+		return Pipeline.advancedTerrainCulling();
+	}
+
 	public boolean shouldRender(int interiorIndex) {
 		return (bits[(interiorIndex >> 6) + RENDERABLE_OFFSET] & (1L << (interiorIndex & 63))) != 0;
 	}
@@ -104,7 +170,10 @@ public abstract class RegionOcclusionCalculator {
 		final int baseIndex = index >> 6;
 
 		if (isClosed) {
-			--openCount;
+			if (index < INTERIOR_STATE_COUNT) {
+				--openCount;
+			}
+
 			bits[baseIndex] |= mask;
 		}
 
@@ -252,45 +321,6 @@ public abstract class RegionOcclusionCalculator {
 		}
 	}
 
-	/**
-	 * Checks if the position is interior and not already visited.
-	 * If the position is interior and not already visited, marks it visited
-	 * and returns a boolean indicating opacity.
-	 *
-	 * @param index
-	 * @return True if position met the conditions for visiting AND was not opaque.
-	 */
-	private boolean setVisited(int index) {
-		// interior only
-		if (index >= INTERIOR_STATE_COUNT) {
-			return false;
-		}
-
-		final int wordIndex = index >> 6;
-		final long mask = 1L << (index & 63);
-
-		if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0) {
-			// not already visited
-
-			// mark visited
-			bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] |= mask;
-
-			// return opacity result
-			if ((bits[wordIndex] & mask) == 0) {
-				if (!Pipeline.advancedTerrainCulling()) {
-					trackVistedFaces(index);
-				}
-
-				return true;
-			} else {
-				return false;
-			}
-		} else {
-			// already visited
-			return false;
-		}
-	}
-
 	private void clearInteriorRenderable(int interiorIndex) {
 		bits[(interiorIndex >> 6) + RENDERABLE_OFFSET] &= ~(1L << (interiorIndex & 63));
 	}
@@ -553,47 +583,31 @@ public abstract class RegionOcclusionCalculator {
 		maxRenderableZ = maxZ < minZ ? minZ : maxZ;
 	}
 
-	private void visitSurfaceIfPossible(int index) {
-		if (setVisited(index)) {
-			fill(index);
-		}
-	}
-
 	private OcclusionResult computeOcclusion(boolean isNear) {
-		// Determine which blocks are visible by visiting exterior blocks
-		// that aren't occluded by neighboring regions and doing a fill from there.
+		// Determine which blocks are visible by filling from exterior blocks
+		// that aren't occluded by neighboring regions.
 		long mutualFaceMask = 0;
+		Arrays.fill(reached, 0L);
+		final boolean advancedTerrainCulling = advancedTerrainCulling();
 
-		if (Pipeline.advancedTerrainCulling()) {
-			for (int i = 0; i < COVERING_INDEX_COUNT; ++i) {
-				if (!isClosed(COVERING_INDEXES[i])) {
-					visitSurfaceIfPossible(COVERED_INDEXES[i]);
-				}
-			}
+		if (advancedTerrainCulling) {
+			captureSeeds(0, COVERING_INDEX_COUNT);
+			fillFromSeeds();
+			markExteriorVisible();
 		} else {
-			for (int i = 0; i < COVERING_INDEX_COUNT; ++i) {
-				// face indices are six groups of 256, one for each face.
-				// We want to reset visibility search on each new face and
-				// exploit this fact to know when we progress to the next face
-				if ((i & 0xFF) == 0) {
-					if (visitedFacesMask != 0) {
-						mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
-						visitedFacesMask = 0;
-					}
+			// face indices are six groups of 256, one for each face.
+			// Faces connected to each face are tracked separately.
+			for (int i = 0; i < COVERING_INDEX_COUNT; i += 256) {
+				captureSeeds(i, i + 256);
+				final int visitedFaces = fillFromSeeds();
+
+				if (visitedFaces != 0) {
+					mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFaces);
 				}
-
-				if (!isClosed(COVERING_INDEXES[i])) {
-					visitSurfaceIfPossible(COVERED_INDEXES[i]);
-				}
-			}
-
-			if (visitedFacesMask != 0) {
-				mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
-				visitedFacesMask = 0;
 			}
 		}
 
-		if (Pipeline.advancedTerrainCulling()) {
+		if (advancedTerrainCulling) {
 			// don't hide inside position if we may be inside the chunk!
 			if (!isNear) {
 				hideInteriorClosedPositions();
@@ -601,6 +615,27 @@ public abstract class RegionOcclusionCalculator {
 
 			computeRenderableBounds();
 
+			final int renderableBounds;
+
+			if (minRenderableX == Integer.MAX_VALUE) {
+				renderableBounds = PackedBox.EMPTY_BOX;
+			} else {
+				if ((minRenderableX | minRenderableY | minRenderableZ) == 0 && (maxRenderableX & maxRenderableY & maxRenderableZ) == 15) {
+					renderableBounds = PackedBox.FULL_BOX;
+				} else {
+					renderableBounds = PackedBox.pack(minRenderableX, minRenderableY, minRenderableZ,
+							maxRenderableX + 1, maxRenderableY + 1, maxRenderableZ + 1, PackedBox.RANGE_EXTREME);
+				}
+			}
+
+			// boxes depend only on closed interior positions, so identical regions can share a result
+			final OcclusionResultCache.Key key = OcclusionResultCache.key(bits, renderableBounds);
+			final OcclusionResult cached = OcclusionResultCache.get(key);
+
+			if (cached != null) {
+				return cached;
+			}
+
 			final BoxFinder boxFinder = this.boxFinder;
 			final IntArrayList boxes = boxFinder.boxes;
 
@@ -618,18 +653,11 @@ public abstract class RegionOcclusionCalculator {
 				}
 			}
 
-			if (minRenderableX == Integer.MAX_VALUE) {
-				result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.EMPTY_BOX;
-			} else {
-				if ((minRenderableX | minRenderableY | minRenderableZ) == 0 && (maxRenderableX & maxRenderableY & maxRenderableZ) == 15) {
-					result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.FULL_BOX;
-				} else {
-					result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.pack(minRenderableX, minRenderableY, minRenderableZ,
-							maxRenderableX + 1, maxRenderableY + 1, maxRenderableZ + 1, PackedBox.RANGE_EXTREME);
-				}
-			}
+			result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = renderableBounds;
 
-			return new OcclusionResult(result, 0L);
+			final OcclusionResult occlusionResult = new OcclusionResult(result, 0L);
+			OcclusionResultCache.put(key, occlusionResult);
+			return occlusionResult;
 		} else {
 			return new OcclusionResult(null, mutualFaceMask);
 		}
@@ -646,94 +674,147 @@ public abstract class RegionOcclusionCalculator {
 			//       adjacent regions occluding most of this region
 			adjustSurfaceVisibility();
 
-			final int[] result = new int[2];
-			result[OCCLUSION_RESULT_RENDERABLE_BOUNDS_INDEX] = PackedBox.FULL_BOX;
-
 			// entire region acts as an occluder
-			result[OCCLUSION_RESULT_FIRST_BOX_INDEX] = PackedBox.FULL_BOX;
-			return new OcclusionResult(result, 0L);
+			return FULL_OCCLUSION_RESULT;
 		} else {
 			return computeOcclusion(isNear);
 		}
 	}
 
-	private void fill(int xyz4) {
-		visit(xyz4);
-
-		while (!queue.isEmpty()) {
-			final int nextXyz4 = queue.dequeueInt();
-			visit(nextXyz4);
+	/**
+	 * Marks surface positions in the given range of {@link #COVERED_INDEXES}
+	 * that are not covered by a closed position in the adjacent region.
+	 */
+	private void captureSeeds(int start, int end) {
+		final long[] seeds = this.seeds;
+		Arrays.fill(seeds, 0L);
+
+		for (int i = start; i < end; ++i) {
+			if (!isClosed(COVERING_INDEXES[i])) {
+				final int index = COVERED_INDEXES[i];
+				seeds[index >> 6] |= (1L << (index & 63));
+			}
 		}
 	}
 
-	private void visit(int xyz4) {
-		final int x = xyz4 & 0xF;
+	/**
+	 * Grows open, unreached seed positions through open interior positions until no position is added
+	 * and adds the result to {@link #reached}. Positions already reached belong to volumes filled
+	 * from an earlier face, so their seeds are skipped.
+	 *
+	 * <p>Each word holds four rows of sixteen positions, so growth along X and Y within a word is a
+	 * few shifts and masks. Growth between words is carried by alternating forward and backward
+	 * sweeps that read neighbor words updated earlier in the same sweep, so most volumes settle
+	 * in one or two passes.
+	 *
+	 * @return Face flags of newly reached positions, for mutual face visibility.
+	 */
+	private int fillFromSeeds() {
+		final long[] bits = this.bits;
+		final long[] seeds = this.seeds;
+		final long[] fill = this.fill;
+		final long[] reached = this.reached;
+		long any = 0;
 
-		if (x == 0) {
-			enqueIfUnvisited(xyz4 + 1);
-		} else if (x == 15) {
-			enqueIfUnvisited(xyz4 - 1);
-		} else {
-			enqueIfUnvisited(xyz4 - 1);
-			enqueIfUnvisited(xyz4 + 1);
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			final long w = seeds[i] & ~bits[i] & ~reached[i];
+			fill[i] = w;
+			any |= w;
 		}
 
-		final int y = xyz4 & 0xF0;
-
-		if (y == 0) {
-			enqueIfUnvisited(xyz4 + 0x10);
-		} else if (y == 0xF0) {
-			enqueIfUnvisited(xyz4 - 0x10);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x10);
-			enqueIfUnvisited(xyz4 + 0x10);
+		if (any == 0) {
+			return 0;
 		}
 
-		final int z = xyz4 & 0xF00;
+		boolean changed;
 
-		if (z == 0) {
-			enqueIfUnvisited(xyz4 + 0x100);
-		} else if (z == 0xF00) {
-			enqueIfUnvisited(xyz4 - 0x100);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x100);
-			enqueIfUnvisited(xyz4 + 0x100);
+		do {
+			changed = false;
+
+			for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+				changed |= growWord(i);
+			}
+
+			for (int i = INTERIOR_CACHE_WORDS - 1; i >= 0; --i) {
+				changed |= growWord(i);
+			}
+		} while (changed);
+
+		int visitedFaces = 0;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			final long w = fill[i];
+
+			if (w != 0) {
+				reached[i] |= w;
+
+				for (int face = 0; face < 6; ++face) {
+					if ((w & FACE_TRACKING_MASKS[face * INTERIOR_CACHE_WORDS + i]) != 0) {
+						visitedFaces |= FACE_TRACKING_FLAGS[face];
+					}
+				}
+			}
 		}
+
+		return visitedFaces;
 	}
 
-	private void trackVistedFaces(int xyz4) {
-		final int x = xyz4 & 0xF;
+	/** Adds open positions adjacent to the fill in and around one word. True if the word changed. */
+	private boolean growWord(int wordIndex) {
+		final long[] fill = this.fill;
+		final long open = ~bits[wordIndex];
+		final long prior = fill[wordIndex];
+		long w = prior | (neighborWords(fill, wordIndex) & open);
 
-		if (x == 0) {
-			visitedFacesMask |= FaceUtil.WEST_FLAG;
-			return;
-		} else if (x == 15) {
-			visitedFacesMask |= FaceUtil.EAST_FLAG;
-			return;
+		if (w == 0) {
+			return false;
 		}
 
-		final int y = xyz4 & 0xF0;
+		long before;
+
+		do {
+			before = w;
+			w |= (((w << 1) & NOT_X0) | ((w >>> 1) & NOT_X15) | (w << 16) | (w >>> 16)) & open;
+		} while (w != before);
 
-		if (y == 0) {
-			visitedFacesMask |= FaceUtil.DOWN_FLAG;
-			return;
-		} else if (y == 0xF0) {
-			visitedFacesMask |= FaceUtil.UP_FLAG;
-			return;
+		if (w != prior) {
+			fill[wordIndex] = w;
+			return true;
+		} else {
+			return false;
 		}
+	}
 
-		final int z = xyz4 & 0xF00;
+	/**
+	 * Positions in the given word adjacent to set positions of other words: the last row
+	 * of the prior word and first row of the next word in the same Z slice, and the same word
+	 * in the adjacent Z slices.
+	 */
+	private static long neighborWords(long[] words, int wordIndex) {
+		final int row = wordIndex & 3;
+		long result = 0;
 
-		if (z == 0) {
-			visitedFacesMask |= FaceUtil.NORTH_FLAG;
-		} else if (z == 0xF00) {
-			visitedFacesMask |= FaceUtil.SOUTH_FLAG;
-		}
+		if (row != 0) result |= words[wordIndex - 1] >>> 48;
+		if (row != 3) result |= words[wordIndex + 1] << 48;
+		if (wordIndex >= 4) result |= words[wordIndex - 4];
+		if (wordIndex < INTERIOR_CACHE_WORDS - 4) result |= words[wordIndex + 4];
+
+		return result;
 	}
 
-	private void enqueIfUnvisited(int xyz4) {
-		if (setVisited(xyz4)) {
-			queue.enqueue(xyz4);
+	/**
+	 * Positions seen from outside the region: every reached open position, positions adjacent
+	 * to them, and every seed position, open or not.
+	 */
+	private void markExteriorVisible() {
+		final long[] bits = this.bits;
+		final long[] seeds = this.seeds;
+		final long[] reached = this.reached;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			final long w = reached[i];
+			bits[i + EXTERIOR_VISIBLE_OFFSET] = w | ((w << 1) & NOT_X0) | ((w >>> 1) & NOT_X15) | (w << 16) | (w >>> 16)
+					| neighborWords(reached, i) | seeds[i];
 		}
 	}
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
+import grondag.canvas.terrain.region.input.ChunkNeighborhood;
+import grondag.canvas.terrain.util.TerrainExecutor;
+import grondag.canvas.terrain.util.TerrainExecutorTask;
+
+/**
+ * Rebuild task for several regions in the same chunk column. World data
+ * for the column is looked up once on the main thread and the regions are
+ * then built back to back on the same worker context.
+ *
+ * <p>Each member region still owns its input state, so a region that is
+ * rescheduled while its batch is waiting simply picks up the newer input,
+ * same as when it is queued alone.
+ */
+class RegionBuildBatch implements TerrainExecutorTask {
+	static final int MAX_SIZE = 8;
+
+	private final RenderRegion[] regions = new RenderRegion[MAX_SIZE];
+	private int size = 0;
+
+	/** Main thread only, valid until {@link #submit()}. */
+	private final ChunkNeighborhood neighborhood = new ChunkNeighborhood();
+	private final RenderChunk renderChunk;
+
+	RegionBuildBatch(RenderChunk renderChunk) {
+		this.renderChunk = renderChunk;
+	}
+
+	/**
+	 * Captures input for the region and adds it to this batch if it isn't already queued.
+	 * @return True if the batch is full and should be submitted.
+	 */
+	boolean add(RenderRegion region) {
+		assert region.renderChunk == renderChunk;
+		assert size < MAX_SIZE;
+
+		final RegionPosition origin = region.origin;
+		neighborhood.prepare(region.worldRenderState.getWorld(), origin.getX() >> 4, origin.getZ() >> 4);
+
+		if (region.prepareRebuildInput(neighborhood)) {
+			regions[size++] = region;
+		}
+
+		return size == MAX_SIZE;
+	}
+
+	void submit() {
+		neighborhood.clear();
+
+		if (size > 0) {
+			TerrainExecutor.INSTANCE.execute(this);
+		}
+	}
+
+	@Override
+	public int priority() {
+		int result = Integer.MAX_VALUE;
+
+		for (int i = 0; i < size; ++i) {
+			final RenderRegion r = regions[i];
+
+			if (r != null) {
+				result = Math.min(result, r.priority());
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean cancelIfObsolete() {
+		boolean result = true;
+
+		for (int i = 0; i < size; ++i) {
+			final RenderRegion r = regions[i];
+
+			if (r != null) {
+				if (r.cancelIfObsolete()) {
+					regions[i] = null;
+				} else {
+					result = false;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public void run(CanvasTerrainRenderContext context) {
+		for (int i = 0; i < size; ++i) {
+			final RenderRegion r = regions[i];
+
+			if (r != null) {
+				// Failure of one region must not strand the others with input that is never consumed.
+				try {
+					r.run(context);
+				} catch (final Exception e) {
+					CanvasMod.LOG.error("Unhandled error during rendering. Impact unknown.", e);
+				}
+			}
+		}
+	}
+}
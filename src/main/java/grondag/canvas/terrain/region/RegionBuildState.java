@@ -29,6 +29,7 @@ import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.phys.Vec3;
 
 import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.TranslucentSortState;
 import grondag.canvas.buffer.input.VertexCollectorList;
 import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.render.terrain.TerrainSectorMap.RegionRenderSector;
@@ -43,7 +44,10 @@ public class RegionBuildState {
 	OcclusionResult occlusionResult = RegionOcclusionCalculator.EMPTY_OCCLUSION_RESULT;
 
 	@Nullable
-	int[] translucentState;
+	TranslucentSortState translucentState;
+
+	/** Number of blocks with fluid found during the last build. Used to estimate rebuild cost. */
+	int fluidCount;
 
 	public List<BlockEntity> getBlockEntities() {
 		return blockEntities;
@@ -21,7 +21,6 @@
 package grondag.canvas.terrain.region;
 
 import net.minecraft.core.BlockPos;
-import net.minecraft.world.phys.Vec3;
 
 import grondag.bitraster.PackedBox;
 import grondag.canvas.pipeline.Pipeline;
@@ -29,7 +28,6 @@ import grondag.canvas.render.frustum.TerrainFrustum.RegionVisibilityTest;
 import grondag.canvas.render.terrain.drawlist.DrawListCullingHelper;
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.terrain.occlusion.TerrainIterator;
-import grondag.canvas.terrain.occlusion.camera.CameraVisibility;
 
 public class RegionPosition extends BlockPos {
 	/** Region that holds this position as its origin. Provides access to world render state. */
@@ -47,52 +45,15 @@ public class RegionPosition extends BlockPos {
 	 */
 	private final int chunkY;
 
-	private long cameraRegionOrigin = -1;
+	/** Holds camera-dependent values for all regions in storage. */
+	private final RegionPositionData data;
 
-	/** Tracks the version of the camera occluder view transform to know when we must recompute dependent values. */
-	private int cameraFrustumViewVersion = -1;
-
-	/**
-	 * Tracks the version of the camera occluder position to know when we must recompute dependent values.
-	 * The occlusion position is much more sensitive and changes more frequently than {@link #chunkDistVersion}.
-	 *
-	 * <p>Position cannot change without view also changing, so there is no need to check this unless
-	 * {@link #cameraFrustumViewVersion} has changed.
-	 */
-	private int cameraFrustumPositionVersion = -1;
-
-	/** See {@link #occlusionRange()}. */
-	private int occlusionRange;
-
-	/** See {@link #squaredCameraChunkDistance()}. */
-	private int squaredCameraChunkDistance;
-
-	/** See {@link #isNear()}. */
-	private boolean isNear;
-
-	/** See {@link #fuzz()}. */
-	private int fuzz;
-
-	/** See {@link #isInsideRenderDistance()}. */
-	private boolean isInsideRenderDistance;
-
-	/** Used by frustum tests. Will be current only if region is within render distance. */
-	private float cameraRelativeCenterX;
-	private float cameraRelativeCenterY;
-	private float cameraRelativeCenterZ;
-
-	private boolean isPotentiallyVisibleFromCamera;
+	/** Location of this region's values in {@link #data}. */
+	private final int index;
 
 	/** See {@link #checkAndUpdateSortNeeded(int)}. */
 	private int sortPositionVersion = -1;
 
-	/** The smallest cascade on which this region can potentially cast a shadow. */
-	private int shadowCascade;
-
-	private int shadowDistanceRank;
-
-	private int visibleFaceFlags;
-
 	public RegionPosition(long packedPos, RenderRegion owner) {
 		super(getX(packedPos), getY(packedPos), getZ(packedPos));
 		this.owner = owner;
@@ -103,6 +64,8 @@ public class RegionPosition extends BlockPos {
 
 		chunkY = getY() >> 4;
 		packed = packedPos;
+		data = owner.storage.positionData;
+		index = RenderRegionIndexer.regionIndex(RenderRegionIndexer.chunkIndex(getX(), getZ()), (getY() + RenderRegionIndexer.Y_BLOCKPOS_OFFSET) >> 4);
 	}
 
 	@Override
@@ -110,72 +73,60 @@ public class RegionPosition extends BlockPos {
 		return packed;
 	}
 
+	/** Recomputes all camera-dependent values. Used when the region is first created. */
 	public void update() {
-		computeRegionDependentValues();
-		computeViewDependentValues();
-
-		if (owner.worldRenderState.shadowsEnabled()) {
-			if (isInsideRenderDistance) {
-				// PERF: pointer chase hell
-				shadowCascade = terrainIterator.shadowVisibility.cascade(this);
-				shadowDistanceRank = shadowCascade == -1 ? -1 : terrainIterator.shadowVisibility.distanceRank(owner);
-			} else {
-				shadowCascade = -1;
-				shadowDistanceRank = -1;
-			}
-		} else {
-			shadowCascade = -1;
-		}
+		update(true, true, worldRenderState.shadowsEnabled());
 	}
 
-	private void computeRegionDependentValues() {
-		final long cameraRegionOrigin = terrainIterator.cameraRegionOrigin();
-
-		if (this.cameraRegionOrigin != cameraRegionOrigin) {
-			this.cameraRegionOrigin = cameraRegionOrigin;
-			final int cy = (BlockPos.getY(cameraRegionOrigin) >> 4) - chunkY;
-			squaredCameraChunkDistance = owner.renderChunk.horizontalSquaredDistance + cy * cy;
-			isInsideRenderDistance = squaredCameraChunkDistance <= worldRenderState.maxSquaredChunkRenderDistance();
-			isNear = squaredCameraChunkDistance <= 3;
+	/**
+	 * Recomputes camera-dependent values. Storage tracks what has changed since the last
+	 * update so that values which can't have changed are not recomputed for every region.
+	 *
+	 * @param distanceChanged true when the camera region or render distance have changed
+	 * @param viewChanged true when the camera occluder view has changed; always true if distance changed
+	 * @param shadowsEnabled true when shadow cascades must be computed
+	 */
+	void update(boolean distanceChanged, boolean viewChanged, boolean shadowsEnabled) {
+		final RegionPositionData data = this.data;
+		final int index = this.index;
+
+		if (distanceChanged) {
+			final int cy = (BlockPos.getY(terrainIterator.cameraRegionOrigin()) >> 4) - chunkY;
+			final int squaredCameraChunkDistance = owner.renderChunk.horizontalSquaredDistance + cy * cy;
+			data.squaredCameraChunkDistance[index] = squaredCameraChunkDistance;
+			data.setFlag(index, RegionPositionData.INSIDE_RENDER_DISTANCE, squaredCameraChunkDistance <= worldRenderState.maxSquaredChunkRenderDistance());
+			data.setFlag(index, RegionPositionData.NEAR, squaredCameraChunkDistance <= 3);
 			// Based on trial-and-error
-			fuzz = squaredCameraChunkDistance >= 7 * 7 ? 1 : 0;
-			occlusionRange = PackedBox.rangeFromSquareChunkDist(squaredCameraChunkDistance);
+			data.setFlag(index, RegionPositionData.FUZZ, squaredCameraChunkDistance >= 7 * 7);
+			data.occlusionRange[index] = (byte) PackedBox.rangeFromSquareChunkDist(squaredCameraChunkDistance);
 		}
-	}
 
-	private void computeViewDependentValues() {
-		final CameraVisibility cameraPVS = terrainIterator.cameraVisibility;
-		final int frustumViewVersion = cameraPVS.frustumViewVersion();
-
-		if (cameraFrustumViewVersion != frustumViewVersion) {
-			cameraFrustumViewVersion = frustumViewVersion;
-			visibleFaceFlags = cullingHelper.computeVisibleFaceFlags(packed);
-
-			final int frustumPositionVersion = cameraPVS.frustumPositionVersion();
-
-			// These checks depend on the camera occluder position version,
-			// which may not necessarily change when view version change.
-			if (cameraFrustumPositionVersion != frustumPositionVersion) {
-				cameraFrustumPositionVersion = frustumPositionVersion;
-
-				// These are needed by frustum tests, which happen below, after this update.
-				// not needed at all if outside of render distance
-				if (isInsideRenderDistance) {
-					final Vec3 cameraPos = cameraPVS.frustumCameraPos();
-					cameraRelativeCenterX = (float) (getX() + 8 - cameraPos.x);
-					cameraRelativeCenterY = (float) (getY() + 8 - cameraPos.y);
-					cameraRelativeCenterZ = (float) (getZ() + 8 - cameraPos.z);
-				}
-			}
+		final boolean isInsideRenderDistance = data.hasFlag(index, RegionPositionData.INSIDE_RENDER_DISTANCE);
 
+		if (viewChanged) {
+			data.visibleFaceFlags[index] = (byte) cullingHelper.computeVisibleFaceFlags(packed);
 			//  PERF: implement hierarchical tests with propagation of per-plane inside test results
-			isPotentiallyVisibleFromCamera = isInsideRenderDistance && cameraFrustumTest.isVisible(this);
+			data.setFlag(index, RegionPositionData.POTENTIALLY_VISIBLE_FROM_CAMERA, isInsideRenderDistance && cameraFrustumTest.isVisible(this));
+		}
+
+		if (shadowsEnabled) {
+			if (isInsideRenderDistance) {
+				// PERF: pointer chase hell
+				final int shadowCascade = terrainIterator.shadowVisibility.cascade(this);
+				data.shadowCascade[index] = (byte) shadowCascade;
+				data.shadowDistanceRank[index] = shadowCascade == -1 ? -1 : terrainIterator.shadowVisibility.distanceRank(owner);
+			} else {
+				data.shadowCascade[index] = -1;
+				data.shadowDistanceRank[index] = -1;
+			}
+		} else if (distanceChanged) {
+			data.shadowCascade[index] = -1;
 		}
 	}
 
 	/** Flag 6 (unassigned) will always be set. */
 	public int visibleFaceFlags() {
-		return visibleFaceFlags;
+		return data.visibleFaceFlags[index] & 0xFF;
 	}
 
 	/** Flag 6 (unassigned) will always be set. */
@@ -184,19 +135,14 @@ public class RegionPosition extends BlockPos {
 	}
 
 	public void close() {
-		isInsideRenderDistance = false;
-		isNear = false;
-		cameraFrustumPositionVersion = -1;
-		cameraFrustumViewVersion = -1;
-		cameraRegionOrigin = -1;
-		isPotentiallyVisibleFromCamera = false;
+		data.clear(index);
 	}
 
 	/**
 	 * Square of distance of this region from the camera region measured in chunks. (16, blocks each.)
 	 */
 	public int squaredCameraChunkDistance() {
-		return squaredCameraChunkDistance;
+		return data.squaredCameraChunkDistance[index];
 	}
 
 	/**
@@ -207,7 +153,7 @@ public class RegionPosition extends BlockPos {
 	 * <p>This logic is in {@link #updateCameraDistanceAndVisibilityInfo(TerrainVisibilityState)}.
 	 */
 	public boolean isNear() {
-		return isNear;
+		return data.hasFlag(index, RegionPositionData.NEAR);
 	}
 
 	/**
@@ -215,7 +161,7 @@ public class RegionPosition extends BlockPos {
 	 * Does not mean region is visible or within the view frustum.
 	 */
 	public boolean isInsideRenderDistance() {
-		return isInsideRenderDistance;
+		return data.hasFlag(index, RegionPositionData.INSIDE_RENDER_DISTANCE);
 	}
 
 	/**
@@ -227,14 +173,14 @@ public class RegionPosition extends BlockPos {
 	 * quite fast and typically only one or a few regions per chunk must be tested.
 	 */
 	public boolean isPotentiallyVisibleFromCamera() {
-		return isPotentiallyVisibleFromCamera;
+		return data.hasFlag(index, RegionPositionData.POTENTIALLY_VISIBLE_FROM_CAMERA);
 	}
 
 	/**
 	 * Called for camera region because frustum checks on near plane appear to be a little wobbly.
 	 */
 	public void forceCameraPotentialVisibility() {
-		isPotentiallyVisibleFromCamera = true;
+		data.setFlag(index, RegionPositionData.POTENTIALLY_VISIBLE_FROM_CAMERA, true);
 	}
 
 	/**
@@ -242,7 +188,7 @@ public class RegionPosition extends BlockPos {
 	 * based on distance from the camera. Used by the occluder to select level of detail used.
 	 */
 	public int occlusionRange() {
-		return occlusionRange;
+		return data.occlusionRange[index];
 	}
 
 	/**
@@ -251,19 +197,19 @@ public class RegionPosition extends BlockPos {
 	 * @return Blocks of padding region should have for visibility testing in perspective.
 	 */
 	public int fuzz() {
-		return fuzz;
+		return data.hasFlag(index, RegionPositionData.FUZZ) ? 1 : 0;
 	}
 
 	public float cameraRelativeCenterX() {
-		return cameraRelativeCenterX;
+		return data.cameraRelativeCenterX(getX());
 	}
 
 	public float cameraRelativeCenterY() {
-		return cameraRelativeCenterY;
+		return data.cameraRelativeCenterY(getY());
 	}
 
 	public float cameraRelativeCenterZ() {
-		return cameraRelativeCenterZ;
+		return data.cameraRelativeCenterZ(getZ());
 	}
 
 	/**
@@ -290,15 +236,15 @@ public class RegionPosition extends BlockPos {
 	}
 
 	public int shadowCascade() {
-		return shadowCascade;
+		return data.shadowCascade[index];
 	}
 
 	public int shadowDistanceRank() {
-		return shadowDistanceRank;
+		return data.shadowDistanceRank[index];
 	}
 
 	public boolean isPotentiallyVisibleFromSkylight() {
-		return owner.origin.isInsideRenderDistance() & shadowCascade != -1;
+		return isInsideRenderDistance() & data.shadowCascade[index] != -1;
 	}
 
 	/**
@@ -319,11 +265,11 @@ public class RegionPosition extends BlockPos {
 	 */
 	public boolean isFrontFacing(int entryFaceFlags, int fromSquaredDistance) {
 		assert !Pipeline.advancedTerrainCulling();
-		return (squaredCameraChunkDistance >= fromSquaredDistance && (visibleFaceFlags & entryFaceFlags) != 0) || isNear;
+		return (squaredCameraChunkDistance() >= fromSquaredDistance && (visibleFaceFlags() & entryFaceFlags) != 0) || isNear();
 	}
 
 	public boolean isFrontFacing(int fromSquaredDistance) {
 		assert Pipeline.advancedTerrainCulling();
-		return isPotentiallyVisibleFromCamera && squaredCameraChunkDistance >= fromSquaredDistance || isNear;
+		return isPotentiallyVisibleFromCamera() && squaredCameraChunkDistance() >= fromSquaredDistance || isNear();
 	}
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region;
+
+import static grondag.canvas.terrain.region.RenderRegionIndexer.PADDED_REGION_INDEX_COUNT;
+
+import net.minecraft.world.phys.Vec3;
+
+/**
+ * Camera-dependent values of all region positions, stored as parallel arrays indexed by
+ * {@link RenderRegionIndexer#regionIndex(int, int)} so that per-iteration updates touch
+ * contiguous memory instead of chasing region references.
+ *
+ * <p>Camera-relative region centers aren't stored: they are derived from the region origin
+ * and the camera position captured with {@link #setCameraPos(Vec3)}, which changes only
+ * when the camera occluder position version changes.
+ */
+final class RegionPositionData {
+	static final int INSIDE_RENDER_DISTANCE = 1;
+	static final int NEAR = 2;
+	static final int POTENTIALLY_VISIBLE_FROM_CAMERA = 4;
+	static final int FUZZ = 8;
+
+	final int[] squaredCameraChunkDistance = new int[PADDED_REGION_INDEX_COUNT];
+	final byte[] flags = new byte[PADDED_REGION_INDEX_COUNT];
+	final byte[] occlusionRange = new byte[PADDED_REGION_INDEX_COUNT];
+	final byte[] visibleFaceFlags = new byte[PADDED_REGION_INDEX_COUNT];
+	final byte[] shadowCascade = new byte[PADDED_REGION_INDEX_COUNT];
+	final int[] shadowDistanceRank = new int[PADDED_REGION_INDEX_COUNT];
+
+	private double cameraX;
+	private double cameraY;
+	private double cameraZ;
+
+	void setCameraPos(Vec3 cameraPos) {
+		cameraX = cameraPos.x;
+		cameraY = cameraPos.y;
+		cameraZ = cameraPos.z;
+	}
+
+	float cameraRelativeCenterX(int originX) {
+		return (float) (originX + 8 - cameraX);
+	}
+
+	float cameraRelativeCenterY(int originY) {
+		return (float) (originY + 8 - cameraY);
+	}
+
+	float cameraRelativeCenterZ(int originZ) {
+		return (float) (originZ + 8 - cameraZ);
+	}
+
+	boolean hasFlag(int index, int flag) {
+		return (flags[index] & flag) != 0;
+	}
+
+	void setFlag(int index, int flag, boolean value) {
+		flags[index] = (byte) (value ? flags[index] | flag : flags[index] & ~flag);
+	}
+
+	/** Region state when not loaded or not yet updated. */
+	void clear(int index) {
+		flags[index] = 0;
+		shadowCascade[index] = -1;
+		shadowDistanceRank[index] = -1;
+	}
+}
@@ -25,12 +25,15 @@ import java.util.Set;
 
 import com.google.common.collect.Sets;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 
 import net.minecraft.Util;
 
 import io.vram.frex.api.config.FlawlessFrames;
 import io.vram.sc.unordered.SimpleUnorderedArrayList;
 
+import grondag.canvas.config.Configurator;
+
 /**
  * Tracks what regions require rebuilding and rebuilds them on demand.
  *
@@ -49,6 +52,22 @@ public class RegionRebuildManager {
 	 */
 	private final Set<RenderRegion> externalBuildRequests = new ObjectOpenHashSet<>();
 
+	/** Off-thread rebuilds being collected by chunk column during {@link #processScheduledRegions(long)}. */
+	private final Reference2ObjectOpenHashMap<RenderChunk, RegionBuildBatch> pendingBatches = new Reference2ObjectOpenHashMap<>();
+
+	private final RegionRebuildScheduler scheduler = new RegionRebuildScheduler();
+
+	enum RebuildOutcome {
+		/** Region was closed and needs nothing. */
+		DROPPED,
+		/** Region was rebuilt on the calling thread. */
+		BUILT,
+		/** World state was captured for an off-thread rebuild. */
+		CAPTURED,
+		/** Region isn't ready to be built and remains scheduled. */
+		DEFERRED
+	}
+
 	public void acceptExternalBuildRequest(RenderRegion region) {
 		externalBuildRequests.add(region);
 	}
@@ -143,42 +162,75 @@ public class RegionRebuildManager {
 	public void processScheduledRegions(long endNanos) {
 		final Set<RenderRegion> regionsToRebuild = this.regionsToRebuild;
 
-		//final long start = Util.getMeasuringTimeNano();
-		//int builtCount = 0;
-
 		if (!regionsToRebuild.isEmpty()) {
-			final Iterator<RenderRegion> iterator = regionsToRebuild.iterator();
 			final boolean flawless = FlawlessFrames.isActive();
 
-			while (iterator.hasNext()) {
-				final RenderRegion region = iterator.next();
+			if (!flawless && Configurator.adaptiveRebuildScheduling) {
+				scheduler.process(this, regionsToRebuild, endNanos);
+			} else {
+				final Iterator<RenderRegion> iterator = regionsToRebuild.iterator();
 
-				if (region.isClosed()) {
-					iterator.remove();
-				} else if (flawless || region.needsImportantRebuild()) {
-					region.rebuildOnMainThread();
-					iterator.remove();
-				} else if (region.renderChunk.areCornersLoaded()) {
-					region.prepareAndExecuteRebuildTask();
-					iterator.remove();
-				}
+				while (iterator.hasNext()) {
+					if (processScheduledRegion(iterator.next(), flawless) != RebuildOutcome.DEFERRED) {
+						iterator.remove();
+					}
 
-				// this seemed excessive
-				//				++builtCount;
-				//
-				//				final long now = Util.getMeasuringTimeNano();
-				//				final long elapsed = now - start;
-				//				final long avg = elapsed / builtCount;
-				//				final long remaining = endNanos - now;
-				//
-				//				if (remaining < avg) {
-				//					break;
-				//				}
-
-				if (!flawless && Util.getNanos() >= endNanos) {
-					break;
+					if (!flawless && Util.getNanos() >= endNanos) {
+						break;
+					}
 				}
 			}
+
+			submitPendingBatches();
+		}
+	}
+
+	/**
+	 * Rebuilds a scheduled region on the calling thread if urgent, otherwise captures
+	 * it for off-thread rebuild if it is ready. Caller is responsible for removing
+	 * the region from the scheduled set unless the result is {@link RebuildOutcome#DEFERRED}.
+	 */
+	RebuildOutcome processScheduledRegion(RenderRegion region, boolean flawless) {
+		if (region.isClosed()) {
+			return RebuildOutcome.DROPPED;
+		} else if (flawless || region.needsImportantRebuild()) {
+			region.rebuildOnMainThread();
+			return RebuildOutcome.BUILT;
+		} else if (region.renderChunk.areCornersLoaded()) {
+			if (Configurator.batchRegionRebuilds) {
+				addToBatch(region);
+			} else {
+				region.prepareAndExecuteRebuildTask();
+			}
+
+			return RebuildOutcome.CAPTURED;
+		} else {
+			return RebuildOutcome.DEFERRED;
+		}
+	}
+
+	private void addToBatch(RenderRegion region) {
+		final RenderChunk renderChunk = region.renderChunk;
+		RegionBuildBatch batch = pendingBatches.get(renderChunk);
+
+		if (batch == null) {
+			batch = new RegionBuildBatch(renderChunk);
+			pendingBatches.put(renderChunk, batch);
+		}
+
+		if (batch.add(region)) {
+			pendingBatches.remove(renderChunk);
+			batch.submit();
+		}
+	}
+
+	private void submitPendingBatches() {
+		if (!pendingBatches.isEmpty()) {
+			for (final RegionBuildBatch batch : pendingBatches.values()) {
+				batch.submit();
+			}
+
+			pendingBatches.clear();
 		}
 	}
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import net.minecraft.Util;
+
+import grondag.canvas.config.Configurator;
+import grondag.canvas.perf.Timekeeper;
+import grondag.canvas.terrain.region.RegionRebuildManager.RebuildOutcome;
+
+/**
+ * Chooses which scheduled regions to process on the main thread each frame.
+ *
+ * <p>Keeps a running average of main-thread cost for each class of region, separately
+ * for capture (world copy for off-thread rebuild) and full rebuild on the main thread.
+ * Each frame, candidates are ordered urgent first, then potentially visible, then
+ * by camera distance, and taken in that order until the predicted cost would exceed
+ * the frame budget. Predictions are corrected from measured cost after each region.
+ *
+ * <p>Not thread-safe and meant to be called from the main render thread.
+ */
+class RegionRebuildScheduler {
+	private static final int CLASS_EMPTY = 0;
+	private static final int CLASS_PLAIN = 1;
+	private static final int CLASS_FLUID_HEAVY = 2;
+	private static final int CLASS_BLOCK_ENTITY_HEAVY = 3;
+	private static final int CLASS_COUNT = 4;
+
+	private static final String[] CLASS_NAMES = {"empty", "plain", "fluid", "block entity"};
+
+	/** Block counts at which the build cost of a region is dominated by fluids or block entities. */
+	private static final int FLUID_HEAVY_THRESHOLD = 512;
+	private static final int BLOCK_ENTITY_HEAVY_THRESHOLD = 16;
+
+	/** Bounds the sort cost when very large numbers of regions are waiting. Oldest requests are considered first. */
+	private static final int MAX_CANDIDATES = 4096;
+
+	private static final int RANK_URGENT = 0;
+	private static final int RANK_VISIBLE = 1;
+	private static final int RANK_NOT_VISIBLE = 2;
+
+	/** Running average cost in nanoseconds, indexed by region class. Initial values are rough guesses. */
+	private final long[] captureNanos = {20_000, 150_000, 150_000, 200_000};
+	private final long[] buildNanos = {50_000, 1_500_000, 2_500_000, 2_000_000};
+
+	private RenderRegion[] candidates = new RenderRegion[256];
+	private long[] keys = new long[256];
+
+	void process(RegionRebuildManager manager, Set<RenderRegion> regionsToRebuild, long endNanos) {
+		final long startNanos = Util.getNanos();
+		final long budget = endNanos - startNanos;
+		final int count = gatherCandidates(regionsToRebuild);
+		final RenderRegion[] candidates = this.candidates;
+		final long[] keys = this.keys;
+
+		Arrays.sort(keys, 0, count);
+
+		long predicted = 0;
+		int processed = 0;
+
+		for (int i = 0; i < count; ++i) {
+			final RenderRegion region = candidates[(int) keys[i]];
+			final int regionClass = regionClass(region);
+			final boolean urgent = region.needsImportantRebuild();
+			final long[] model = urgent ? buildNanos : captureNanos;
+			final long estimate = model[regionClass];
+
+			// Always make some progress, even if the budget is already exhausted.
+			if (processed > 0 && predicted + estimate > budget) {
+				break;
+			}
+
+			final long regionStart = Util.getNanos();
+			final RebuildOutcome outcome = manager.processScheduledRegion(region, false);
+			final long elapsed = Util.getNanos() - regionStart;
+
+			if (outcome != RebuildOutcome.DEFERRED) {
+				regionsToRebuild.remove(region);
+
+				if (outcome != RebuildOutcome.DROPPED) {
+					// exponential moving average with weight 1/8 for new samples
+					final long[] actualModel = outcome == RebuildOutcome.BUILT ? buildNanos : captureNanos;
+					actualModel[regionClass] += (elapsed - actualModel[regionClass]) >> 3;
+					predicted += estimate;
+					++processed;
+				}
+			}
+
+			if (regionStart + elapsed >= endNanos) {
+				break;
+			}
+		}
+
+		Arrays.fill(candidates, 0, count, null);
+
+		if (Configurator.displayRenderProfiler) {
+			report(count, processed, predicted, Util.getNanos() - startNanos, budget);
+		}
+	}
+
+	private int gatherCandidates(Set<RenderRegion> regionsToRebuild) {
+		final int limit = Math.min(MAX_CANDIDATES, regionsToRebuild.size());
+
+		if (candidates.length < limit) {
+			final int newSize = Math.max(limit, candidates.length * 2);
+			candidates = new RenderRegion[newSize];
+			keys = new long[newSize];
+		}
+
+		final Iterator<RenderRegion> iterator = regionsToRebuild.iterator();
+		int count = 0;
+
+		while (count < limit && iterator.hasNext()) {
+			final RenderRegion region = iterator.next();
+			final RegionPosition origin = region.origin;
+			final int rank = region.needsImportantRebuild() ? RANK_URGENT : origin.isPotentiallyVisibleFromCamera() ? RANK_VISIBLE : RANK_NOT_VISIBLE;
+			final int distance = Math.min(origin.squaredCameraChunkDistance(), 0xFFFFFF);
+			candidates[count] = region;
+			// rank and distance in the high word, candidate index in the low word
+			keys[count] = ((long) ((rank << 24) | distance) << 32) | count;
+			++count;
+		}
+
+		return count;
+	}
+
+	private static int regionClass(RenderRegion region) {
+		final RegionBuildState buildState = region.getBuildState();
+
+		if (buildState == RegionBuildState.UNBUILT) {
+			return CLASS_PLAIN;
+		} else if (buildState.blockEntities.size() >= BLOCK_ENTITY_HEAVY_THRESHOLD) {
+			return CLASS_BLOCK_ENTITY_HEAVY;
+		} else if (buildState.fluidCount >= FLUID_HEAVY_THRESHOLD) {
+			return CLASS_FLUID_HEAVY;
+		} else if (!buildState.canOcclude() && buildState.blockEntities.isEmpty()) {
+			return CLASS_EMPTY;
+		} else {
+			return CLASS_PLAIN;
+		}
+	}
+
+	private void report(int candidateCount, int processed, long predicted, long actual, long budget) {
+		final Timekeeper timekeeper = Timekeeper.instance;
+		timekeeper.setStatus("Region rebuilds", String.format("%d of %d  budget %.2f ms  predicted %.2f ms  actual %.2f ms",
+				processed, candidateCount, budget / 1000000f, predicted / 1000000f, actual / 1000000f));
+
+		final StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < CLASS_COUNT; ++i) {
+			if (i > 0) {
+				sb.append("  ");
+			}
+
+			sb.append(String.format("%s %.2f/%.2f", CLASS_NAMES[i], captureNanos[i] / 1000000f, buildNanos[i] / 1000000f));
+		}
+
+		timekeeper.setStatus("Rebuild cost ms (capture/build)", sb.toString());
+	}
+}
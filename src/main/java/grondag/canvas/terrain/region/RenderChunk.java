@@ -28,6 +28,8 @@ import grondag.canvas.render.world.WorldRenderState;
 
 public class RenderChunk {
 	final WorldRenderState worldRenderState;
+	private final RenderRegionStorage storage;
+	private final int chunkIndex;
 
 	private int chunkX;
 	private int chunkZ;
@@ -38,8 +40,10 @@ public class RenderChunk {
 
 	int horizontalSquaredDistance;
 
-	public RenderChunk(WorldRenderState worldRenderState) {
+	RenderChunk(WorldRenderState worldRenderState, RenderRegionStorage storage, int chunkIndex) {
 		this.worldRenderState = worldRenderState;
+		this.storage = storage;
+		this.chunkIndex = chunkIndex;
 	}
 
 	private void open(int chunkX, int chunkZ) {
@@ -49,6 +53,7 @@ public class RenderChunk {
 		areCornersLoadedCache = false;
 		cameraRegionOrigin = -1;
 		computeChunkDistanceMetrics();
+		storage.trackChunkOpened(chunkIndex);
 	}
 
 	public synchronized void close() {
@@ -60,6 +65,7 @@ public class RenderChunk {
 			}
 
 			regions = null;
+			storage.trackChunkClosed(chunkIndex);
 		}
 	}
 
@@ -80,22 +86,25 @@ public class RenderChunk {
 		return result;
 	}
 
-	synchronized void updatePositionAndVisibility() {
-		computeChunkDistanceMetrics();
-
+	/** See {@link RegionPosition#update(boolean, boolean, boolean)}. */
+	synchronized void updatePositionAndVisibility(boolean distanceChanged, boolean viewChanged, boolean shadowsEnabled) {
 		final RenderRegion[] regions = this.regions;
 
 		if (regions != null) {
+			if (distanceChanged) {
+				computeChunkDistanceMetrics();
+			}
+
 			for (int i = 0; i < RenderRegionIndexer.MAX_Y_REGIONS; ++i) {
 				final RenderRegion r = regions[i];
 
 				if (r != null) {
-					r.origin.update();
+					r.origin.update(distanceChanged, viewChanged, shadowsEnabled);
 				}
 			}
 
-			if (horizontalSquaredDistance > worldRenderState.maxSquaredChunkRetentionDistance()) {
-				worldRenderState.renderRegionStorage.scheduleClose(this);
+			if (distanceChanged && horizontalSquaredDistance > worldRenderState.maxSquaredChunkRetentionDistance()) {
+				storage.scheduleClose(this);
 			}
 		}
 	}
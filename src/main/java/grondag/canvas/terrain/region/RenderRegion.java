@@ -29,29 +29,22 @@ import java.util.concurrent.atomic.AtomicReference;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.jetbrains.annotations.Nullable;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.block.BlockRenderDispatcher;
 import net.minecraft.client.renderer.blockentity.BlockEntityRenderer;
-import net.minecraft.client.resources.model.BakedModel;
-import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.entity.BlockEntity;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.material.FluidState;
-import net.minecraft.world.phys.Vec3;
-
-import io.vram.frex.api.math.FastMatrix3f;
-import io.vram.frex.api.math.FastMatrix4f;
-import io.vram.frex.api.math.MatrixStack;
-import io.vram.frex.api.model.fluid.FluidModel;
 
 import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
 import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.SortingVertexCollector;
+import grondag.canvas.buffer.input.TranslucentSortState;
 import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.buffer.render.TransferBuffer;
+import grondag.canvas.buffer.render.TransferBuffers;
+import grondag.canvas.buffer.render.UploadableVertexStorage;
 import grondag.canvas.material.state.TerrainRenderStates;
 import grondag.canvas.perf.ChunkRebuildCounters;
 import grondag.canvas.pipeline.Pipeline;
@@ -62,10 +55,9 @@ import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.terrain.occlusion.camera.CameraRegionVisibility;
 import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.terrain.occlusion.shadow.ShadowRegionVisibility;
-import grondag.canvas.terrain.region.input.InputRegion;
+import grondag.canvas.terrain.region.input.ChunkNeighborhood;
 import grondag.canvas.terrain.region.input.PackedInputRegion;
 import grondag.canvas.terrain.region.input.SignalInputRegion;
-import grondag.canvas.terrain.util.RenderRegionStateIndexer;
 import grondag.canvas.terrain.util.TerrainExecutor;
 import grondag.canvas.terrain.util.TerrainExecutorTask;
 
@@ -201,16 +193,26 @@ public class RenderRegion implements TerrainExecutorTask {
 	}
 
 	public void prepareAndExecuteRebuildTask() {
-		final PackedInputRegion region = PackedInputRegion.claim(worldRenderState.getWorld(), origin);
-
-		// Idle region is signal to reschedule
-		// If region is something other than idle, we are already in the queue
-		// and we only need to update the input protoRegion (which we do here.)
-		if (inputState.getAndSet(region) == SignalInputRegion.IDLE) {
+		if (prepareRebuildInput(null)) {
 			TerrainExecutor.INSTANCE.execute(this);
 		}
+	}
 
+	/**
+	 * Captures world state for an off-thread rebuild and marks the region built.
+	 * When a neighborhood is given, chunk lookups, neighbor section decodes and light are shared with other regions in the column.
+	 *
+	 * @return True if the region must be submitted for execution, either alone or as part of a batch.
+	 * False if it is already queued and will consume the new input when it runs.
+	 */
+	boolean prepareRebuildInput(@Nullable ChunkNeighborhood neighborhood) {
+		final PackedInputRegion region = PackedInputRegion.claim(worldRenderState.getWorld(), origin, neighborhood);
 		markBuilt();
+
+		// Idle region is signal to reschedule
+		// If region is something other than idle, we are already in the queue
+		// and we only need to update the input protoRegion (which we do here.)
+		return inputState.getAndSet(region) == SignalInputRegion.IDLE;
 	}
 
 	/**
@@ -252,6 +254,35 @@ public class RenderRegion implements TerrainExecutorTask {
 		return origin.squaredCameraChunkDistance();
 	}
 
+	@Override
+	public boolean cancelIfObsolete() {
+		if (isClosed) {
+			// close() has already invalidated any input that was queued
+			return true;
+		}
+
+		if (origin.isPotentiallyVisibleFromCamera() || origin.isPotentiallyVisibleFromSkylight()) {
+			return false;
+		}
+
+		final AtomicReference<PackedInputRegion> runningState = inputState;
+		final PackedInputRegion protoRegion = runningState.get();
+
+		if (protoRegion == null || protoRegion == SignalInputRegion.INVALID) {
+			return true;
+		}
+
+		// Empty regions must still report occlusion so that visibility search can progress.
+		if (protoRegion == SignalInputRegion.EMPTY || !runningState.compareAndSet(protoRegion, SignalInputRegion.IDLE)) {
+			return false;
+		}
+
+		// Same outcome as the visibility check in run()
+		protoRegion.release();
+		markForBuild(false);
+		return true;
+	}
+
 	private void notifyOcclusionChange() {
 		cameraVisibility.notifyOfOcclusionChange();
 		shadowVisibility.notifyOfOcclusionChange();
@@ -303,7 +334,7 @@ public class RenderRegion implements TerrainExecutorTask {
 
 		if (protoRegion == SignalInputRegion.RESORT_ONLY) {
 			final RegionBuildState regionData = buildState.get();
-			final int[] state = regionData.translucentState;
+			final TranslucentSortState state = regionData.translucentState;
 
 			if (state != null) {
 				final VertexCollectorList collectors = context.encoder.collectors;
@@ -314,23 +345,27 @@ public class RenderRegion implements TerrainExecutorTask {
 					regionData.translucentState = collector.saveState(state);
 
 					if (runningState.get() != SignalInputRegion.INVALID) {
-						final UploadableRegion upload = collectors.toUploadableChunk(true, origin, worldRenderState);
-
-						if (upload != UploadableRegion.EMPTY_UPLOADABLE) {
-							renderRegionBuilder.scheduleUpload(() -> {
-								if (ChunkRebuildCounters.ENABLED) {
-									ChunkRebuildCounters.startUpload();
-								}
-
-								translucentDrawable.releaseFromRegion();
-								translucentDrawable = upload.produceDrawable();
-								worldRenderState.invalidateDrawLists();
-
-								if (ChunkRebuildCounters.ENABLED) {
-									ChunkRebuildCounters.completeUpload();
-								}
-							});
-						}
+						// Vertex data is already on the GPU, so only the sorted indices need to be sent.
+						final TransferBuffer indices = TransferBuffers.claim(state.quadCount() * SortingVertexCollector.INDEX_BYTES_PER_QUAD);
+						collector.toIndexBuffer(indices);
+
+						renderRegionBuilder.scheduleUpload(() -> {
+							if (ChunkRebuildCounters.ENABLED) {
+								ChunkRebuildCounters.startUpload();
+							}
+
+							final UploadableVertexStorage storage = translucentDrawable.storage();
+
+							if (storage == null) {
+								indices.release();
+							} else {
+								storage.uploadIndices(indices);
+							}
+
+							if (ChunkRebuildCounters.ENABLED) {
+								ChunkRebuildCounters.completeUpload();
+							}
+						});
 					}
 				}
 
@@ -405,60 +440,8 @@ public class RenderRegion implements TerrainExecutorTask {
 
 		context.renderBakeListeners();
 
-		final VertexCollectorList collectors = context.encoder.collectors;
-
-		final BlockPos.MutableBlockPos searchPos = context.searchPos;
-		final int xOrigin = origin.getX();
-		final int yOrigin = origin.getY();
-		final int zOrigin = origin.getZ();
-
-		final InputRegion region = context.region;
-		final MatrixStack matrixStack = context.matrixStack;
-		final FastMatrix4f modelMatrix = matrixStack.modelMatrix();
-		final FastMatrix3f normalMatrix = matrixStack.normalMatrix();
-		normalMatrix.f_setIdentity();
-
-		final BlockRenderDispatcher blockRenderManager = Minecraft.getInstance().getBlockRenderer();
-		final RegionOcclusionCalculator occlusionRegion = region.occlusion;
-
-		for (int i = 0; i < RenderRegionStateIndexer.INTERIOR_STATE_COUNT; i++) {
-			if (occlusionRegion.shouldRender(i)) {
-				final BlockState blockState = region.getLocalBlockState(i);
-				final FluidState fluidState = blockState.getFluidState();
-				final int x = i & 0xF;
-				final int y = (i >> 4) & 0xF;
-				final int z = (i >> 8) & 0xF;
-				searchPos.set(xOrigin + x, yOrigin + y, zOrigin + z);
-
-				final boolean hasFluid = !fluidState.isEmpty();
-				final boolean hasBlock = blockState.getRenderShape() != RenderShape.INVISIBLE;
-
-				if (hasFluid || hasBlock) {
-					// Vanilla does a push/pop for each block but that creates needless allocation spam.
-					modelMatrix.f_setIdentity();
-					modelMatrix.f_translate(x, y, z);
-
-					if (hasFluid) {
-						context.renderFluid(blockState, searchPos, false, FluidModel.get(fluidState.getType()));
-					}
-
-					if (hasBlock) {
-						if (blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
-							final Vec3 vec3d = blockState.getOffset(region, searchPos);
-
-							if (vec3d != Vec3.ZERO) {
-								modelMatrix.f_translate((float) vec3d.x, (float) vec3d.y, (float) vec3d.z);
-							}
-						}
-
-						final BakedModel model = blockRenderManager.getBlockModel(blockState);
-						context.renderBlock(blockState, searchPos, model);
-					}
-				}
-			}
-		}
-
-		buildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, collectors);
+		buildState.fluidCount = context.renderTerrain();
+		buildState.prepareTranslucentIfNeeded(worldRenderState.sectorManager.cameraPos(), renderSector, context.encoder.collectors);
 
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.completeChunk();
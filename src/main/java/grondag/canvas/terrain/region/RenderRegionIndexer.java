@@ -78,6 +78,17 @@ public final class RenderRegionIndexer {
 		return x | (z << 7);
 	}
 
+	/**
+	 * Index within an array of PADDED_REGION_INDEX_COUNT size for the region at the given Y index
+	 * of the chunk at the given chunk index. Regions of a chunk are contiguous.
+	 *
+	 * @param chunkIndex result of {@link #chunkIndex(int, int)}
+	 * @param yIndex region Y block position plus {@link #Y_BLOCKPOS_OFFSET}, shifted right by 4
+	 */
+	public static int regionIndex(int chunkIndex, int yIndex) {
+		return chunkIndex * MAX_Y_REGIONS + yIndex;
+	}
+
 	public static long blockPosToRegionOrigin(BlockPos pos) {
 		return blockPosToRegionOrigin(pos.getX(), pos.getY(), pos.getZ());
 	}
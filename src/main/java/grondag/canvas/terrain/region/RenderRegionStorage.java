@@ -22,25 +22,54 @@ package grondag.canvas.terrain.region;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
 
 import net.minecraft.core.BlockPos;
 
 import grondag.canvas.render.world.WorldRenderState;
 import grondag.canvas.terrain.occlusion.OcclusionStatus;
+import grondag.canvas.terrain.occlusion.TerrainIterator;
+import grondag.canvas.terrain.occlusion.camera.CameraVisibility;
 
 public class RenderRegionStorage {
+	private static final int OPEN_CHUNK_WORD_COUNT = RenderRegionIndexer.PADDED_CHUNK_INDEX_COUNT / 64;
+
+	/** Words of the open chunk bitmap handled by each parallel update task. */
+	private static final int PARALLEL_SLICE_WORDS = 16;
+
+	/**
+	 * Updates with fewer open chunks than this run on the calling thread. Below this
+	 * (roughly a 24-chunk render distance) fork/join overhead is greater than the savings.
+	 */
+	private static final int PARALLEL_MIN_OPEN_CHUNKS = 2048;
+
 	private final AtomicInteger loadedRegionCount = new AtomicInteger();
+	private final AtomicInteger openChunkCount = new AtomicInteger();
+
+	/** One bit per chunk index, set while the chunk has regions. Lets updates skip unused chunk slots. */
+	private final AtomicLongArray openChunks = new AtomicLongArray(OPEN_CHUNK_WORD_COUNT);
+
+	final RegionPositionData positionData = new RegionPositionData();
 
 	private final WorldRenderState worldRenderState;
 
 	private final RenderChunk[] chunks = new RenderChunk[RenderRegionIndexer.PADDED_CHUNK_INDEX_COUNT];
 	private final ArrayBlockingQueue<RenderChunk> closeQueue = new ArrayBlockingQueue<>(RenderRegionIndexer.PADDED_CHUNK_INDEX_COUNT);
 
+	// Camera state as of the last update, used to skip work that can't have changed.
+	// Only accessed from the terrain iteration thread.
+	private long lastCameraRegionOrigin = -1;
+	private int lastMaxSquaredChunkRenderDistance = -1;
+	private int lastFrustumViewVersion = -1;
+	private int lastFrustumPositionVersion = -1;
+	private boolean lastShadowsEnabled = false;
+
 	public RenderRegionStorage(WorldRenderState worldRenderState) {
 		this.worldRenderState = worldRenderState;
 
 		for (int i = 0; i < RenderRegionIndexer.PADDED_CHUNK_INDEX_COUNT; ++i) {
-			chunks[i] = new RenderChunk(worldRenderState);
+			chunks[i] = new RenderChunk(worldRenderState, this, i);
 		}
 	}
 
@@ -66,9 +95,67 @@ public class RenderRegionStorage {
 		}
 	}
 
+	/**
+	 * Brings camera-dependent values of all loaded regions up to date. Distance-dependent
+	 * values are recomputed only when the camera region or render distance change, and
+	 * view-dependent values only when the camera occluder view changes. Regions compute
+	 * all values when created, so an update with no camera change visits no regions
+	 * unless shadows are enabled. (Shadow cascades depend on the sky light direction,
+	 * which isn't versioned.)
+	 *
+	 * <p>Only chunks marked open are visited. Large updates are split across the common
+	 * fork/join pool - region computations are independent and chunk updates are
+	 * serialized with region creation and removal by the chunk monitor.
+	 */
 	public void updateRegionPositionAndVisibility() {
-		for (int i = 0; i < RenderRegionIndexer.PADDED_CHUNK_INDEX_COUNT; ++i) {
-			chunks[i].updatePositionAndVisibility();
+		final TerrainIterator terrainIterator = worldRenderState.terrainIterator;
+		final CameraVisibility cameraPVS = terrainIterator.cameraVisibility;
+		final long cameraRegionOrigin = terrainIterator.cameraRegionOrigin();
+		final int maxSquaredChunkRenderDistance = worldRenderState.maxSquaredChunkRenderDistance();
+		final int frustumViewVersion = cameraPVS.frustumViewVersion();
+		final int frustumPositionVersion = cameraPVS.frustumPositionVersion();
+		final boolean shadowsEnabled = worldRenderState.shadowsEnabled();
+
+		final boolean distanceChanged = cameraRegionOrigin != lastCameraRegionOrigin
+				|| maxSquaredChunkRenderDistance != lastMaxSquaredChunkRenderDistance
+				|| shadowsEnabled != lastShadowsEnabled;
+
+		final boolean viewChanged = distanceChanged || frustumViewVersion != lastFrustumViewVersion;
+
+		lastCameraRegionOrigin = cameraRegionOrigin;
+		lastMaxSquaredChunkRenderDistance = maxSquaredChunkRenderDistance;
+		lastFrustumViewVersion = frustumViewVersion;
+		lastShadowsEnabled = shadowsEnabled;
+
+		// Position cannot change without view also changing
+		if (frustumPositionVersion != lastFrustumPositionVersion) {
+			lastFrustumPositionVersion = frustumPositionVersion;
+			positionData.setCameraPos(cameraPVS.frustumCameraPos());
+		}
+
+		if (!viewChanged && !shadowsEnabled) {
+			return;
+		}
+
+		if (openChunkCount.get() >= PARALLEL_MIN_OPEN_CHUNKS) {
+			IntStream.range(0, OPEN_CHUNK_WORD_COUNT / PARALLEL_SLICE_WORDS).parallel().forEach(slice -> {
+				final int fromWord = slice * PARALLEL_SLICE_WORDS;
+				updateOpenChunks(fromWord, fromWord + PARALLEL_SLICE_WORDS, distanceChanged, viewChanged, shadowsEnabled);
+			});
+		} else {
+			updateOpenChunks(0, OPEN_CHUNK_WORD_COUNT, distanceChanged, viewChanged, shadowsEnabled);
+		}
+	}
+
+	private void updateOpenChunks(int fromWord, int toWord, boolean distanceChanged, boolean viewChanged, boolean shadowsEnabled) {
+		for (int w = fromWord; w < toWord; ++w) {
+			long bits = openChunks.get(w);
+			final int baseIndex = w << 6;
+
+			while (bits != 0) {
+				chunks[baseIndex + Long.numberOfTrailingZeros(bits)].updatePositionAndVisibility(distanceChanged, viewChanged, shadowsEnabled);
+				bits &= bits - 1;
+			}
 		}
 	}
 
@@ -110,6 +197,22 @@ public class RenderRegionStorage {
 		}
 	}
 
+	void trackChunkOpened(int chunkIndex) {
+		final long mask = 1L << (chunkIndex & 63);
+
+		if ((openChunks.getAndUpdate(chunkIndex >> 6, w -> w | mask) & mask) == 0) {
+			openChunkCount.incrementAndGet();
+		}
+	}
+
+	void trackChunkClosed(int chunkIndex) {
+		final long mask = 1L << (chunkIndex & 63);
+
+		if ((openChunks.getAndUpdate(chunkIndex >> 6, w -> w & ~mask) & mask) != 0) {
+			openChunkCount.decrementAndGet();
+		}
+	}
+
 	void trackRegionClosed() {
 		loadedRegionCount.decrementAndGet();
 	}
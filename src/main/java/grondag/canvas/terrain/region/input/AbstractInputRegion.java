@@ -22,6 +22,8 @@ package grondag.canvas.terrain.region.input;
 
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
 
+import org.jetbrains.annotations.Nullable;
+
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.chunk.LevelChunk;
@@ -65,12 +67,14 @@ public abstract class AbstractInputRegion {
 		return index >= sections.length ? null : sections[index];
 	}
 
+	/** Null when there is no world, as when an input region is prepared for replay. */
+	@Nullable
 	protected LevelChunk getChunk(int cx, int cz) {
 		final int chunkBaseX = this.chunkBaseX;
 		final int chunkBaseZ = this.chunkBaseZ;
 
-		if (cx < chunkBaseX || cx > (chunkBaseZ + 2) || cz < chunkBaseZ || cz > (chunkBaseZ + 2)) {
-			return world.getChunk(cx, cz);
+		if (cx < chunkBaseX || cx > (chunkBaseX + 2) || cz < chunkBaseZ || cz > (chunkBaseZ + 2)) {
+			return world == null ? null : world.getChunk(cx, cz);
 		} else {
 			return chunks[(cx - chunkBaseX) | ((cz - chunkBaseZ) << 2)];
 		}
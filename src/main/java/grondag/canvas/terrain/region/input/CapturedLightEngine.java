@@ -0,0 +1,110 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.LightChunkGetter;
+import net.minecraft.world.level.lighting.LayerLightEventListener;
+import net.minecraft.world.level.lighting.LevelLightEngine;
+
+/**
+ * Read-only light engine over the light captured for an {@link InputRegion}, for
+ * code that asks the region for its light engine instead of its brightness.
+ * Updates are ignored. Positions outside the captured sections read the same
+ * defaults as {@link InputRegion#getBrightness(LightLayer, BlockPos)}.
+ */
+class CapturedLightEngine extends LevelLightEngine {
+	private final CapturedLayer skyLayer;
+	private final CapturedLayer blockLayer;
+	private final InputRegion region;
+
+	CapturedLightEngine(InputRegion region) {
+		// no engines of its own, so the chunk getter is only asked for the level
+		super(new LightChunkGetter() {
+			@Override
+			@Nullable
+			public BlockGetter getChunkForLighting(int x, int z) {
+				return null;
+			}
+
+			@Override
+			public BlockGetter getLevel() {
+				return region;
+			}
+		}, false, false);
+
+		this.region = region;
+		skyLayer = new CapturedLayer(region, LightLayer.SKY);
+		blockLayer = new CapturedLayer(region, LightLayer.BLOCK);
+	}
+
+	@Override
+	public LayerLightEventListener getLayerListener(LightLayer type) {
+		return type == LightLayer.SKY ? skyLayer : blockLayer;
+	}
+
+	@Override
+	public int getRawBrightness(BlockPos pos, int ambientDarkness) {
+		return region.getRawBrightness(pos, ambientDarkness);
+	}
+
+	private record CapturedLayer(InputRegion region, LightLayer type) implements LayerLightEventListener {
+		@Override
+		@Nullable
+		public DataLayer getDataLayerData(SectionPos pos) {
+			return region.capturedDataLayer(type, pos.x(), pos.y(), pos.z());
+		}
+
+		@Override
+		public int getLightValue(BlockPos pos) {
+			return region.getBrightness(type, pos);
+		}
+
+		@Override
+		public void checkBlock(BlockPos pos) { }
+
+		@Override
+		public void onBlockEmissionIncrease(BlockPos pos, int level) { }
+
+		@Override
+		public boolean hasLightWork() {
+			return false;
+		}
+
+		@Override
+		public int runUpdates(int maxUpdates, boolean doSkylight, boolean skipEdgeLightPropagation) {
+			return maxUpdates;
+		}
+
+		@Override
+		public void updateSectionStatus(SectionPos pos, boolean isEmpty) { }
+
+		@Override
+		public void enableLightSources(ChunkPos pos, boolean enable) { }
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+
+import grondag.canvas.mixinterface.PalettedContainerExt;
+
+/**
+ * World data shared by every region in one chunk column: the 3x3 chunks
+ * surrounding the column, the block entities of the center chunk, bucketed
+ * by section, and the border states and light of neighbor sections. Lets a
+ * batch of regions in the same column be captured with one set of chunk lookups,
+ * one pass over the block entity map and one decode of each neighbor section.
+ *
+ * <p>Vertically adjacent regions read the same neighbor sections for their faces,
+ * edges and corners, at different offsets. Border states are decoded once per
+ * section for the union of those offsets: the two-block-thick slab of the
+ * neighbor chunk that touches the center column. Light is resolved once per
+ * section in the same way.
+ *
+ * <p>Main thread only. Holds chunk references, so must be cleared after use.
+ */
+public class ChunkNeighborhood {
+	private static final ObjectArrayList<BlockEntity> NO_BLOCK_ENTITIES = new ObjectArrayList<>();
+	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+	/** Section indices of the border slab for each chunk slot, same layout as {@link #chunks}. Null for the center chunk. */
+	private static final int[][] BORDER_INDICES = new int[16][];
+
+	/** Maps section indices to positions within the border slab for each chunk slot, -1 if not in the slab. */
+	private static final int[][] BORDER_POSITIONS = new int[16][];
+
+	static {
+		for (int x = 0; x < 3; x++) {
+			for (int z = 0; z < 3; z++) {
+				if (x != 1 || z != 1) {
+					final int slot = x | (z << 2);
+					final int minX = x == 0 ? 14 : 0;
+					final int maxX = x == 2 ? 1 : 15;
+					final int minZ = z == 0 ? 14 : 0;
+					final int maxZ = z == 2 ? 1 : 15;
+					final int[] indices = new int[(maxX - minX + 1) * (maxZ - minZ + 1) * 16];
+					final int[] positions = new int[4096];
+					Arrays.fill(positions, -1);
+					int n = 0;
+
+					for (int by = 0; by < 16; ++by) {
+						for (int bz = minZ; bz <= maxZ; ++bz) {
+							for (int bx = minX; bx <= maxX; ++bx) {
+								final int sectionIndex = bx | (bz << 4) | (by << 8);
+								positions[sectionIndex] = n;
+								indices[n++] = sectionIndex;
+							}
+						}
+					}
+
+					BORDER_INDICES[slot] = indices;
+					BORDER_POSITIONS[slot] = positions;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts section indices of a face, edge or corner piece within the given neighbor chunk
+	 * to positions within the array returned by {@link #borderStates(int, int, int)}.
+	 */
+	static int[] borderPositions(int x, int z, int[] sectionIndices) {
+		final int[] positions = BORDER_POSITIONS[x | (z << 2)];
+		final int[] result = new int[sectionIndices.length];
+
+		for (int n = 0; n < sectionIndices.length; ++n) {
+			result[n] = positions[sectionIndices[n]];
+			assert result[n] >= 0;
+		}
+
+		return result;
+	}
+
+	/** Same layout as {@link AbstractInputRegion#chunks}. */
+	final LevelChunk[] chunks = new LevelChunk[16];
+	private final Int2ObjectOpenHashMap<ObjectArrayList<BlockEntity>> blockEntities = new Int2ObjectOpenHashMap<>();
+	private ClientLevel world;
+	private int chunkBaseX;
+	private int chunkBaseZ;
+	private boolean areBlockEntitiesCaptured;
+
+	/** Keyed by section index and chunk slot, see {@link #sectionKey(int, int, int)}. */
+	private final Int2ObjectOpenHashMap<BlockState[]> borderStates = new Int2ObjectOpenHashMap<>();
+	private final Int2ObjectOpenHashMap<byte[]> blockLight = new Int2ObjectOpenHashMap<>();
+	private final Int2ObjectOpenHashMap<byte[]> skyLight = new Int2ObjectOpenHashMap<>();
+
+	// Arrays are reused after clear() because captured regions hold copies, not references.
+	private final ObjectArrayList<BlockState[]> sideBorderPool = new ObjectArrayList<>();
+	private final ObjectArrayList<BlockState[]> cornerBorderPool = new ObjectArrayList<>();
+	private final ObjectArrayList<byte[]> lightPool = new ObjectArrayList<>();
+
+	public ChunkNeighborhood prepare(ClientLevel world, int chunkX, int chunkZ) {
+		final int chunkBaseX = chunkX - 1;
+		final int chunkBaseZ = chunkZ - 1;
+
+		if (this.world == world && this.chunkBaseX == chunkBaseX && this.chunkBaseZ == chunkBaseZ && chunks[1 | (1 << 2)] != null) {
+			return this;
+		}
+
+		clear();
+		this.world = world;
+		this.chunkBaseX = chunkBaseX;
+		this.chunkBaseZ = chunkBaseZ;
+
+		for (int x = 0; x < 3; x++) {
+			for (int z = 0; z < 3; z++) {
+				chunks[x | (z << 2)] = world.getChunk(chunkBaseX + x, chunkBaseZ + z);
+			}
+		}
+
+		return this;
+	}
+
+	LevelChunk mainChunk() {
+		return chunks[1 | (1 << 2)];
+	}
+
+	/**
+	 * Block entities of the center chunk within the section with the given Y coordinate, in chunks.
+	 * The center chunk's block entity map is walked only once for all sections.
+	 */
+	ObjectArrayList<BlockEntity> blockEntities(int sectionY) {
+		if (!areBlockEntitiesCaptured) {
+			areBlockEntitiesCaptured = true;
+
+			for (final BlockEntity be : mainChunk().getBlockEntities().values()) {
+				final int y = be.getBlockPos().getY() >> 4;
+				ObjectArrayList<BlockEntity> list = blockEntities.get(y);
+
+				if (list == null) {
+					list = new ObjectArrayList<>();
+					blockEntities.put(y, list);
+				}
+
+				list.add(be);
+			}
+		}
+
+		return blockEntities.getOrDefault(sectionY, NO_BLOCK_ENTITIES);
+	}
+
+	private static int sectionKey(int x, int sectionY, int z) {
+		// section coordinates are offset so the key is never negative, same for absolute and relative Y
+		return ((sectionY + 2048) << 4) | x | (z << 2);
+	}
+
+	/**
+	 * States of the border slab of the neighbor chunk section at the given chunk offset and
+	 * section array index. Index values use {@link AbstractInputRegion#getSection(int, int, int)}
+	 * conventions and may be out of range, in which case the slab is air.
+	 * Must not be called for the center chunk.
+	 */
+	BlockState[] borderStates(int x, int sectionIndex, int z) {
+		final int key = sectionKey(x, sectionIndex, z);
+		BlockState[] result = borderStates.get(key);
+
+		if (result == null) {
+			final int slot = x | (z << 2);
+			final int[] indices = BORDER_INDICES[slot];
+			final boolean isCorner = x != 1 && z != 1;
+			final ObjectArrayList<BlockState[]> pool = isCorner ? cornerBorderPool : sideBorderPool;
+			result = pool.isEmpty() ? new BlockState[indices.length] : pool.pop();
+
+			final LevelChunkSection[] sections = chunks[slot].getSections();
+			final LevelChunkSection section = sectionIndex < 0 || sectionIndex >= sections.length ? null : sections[sectionIndex];
+
+			if (section == null) {
+				Arrays.fill(result, AIR);
+			} else if (section.isEmpty()) {
+				Arrays.fill(result, section.getBlockState(0, 0, 0));
+			} else {
+				((PalettedContainerExt) section.getStates()).canvas_copyStates(indices, result, 0);
+			}
+
+			borderStates.put(key, result);
+		}
+
+		return result;
+	}
+
+	/** Block light of the section at the given chunk offset and absolute section Y, in DataLayer order. */
+	byte[] blockLight(int x, int sectionY, int z) {
+		final int key = sectionKey(x, sectionY, z);
+		byte[] result = blockLight.get(key);
+
+		if (result == null) {
+			result = claimLight();
+			final SectionPos pos = SectionPos.of(chunkBaseX + x, sectionY, chunkBaseZ + z);
+			PackedInputRegion.copyLightLayer(world.getLightEngine().getLayerListener(LightLayer.BLOCK).getDataLayerData(pos), result, 0);
+			blockLight.put(key, result);
+		}
+
+		return result;
+	}
+
+	/** Sky light of the section at the given chunk offset and absolute section Y, in DataLayer order. */
+	byte[] skyLight(int x, int sectionY, int z) {
+		final int key = sectionKey(x, sectionY, z);
+		byte[] result = skyLight.get(key);
+
+		if (result == null) {
+			result = claimLight();
+			PackedInputRegion.captureSkyLight(world.getLightEngine().getLayerListener(LightLayer.SKY), chunkBaseX + x, sectionY, chunkBaseZ + z, world.getMaxSection(), result, 0);
+			skyLight.put(key, result);
+		}
+
+		return result;
+	}
+
+	private byte[] claimLight() {
+		return lightPool.isEmpty() ? new byte[PackedInputRegion.LIGHT_BYTES_PER_SECTION] : lightPool.pop();
+	}
+
+	public void clear() {
+		for (int x = 0; x < 3; x++) {
+			for (int z = 0; z < 3; z++) {
+				chunks[x | (z << 2)] = null;
+			}
+		}
+
+		blockEntities.clear();
+		areBlockEntitiesCaptured = false;
+		world = null;
+
+		for (final var entry : borderStates.int2ObjectEntrySet()) {
+			final int slot = entry.getIntKey() & 15;
+			((slot & 3) != 1 && (slot >> 2) != 1 ? cornerBorderPool : sideBorderPool).add(entry.getValue());
+		}
+
+		borderStates.clear();
+		lightPool.addAll(blockLight.values());
+		lightPool.addAll(skyLight.values());
+		blockLight.clear();
+		skyLight.clear();
+	}
+}
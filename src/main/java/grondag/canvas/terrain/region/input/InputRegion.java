@@ -33,15 +33,19 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
 import org.jetbrains.annotations.Nullable;
 
-import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.data.BuiltinRegistries;
 import net.minecraft.world.level.BlockAndTintGetter;
 import net.minecraft.world.level.ColorResolver;
 import net.minecraft.world.level.LightLayer;
 import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.Biomes;
+import net.minecraft.world.level.biome.FuzzyOffsetConstantColumnBiomeZoomer;
+import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.lighting.LevelLightEngine;
 import net.minecraft.world.level.material.FluidState;
 
@@ -52,23 +56,27 @@ import grondag.canvas.terrain.occlusion.geometry.RegionOcclusionCalculator;
 import grondag.canvas.terrain.util.ChunkColorCache;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
 
-// FIX: should not allow direct world access, esp from non-main threads
+/**
+ * Worker-side view of a captured region. Block states and light come from the
+ * {@link PackedInputRegion} snapshot, so light queries never reach the client light engine.
+ * Block states more than {@link grondag.canvas.terrain.util.RenderRegionStateIndexer#REGION_PADDING}
+ * blocks outside the region aren't captured and are still read from the world.
+ *
+ * <p>Can also be prepared from a recorded {@link RegionCapture} for replay. There is no world
+ * in that case: positions outside the capture read as air and tints come from the recording.
+ */
 public class InputRegion extends AbstractInputRegion implements BlockAndTintGetter {
-	private static final int[] EMPTY_AO_CACHE = new int[TOTAL_STATE_COUNT];
-	private static final int[] EMPTY_LIGHT_CACHE = new int[TOTAL_STATE_COUNT];
+	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
 	private static final Object[] EMPTY_RENDER_DATA = new Object[INTERIOR_STATE_COUNT];
 	private static final BlockEntity[] EMPTY_BLOCK_ENTITIES = new BlockEntity[INTERIOR_STATE_COUNT];
 
-	static {
-		Arrays.fill(EMPTY_AO_CACHE, Integer.MAX_VALUE);
-		Arrays.fill(EMPTY_LIGHT_CACHE, Integer.MAX_VALUE);
-	}
+	private static final int CACHE_VALID_WORDS = (TOTAL_STATE_COUNT + 63) >> 6;
 
 	public final BlockEntity[] blockEntities = new BlockEntity[INTERIOR_STATE_COUNT];
 	public final CanvasTerrainRenderContext terrainContext;
 	protected final BlockPos.MutableBlockPos searchPos = new BlockPos.MutableBlockPos();
 	protected final Object[] renderData = new Object[INTERIOR_STATE_COUNT];
-	private final BlockState[] states = new BlockState[TOTAL_STATE_COUNT];
+	final BlockState[] states = new BlockState[TOTAL_STATE_COUNT];
 	public final ObjectArrayList<RenderRegionBakeListener> bakeListeners = new ObjectArrayList<>();
 
 	public final RegionOcclusionCalculator occlusion = new RegionOcclusionCalculator() {
@@ -87,9 +95,34 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		}
 	};
 
-	// PERF: pack for reduced memory, better LOC
-	private final int[] aoCache = new int[TOTAL_STATE_COUNT];
-	private final int[] lightCache = new int[TOTAL_STATE_COUNT];
+	/**
+	 * AO and light caches use the same region index as block states so that neighbor lookups
+	 * during quad lighting stay near each other. Entries are only meaningful when the matching
+	 * bit is set in the validity bitmap, so clearing them for a new region only clears the bitmap.
+	 *
+	 * <p>AO is stored as an unsigned byte. Light is stored as block light in the low byte
+	 * and sky light in the high byte, both in the 0-240 range used by packed light.
+	 */
+	private final byte[] aoCache = new byte[TOTAL_STATE_COUNT];
+	private final char[] lightCache = new char[TOTAL_STATE_COUNT];
+	private final long[] aoValid = new long[CACHE_VALID_WORDS];
+	private final long[] lightValid = new long[CACHE_VALID_WORDS];
+
+	/** Copied from {@link PackedInputRegion}, same layout. */
+	final byte[] skyLight = new byte[PackedInputRegion.LIGHT_BYTES];
+	final byte[] blockLight = new byte[PackedInputRegion.LIGHT_BYTES];
+	boolean hasSkyLight;
+	private final CapturedLightEngine lightEngine = new CapturedLightEngine(this);
+
+	/** Tint grids computed so far for this region, in order of first use. Grid instances are reused across regions. */
+	private RegionTintGrid[] tintGrids = new RegionTintGrid[4];
+	private int tintGridCount;
+	private boolean useTintGrids;
+
+	/** Non-null when prepared for replay, in which case {@link #world} is null. */
+	private @Nullable RegionCapture replayCapture;
+	private int minBuildHeight;
+	private int height;
 
 	public InputRegion(CanvasTerrainRenderContext terrainContext) {
 		this.terrainContext = terrainContext;
@@ -98,14 +131,17 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	public void prepare(PackedInputRegion packedRegion) {
 		bakeListeners.clear();
 		bakeListeners.addAll(packedRegion.bakeListenerContext.listeners);
+		replayCapture = null;
 
 		System.arraycopy(packedRegion.chunks, 0, chunks, 0, 16);
 		System.arraycopy(EMPTY_BLOCK_ENTITIES, 0, blockEntities, 0, INTERIOR_STATE_COUNT);
 		System.arraycopy(EMPTY_RENDER_DATA, 0, renderData, 0, INTERIOR_STATE_COUNT);
-		System.arraycopy(EMPTY_AO_CACHE, 0, aoCache, 0, TOTAL_STATE_COUNT);
-		System.arraycopy(EMPTY_LIGHT_CACHE, 0, lightCache, 0, TOTAL_STATE_COUNT);
+		Arrays.fill(aoValid, 0L);
+		Arrays.fill(lightValid, 0L);
 
 		world = packedRegion.world;
+		minBuildHeight = world.getMinBuildHeight();
+		height = world.getHeight();
 
 		originX = packedRegion.originX;
 		originY = packedRegion.originY;
@@ -116,22 +152,61 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		chunkBaseZ = packedRegion.chunkBaseZ;
 
 		final PaletteCopy pc = packedRegion.takePaletteCopy();
-
-		for (int x = 0; x < 16; x++) {
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					states[interiorIndex(x, y, z)] = pc.apply(x | (y << 8) | (z << 4));
-				}
-			}
-		}
-
+		pc.decode(states);
 		pc.release();
 
 		System.arraycopy(packedRegion.states, 0, states, INTERIOR_STATE_COUNT, EXTERIOR_STATE_COUNT);
+		System.arraycopy(packedRegion.skyLight, 0, skyLight, 0, PackedInputRegion.LIGHT_BYTES);
+		System.arraycopy(packedRegion.blockLight, 0, blockLight, 0, PackedInputRegion.LIGHT_BYTES);
+		hasSkyLight = packedRegion.hasSkyLight;
+
+		tintGridCount = 0;
+		useTintGrids = world.dimensionType().getBiomeZoomer() == FuzzyOffsetConstantColumnBiomeZoomer.INSTANCE;
 
 		copyBeData(packedRegion);
 
 		occlusion.prepare();
+
+		if (RegionCaptureRecorder.isActive()) {
+			RegionCaptureRecorder.record(this);
+		}
+	}
+
+	/**
+	 * Prepares from a recorded capture for replay. Block entities and bake listeners
+	 * aren't recorded and so are always absent.
+	 */
+	public void prepare(RegionCapture capture) {
+		bakeListeners.clear();
+		replayCapture = capture;
+
+		Arrays.fill(chunks, null);
+		System.arraycopy(EMPTY_BLOCK_ENTITIES, 0, blockEntities, 0, INTERIOR_STATE_COUNT);
+		System.arraycopy(EMPTY_RENDER_DATA, 0, renderData, 0, INTERIOR_STATE_COUNT);
+		Arrays.fill(aoValid, 0L);
+		Arrays.fill(lightValid, 0L);
+
+		world = null;
+		minBuildHeight = capture.minBuildHeight;
+		height = capture.height;
+
+		originX = capture.originX;
+		originY = capture.originY;
+		originZ = capture.originZ;
+
+		chunkBaseX = (originX >> 4) - 1;
+		baseSectionIndex = ((originY - minBuildHeight) >> 4) - 1;
+		chunkBaseZ = (originZ >> 4) - 1;
+
+		System.arraycopy(capture.states, 0, states, 0, TOTAL_STATE_COUNT);
+		System.arraycopy(capture.skyLight, 0, skyLight, 0, PackedInputRegion.LIGHT_BYTES);
+		System.arraycopy(capture.blockLight, 0, blockLight, 0, PackedInputRegion.LIGHT_BYTES);
+		hasSkyLight = capture.hasSkyLight;
+
+		tintGridCount = 0;
+		useTintGrids = false;
+
+		occlusion.prepare();
 	}
 
 	private void copyBeData(PackedInputRegion protoRegion) {
@@ -163,7 +238,7 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		final int i = blockIndex(pos.getX(), pos.getY(), pos.getZ());
 
 		if (i == -1) {
-			return world.getBlockState(pos);
+			return world == null ? AIR : world.getBlockState(pos);
 		}
 
 		return states[i];
@@ -173,7 +248,7 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 		final int i = blockIndex(x, y, z);
 
 		if (i == -1) {
-			return world.getBlockState(searchPos.set(x, y, z));
+			return world == null ? AIR : world.getBlockState(searchPos.set(x, y, z));
 		}
 
 		return states[i];
@@ -189,7 +264,11 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	@Override
 	@Nullable
 	public BlockEntity getBlockEntity(BlockPos pos) {
-		return isInMainChunk(pos) ? blockEntities[interiorIndex(pos)] : world.getBlockEntity(pos);
+		if (isInMainChunk(pos)) {
+			return blockEntities[interiorIndex(pos)];
+		}
+
+		return world == null ? null : world.getBlockEntity(pos);
 	}
 
 	@Override
@@ -199,7 +278,70 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 
 	@Override
 	public int getBrightness(LightLayer type, BlockPos pos) {
-		return world.getBrightness(type, pos);
+		return type == LightLayer.SKY ? skyLight(pos.getX(), pos.getY(), pos.getZ()) : blockLight(pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	@Override
+	public int getRawBrightness(BlockPos pos, int ambientDarkness) {
+		final int x = pos.getX();
+		final int y = pos.getY();
+		final int z = pos.getZ();
+		return Math.max(blockLight(x, y, z), skyLight(x, y, z) - ambientDarkness);
+	}
+
+	private int skyLight(int x, int y, int z) {
+		final int result = capturedLight(skyLight, x, y, z);
+		return result == -1 ? (hasSkyLight ? 15 : 0) : result;
+	}
+
+	private int blockLight(int x, int y, int z) {
+		final int result = capturedLight(blockLight, x, y, z);
+		return result == -1 ? 0 : result;
+	}
+
+	/** Returns -1 if the position is outside the captured sections. */
+	private int capturedLight(byte[] data, int x, int y, int z) {
+		final int sectionX = (x >> 4) - chunkBaseX;
+		final int sectionY = (y >> 4) - (originY >> 4) + 1;
+		final int sectionZ = (z >> 4) - chunkBaseZ;
+
+		if ((sectionX | sectionY | sectionZ) < 0 || sectionX > 2 || sectionY > 2 || sectionZ > 2) {
+			return -1;
+		}
+
+		final int blockIndex = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+		final int packed = data[PackedInputRegion.lightSectionIndex(sectionX, sectionY, sectionZ) * PackedInputRegion.LIGHT_BYTES_PER_SECTION + (blockIndex >> 1)];
+		return (packed >> ((blockIndex & 1) << 2)) & 15;
+	}
+
+	/**
+	 * Copy of the captured light for a section, or null if outside the captured sections.
+	 * Section coordinates are absolute.
+	 */
+	@Nullable DataLayer capturedDataLayer(LightLayer type, int sectionX, int sectionY, int sectionZ) {
+		final int x = sectionX - chunkBaseX;
+		final int y = sectionY - (originY >> 4) + 1;
+		final int z = sectionZ - chunkBaseZ;
+
+		if ((x | y | z) < 0 || x > 2 || y > 2 || z > 2) {
+			return null;
+		}
+
+		final int offset = PackedInputRegion.lightSectionIndex(x, y, z) * PackedInputRegion.LIGHT_BYTES_PER_SECTION;
+		final byte[] data = type == LightLayer.SKY ? skyLight : blockLight;
+		return new DataLayer(Arrays.copyOfRange(data, offset, offset + PackedInputRegion.LIGHT_BYTES_PER_SECTION));
+	}
+
+	/** Same result as {@code LevelRenderer.getLightColor} but reads captured light. */
+	private int lightColor(BlockState state, BlockPos pos) {
+		if (state.emissiveRendering(this, pos)) {
+			return 0xF000F0;
+		}
+
+		final int x = pos.getX();
+		final int y = pos.getY();
+		final int z = pos.getZ();
+		return skyLight(x, y, z) << 20 | Math.max(blockLight(x, y, z), state.getLightEmission()) << 4;
 	}
 
 	// Implements Fabrics API RenderAttachedBlockView
@@ -212,18 +354,21 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	}
 
 	public int cachedBrightness(int cacheIndex) {
-		int result = lightCache[cacheIndex];
+		final int word = cacheIndex >> 6;
+		final long bit = 1L << cacheIndex;
 
-		if (result == Integer.MAX_VALUE) {
-			final BlockState state = states[cacheIndex];
-			final int packedXyz5 = regionIndexToPackedSectionPos(cacheIndex);
-			final int x = (packedXyz5 & 31) - 2 + originX;
-			final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
-			final int z = (packedXyz5 >> 10) - 2 + originZ;
-			result = LevelRenderer.getLightColor(world, state, searchPos.set(x, y, z));
-			lightCache[cacheIndex] = result;
+		if ((lightValid[word] & bit) != 0) {
+			final int packed = lightCache[cacheIndex];
+			return (packed & 0xFF) | ((packed >> 8) << 16);
 		}
 
+		final BlockState state = states[cacheIndex];
+		final int packedXyz5 = regionIndexToPackedSectionPos(cacheIndex);
+		final int x = (packedXyz5 & 31) - 2 + originX;
+		final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
+		final int z = (packedXyz5 >> 10) - 2 + originZ;
+		final int result = lightColor(state, searchPos.set(x, y, z));
+		putLightCache(cacheIndex, result);
 		return result;
 	}
 
@@ -231,55 +376,126 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 	 * For light smoothing.
 	 */
 	public void setLightCache(int x, int y, int z, int val) {
-		lightCache[blockIndex(x, y, z)] = val;
+		putLightCache(blockIndex(x, y, z), val);
+	}
+
+	/** Block and sky light of packed light must each fit in a byte, which is always true of valid packed light. */
+	private void putLightCache(int cacheIndex, int packedLight) {
+		lightCache[cacheIndex] = (char) ((packedLight & 0xFF) | ((packedLight >>> 8) & 0xFF00));
+		lightValid[cacheIndex >> 6] |= 1L << cacheIndex;
 	}
 
 	public int directBrightness(BlockPos pos) {
-		return LevelRenderer.getLightColor(world, getBlockState(pos), pos);
+		return lightColor(getBlockState(pos), pos);
+	}
+
+	/** For callers that already have the block state at the position. */
+	public int directBrightness(BlockState state, BlockPos pos) {
+		return lightColor(state, pos);
 	}
 
 	// TODO: do anything with this?
 	// Vanilla now computes diffuse shading at chunk bake time and consumes this value in AO calc
 	@Override
 	public float getShade(Direction direction, boolean shaded) {
-		return world.getShade(direction, shaded);
+		return replayCapture == null ? world.getShade(direction, shaded) : replayCapture.shade(direction, shaded);
 	}
 
 	public int cachedAoLevel(int cacheIndex) {
-		int result = aoCache[cacheIndex];
-
-		if (result == Integer.MAX_VALUE) {
-			final BlockState state = states[cacheIndex];
-
-			if (state.getLightEmission() == 0) {
-				final int packedXyz5 = regionIndexToPackedSectionPos(cacheIndex);
-				final int x = (packedXyz5 & 31) - 2 + originX;
-				final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
-				final int z = (packedXyz5 >> 10) - 2 + originZ;
-				result = Math.round(255f * state.getShadeBrightness(this, searchPos.set(x, y, z)));
-			} else {
-				result = 255;
-			}
+		final int word = cacheIndex >> 6;
+		final long bit = 1L << cacheIndex;
 
-			aoCache[cacheIndex] = result;
+		if ((aoValid[word] & bit) != 0) {
+			return aoCache[cacheIndex] & 0xFF;
 		}
 
+		final BlockState state = states[cacheIndex];
+		final int result;
+
+		if (state.getLightEmission() == 0) {
+			final int packedXyz5 = regionIndexToPackedSectionPos(cacheIndex);
+			final int x = (packedXyz5 & 31) - 2 + originX;
+			final int y = ((packedXyz5 >> 5) & 31) - 2 + originY;
+			final int z = (packedXyz5 >> 10) - 2 + originZ;
+			result = Math.round(255f * state.getShadeBrightness(this, searchPos.set(x, y, z)));
+		} else {
+			result = 255;
+		}
+
+		aoCache[cacheIndex] = (byte) result;
+		aoValid[word] |= bit;
 		return result;
 	}
 
+	/** Reads captured light, so it is also valid when prepared for replay. */
 	@Override
 	public LevelLightEngine getLightEngine() {
-		return world.getLightEngine();
+		return lightEngine;
 	}
 
 	@Override
 	public int getBlockTint(BlockPos blockPos, ColorResolver colorResolver) {
 		final int x = blockPos.getX();
 		final int z = blockPos.getZ();
+
+		if (replayCapture != null) {
+			return replayCapture.tint(colorResolver, x - originX, z - originZ);
+		}
+
+		if (useTintGrids) {
+			final int rx = x - originX;
+			final int rz = z - originZ;
+
+			if (rx >= -RegionTintGrid.PADDING && rx < 16 + RegionTintGrid.PADDING && rz >= -RegionTintGrid.PADDING && rz < 16 + RegionTintGrid.PADDING) {
+				return tintGrid(colorResolver).color(rx, rz);
+			}
+		}
+
 		return ChunkColorCache.get(getChunk(x >> 4, z >> 4)).getColor(x, blockPos.getY(), z, colorResolver);
 	}
 
+	/**
+	 * Blended colors for the given resolver over this region, computed on first use.
+	 * Only meaningful when biomes don't vary with height, see {@link #hasTintGrids()}.
+	 */
+	public RegionTintGrid tintGrid(ColorResolver colorResolver) {
+		final RegionTintGrid[] grids = tintGrids;
+		final int count = tintGridCount;
+
+		for (int i = 0; i < count; ++i) {
+			final RegionTintGrid grid = grids[i];
+
+			if (grid.resolver() == colorResolver) {
+				return grid;
+			}
+		}
+
+		if (count == grids.length) {
+			tintGrids = Arrays.copyOf(grids, count * 2);
+		}
+
+		RegionTintGrid grid = tintGrids[count];
+
+		if (grid == null) {
+			grid = new RegionTintGrid();
+			tintGrids[count] = grid;
+		}
+
+		grid.compute(this, colorResolver);
+		tintGridCount = count + 1;
+		return grid;
+	}
+
+	public boolean hasTintGrids() {
+		return useTintGrids;
+	}
+
+	/** Plains when prepared for replay because biomes aren't recorded. */
 	public Biome getBiome(BlockPos blockPos) {
+		if (replayCapture != null) {
+			return BuiltinRegistries.BIOME.getOrThrow(Biomes.PLAINS);
+		}
+
 		final int x = blockPos.getX();
 		final int z = blockPos.getZ();
 		return ChunkColorCache.get(getChunk(x >> 4, z >> 4)).getBiome(x, blockPos.getY(), z);
@@ -306,11 +522,11 @@ public class InputRegion extends AbstractInputRegion implements BlockAndTintGett
 
 	@Override
 	public int getHeight() {
-		return world.getHeight();
+		return height;
 	}
 
 	@Override
 	public int getMinBuildHeight() {
-		return world.getMinBuildHeight();
+		return minBuildHeight;
 	}
 }
@@ -65,24 +65,31 @@ import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Z0
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.SIDE_INDEX_Z2;
 import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.LightLayer;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.lighting.LayerLightEventListener;
 
 import io.vram.frex.api.world.BlockEntityRenderData;
 import io.vram.frex.api.world.RenderRegionBakeListener;
 import io.vram.frex.impl.world.ChunkRenderConditionContext;
 
+import grondag.canvas.mixinterface.PalettedContainerExt;
 import grondag.canvas.perf.ChunkRebuildCounters;
 import grondag.canvas.terrain.util.ChunkPaletteCopier;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
@@ -91,12 +98,21 @@ import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
  * Serves as a container to capture world state data on the main thread as quickly as possible
  * for later consumption on possibly non-render threads for terrain render region rebuild.
  *
+ * <p>Light is captured as copies of the sky and block light nibble arrays for the 3x3x3 sections
+ * around the region, so that rebuilds never query the client light engine from worker threads
+ * and produce the same result for the same input.
+ *
  * <p>Also serves as a state indicator for rebuild activity.
  */
 public class PackedInputRegion extends AbstractInputRegion {
 	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
 	private static final ArrayBlockingQueue<PackedInputRegion> POOL = new ArrayBlockingQueue<>(256);
 
+	/** Same as DataLayer storage: one nibble per block, ordered by y, z, x. */
+	static final int LIGHT_BYTES_PER_SECTION = 2048;
+	static final int LIGHT_BYTES = LIGHT_BYTES_PER_SECTION * 27;
+	private static final int LIGHT_BYTES_PER_PLANE = LIGHT_BYTES_PER_SECTION / 16;
+
 	public final ObjectArrayList<BlockEntity> blockEntities = new ObjectArrayList<>();
 	public final ChunkRenderConditionContext bakeListenerContext = new ChunkRenderConditionContext();
 
@@ -104,11 +120,26 @@ public class PackedInputRegion extends AbstractInputRegion {
 	final ShortArrayList renderDataPos = new ShortArrayList();
 	final ObjectArrayList<Object> renderData = new ObjectArrayList<>();
 	final ShortArrayList blockEntityPos = new ShortArrayList();
+	final byte[] skyLight = new byte[LIGHT_BYTES];
+	final byte[] blockLight = new byte[LIGHT_BYTES];
+	boolean hasSkyLight;
 	PaletteCopy mainSectionCopy;
 
+	/** Non-null only during batched capture. Supplies decoded border states and light shared by the batch. */
+	private ChunkNeighborhood neighborhood;
+
 	public static PackedInputRegion claim(ClientLevel world, BlockPos origin) {
+		return claim(world, origin, null);
+	}
+
+	/**
+	 * Same as {@link #claim(ClientLevel, BlockPos)} but uses chunks already looked up
+	 * for the column when a neighborhood is provided.  The neighborhood must have been
+	 * prepared for the chunk column containing the origin.
+	 */
+	public static PackedInputRegion claim(ClientLevel world, BlockPos origin, @Nullable ChunkNeighborhood neighborhood) {
 		final PackedInputRegion result = POOL.poll();
-		return (result == null ? new PackedInputRegion() : result).prepare(world, origin);
+		return (result == null ? new PackedInputRegion() : result).prepare(world, origin, neighborhood);
 	}
 
 	private static void release(PackedInputRegion region) {
@@ -120,7 +151,7 @@ public class PackedInputRegion extends AbstractInputRegion {
 		POOL.clear();
 	}
 
-	private PackedInputRegion prepare(ClientLevel world, BlockPos origin) {
+	private PackedInputRegion prepare(ClientLevel world, BlockPos origin, @Nullable ChunkNeighborhood neighborhood) {
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.startCopy();
 		}
@@ -142,7 +173,8 @@ public class PackedInputRegion extends AbstractInputRegion {
 		baseSectionIndex = ((originY - world.getMinBuildHeight()) >> 4) - 1;
 		this.chunkBaseZ = chunkBaseZ;
 
-		final LevelChunk mainChunk = world.getChunk(chunkBaseX + 1, chunkBaseZ + 1);
+		final LevelChunk mainChunk = neighborhood == null ? world.getChunk(chunkBaseX + 1, chunkBaseZ + 1) : neighborhood.mainChunk();
+		assert neighborhood == null || mainChunk.getPos().x == chunkBaseX + 1 && mainChunk.getPos().z == chunkBaseZ + 1;
 		mainSectionCopy = ChunkPaletteCopier.captureCopy(mainChunk, originY);
 
 		final ChunkRenderConditionContext bakeListenerContext = this.bakeListenerContext.prepare(world, originX, originY, originZ);
@@ -153,6 +185,18 @@ public class PackedInputRegion extends AbstractInputRegion {
 		if (mainSectionCopy == ChunkPaletteCopier.AIR_COPY && bakeListenerContext.listeners.isEmpty()) {
 			release();
 			result = SignalInputRegion.EMPTY;
+		} else if (neighborhood != null) {
+			captureBlockEntities(neighborhood.blockEntities(originY >> 4));
+			System.arraycopy(neighborhood.chunks, 0, chunks, 0, 16);
+
+			this.neighborhood = neighborhood;
+			captureCorners();
+			captureEdges();
+			captureFaces();
+			captureLight(neighborhood);
+			this.neighborhood = null;
+
+			result = this;
 		} else {
 			captureBlockEntities(mainChunk);
 			chunks[1 | (1 << 2)] = mainChunk;
@@ -168,6 +212,7 @@ public class PackedInputRegion extends AbstractInputRegion {
 			captureCorners();
 			captureEdges();
 			captureFaces();
+			captureLight(world);
 
 			result = this;
 		}
@@ -186,10 +231,7 @@ public class PackedInputRegion extends AbstractInputRegion {
 	}
 
 	private void captureBlockEntities(LevelChunk mainChunk) {
-		renderDataPos.clear();
-		renderData.clear();
-		blockEntityPos.clear();
-		blockEntities.clear();
+		clearBlockEntities();
 		final int yCheck = (originY >> 4);
 
 		for (final Map.Entry<BlockPos, BlockEntity> entry : mainChunk.getBlockEntities().entrySet()) {
@@ -200,130 +242,298 @@ public class PackedInputRegion extends AbstractInputRegion {
 				continue;
 			}
 
-			final short key = (short) interiorIndex(pos);
-			final BlockEntity be = entry.getValue();
-
-			blockEntityPos.add(key);
-			blockEntities.add(be);
+			captureBlockEntity(pos, entry.getValue());
+		}
+	}
 
-			final Object rd = BlockEntityRenderData.get(be);
+	/** For batched capture. List should already be limited to this section. */
+	private void captureBlockEntities(ObjectArrayList<BlockEntity> sectionBlockEntities) {
+		clearBlockEntities();
+		final int limit = sectionBlockEntities.size();
 
-			if (rd != null) {
-				renderDataPos.add(key);
-				renderData.add(rd);
-			}
+		for (int i = 0; i < limit; ++i) {
+			final BlockEntity be = sectionBlockEntities.get(i);
+			captureBlockEntity(be.getBlockPos(), be);
 		}
 	}
 
-	private interface BlockStateFunction {
-		BlockState apply (int i, int j, int k);
+	private void clearBlockEntities() {
+		renderDataPos.clear();
+		renderData.clear();
+		blockEntityPos.clear();
+		blockEntities.clear();
 	}
 
-	private static BlockStateFunction AIR_FUNCTION = (i, j, k) -> AIR;
+	private void captureBlockEntity(BlockPos pos, BlockEntity be) {
+		final short key = (short) interiorIndex(pos);
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureFace(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < FACE_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & FACE_I_MASK, (n >> FACE_J_SHIFT) & FACE_J_MASK, n >> FACE_K_SHIFT);
+		blockEntityPos.add(key);
+		blockEntities.add(be);
+
+		final Object rd = BlockEntityRenderData.get(be);
+
+		if (rd != null) {
+			renderDataPos.add(key);
+			renderData.add(rd);
 		}
 	}
 
-	private void captureFaces() {
-		final LevelChunkSection lowX = getSection(0, 1, 1);
-		captureFace(SIDE_INDEX_X0 - INTERIOR_STATE_COUNT, lowX == null ? AIR_FUNCTION : (i, j, k) -> lowX.getBlockState(14 + k, i, j));
-
-		final LevelChunkSection highX = getSection(2, 1, 1);
-		captureFace(SIDE_INDEX_X2 - INTERIOR_STATE_COUNT, highX == null ? AIR_FUNCTION : (i, j, k) -> highX.getBlockState(k, i, j));
+	private interface SectionIndexFunction {
+		int apply(int i, int j, int k);
+	}
 
-		final LevelChunkSection lowZ = getSection(1, 1, 0);
-		captureFace(SIDE_INDEX_Z0 - INTERIOR_STATE_COUNT, lowZ == null ? AIR_FUNCTION : (i, j, k) -> lowZ.getBlockState(i, j, 14 + k));
+	private static int sectionIndex(int x, int y, int z) {
+		return x | (z << 4) | (y << 8);
+	}
 
-		final LevelChunkSection highZ = getSection(1, 1, 2);
-		captureFace(SIDE_INDEX_Z2 - INTERIOR_STATE_COUNT, highZ == null ? AIR_FUNCTION : (i, j, k) -> highZ.getBlockState(i, j, k));
+	//NB: the addressing math here must match what is in RenderRegionAddressHelper
+	private static int[] faceIndices(SectionIndexFunction func) {
+		final int[] result = new int[FACE_STATE_COUNT];
 
-		final LevelChunkSection lowY = getSection(1, 0, 1);
-		captureFace(SIDE_INDEX_Y0 - INTERIOR_STATE_COUNT, lowY == null ? AIR_FUNCTION : (i, j, k) -> lowY.getBlockState(i, 14 + k, j));
+		for (int n = 0; n < FACE_STATE_COUNT; ++n) {
+			result[n] = func.apply(n & FACE_I_MASK, (n >> FACE_J_SHIFT) & FACE_J_MASK, n >> FACE_K_SHIFT);
+		}
 
-		final LevelChunkSection highY = getSection(1, 2, 1);
-		captureFace(SIDE_INDEX_Y2 - INTERIOR_STATE_COUNT, highY == null ? AIR_FUNCTION : (i, j, k) -> highY.getBlockState(i, k, j));
+		return result;
 	}
 
 	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureEdge(int baseIndex, BlockStateFunction func) {
+	private static int[] edgeIndices(SectionIndexFunction func) {
+		final int[] result = new int[EDGE_STATE_COUNT];
+
 		for (int n = 0; n < EDGE_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & EDGE_I_MASK, (n >> EDGE_J_SHIFT) & EDGE_J_MASK, n >> EDGE_K_SHIFT);
+			result[n] = func.apply(n & EDGE_I_MASK, (n >> EDGE_J_SHIFT) & EDGE_J_MASK, n >> EDGE_K_SHIFT);
 		}
+
+		return result;
 	}
 
-	private void captureEdges() {
-		final LevelChunkSection aaZ = getSection(0, 0, 1);
-		captureEdge(EDGE_INDEX_Y0X0 - INTERIOR_STATE_COUNT, aaZ == null ? AIR_FUNCTION : (i, j, k) -> aaZ.getBlockState(14 + i, 14 + j, k));
+	//NB: the addressing math here must match what is in RenderRegionAddressHelper
+	private static int[] cornerIndices(SectionIndexFunction func) {
+		final int[] result = new int[CORNER_STATE_COUNT];
 
-		final LevelChunkSection abZ = getSection(0, 2, 1);
-		captureEdge(EDGE_INDEX_Y2X0 - INTERIOR_STATE_COUNT, abZ == null ? AIR_FUNCTION : (i, j, k) -> abZ.getBlockState(14 + i, j, k));
+		for (int n = 0; n < CORNER_STATE_COUNT; ++n) {
+			result[n] = func.apply(n & CORNER_I_MASK, (n >> CORNER_J_SHIFT) & CORNER_J_MASK, n >> CORNER_K_SHIFT);
+		}
 
-		final LevelChunkSection baZ = getSection(2, 0, 1);
-		captureEdge(EDGE_INDEX_Y0X2 - INTERIOR_STATE_COUNT, baZ == null ? AIR_FUNCTION : (i, j, k) -> baZ.getBlockState(i, 14 + j, k));
+		return result;
+	}
 
-		final LevelChunkSection bbZ = getSection(2, 2, 1);
-		captureEdge(EDGE_INDEX_Y2X2 - INTERIOR_STATE_COUNT, bbZ == null ? AIR_FUNCTION : (i, j, k) -> bbZ.getBlockState(i, j, k));
+	private static final int[] FACE_X0_INDICES = faceIndices((i, j, k) -> sectionIndex(14 + k, i, j));
+	private static final int[] FACE_X2_INDICES = faceIndices((i, j, k) -> sectionIndex(k, i, j));
+	private static final int[] FACE_Z0_INDICES = faceIndices((i, j, k) -> sectionIndex(i, j, 14 + k));
+	private static final int[] FACE_Z2_INDICES = faceIndices((i, j, k) -> sectionIndex(i, j, k));
+	private static final int[] FACE_Y0_INDICES = faceIndices((i, j, k) -> sectionIndex(i, 14 + k, j));
+	private static final int[] FACE_Y2_INDICES = faceIndices((i, j, k) -> sectionIndex(i, k, j));
+	private static final int[] EDGE_Y0X0_INDICES = edgeIndices((i, j, k) -> sectionIndex(14 + i, 14 + j, k));
+	private static final int[] EDGE_Y2X0_INDICES = edgeIndices((i, j, k) -> sectionIndex(14 + i, j, k));
+	private static final int[] EDGE_Y0X2_INDICES = edgeIndices((i, j, k) -> sectionIndex(i, 14 + j, k));
+	private static final int[] EDGE_Y2X2_INDICES = edgeIndices((i, j, k) -> sectionIndex(i, j, k));
+	private static final int[] EDGE_Z0X0_INDICES = edgeIndices((i, j, k) -> sectionIndex(14 + i, k, 14 + j));
+	private static final int[] EDGE_Z2X0_INDICES = edgeIndices((i, j, k) -> sectionIndex(14 + i, k, j));
+	private static final int[] EDGE_Z0X2_INDICES = edgeIndices((i, j, k) -> sectionIndex(i, k, 14 + j));
+	private static final int[] EDGE_Z2X2_INDICES = edgeIndices((i, j, k) -> sectionIndex(i, k, j));
+	private static final int[] EDGE_Z0Y0_INDICES = edgeIndices((i, j, k) -> sectionIndex(k, 14 + i, 14 + j));
+	private static final int[] EDGE_Z2Y0_INDICES = edgeIndices((i, j, k) -> sectionIndex(k, 14 + i, j));
+	private static final int[] EDGE_Z0Y2_INDICES = edgeIndices((i, j, k) -> sectionIndex(k, i, 14 + j));
+	private static final int[] EDGE_Z2Y2_INDICES = edgeIndices((i, j, k) -> sectionIndex(k, i, j));
+	private static final int[] CORNER_000_INDICES = cornerIndices((i, j, k) -> sectionIndex(14 + i, 14 + j, 14 + k));
+	private static final int[] CORNER_200_INDICES = cornerIndices((i, j, k) -> sectionIndex(14 + i, 14 + j, k));
+	private static final int[] CORNER_020_INDICES = cornerIndices((i, j, k) -> sectionIndex(14 + i, j, 14 + k));
+	private static final int[] CORNER_220_INDICES = cornerIndices((i, j, k) -> sectionIndex(14 + i, j, k));
+	private static final int[] CORNER_002_INDICES = cornerIndices((i, j, k) -> sectionIndex(i, 14 + j, 14 + k));
+	private static final int[] CORNER_202_INDICES = cornerIndices((i, j, k) -> sectionIndex(i, 14 + j, k));
+	private static final int[] CORNER_022_INDICES = cornerIndices((i, j, k) -> sectionIndex(i, j, 14 + k));
+	private static final int[] CORNER_222_INDICES = cornerIndices((i, j, k) -> sectionIndex(i, j, k));
+
+	// Positions of the pieces above within shared border slabs, see ChunkNeighborhood
+	private static final int[] FACE_X0_BORDER = ChunkNeighborhood.borderPositions(0, 1, FACE_X0_INDICES);
+	private static final int[] FACE_X2_BORDER = ChunkNeighborhood.borderPositions(2, 1, FACE_X2_INDICES);
+	private static final int[] FACE_Z0_BORDER = ChunkNeighborhood.borderPositions(1, 0, FACE_Z0_INDICES);
+	private static final int[] FACE_Z2_BORDER = ChunkNeighborhood.borderPositions(1, 2, FACE_Z2_INDICES);
+	private static final int[] EDGE_Y0X0_BORDER = ChunkNeighborhood.borderPositions(0, 1, EDGE_Y0X0_INDICES);
+	private static final int[] EDGE_Y2X0_BORDER = ChunkNeighborhood.borderPositions(0, 1, EDGE_Y2X0_INDICES);
+	private static final int[] EDGE_Y0X2_BORDER = ChunkNeighborhood.borderPositions(2, 1, EDGE_Y0X2_INDICES);
+	private static final int[] EDGE_Y2X2_BORDER = ChunkNeighborhood.borderPositions(2, 1, EDGE_Y2X2_INDICES);
+	private static final int[] EDGE_Z0X0_BORDER = ChunkNeighborhood.borderPositions(0, 0, EDGE_Z0X0_INDICES);
+	private static final int[] EDGE_Z2X0_BORDER = ChunkNeighborhood.borderPositions(0, 2, EDGE_Z2X0_INDICES);
+	private static final int[] EDGE_Z0X2_BORDER = ChunkNeighborhood.borderPositions(2, 0, EDGE_Z0X2_INDICES);
+	private static final int[] EDGE_Z2X2_BORDER = ChunkNeighborhood.borderPositions(2, 2, EDGE_Z2X2_INDICES);
+	private static final int[] EDGE_Z0Y0_BORDER = ChunkNeighborhood.borderPositions(1, 0, EDGE_Z0Y0_INDICES);
+	private static final int[] EDGE_Z2Y0_BORDER = ChunkNeighborhood.borderPositions(1, 2, EDGE_Z2Y0_INDICES);
+	private static final int[] EDGE_Z0Y2_BORDER = ChunkNeighborhood.borderPositions(1, 0, EDGE_Z0Y2_INDICES);
+	private static final int[] EDGE_Z2Y2_BORDER = ChunkNeighborhood.borderPositions(1, 2, EDGE_Z2Y2_INDICES);
+	private static final int[] CORNER_000_BORDER = ChunkNeighborhood.borderPositions(0, 0, CORNER_000_INDICES);
+	private static final int[] CORNER_200_BORDER = ChunkNeighborhood.borderPositions(0, 2, CORNER_200_INDICES);
+	private static final int[] CORNER_020_BORDER = ChunkNeighborhood.borderPositions(0, 0, CORNER_020_INDICES);
+	private static final int[] CORNER_220_BORDER = ChunkNeighborhood.borderPositions(0, 2, CORNER_220_INDICES);
+	private static final int[] CORNER_002_BORDER = ChunkNeighborhood.borderPositions(2, 0, CORNER_002_INDICES);
+	private static final int[] CORNER_202_BORDER = ChunkNeighborhood.borderPositions(2, 2, CORNER_202_INDICES);
+	private static final int[] CORNER_022_BORDER = ChunkNeighborhood.borderPositions(2, 0, CORNER_022_INDICES);
+	private static final int[] CORNER_222_BORDER = ChunkNeighborhood.borderPositions(2, 2, CORNER_222_INDICES);
+
+	/**
+	 * Copies states from a neighboring section for one border piece of the region.
+	 * Neighbor sections often have nothing but air and in that case are filled without decoding.
+	 *
+	 * <p>During batched capture, pieces outside the center column come from border slabs
+	 * the neighborhood decodes once for all regions in the batch.
+	 */
+	private void captureSlab(int baseIndex, int[] sectionIndices, @Nullable int[] borderPositions, int x, int y, int z) {
+		if (neighborhood != null && borderPositions != null) {
+			final BlockState[] border = neighborhood.borderStates(x, baseSectionIndex + y, z);
+			final BlockState[] states = this.states;
+			final int limit = borderPositions.length;
+
+			for (int n = 0; n < limit; ++n) {
+				states[baseIndex + n] = border[borderPositions[n]];
+			}
 
-		final LevelChunkSection aYa = getSection(0, 1, 0);
-		captureEdge(EDGE_INDEX_Z0X0 - INTERIOR_STATE_COUNT, aYa == null ? AIR_FUNCTION : (i, j, k) -> aYa.getBlockState(14 + i, k, 14 + j));
+			return;
+		}
 
-		final LevelChunkSection aYb = getSection(0, 1, 2);
-		captureEdge(EDGE_INDEX_Z2X0 - INTERIOR_STATE_COUNT, aYb == null ? AIR_FUNCTION : (i, j, k) -> aYb.getBlockState(14 + i, k, j));
+		final LevelChunkSection section = getSection(x, y, z);
 
-		final LevelChunkSection bYa = getSection(2, 1, 0);
-		captureEdge(EDGE_INDEX_Z0X2 - INTERIOR_STATE_COUNT, bYa == null ? AIR_FUNCTION : (i, j, k) -> bYa.getBlockState(i, k, 14 + j));
+		if (section == null) {
+			Arrays.fill(states, baseIndex, baseIndex + sectionIndices.length, AIR);
+		} else if (section.isEmpty()) {
+			Arrays.fill(states, baseIndex, baseIndex + sectionIndices.length, section.getBlockState(0, 0, 0));
+		} else {
+			((PalettedContainerExt) section.getStates()).canvas_copyStates(sectionIndices, states, baseIndex);
+		}
+	}
 
-		final LevelChunkSection bYb = getSection(2, 1, 2);
-		captureEdge(EDGE_INDEX_Z2X2 - INTERIOR_STATE_COUNT, bYb == null ? AIR_FUNCTION : (i, j, k) -> bYb.getBlockState(i, k, j));
+	private void captureFaces() {
+		captureSlab(SIDE_INDEX_X0 - INTERIOR_STATE_COUNT, FACE_X0_INDICES, FACE_X0_BORDER, 0, 1, 1);
+		captureSlab(SIDE_INDEX_X2 - INTERIOR_STATE_COUNT, FACE_X2_INDICES, FACE_X2_BORDER, 2, 1, 1);
+		captureSlab(SIDE_INDEX_Z0 - INTERIOR_STATE_COUNT, FACE_Z0_INDICES, FACE_Z0_BORDER, 1, 1, 0);
+		captureSlab(SIDE_INDEX_Z2 - INTERIOR_STATE_COUNT, FACE_Z2_INDICES, FACE_Z2_BORDER, 1, 1, 2);
+		captureSlab(SIDE_INDEX_Y0 - INTERIOR_STATE_COUNT, FACE_Y0_INDICES, null, 1, 0, 1);
+		captureSlab(SIDE_INDEX_Y2 - INTERIOR_STATE_COUNT, FACE_Y2_INDICES, null, 1, 2, 1);
+	}
 
-		final LevelChunkSection Xaa = getSection(1, 0, 0);
-		captureEdge(EDGE_INDEX_Z0Y0 - INTERIOR_STATE_COUNT, Xaa == null ? AIR_FUNCTION : (i, j, k) -> Xaa.getBlockState(k, 14 + i, 14 + j));
+	private void captureEdges() {
+		captureSlab(EDGE_INDEX_Y0X0 - INTERIOR_STATE_COUNT, EDGE_Y0X0_INDICES, EDGE_Y0X0_BORDER, 0, 0, 1);
+		captureSlab(EDGE_INDEX_Y2X0 - INTERIOR_STATE_COUNT, EDGE_Y2X0_INDICES, EDGE_Y2X0_BORDER, 0, 2, 1);
+		captureSlab(EDGE_INDEX_Y0X2 - INTERIOR_STATE_COUNT, EDGE_Y0X2_INDICES, EDGE_Y0X2_BORDER, 2, 0, 1);
+		captureSlab(EDGE_INDEX_Y2X2 - INTERIOR_STATE_COUNT, EDGE_Y2X2_INDICES, EDGE_Y2X2_BORDER, 2, 2, 1);
+		captureSlab(EDGE_INDEX_Z0X0 - INTERIOR_STATE_COUNT, EDGE_Z0X0_INDICES, EDGE_Z0X0_BORDER, 0, 1, 0);
+		captureSlab(EDGE_INDEX_Z2X0 - INTERIOR_STATE_COUNT, EDGE_Z2X0_INDICES, EDGE_Z2X0_BORDER, 0, 1, 2);
+		captureSlab(EDGE_INDEX_Z0X2 - INTERIOR_STATE_COUNT, EDGE_Z0X2_INDICES, EDGE_Z0X2_BORDER, 2, 1, 0);
+		captureSlab(EDGE_INDEX_Z2X2 - INTERIOR_STATE_COUNT, EDGE_Z2X2_INDICES, EDGE_Z2X2_BORDER, 2, 1, 2);
+		captureSlab(EDGE_INDEX_Z0Y0 - INTERIOR_STATE_COUNT, EDGE_Z0Y0_INDICES, EDGE_Z0Y0_BORDER, 1, 0, 0);
+		captureSlab(EDGE_INDEX_Z2Y0 - INTERIOR_STATE_COUNT, EDGE_Z2Y0_INDICES, EDGE_Z2Y0_BORDER, 1, 0, 2);
+		captureSlab(EDGE_INDEX_Z0Y2 - INTERIOR_STATE_COUNT, EDGE_Z0Y2_INDICES, EDGE_Z0Y2_BORDER, 1, 2, 0);
+		captureSlab(EDGE_INDEX_Z2Y2 - INTERIOR_STATE_COUNT, EDGE_Z2Y2_INDICES, EDGE_Z2Y2_BORDER, 1, 2, 2);
+	}
 
-		final LevelChunkSection Xab = getSection(1, 0, 2);
-		captureEdge(EDGE_INDEX_Z2Y0 - INTERIOR_STATE_COUNT, Xab == null ? AIR_FUNCTION : (i, j, k) -> Xab.getBlockState(k, 14 + i, j));
+	private void captureCorners() {
+		captureSlab(CORNER_INDEX_000 - INTERIOR_STATE_COUNT, CORNER_000_INDICES, CORNER_000_BORDER, 0, 0, 0);
+		captureSlab(CORNER_INDEX_200 - INTERIOR_STATE_COUNT, CORNER_200_INDICES, CORNER_200_BORDER, 0, 0, 2);
+		captureSlab(CORNER_INDEX_020 - INTERIOR_STATE_COUNT, CORNER_020_INDICES, CORNER_020_BORDER, 0, 2, 0);
+		captureSlab(CORNER_INDEX_220 - INTERIOR_STATE_COUNT, CORNER_220_INDICES, CORNER_220_BORDER, 0, 2, 2);
+		captureSlab(CORNER_INDEX_002 - INTERIOR_STATE_COUNT, CORNER_002_INDICES, CORNER_002_BORDER, 2, 0, 0);
+		captureSlab(CORNER_INDEX_202 - INTERIOR_STATE_COUNT, CORNER_202_INDICES, CORNER_202_BORDER, 2, 0, 2);
+		captureSlab(CORNER_INDEX_022 - INTERIOR_STATE_COUNT, CORNER_022_INDICES, CORNER_022_BORDER, 2, 2, 0);
+		captureSlab(CORNER_INDEX_222 - INTERIOR_STATE_COUNT, CORNER_222_INDICES, CORNER_222_BORDER, 2, 2, 2);
+	}
 
-		final LevelChunkSection Xba = getSection(1, 2, 0);
-		captureEdge(EDGE_INDEX_Z0Y2 - INTERIOR_STATE_COUNT, Xba == null ? AIR_FUNCTION : (i, j, k) -> Xba.getBlockState(k, i, 14 + j));
+	/**
+	 * Index of the light section at the given offset from the section below and
+	 * north-west of the region, each coordinate 0-2.
+	 */
+	static int lightSectionIndex(int x, int y, int z) {
+		return x + z * 3 + y * 9;
+	}
 
-		final LevelChunkSection Xbb = getSection(1, 2, 2);
-		captureEdge(EDGE_INDEX_Z2Y2 - INTERIOR_STATE_COUNT, Xbb == null ? AIR_FUNCTION : (i, j, k) -> Xbb.getBlockState(k, i, j));
+	private void captureLight(ClientLevel world) {
+		final LayerLightEventListener skyListener = world.getLightEngine().getLayerListener(LightLayer.SKY);
+		final LayerLightEventListener blockListener = world.getLightEngine().getLayerListener(LightLayer.BLOCK);
+		final int sectionBaseY = (originY >> 4) - 1;
+		final int maxSectionY = world.getMaxSection();
+		hasSkyLight = world.dimensionType().hasSkyLight();
+
+		for (int y = 0; y < 3; ++y) {
+			for (int z = 0; z < 3; ++z) {
+				for (int x = 0; x < 3; ++x) {
+					final int offset = lightSectionIndex(x, y, z) * LIGHT_BYTES_PER_SECTION;
+					final int sectionX = chunkBaseX + x;
+					final int sectionY = sectionBaseY + y;
+					final int sectionZ = chunkBaseZ + z;
+
+					copyLightLayer(blockListener.getDataLayerData(SectionPos.of(sectionX, sectionY, sectionZ)), blockLight, offset);
+
+					if (hasSkyLight) {
+						captureSkyLight(skyListener, sectionX, sectionY, sectionZ, maxSectionY, skyLight, offset);
+					} else {
+						Arrays.fill(skyLight, offset, offset + LIGHT_BYTES_PER_SECTION, (byte) 0);
+					}
+				}
+			}
+		}
 	}
 
-	//NB: the addressing math here must match what is in RenderRegionAddressHelper
-	private void captureCorner(int baseIndex, BlockStateFunction func) {
-		for (int n = 0; n < CORNER_STATE_COUNT; ++n) {
-			states[baseIndex + n] = func.apply(n & CORNER_I_MASK, (n >> CORNER_J_SHIFT) & CORNER_J_MASK, n >> CORNER_K_SHIFT);
+	/** Same as {@link #captureLight(ClientLevel)} but copies light sections the neighborhood resolved for the batch. */
+	private void captureLight(ChunkNeighborhood neighborhood) {
+		final int sectionBaseY = (originY >> 4) - 1;
+		hasSkyLight = world.dimensionType().hasSkyLight();
+
+		for (int y = 0; y < 3; ++y) {
+			for (int z = 0; z < 3; ++z) {
+				for (int x = 0; x < 3; ++x) {
+					final int offset = lightSectionIndex(x, y, z) * LIGHT_BYTES_PER_SECTION;
+					System.arraycopy(neighborhood.blockLight(x, sectionBaseY + y, z), 0, blockLight, offset, LIGHT_BYTES_PER_SECTION);
+
+					if (hasSkyLight) {
+						System.arraycopy(neighborhood.skyLight(x, sectionBaseY + y, z), 0, skyLight, offset, LIGHT_BYTES_PER_SECTION);
+					} else {
+						Arrays.fill(skyLight, offset, offset + LIGHT_BYTES_PER_SECTION, (byte) 0);
+					}
+				}
+			}
 		}
 	}
 
-	private void captureCorners() {
-		final LevelChunkSection xyz = getSection(0, 0, 0);
-		captureCorner(CORNER_INDEX_000 - INTERIOR_STATE_COUNT, xyz == null ? AIR_FUNCTION : (i, j, k) -> xyz.getBlockState(14 + i, 14 + j, 14 + k));
+	/**
+	 * Sections without sky light data take the bottom plane of the nearest section above
+	 * that has data, or full sky light if there is none, same as the vanilla sky light engine.
+	 */
+	static void captureSkyLight(LayerLightEventListener listener, int sectionX, int sectionY, int sectionZ, int maxSectionY, byte[] skyLight, int offset) {
+		final DataLayer layer = listener.getDataLayerData(SectionPos.of(sectionX, sectionY, sectionZ));
 
-		final LevelChunkSection xyZ = getSection(0, 0, 2);
-		captureCorner(CORNER_INDEX_200 - INTERIOR_STATE_COUNT, xyZ == null ? AIR_FUNCTION : (i, j, k) -> xyZ.getBlockState(14 + i, 14 + j, k));
+		if (layer != null) {
+			copyLightLayer(layer, skyLight, offset);
+			return;
+		}
 
-		final LevelChunkSection xYz = getSection(0, 2, 0);
-		captureCorner(CORNER_INDEX_020 - INTERIOR_STATE_COUNT, xYz == null ? AIR_FUNCTION : (i, j, k) -> xYz.getBlockState(14 + i, j, 14 + k));
+		for (int y = sectionY + 1; y <= maxSectionY; ++y) {
+			final DataLayer above = listener.getDataLayerData(SectionPos.of(sectionX, y, sectionZ));
 
-		final LevelChunkSection xYZ = getSection(0, 2, 2);
-		captureCorner(CORNER_INDEX_220 - INTERIOR_STATE_COUNT, xYZ == null ? AIR_FUNCTION : (i, j, k) -> xYZ.getBlockState(14 + i, j, k));
+			if (above != null) {
+				if (above.isEmpty()) {
+					Arrays.fill(skyLight, offset, offset + LIGHT_BYTES_PER_SECTION, (byte) 0);
+				} else {
+					final byte[] data = above.getData();
 
-		final LevelChunkSection Xyz = getSection(2, 0, 0);
-		captureCorner(CORNER_INDEX_002 - INTERIOR_STATE_COUNT, Xyz == null ? AIR_FUNCTION : (i, j, k) -> Xyz.getBlockState(i, 14 + j, 14 + k));
+					for (int plane = 0; plane < 16; ++plane) {
+						System.arraycopy(data, 0, skyLight, offset + plane * LIGHT_BYTES_PER_PLANE, LIGHT_BYTES_PER_PLANE);
+					}
+				}
 
-		final LevelChunkSection XyZ = getSection(2, 0, 2);
-		captureCorner(CORNER_INDEX_202 - INTERIOR_STATE_COUNT, XyZ == null ? AIR_FUNCTION : (i, j, k) -> XyZ.getBlockState(i, 14 + j, k));
+				return;
+			}
+		}
 
-		final LevelChunkSection XYz = getSection(2, 2, 0);
-		captureCorner(CORNER_INDEX_022 - INTERIOR_STATE_COUNT, XYz == null ? AIR_FUNCTION : (i, j, k) -> XYz.getBlockState(i, j, 14 + k));
+		Arrays.fill(skyLight, offset, offset + LIGHT_BYTES_PER_SECTION, (byte) 0xFF);
+	}
 
-		final LevelChunkSection XYZ = getSection(2, 2, 2);
-		captureCorner(CORNER_INDEX_222 - INTERIOR_STATE_COUNT, XYZ == null ? AIR_FUNCTION : (i, j, k) -> XYZ.getBlockState(i, j, k));
+	static void copyLightLayer(@Nullable DataLayer layer, byte[] target, int offset) {
+		// check isEmpty first because getData() allocates storage in the live layer when there is none
+		if (layer == null || layer.isEmpty()) {
+			Arrays.fill(target, offset, offset + LIGHT_BYTES_PER_SECTION, (byte) 0);
+		} else {
+			System.arraycopy(layer.getData(), 0, target, offset, LIGHT_BYTES_PER_SECTION);
+		}
 	}
 
 	public void release() {
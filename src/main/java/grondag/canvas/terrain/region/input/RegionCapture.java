@@ -0,0 +1,322 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.client.renderer.BiomeColors;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.ColorResolver;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Rebuild inputs of one render region as recorded by {@link RegionCaptureRecorder}:
+ * block states for the region and its padding, captured light and the shading and
+ * tint values that would otherwise come from the client world.
+ *
+ * <p>Block states are stored by registry ID, so recordings can only be replayed with
+ * the same game version and the same block state registry. The file header records the
+ * version, registry size and a hash of every ID and the block name and properties it maps to.
+ * {@link #readHeader(DataInput)} rejects any mismatch, including mods that add the same
+ * number of states or register blocks in a different order.
+ *
+ * <p>Tints are recorded for the vanilla grass, foliage and water resolvers over the
+ * region columns plus a one-block border. Other resolvers get grass colors on replay.
+ * Block entities and their render data are not recorded.
+ */
+public final class RegionCapture {
+	private static final int MAGIC = 0x43565243;
+	private static final int FORMAT_VERSION = 2;
+
+	private static final ColorResolver[] TINT_RESOLVERS = {BiomeColors.GRASS_COLOR_RESOLVER, BiomeColors.FOLIAGE_COLOR_RESOLVER, BiomeColors.WATER_COLOR_RESOLVER};
+	private static final int TINT_DIAMETER = RegionTintGrid.DIAMETER;
+	private static final int TINT_PADDING = RegionTintGrid.PADDING;
+	private static final int TINT_COUNT = TINT_DIAMETER * TINT_DIAMETER;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	int originX;
+	int originY;
+	int originZ;
+	int minBuildHeight;
+	int height;
+	boolean hasSkyLight;
+	final BlockState[] states = new BlockState[TOTAL_STATE_COUNT];
+	final byte[] skyLight = new byte[PackedInputRegion.LIGHT_BYTES];
+	final byte[] blockLight = new byte[PackedInputRegion.LIGHT_BYTES];
+	/** Unshaded values by direction ordinal, then shaded values. */
+	private final float[] shades = new float[DIRECTIONS.length * 2];
+	private final int[][] tints = new int[TINT_RESOLVERS.length][TINT_COUNT];
+
+	// scratch for state encoding, only used by writers
+	private final short[] stateKeys = new short[TOTAL_STATE_COUNT];
+	private final Int2IntOpenHashMap paletteMap = new Int2IntOpenHashMap();
+	private int[] palette = new int[64];
+
+	public int originX() {
+		return originX;
+	}
+
+	public int originY() {
+		return originY;
+	}
+
+	public int originZ() {
+		return originZ;
+	}
+
+	float shade(Direction direction, boolean shaded) {
+		return shades[shaded ? DIRECTIONS.length + direction.ordinal() : direction.ordinal()];
+	}
+
+	/** Coordinates are relative to the region origin and are clamped to the recorded columns. */
+	int tint(ColorResolver resolver, int x, int z) {
+		int index = 0;
+
+		for (int i = 1; i < TINT_RESOLVERS.length; ++i) {
+			if (TINT_RESOLVERS[i] == resolver) {
+				index = i;
+				break;
+			}
+		}
+
+		final int tx = Math.max(0, Math.min(TINT_DIAMETER - 1, x + TINT_PADDING));
+		final int tz = Math.max(0, Math.min(TINT_DIAMETER - 1, z + TINT_PADDING));
+		return tints[index][tx + tz * TINT_DIAMETER];
+	}
+
+	static void writeHeader(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(SharedConstants.getCurrentVersion().getName());
+		out.writeInt(Block.BLOCK_STATE_REGISTRY.size());
+		out.writeLong(registryHash());
+	}
+
+	/** Hash of each registered ID with the registry name and properties of its block state. */
+	private static long registryHash() {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+			for (final BlockState state : Block.BLOCK_STATE_REGISTRY) {
+				final int id = Block.getId(state);
+				digest.update((byte) (id >>> 24));
+				digest.update((byte) (id >>> 16));
+				digest.update((byte) (id >>> 8));
+				digest.update((byte) id);
+				// includes the registry name, for example Block{minecraft:oak_stairs}[facing=north,...]
+				digest.update(state.toString().getBytes(StandardCharsets.UTF_8));
+			}
+
+			return ByteBuffer.wrap(digest.digest()).getLong();
+		} catch (final NoSuchAlgorithmException e) {
+			// SHA-256 is required of every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Checks that recordings in the stream can be decoded in this environment.
+	 * @throws IOException if the stream isn't a capture file or was recorded with a different block state registry.
+	 */
+	public static void readHeader(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a region capture file");
+		}
+
+		final int version = in.readInt();
+
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported region capture format " + version);
+		}
+
+		final String gameVersion = in.readUTF();
+		final int registrySize = in.readInt();
+		final long registryHash = in.readLong();
+
+		if (!gameVersion.equals(SharedConstants.getCurrentVersion().getName()) || registrySize != Block.BLOCK_STATE_REGISTRY.size()) {
+			throw new IOException(String.format("Region capture was recorded with game version %s and %d block states but this environment has %s and %d",
+					gameVersion, registrySize, SharedConstants.getCurrentVersion().getName(), Block.BLOCK_STATE_REGISTRY.size()));
+		}
+
+		if (registryHash != registryHash()) {
+			throw new IOException("Region capture was recorded with a different block state registry. Block-adding mods or their load order differ.");
+		}
+	}
+
+	/** Captures the inputs of a region that has just been prepared from live world data. */
+	void capture(InputRegion region) {
+		originX = region.originX;
+		originY = region.originY;
+		originZ = region.originZ;
+		minBuildHeight = region.getMinBuildHeight();
+		height = region.getHeight();
+		hasSkyLight = region.hasSkyLight;
+		System.arraycopy(region.states, 0, states, 0, TOTAL_STATE_COUNT);
+		System.arraycopy(region.skyLight, 0, skyLight, 0, PackedInputRegion.LIGHT_BYTES);
+		System.arraycopy(region.blockLight, 0, blockLight, 0, PackedInputRegion.LIGHT_BYTES);
+
+		for (final Direction face : DIRECTIONS) {
+			shades[face.ordinal()] = region.getShade(face, false);
+			shades[DIRECTIONS.length + face.ordinal()] = region.getShade(face, true);
+		}
+
+		final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+		for (int r = 0; r < TINT_RESOLVERS.length; ++r) {
+			final ColorResolver resolver = TINT_RESOLVERS[r];
+			final int[] colors = tints[r];
+
+			for (int z = 0; z < TINT_DIAMETER; ++z) {
+				for (int x = 0; x < TINT_DIAMETER; ++x) {
+					pos.set(originX + x - TINT_PADDING, originY, originZ + z - TINT_PADDING);
+					colors[x + z * TINT_DIAMETER] = region.getBlockTint(pos, resolver);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the capture as one record. States are written as a palette of registry IDs
+	 * followed by a palette index for each position.
+	 */
+	void write(DataOutput out) throws IOException {
+		final Int2IntOpenHashMap paletteMap = this.paletteMap;
+		final short[] stateKeys = this.stateKeys;
+		paletteMap.clear();
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			final int id = Block.getId(states[i]);
+			int key = paletteMap.getOrDefault(id, -1);
+
+			if (key == -1) {
+				key = paletteMap.size();
+				paletteMap.put(id, key);
+
+				if (key == palette.length) {
+					palette = Arrays.copyOf(palette, key * 2);
+				}
+
+				palette[key] = id;
+			}
+
+			stateKeys[i] = (short) key;
+		}
+
+		// record marker, absent at end of stream
+		out.writeByte(1);
+		out.writeInt(originX);
+		out.writeInt(originY);
+		out.writeInt(originZ);
+		out.writeInt(minBuildHeight);
+		out.writeInt(height);
+		out.writeBoolean(hasSkyLight);
+
+		final int paletteSize = paletteMap.size();
+		out.writeShort(paletteSize);
+
+		for (int i = 0; i < paletteSize; ++i) {
+			out.writeInt(palette[i]);
+		}
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			out.writeShort(stateKeys[i]);
+		}
+
+		out.write(skyLight);
+		out.write(blockLight);
+
+		for (final float shade : shades) {
+			out.writeFloat(shade);
+		}
+
+		for (final int[] colors : tints) {
+			for (final int color : colors) {
+				out.writeInt(color);
+			}
+		}
+	}
+
+	/**
+	 * Reads the next record into this instance.
+	 * @return False if the stream has no more records.
+	 */
+	public boolean read(DataInput in) throws IOException {
+		try {
+			if (in.readByte() != 1) {
+				return false;
+			}
+
+			readRecord(in);
+			return true;
+		} catch (final EOFException e) {
+			// recordings are not always closed cleanly, for example if the game crashed
+			return false;
+		}
+	}
+
+	private void readRecord(DataInput in) throws IOException {
+		originX = in.readInt();
+		originY = in.readInt();
+		originZ = in.readInt();
+		minBuildHeight = in.readInt();
+		height = in.readInt();
+		hasSkyLight = in.readBoolean();
+
+		final int paletteSize = in.readUnsignedShort();
+		final BlockState[] paletteStates = new BlockState[paletteSize];
+
+		for (int i = 0; i < paletteSize; ++i) {
+			paletteStates[i] = Block.stateById(in.readInt());
+		}
+
+		for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+			states[i] = paletteStates[in.readUnsignedShort()];
+		}
+
+		in.readFully(skyLight);
+		in.readFully(blockLight);
+
+		for (int i = 0; i < shades.length; ++i) {
+			shades[i] = in.readFloat();
+		}
+
+		for (final int[] colors : tints) {
+			for (int i = 0; i < TINT_COUNT; ++i) {
+				colors[i] = in.readInt();
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.resources.language.I18n;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.render.world.CanvasWorldRenderer;
+
+/**
+ * Records the inputs of region rebuilds to a file for offline replay with {@link RegionReplay}.
+ *
+ * <p>Toggled with a key binding. Starting a recording forces all regions to rebuild so that
+ * everything in view is captured. Recording stops on its own after {@link #MAX_REGIONS}.
+ * Files are written to {@code canvas_captures} in the game directory.
+ *
+ * <p>Regions are recorded from terrain worker threads as they are prepared, so recording
+ * slows rebuilds down and shouldn't be left running.
+ */
+public final class RegionCaptureRecorder {
+	public static final int MAX_REGIONS = 8192;
+	private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private static final RegionCapture capture = new RegionCapture();
+	private static volatile @Nullable DataOutputStream output;
+	private static Path outputPath;
+	private static int count;
+
+	private RegionCaptureRecorder() { }
+
+	@SuppressWarnings("resource")
+	public static Path captureDirectory() {
+		return Minecraft.getInstance().gameDirectory.toPath().normalize().resolve("canvas_captures");
+	}
+
+	/** Call from render thread. */
+	public static void handleToggle() {
+		boolean toggled = false;
+
+		while (CanvasMod.REGION_CAPTURE_TOGGLE.consumeClick()) {
+			toggled = !toggled;
+		}
+
+		if (toggled) {
+			if (isActive()) {
+				stop();
+			} else {
+				start();
+			}
+		}
+	}
+
+	static boolean isActive() {
+		return output != null;
+	}
+
+	private static synchronized void start() {
+		final Path path = captureDirectory().resolve("regions-" + LocalDateTime.now().format(FILE_TIME_FORMAT) + ".bin.gz");
+
+		try {
+			Files.createDirectories(path.getParent());
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))));
+			RegionCapture.writeHeader(out);
+			outputPath = path;
+			count = 0;
+			output = out;
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to start region capture due to exception:", e);
+			return;
+		}
+
+		CanvasMod.LOG.info(I18n.get("info.canvas.region_capture_start", path));
+
+		final CanvasWorldRenderer worldRenderer = CanvasWorldRenderer.instance();
+
+		if (worldRenderer != null) {
+			worldRenderer.allChanged();
+		}
+	}
+
+	private static synchronized void stop() {
+		final DataOutputStream out = output;
+
+		if (out == null) {
+			return;
+		}
+
+		output = null;
+
+		try {
+			// end of stream marker
+			out.writeByte(0);
+			out.close();
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Exception while closing region capture file:", e);
+		}
+
+		CanvasMod.LOG.info(I18n.get("info.canvas.region_capture_stop", count, outputPath));
+	}
+
+	/** Called from terrain threads when a region has been prepared from live world data. */
+	static synchronized void record(InputRegion region) {
+		final DataOutputStream out = output;
+
+		if (out == null) {
+			return;
+		}
+
+		try {
+			capture.capture(region);
+			capture.write(out);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Region capture stopped due to exception:", e);
+			stop();
+			return;
+		}
+
+		if (++count >= MAX_REGIONS) {
+			stop();
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.TOTAL_STATE_COUNT;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.client.resources.language.I18n;
+import net.minecraft.server.Bootstrap;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
+import grondag.canvas.buffer.input.DrawableVertexCollector;
+import grondag.canvas.buffer.input.VertexCollectorList;
+import grondag.canvas.light.LightSmoother;
+import grondag.canvas.terrain.occlusion.geometry.OcclusionResult;
+
+/**
+ * Rebuilds regions recorded by {@link RegionCaptureRecorder} and reports throughput,
+ * allocation and a hash of the output of each region, for regression and performance
+ * testing of rebuilds without a live world.
+ *
+ * <p>In the client, replay runs the full build: input preparation, light smoothing
+ * (if enabled), occlusion, and rendering and encoding of block and fluid quads. The
+ * hash covers occlusion data and the encoded vertex data of every collector. Material
+ * IDs are part of vertex data, so hashes are only comparable between runs with the same
+ * mods and resource packs.
+ *
+ * <p>Quads can't be produced without baked models, which need the client, so headless
+ * replay from {@link #main(String[])} covers input preparation, optional light smoothing,
+ * occlusion and the per-block brightness and AO lookups that quad lighting depends on.
+ * Its hash covers occlusion data and those lookups. Occlusion uses the advanced culling
+ * setting of the active pipeline, which is off when headless.
+ *
+ * <p>Build time and allocation are measured around the build of each region only,
+ * excluding decoding of the recording.
+ */
+public final class RegionReplay {
+	private static final AtomicBoolean isRunning = new AtomicBoolean();
+
+	private RegionReplay() { }
+
+	public record Report(String name, int regionCount, long quadCount, long buildNanos, long allocatedBytes, long hash) {
+		public double regionsPerSecond() {
+			return buildNanos == 0 ? 0 : regionCount * 1e9 / buildNanos;
+		}
+
+		public long bytesPerRegion() {
+			return regionCount == 0 ? 0 : allocatedBytes / regionCount;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d regions, %d quads, %.1f regions/s, %.3f ms/region, %d bytes allocated/region, hash %016x",
+					name, regionCount, quadCount, regionsPerSecond(), regionCount == 0 ? 0 : buildNanos / 1e6 / regionCount, bytesPerRegion(), hash);
+		}
+	}
+
+	/**
+	 * Rebuilds all regions in a recording.
+	 *
+	 * @param file Recording to replay.
+	 * @param context If non-null, regions are fully rendered with this context. Otherwise replay is headless.
+	 * @param smoothLight Light smoothing for headless replay. The client follows configuration.
+	 * @param hashOutput If non-null, receives one line with origin and hash for each region.
+	 */
+	public static Report replay(Path file, @Nullable CanvasTerrainRenderContext context, boolean smoothLight, @Nullable BufferedWriter hashOutput) throws IOException {
+		final RegionCapture capture = new RegionCapture();
+		final InputRegion region = context == null ? new InputRegion(null) : context.region;
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		IntBuffer vertexScratch = IntBuffer.allocate(0x10000);
+		int regionCount = 0;
+		long quadCount = 0;
+		long buildNanos = 0;
+		long allocatedBytes = 0;
+		long hash = 0;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			RegionCapture.readHeader(in);
+
+			while (capture.read(in)) {
+				final long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+				final long start = System.nanoTime();
+				long regionHash;
+
+				if (context == null) {
+					region.prepare(capture);
+
+					if (smoothLight) {
+						LightSmoother.computeSmoothedBrightness(region);
+					}
+
+					regionHash = hashOcclusion(region.occlusion.build(false));
+
+					for (int i = 0; i < TOTAL_STATE_COUNT; ++i) {
+						regionHash = HashCommon.mix(regionHash + region.cachedBrightness(i));
+						regionHash = HashCommon.mix(regionHash + region.cachedAoLevel(i));
+					}
+				} else {
+					context.prepareForRegion(capture);
+					regionHash = hashOcclusion(region.occlusion.build(false));
+					context.renderTerrain();
+				}
+
+				buildNanos += System.nanoTime() - start;
+				allocatedBytes += threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+
+				if (context != null) {
+					final VertexCollectorList collectors = context.encoder.collectors;
+					final ObjectArrayList<DrawableVertexCollector> drawList = collectors.sortedDrawList(s -> true);
+					final int limit = drawList.size();
+
+					for (int i = 0; i < limit; ++i) {
+						final DrawableVertexCollector collector = drawList.get(i);
+						quadCount += collector.quadCount();
+
+						if (vertexScratch.capacity() < collector.integerSize()) {
+							vertexScratch = IntBuffer.allocate(collector.integerSize());
+						}
+
+						regionHash = hashVertexData(regionHash, collector, vertexScratch);
+					}
+
+					collectors.clear();
+				}
+
+				if (hashOutput != null) {
+					hashOutput.write(String.format("%d %d %d %016x", capture.originX, capture.originY, capture.originZ, regionHash));
+					hashOutput.newLine();
+				}
+
+				hash = HashCommon.mix(hash + regionHash);
+				++regionCount;
+			}
+		}
+
+		return new Report(file.getFileName().toString(), regionCount, quadCount, buildNanos, allocatedBytes, hash);
+	}
+
+	private static long hashOcclusion(OcclusionResult result) {
+		long hash = result.mutalFaceMask();
+
+		for (final int value : result.occlusionData()) {
+			hash = HashCommon.mix(hash + value);
+		}
+
+		return hash;
+	}
+
+	/** Scratch buffer must have capacity for all data in the collector. */
+	private static long hashVertexData(long hash, DrawableVertexCollector collector, IntBuffer scratch) {
+		final int size = collector.integerSize();
+		scratch.clear();
+		collector.toBuffer(scratch);
+		final int[] data = scratch.array();
+
+		for (int i = 0; i < size; ++i) {
+			hash = HashCommon.mix(hash + data[i]);
+		}
+
+		return hash;
+	}
+
+	/** Call from render thread. Replays the most recent recording in the background. */
+	public static void handleKey() {
+		boolean pressed = false;
+
+		while (CanvasMod.REGION_REPLAY.consumeClick()) {
+			pressed = true;
+		}
+
+		if (!pressed || !isRunning.compareAndSet(false, true)) {
+			return;
+		}
+
+		final Optional<Path> latest;
+
+		try (Stream<Path> files = Files.list(RegionCaptureRecorder.captureDirectory())) {
+			latest = files.filter(p -> p.getFileName().toString().endsWith(".bin.gz")).max(Path::compareTo);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn(I18n.get("info.canvas.region_replay_none"));
+			isRunning.set(false);
+			return;
+		}
+
+		if (latest.isEmpty()) {
+			CanvasMod.LOG.warn(I18n.get("info.canvas.region_replay_none"));
+			isRunning.set(false);
+			return;
+		}
+
+		final Path file = latest.get();
+		CanvasMod.LOG.info(I18n.get("info.canvas.region_replay_start", file));
+
+		final Thread thread = new Thread(() -> {
+			final Path hashFile = file.resolveSibling(file.getFileName() + ".hashes.txt");
+
+			try (BufferedWriter hashOutput = Files.newBufferedWriter(hashFile)) {
+				CanvasMod.LOG.info(replay(file, new CanvasTerrainRenderContext(), false, hashOutput));
+			} catch (final IOException | UncheckedIOException e) {
+				CanvasMod.LOG.warn("Region replay failed due to exception:", e);
+			} finally {
+				isRunning.set(false);
+			}
+		}, "Canvas Region Replay");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Headless replay of one or more recordings. Prints a report for each.
+	 *
+	 * <p>Arguments are recording paths plus these options:
+	 * <ul>
+	 * <li>{@code --smooth-light} to include light smoothing</li>
+	 * <li>{@code --hashes=<file>} to write per-region hashes for comparison between runs</li>
+	 * <li>{@code --repeat=<n>} to replay each recording n times, for stable timing</li>
+	 * </ul>
+	 */
+	public static void main(String[] args) throws IOException {
+		final List<Path> files = new ArrayList<>();
+		boolean smoothLight = false;
+		Path hashFile = null;
+		int repeat = 1;
+
+		for (final String arg : args) {
+			if (arg.equals("--smooth-light")) {
+				smoothLight = true;
+			} else if (arg.startsWith("--hashes=")) {
+				hashFile = Path.of(arg.substring("--hashes=".length()));
+			} else if (arg.startsWith("--repeat=")) {
+				repeat = Math.max(1, Integer.parseInt(arg.substring("--repeat=".length())));
+			} else {
+				files.add(Path.of(arg));
+			}
+		}
+
+		if (files.isEmpty()) {
+			System.err.println("Usage: RegionReplay [--smooth-light] [--hashes=<file>] [--repeat=<n>] <recording>...");
+			System.exit(2);
+		}
+
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+
+		try (BufferedWriter hashOutput = hashFile == null ? null : Files.newBufferedWriter(hashFile)) {
+			for (final Path file : files) {
+				for (int i = 0; i < repeat; ++i) {
+					// only the last pass writes hashes, earlier passes are warm-up
+					System.out.println(replay(file, null, smoothLight, i == repeat - 1 ? hashOutput : null));
+				}
+			}
+		}
+	}
+}
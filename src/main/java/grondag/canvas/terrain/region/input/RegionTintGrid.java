@@ -0,0 +1,202 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.region.input;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.level.ColorResolver;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import grondag.canvas.terrain.util.ChunkColorCache;
+
+/**
+ * Blended biome colors for one color resolver over the block columns of a render region
+ * and a one-block border, so that vertices on region edges can be interpolated.
+ *
+ * <p>Base colors for the grid plus the blend radius are sampled once and blended with a
+ * separable box filter, which gives the same result as blending each column individually.
+ * Only valid for dimensions where biomes don't vary with height.
+ */
+public class RegionTintGrid {
+	public static final int PADDING = 1;
+	public static final int DIAMETER = 16 + PADDING * 2;
+
+	private final int[] colors = new int[DIAMETER * DIAMETER];
+	private ColorResolver resolver;
+
+	// scratch space for blending, sized for the current blend radius
+	private int[] base = new int[0];
+	private int[] rowRed = new int[0];
+	private int[] rowGreen = new int[0];
+	private int[] rowBlue = new int[0];
+
+	public ColorResolver resolver() {
+		return resolver;
+	}
+
+	void compute(InputRegion region, ColorResolver resolver) {
+		this.resolver = resolver;
+
+		final int radius = Minecraft.getInstance().options.biomeBlendRadius;
+		final int width = DIAMETER + radius * 2;
+		final int minX = region.originX - PADDING - radius;
+		final int minZ = region.originZ - PADDING - radius;
+		final int y = region.originY;
+
+		if (base.length < width * width) {
+			base = new int[width * width];
+			rowRed = new int[width * DIAMETER];
+			rowGreen = new int[width * DIAMETER];
+			rowBlue = new int[width * DIAMETER];
+		}
+
+		final int[] base = this.base;
+		LevelChunk chunk = null;
+		ChunkColorCache chunkColors = null;
+		int index = 0;
+
+		for (int dz = 0; dz < width; ++dz) {
+			final int z = minZ + dz;
+
+			for (int dx = 0; dx < width; ++dx) {
+				final int x = minX + dx;
+				final LevelChunk c = region.getChunk(x >> 4, z >> 4);
+
+				if (c != chunk) {
+					chunk = c;
+					chunkColors = ChunkColorCache.get(c);
+				}
+
+				base[index++] = resolver.getColor(chunkColors.getBiome(x, y, z), x, z);
+			}
+		}
+
+		if (radius == 0) {
+			System.arraycopy(base, 0, colors, 0, DIAMETER * DIAMETER);
+			return;
+		}
+
+		final int[] rowRed = this.rowRed;
+		final int[] rowGreen = this.rowGreen;
+		final int[] rowBlue = this.rowBlue;
+		final int span = radius * 2 + 1;
+
+		// Horizontal sums for every row, sliding the window along x.
+		for (int dz = 0; dz < width; ++dz) {
+			final int rowStart = dz * width;
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int dx = 0; dx < span; ++dx) {
+				final int color = base[rowStart + dx];
+				r += (color >> 16) & 255;
+				g += (color >> 8) & 255;
+				b += color & 255;
+			}
+
+			for (int dx = 0; dx < DIAMETER; ++dx) {
+				final int out = dz * DIAMETER + dx;
+				rowRed[out] = r;
+				rowGreen[out] = g;
+				rowBlue[out] = b;
+
+				if (dx + 1 < DIAMETER) {
+					final int removed = base[rowStart + dx];
+					final int added = base[rowStart + dx + span];
+					r += ((added >> 16) & 255) - ((removed >> 16) & 255);
+					g += ((added >> 8) & 255) - ((removed >> 8) & 255);
+					b += (added & 255) - (removed & 255);
+				}
+			}
+		}
+
+		// Vertical sums of the horizontal sums, sliding the window along z.
+		final int sampleCount = span * span;
+
+		for (int dx = 0; dx < DIAMETER; ++dx) {
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int dz = 0; dz < span; ++dz) {
+				final int i = dz * DIAMETER + dx;
+				r += rowRed[i];
+				g += rowGreen[i];
+				b += rowBlue[i];
+			}
+
+			for (int dz = 0; dz < DIAMETER; ++dz) {
+				colors[dz * DIAMETER + dx] = (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+
+				if (dz + 1 < DIAMETER) {
+					final int removed = dz * DIAMETER + dx;
+					final int added = (dz + span) * DIAMETER + dx;
+					r += rowRed[added] - rowRed[removed];
+					g += rowGreen[added] - rowGreen[removed];
+					b += rowBlue[added] - rowBlue[removed];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Blended color of a block column. Coordinates are relative to the region origin
+	 * and must be within -1 to 16, inclusive.
+	 */
+	public int color(int x, int z) {
+		return colors[(x + PADDING) + (z + PADDING) * DIAMETER];
+	}
+
+	/**
+	 * Bilinear blend of the column colors around a point, for per-vertex tinting.
+	 * Column colors are taken at block centers. Coordinates are relative to the region
+	 * origin and must be within 0 to 16, inclusive, which covers every vertex of a block
+	 * inside the region.
+	 */
+	public int interpolatedColor(float x, float z) {
+		final float u = x - 0.5f + PADDING;
+		final float v = z - 0.5f + PADDING;
+		final int x0 = Math.min((int) u, DIAMETER - 2);
+		final int z0 = Math.min((int) v, DIAMETER - 2);
+		final float fu = u - x0;
+		final float fv = v - z0;
+
+		final int i = x0 + z0 * DIAMETER;
+		final int c00 = colors[i];
+		final int c10 = colors[i + 1];
+		final int c01 = colors[i + DIAMETER];
+		final int c11 = colors[i + DIAMETER + 1];
+
+		return lerpChannel(c00, c10, c01, c11, fu, fv, 16) << 16
+				| lerpChannel(c00, c10, c01, c11, fu, fv, 8) << 8
+				| lerpChannel(c00, c10, c01, c11, fu, fv, 0);
+	}
+
+	private static int lerpChannel(int c00, int c10, int c01, int c11, float fu, float fv, int shift) {
+		final float a = (c00 >> shift) & 255;
+		final float b = (c10 >> shift) & 255;
+		final float c = (c01 >> shift) & 255;
+		final float d = (c11 >> shift) & 255;
+		final float top = a + (b - a) * fu;
+		final float bottom = c + (d - c) * fu;
+		return Math.round(top + (bottom - top) * fv) & 255;
+	}
+}
@@ -20,8 +20,11 @@
 
 package grondag.canvas.terrain.util;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import org.apache.commons.lang3.ObjectUtils;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
 
 import net.minecraft.util.BitStorage;
 import net.minecraft.world.level.block.Blocks;
@@ -30,11 +33,25 @@ import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.minecraft.world.level.chunk.Palette;
 
+import grondag.canvas.mixinterface.BitStorageExt;
 import grondag.canvas.mixinterface.PalettedContainerExt;
 
+/**
+ * Captures a chunk section on the main thread with as little work as possible and
+ * decodes it later, usually off-thread, directly into interior region order.
+ *
+ * <p>Capture copies the packed storage words as-is. Sections using a local palette
+ * (linear or hash map, at most 8 bits per block) also have their palette resolved
+ * into a lookup table so that decode is one array read per block. Sections using
+ * the global palette are resolved per block during decode. Sections where every
+ * packed word is zero hold a single value and are captured as a uniform copy.
+ */
 public class ChunkPaletteCopier {
 	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
-	public static final PaletteCopy AIR_COPY = i -> AIR;
+	public static final PaletteCopy AIR_COPY = new UniformCopy(AIR);
+
+	/** Vanilla PalettedContainer switches to the global palette above this size. */
+	private static final int MAX_LOCAL_PALETTE_BITS = 8;
 
 	public static PaletteCopy captureCopy(LevelChunk chunk, int y) {
 		if (chunk == null) {
@@ -60,8 +77,7 @@ public class ChunkPaletteCopier {
 		}
 
 		if (sec.isEmpty()) {
-			final BlockState filler = sec.getBlockState(0, 0, 0);
-			return filler == AIR ? AIR_COPY : i -> filler;
+			return uniformCopy(sec.getBlockState(0, 0, 0));
 		}
 
 		return ((PalettedContainerExt) sec.getStates()).canvas_paletteCopy();
@@ -72,41 +88,170 @@ public class ChunkPaletteCopier {
 	 */
 	public static PaletteCopy captureCopy(Palette<BlockState> palette, BitStorage data, BlockState emptyVal) {
 		if (palette == null || data == null) {
-			return emptyVal == null ? AIR_COPY : i -> emptyVal;
+			return emptyVal == null ? AIR_COPY : uniformCopy(emptyVal);
 		}
 
-		return new PaletteCopyImpl(palette, data, emptyVal);
+		return PaletteCopyImpl.claim(palette, (BitStorageExt) data, emptyVal);
+	}
+
+	private static PaletteCopy uniformCopy(BlockState state) {
+		return state == AIR ? AIR_COPY : new UniformCopy(state);
 	}
 
 	@FunctionalInterface
 	public interface PaletteCopy {
+		/**
+		 * @param index Index within the section, as used by PalettedContainer: x | (z << 4) | (y << 8).
+		 */
 		BlockState apply(int index);
 
+		/**
+		 * Writes every state in the section to the first {@link RenderRegionStateIndexer#INTERIOR_STATE_COUNT}
+		 * positions of the target, in the order given by {@link RenderRegionStateIndexer#interiorIndex(int, int, int)}.
+		 */
+		default void decode(BlockState[] target) {
+			for (int x = 0; x < 16; x++) {
+				for (int y = 0; y < 16; y++) {
+					for (int z = 0; z < 16; z++) {
+						target[interiorIndex(x, y, z)] = apply(x | (y << 8) | (z << 4));
+					}
+				}
+			}
+		}
+
 		default void release() {
 		}
 	}
 
+	private static class UniformCopy implements PaletteCopy {
+		private final BlockState state;
+
+		private UniformCopy(BlockState state) {
+			this.state = state;
+		}
+
+		@Override
+		public BlockState apply(int index) {
+			return state;
+		}
+
+		@Override
+		public void decode(BlockState[] target) {
+			Arrays.fill(target, 0, INTERIOR_STATE_COUNT, state);
+		}
+	}
+
 	private static class PaletteCopyImpl implements PaletteCopy {
-		public final BlockState emptyVal;
-		private final IntArrayList data;
-		private final Palette<BlockState> palette;
+		private static final ArrayBlockingQueue<PaletteCopyImpl> POOL = new ArrayBlockingQueue<>(1024);
+
+		/** Sized for 4-bit storage, the minimum used by vanilla, and grown as needed. */
+		private long[] words = new long[256];
+		private int bits;
+		private long mask;
+		private int valuesPerLong;
 
-		private PaletteCopyImpl(Palette<BlockState> palette, BitStorage data, BlockState emptyVal) {
+		/** Palette resolved to states for local palettes, null entries replaced with the empty value. */
+		private final BlockState[] localPalette = new BlockState[1 << MAX_LOCAL_PALETTE_BITS];
+		private boolean isLocal;
+
+		/** Only retained for global palettes, which are safe to read off-thread. */
+		private Palette<BlockState> globalPalette;
+		private BlockState emptyVal;
+
+		private static PaletteCopy claim(Palette<BlockState> palette, BitStorageExt data, BlockState emptyVal) {
+			PaletteCopyImpl result = POOL.poll();
+
+			if (result == null) {
+				result = new PaletteCopyImpl();
+			}
+
+			return result.prepare(palette, data, emptyVal);
+		}
+
+		private PaletteCopy prepare(Palette<BlockState> palette, BitStorageExt data, BlockState emptyVal) {
 			assert data != null;
 			assert palette != null;
-			this.palette = palette;
-			this.data = PackedIntegerStorageHelper.claim(data);
+
+			final int wordCount = data.canvas_wordCount();
+
+			if (words.length < wordCount) {
+				words = new long[wordCount];
+			}
+
+			if (!data.canvas_copyWords(words)) {
+				// every value is palette index zero
+				release();
+				final BlockState state = palette.valueFor(0);
+				return uniformCopy(state == null ? emptyVal : state);
+			}
+
+			bits = data.canvas_bits();
+			mask = (1L << bits) - 1L;
+			valuesPerLong = data.canvas_valuesPerLong();
 			this.emptyVal = emptyVal;
+			isLocal = bits <= MAX_LOCAL_PALETTE_BITS;
+
+			if (isLocal) {
+				final BlockState[] localPalette = this.localPalette;
+				final int limit = 1 << bits;
+
+				for (int i = 0; i < limit; ++i) {
+					final BlockState state = palette.valueFor(i);
+					localPalette[i] = state == null ? emptyVal : state;
+				}
+			} else {
+				globalPalette = palette;
+			}
+
+			return this;
+		}
+
+		private BlockState lookup(int paletteIndex) {
+			if (isLocal) {
+				return localPalette[paletteIndex];
+			} else {
+				final BlockState result = globalPalette.valueFor(paletteIndex);
+				return result == null ? emptyVal : result;
+			}
 		}
 
 		@Override
 		public BlockState apply(int index) {
-			return ObjectUtils.defaultIfNull(palette.valueFor(data.getInt(index)), emptyVal);
+			final int wordIndex = index / valuesPerLong;
+			final int shift = (index - wordIndex * valuesPerLong) * bits;
+			return lookup((int) ((words[wordIndex] >>> shift) & mask));
+		}
+
+		@Override
+		public void decode(BlockState[] target) {
+			final long[] words = this.words;
+			final int bits = this.bits;
+			final long mask = this.mask;
+			final int valuesPerLong = this.valuesPerLong;
+			final BlockState[] localPalette = this.localPalette;
+			final boolean isLocal = this.isLocal;
+			int index = 0;
+
+			// Values never span words, so each word is unpacked on its own. Section index
+			// is x | (z << 4) | (y << 8) and is remapped to interior order by swapping y and z.
+			for (int wordIndex = 0; index < INTERIOR_STATE_COUNT; ++wordIndex) {
+				long word = words[wordIndex];
+				final int limit = Math.min(INTERIOR_STATE_COUNT, index + valuesPerLong);
+
+				for (; index < limit; ++index) {
+					final int paletteIndex = (int) (word & mask);
+					word >>>= bits;
+					final int interiorIndex = (index & 0xF) | ((index >> 4) & 0xF) << 8 | (index >> 8) << 4;
+					target[interiorIndex] = isLocal ? localPalette[paletteIndex] : lookup(paletteIndex);
+				}
+			}
 		}
 
 		@Override
 		public void release() {
-			PackedIntegerStorageHelper.release(data);
+			globalPalette = null;
+			emptyVal = null;
+			POOL.offer(this);
 		}
 	}
 }
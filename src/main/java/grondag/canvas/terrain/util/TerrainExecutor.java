@@ -26,7 +26,8 @@ import java.util.concurrent.Executor;
 import grondag.canvas.config.Configurator;
 
 public interface TerrainExecutor extends Executor {
-	TerrainExecutor INSTANCE = Configurator.useCombinedThreadPool ? new SharedTerrainExecutor() : new DedicatedTerrainExecutor();
+	TerrainExecutor INSTANCE = Configurator.useCombinedThreadPool ? new SharedTerrainExecutor()
+			: Configurator.useWorkStealingExecutor ? new WorkStealingTerrainExecutor() : new DedicatedTerrainExecutor();
 
 	void execute(TerrainExecutorTask task);
 
@@ -34,5 +35,12 @@ public interface TerrainExecutor extends Executor {
 
 	boolean isEmpty();
 
+	/**
+	 * Called when the camera moves to a different region, making the
+	 * priority of tasks already queued potentially stale. Executors that
+	 * order tasks by priority at submission may use this to reorder.
+	 */
+	default void onCameraRegionChange() { }
+
 	void debugReport(List<String> target);
 }
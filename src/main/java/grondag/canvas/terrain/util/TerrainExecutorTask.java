@@ -29,4 +29,14 @@ public interface TerrainExecutorTask {
 	 * Normally squared chunk distance. Use -1 for privileged execution.
 	 */
 	int priority();
+
+	/**
+	 * Lets executors drop tasks that no longer need to run before they reach a worker.
+	 * Returns true if the task should be discarded without running, in which case the
+	 * implementation must already have done any cleanup {@link #run(CanvasTerrainRenderContext)}
+	 * would have done. Executors are not required to call this.
+	 */
+	default boolean cancelIfObsolete() {
+		return false;
+	}
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.terrain.util;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.rendercontext.CanvasTerrainRenderContext;
+
+/**
+ * Terrain executor with a task queue per worker thread instead of a single
+ * shared priority queue. Workers take from their own queue and steal from
+ * other workers only when their own queue is empty, so lock contention is
+ * limited to the owning worker and the occasional thief.
+ *
+ * <p>Each queue is split into buckets by camera chunk distance. Buckets are
+ * FIFO and workers always take from the nearest non-empty bucket, so ordering
+ * is approximate within a ring but exact between rings. Privileged tasks
+ * (priority == -1) have a bucket of their own and run in order of submission.
+ *
+ * <p>Bucket assignment is only as good as task priority at the time of submission.
+ * When the camera enters a new region, {@link #onCameraRegionChange()} causes each
+ * worker to re-bucket its own queue the next time it looks for work. Tasks that report
+ * themselves obsolete via {@link TerrainExecutorTask#cancelIfObsolete()} at that point,
+ * or when dequeued, are dropped without being run.
+ */
+public class WorkStealingTerrainExecutor implements TerrainExecutor {
+	/** Bucket 0 is privileged. Tasks at or beyond the last ring share the last bucket. */
+	private static final int BUCKET_COUNT = 66;
+	private static final int LAST_BUCKET = BUCKET_COUNT - 1;
+
+	private final int poolSize = threadCount();
+	private final Worker[] workers = new Worker[poolSize];
+
+	/**
+	 * One permit per queued task. Permits can exceed the number of queued tasks
+	 * briefly after tasks are dropped or cleared, in which case a worker will wake,
+	 * find nothing and go back to waiting. The reverse is never true.
+	 */
+	private final Semaphore signal = new Semaphore(0);
+
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	private final AtomicInteger queuedCount = new AtomicInteger();
+	private final AtomicInteger renderTaskCount = new AtomicInteger();
+	private final AtomicInteger stolenTaskCount = new AtomicInteger();
+	private final AtomicInteger droppedTaskCount = new AtomicInteger();
+
+	/** Incremented when task priorities become stale. Workers compare against their last-seen value. */
+	private volatile int priorityVersion;
+
+	private int lastRenderTaskCount;
+	private int lastStolenTaskCount;
+	private int lastDroppedTaskCount;
+	private long nextTime;
+	private String report0 = "", report1 = "";
+
+	WorkStealingTerrainExecutor() {
+		for (int i = 0; i < poolSize; i++) {
+			workers[i] = new Worker(i);
+		}
+
+		for (int i = 0; i < poolSize; i++) {
+			final Thread thread = new WorkerThread(workers[i], "Canvas Render Thread - " + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private static int threadCount() {
+		final int threadCount = Runtime.getRuntime().availableProcessors() - 1;
+		return threadCount > 1 ? threadCount : 1;
+	}
+
+	private static int bucket(int priority) {
+		if (priority < 0) {
+			return 0;
+		}
+
+		// squared chunk distance -> chunk ring
+		return Math.min(LAST_BUCKET, 1 + (int) Math.sqrt(priority));
+	}
+
+	@Override
+	public void execute(TerrainExecutorTask task) {
+		// Workers that spawn tasks keep them local. Everything else is dealt out round-robin
+		// so that submissions from the render thread don't all land on one queue.
+		final Worker target = Thread.currentThread() instanceof WorkerThread wt && wt.executor() == this
+				? wt.worker : workers[Math.floorMod(nextWorker.getAndIncrement(), poolSize)];
+
+		target.push(task);
+		queuedCount.incrementAndGet();
+		renderTaskCount.incrementAndGet();
+		signal.release();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		throw new UnsupportedOperationException("Work-stealing terrain executor received shared-mode task");
+	}
+
+	@Override
+	public void clear() {
+		int removed = 0;
+
+		for (final Worker w : workers) {
+			removed += w.clear();
+			w.context = new CanvasTerrainRenderContext();
+		}
+
+		retirePermits(removed);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return queuedCount.get() <= 0;
+	}
+
+	@Override
+	public void onCameraRegionChange() {
+		++priorityVersion;
+	}
+
+	/**
+	 * Accounts for tasks removed without being run. If another worker
+	 * already holds the permit for a removed task it will simply find nothing.
+	 */
+	private void retirePermits(int count) {
+		queuedCount.addAndGet(-count);
+
+		for (int i = 0; i < count; ++i) {
+			signal.tryAcquire();
+		}
+	}
+
+	private TerrainExecutorTask steal(Worker thief) {
+		final int start = thief.index + 1;
+
+		for (int i = 0; i < poolSize - 1; ++i) {
+			final Worker victim = workers[(start + i) % poolSize];
+
+			if (victim.size > 0) {
+				final TerrainExecutorTask result = victim.pollLast();
+
+				if (result != null) {
+					stolenTaskCount.incrementAndGet();
+					return result;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private class Worker implements Runnable {
+		private final int index;
+
+		@SuppressWarnings("unchecked")
+		private final ObjectArrayFIFOQueue<TerrainExecutorTask>[] buckets = new ObjectArrayFIFOQueue[BUCKET_COUNT];
+		private final ObjectArrayList<TerrainExecutorTask> rebucketList = new ObjectArrayList<>();
+
+		/** Lowest bucket that may be non-empty. Guarded by this. */
+		private int minBucket = BUCKET_COUNT;
+
+		/** Written under lock, read without it by thieves to skip empty queues. */
+		private volatile int size;
+
+		private int seenPriorityVersion;
+		private CanvasTerrainRenderContext context = new CanvasTerrainRenderContext();
+
+		private Worker(int index) {
+			this.index = index;
+
+			for (int i = 0; i < BUCKET_COUNT; ++i) {
+				buckets[i] = new ObjectArrayFIFOQueue<>();
+			}
+		}
+
+		private synchronized void push(TerrainExecutorTask task) {
+			final int b = bucket(task.priority());
+			buckets[b].enqueue(task);
+
+			if (b < minBucket) {
+				minBucket = b;
+			}
+
+			++size;
+		}
+
+		/** Owner takes the oldest task from the nearest ring. */
+		private synchronized TerrainExecutorTask pollFirst() {
+			for (int b = minBucket; b < BUCKET_COUNT; ++b) {
+				final ObjectArrayFIFOQueue<TerrainExecutorTask> q = buckets[b];
+
+				if (!q.isEmpty()) {
+					minBucket = b;
+					--size;
+					return q.dequeue();
+				}
+			}
+
+			minBucket = BUCKET_COUNT;
+			return null;
+		}
+
+		/**
+		 * Thieves take the newest task from the nearest ring, which keeps them away
+		 * from the end the owner is working and still favors near regions.
+		 */
+		private synchronized TerrainExecutorTask pollLast() {
+			for (int b = minBucket; b < BUCKET_COUNT; ++b) {
+				final ObjectArrayFIFOQueue<TerrainExecutorTask> q = buckets[b];
+
+				if (!q.isEmpty()) {
+					minBucket = b;
+					--size;
+					return q.dequeueLast();
+				}
+			}
+
+			minBucket = BUCKET_COUNT;
+			return null;
+		}
+
+		private synchronized int clear() {
+			final int result = size;
+
+			for (final var q : buckets) {
+				q.clear();
+			}
+
+			minBucket = BUCKET_COUNT;
+			size = 0;
+			return result;
+		}
+
+		/**
+		 * Moves every queued task to the bucket for its current priority and drops
+		 * tasks that are no longer needed. Order within a bucket is preserved.
+		 */
+		private synchronized int rebucket() {
+			final ObjectArrayList<TerrainExecutorTask> list = rebucketList;
+
+			for (int b = minBucket; b < BUCKET_COUNT; ++b) {
+				final ObjectArrayFIFOQueue<TerrainExecutorTask> q = buckets[b];
+
+				while (!q.isEmpty()) {
+					list.add(q.dequeue());
+				}
+			}
+
+			minBucket = BUCKET_COUNT;
+			size = 0;
+			int dropped = 0;
+			final int limit = list.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final TerrainExecutorTask task = list.get(i);
+
+				if (task.cancelIfObsolete()) {
+					++dropped;
+				} else {
+					push(task);
+				}
+			}
+
+			list.clear();
+			return dropped;
+		}
+
+		private TerrainExecutorTask next() {
+			final int version = priorityVersion;
+
+			if (seenPriorityVersion != version) {
+				seenPriorityVersion = version;
+				final int dropped = rebucket();
+
+				if (dropped > 0) {
+					droppedTaskCount.addAndGet(dropped);
+					retirePermits(dropped);
+				}
+			}
+
+			final TerrainExecutorTask result = pollFirst();
+			return result == null ? steal(this) : result;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					signal.acquire();
+					final TerrainExecutorTask t = next();
+
+					if (t != null) {
+						queuedCount.decrementAndGet();
+
+						if (t.cancelIfObsolete()) {
+							droppedTaskCount.incrementAndGet();
+						} else {
+							t.run(context);
+						}
+					}
+				} catch (final InterruptedException e) {
+					// NOOP
+				} catch (final Exception e) {
+					CanvasMod.LOG.error("Unhandled error during rendering. Impact unknown.", e);
+				}
+			}
+		}
+	}
+
+	private class WorkerThread extends Thread {
+		private final Worker worker;
+
+		private WorkerThread(Worker worker, String name) {
+			super(worker, name);
+			this.worker = worker;
+		}
+
+		private WorkStealingTerrainExecutor executor() {
+			return WorkStealingTerrainExecutor.this;
+		}
+	}
+
+	@Override
+	public void debugReport(List<String> target) {
+		final long newTime = System.currentTimeMillis();
+
+		if (newTime > nextTime) {
+			nextTime = newTime + 1000;
+
+			final int newRenderCount = renderTaskCount.get();
+			final int newStolenCount = stolenTaskCount.get();
+			final int newDroppedCount = droppedTaskCount.get();
+
+			report0 = String.format("Render tasks: %d rate: %d", queuedCount.get(), newRenderCount - lastRenderTaskCount);
+			report1 = String.format("Stolen rate: %d  Dropped rate: %d", newStolenCount - lastStolenTaskCount, newDroppedCount - lastDroppedTaskCount);
+
+			lastRenderTaskCount = newRenderCount;
+			lastStolenTaskCount = newStolenCount;
+			lastDroppedTaskCount = newDroppedCount;
+		}
+
+		target.add(report0);
+		target.add(report1);
+	}
+}
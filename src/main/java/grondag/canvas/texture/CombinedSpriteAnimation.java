@@ -20,19 +20,46 @@
 
 package grondag.canvas.texture;
 
+import java.util.BitSet;
+
 import org.lwjgl.system.MemoryUtil;
 
 import com.mojang.blaze3d.platform.NativeImage;
+import com.mojang.blaze3d.systems.RenderSystem;
 
 import net.minecraft.client.renderer.texture.TextureAtlas;
 import net.minecraft.util.Mth;
 
 import grondag.canvas.mixinterface.NativeImageExt;
+import grondag.canvas.varia.GFX;
 
+/**
+ * Collects frame updates for all animated sprites in an atlas and uploads them together.
+ *
+ * <p>Changes are tracked as dirty tiles of {@link #TILE_SIZE} pixels at LOD 0. Each upload
+ * sends one rectangle per horizontal run of dirty tiles, for every LOD, so sprites that
+ * animate far apart from each other don't cause the space between them to be re-uploaded.
+ * Pixel data is copied into a ring of pixel unpack buffers so the driver can transfer it
+ * to the texture asynchronously.
+ */
 public final class CombinedSpriteAnimation implements AutoCloseable {
+	private static final int TILE_SHIFT = 4;
+	private static final int TILE_SIZE = 1 << TILE_SHIFT;
+	private static final int RING_SIZE = 3;
+
+	private static long windowStartMillis = System.currentTimeMillis();
+	private static long windowBytes;
+	private static int windowRects;
+	private static long bytesPerSecond;
+	private static int rectsPerSecond;
+
 	private final NativeImage[] images;
 	public final int width, height, size;
-	private int x0, y0, x1, y1;
+	private final int tilesX, tilesY;
+	private final BitSet dirtyTiles;
+	private final SpriteUploadBuffer[] ring = new SpriteUploadBuffer[RING_SIZE];
+	private final int ringCapacityBytes;
+	private int ringIndex = 0;
 
 	public CombinedSpriteAnimation(TextureAtlas owner, int x0, int y0, int x1, int y1, int lodCount) {
 		width = Mth.smallestEncompassingPowerOfTwo(x1 - x0);
@@ -40,11 +67,17 @@ public final class CombinedSpriteAnimation implements AutoCloseable {
 		size = lodCount + 1;
 		images = new NativeImage[size];
 
+		int capacity = 0;
+
 		for (int i = 0; i < size; ++i) {
 			images[i] = new NativeImage(width >> i, height >> i, false);
+			capacity += (width >> i) * (height >> i) * 4;
 		}
 
-		reset();
+		ringCapacityBytes = capacity;
+		tilesX = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+		tilesY = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+		dirtyTiles = new BitSet(tilesX * tilesY);
 	}
 
 	@Override
@@ -54,21 +87,18 @@ public final class CombinedSpriteAnimation implements AutoCloseable {
 				image.close();
 			}
 		}
-	}
 
-	public void reset() {
-		x0 = Integer.MAX_VALUE;
-		y0 = Integer.MAX_VALUE;
-		x1 = Integer.MIN_VALUE;
-		y1 = Integer.MIN_VALUE;
+		for (int i = 0; i < RING_SIZE; ++i) {
+			if (ring[i] != null) {
+				ring[i].shutdown();
+				ring[i] = null;
+			}
+		}
 	}
 
 	public void uploadSubImage(final NativeImage source, final int level, final int toX, final int toY, int fromX, int fromY, final int width, final int height) {
 		final var target = images[level];
-		x0 = Math.min(x0, toX);
-		y0 = Math.min(y0, toY);
-		x1 = Math.max(x1, toX + width);
-		y1 = Math.max(y1, toY + height);
+		markDirty(toX << level, toY << level, (toX + width) << level, (toY + height) << level);
 		final long runLength = width * 4L;
 		final long sourceBasePtr = ((NativeImageExt) (Object) source).canvas_pointer();
 		final long targetBasePtr = ((NativeImageExt) (Object) target).canvas_pointer();
@@ -84,11 +114,129 @@ public final class CombinedSpriteAnimation implements AutoCloseable {
 		}
 	}
 
+	/** Coordinates are LOD 0 pixels, max values exclusive. */
+	private void markDirty(int x0, int y0, int x1, int y1) {
+		final int tx0 = Math.max(0, x0 >> TILE_SHIFT);
+		final int tx1 = Math.min(tilesX, (x1 + TILE_SIZE - 1) >> TILE_SHIFT);
+		final int ty0 = Math.max(0, y0 >> TILE_SHIFT);
+		final int ty1 = Math.min(tilesY, (y1 + TILE_SIZE - 1) >> TILE_SHIFT);
+
+		for (int ty = ty0; ty < ty1; ++ty) {
+			final int rowStart = ty * tilesX;
+			dirtyTiles.set(rowStart + tx0, rowStart + tx1);
+		}
+	}
+
+	/** Expects the atlas texture to be bound, same as vanilla sprite uploads. */
 	public void uploadCombined() {
-		if (x0 != Integer.MAX_VALUE) {
-			for (int k = 0; k < size; ++k) {
-				images[k].upload(k, x0 >> k, y0 >> k, x0 >> k, y0 >> k, (x1 - x0) >> k, (y1 - y0) >> k, size > 1, false);
+		if (dirtyTiles.isEmpty()) {
+			return;
+		}
+
+		assert RenderSystem.isOnRenderThread();
+
+		final SpriteUploadBuffer buffer = nextBuffer();
+		final long basePtr = buffer.beginWrite();
+		long offset = 0;
+		int rectCount = 0;
+
+		// First pass copies every rectangle into the buffer, second pass issues the uploads.
+		for (int pass = 0; pass < 2; ++pass) {
+			final boolean isCopy = pass == 0;
+
+			if (!isCopy) {
+				buffer.endWrite(offset);
+				buffer.bind();
+				GFX.pixelStore(GFX.GL_UNPACK_ROW_LENGTH, 0);
+				GFX.pixelStore(GFX.GL_UNPACK_SKIP_PIXELS, 0);
+				GFX.pixelStore(GFX.GL_UNPACK_SKIP_ROWS, 0);
+				GFX.pixelStore(GFX.GL_UNPACK_ALIGNMENT, 4);
+				offset = 0;
+			}
+
+			for (int ty = 0; ty < tilesY; ++ty) {
+				final int rowStart = ty * tilesX;
+				final int rowEnd = rowStart + tilesX;
+				int runStart = dirtyTiles.nextSetBit(rowStart);
+
+				while (runStart >= 0 && runStart < rowEnd) {
+					final int runEnd = Math.min(rowEnd, dirtyTiles.nextClearBit(runStart));
+					final int x0 = (runStart - rowStart) << TILE_SHIFT;
+					final int x1 = Math.min(width, (runEnd - rowStart) << TILE_SHIFT);
+					final int y0 = ty << TILE_SHIFT;
+					final int y1 = Math.min(height, y0 + TILE_SIZE);
+
+					for (int k = 0; k < size; ++k) {
+						final int lx = x0 >> k;
+						final int ly = y0 >> k;
+						final int lw = (x1 >> k) - lx;
+						final int lh = (y1 >> k) - ly;
+
+						if (lw > 0 && lh > 0) {
+							if (isCopy) {
+								copyRect(images[k], lx, ly, lw, lh, basePtr + offset);
+								++rectCount;
+							} else {
+								GFX.texSubImage2D(GFX.GL_TEXTURE_2D, k, lx, ly, lw, lh, GFX.GL_RGBA, GFX.GL_UNSIGNED_BYTE, offset);
+							}
+
+							offset += lw * lh * 4L;
+						}
+					}
+
+					runStart = runEnd < rowEnd ? dirtyTiles.nextSetBit(runEnd) : -1;
+				}
 			}
 		}
+
+		buffer.unbind();
+		buffer.onUploadIssued();
+		dirtyTiles.clear();
+		recordUpload(offset, rectCount);
+	}
+
+	private static void copyRect(NativeImage image, int x, int y, int w, int h, long targetPtr) {
+		final long sourcePtr = ((NativeImageExt) (Object) image).canvas_pointer();
+		final long sourceStride = image.getWidth() * 4L;
+		final long rowBytes = w * 4L;
+		long sourceOffset = x * 4L + y * sourceStride;
+
+		for (int j = 0; j < h; ++j) {
+			MemoryUtil.memCopy(sourcePtr + sourceOffset, targetPtr, rowBytes);
+			sourceOffset += sourceStride;
+			targetPtr += rowBytes;
+		}
+	}
+
+	private SpriteUploadBuffer nextBuffer() {
+		final int index = ringIndex;
+		ringIndex = index + 1 == RING_SIZE ? 0 : index + 1;
+		SpriteUploadBuffer result = ring[index];
+
+		if (result == null) {
+			result = new SpriteUploadBuffer(ringCapacityBytes);
+			ring[index] = result;
+		}
+
+		return result;
+	}
+
+	private static void recordUpload(long bytes, int rects) {
+		windowBytes += bytes;
+		windowRects += rects;
+		final long now = System.currentTimeMillis();
+		final long elapsed = now - windowStartMillis;
+
+		if (elapsed >= 1000) {
+			bytesPerSecond = windowBytes * 1000 / elapsed;
+			rectsPerSecond = (int) (windowRects * 1000 / elapsed);
+			windowBytes = 0;
+			windowRects = 0;
+			windowStartMillis = now;
+		}
+	}
+
+	public static String debugString() {
+		return String.format("Sprite animation uploads:%6.1fKb/s in %d rects/s", bytesPerSecond / 1024.0, rectsPerSecond);
 	}
 }
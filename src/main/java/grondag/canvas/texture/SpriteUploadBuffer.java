@@ -0,0 +1,91 @@
+/*
+ * Copyright © Original Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Additional copyright and licensing notices may apply for content that was
+ * included from other projects. For more information, see ATTRIBUTION.md.
+ */
+
+package grondag.canvas.texture;
+
+import org.lwjgl.system.MemoryUtil;
+
+import grondag.canvas.buffer.render.AbstractGlBuffer;
+import grondag.canvas.varia.GFX;
+
+/**
+ * Pixel unpack buffer for one combined sprite animation upload. Used in a ring, and
+ * before a buffer is written again the fence from its previous upload is checked so
+ * that pixels the driver has not consumed yet are never overwritten.
+ */
+class SpriteUploadBuffer extends AbstractGlBuffer {
+	/** Generous because three buffers in the ring means the upload is at least two ticks old. */
+	private static final long FENCE_WAIT_NANOS = 100_000_000L;
+
+	private long fence = 0;
+
+	SpriteUploadBuffer(int capacityBytes) {
+		super(capacityBytes, GFX.GL_PIXEL_UNPACK_BUFFER, GFX.GL_STREAM_DRAW);
+	}
+
+	/** Leaves the buffer mapped and returns the address of the mapped memory. */
+	long beginWrite() {
+		awaitFence();
+		GFX.bindBuffer(bindTarget, glBufferId());
+		final long result = MemoryUtil.memAddress(GFX.mapBufferRange(bindTarget, 0, capacityBytes, GFX.GL_MAP_WRITE_BIT | GFX.GL_MAP_FLUSH_EXPLICIT_BIT | GFX.GL_MAP_UNSYNCHRONIZED_BIT));
+		GFX.bindBuffer(bindTarget, 0);
+		return result;
+	}
+
+	void endWrite(long writtenBytes) {
+		GFX.bindBuffer(bindTarget, glBufferId());
+
+		if (writtenBytes > 0) {
+			GFX.flushMappedBufferRange(bindTarget, 0, writtenBytes);
+		}
+
+		GFX.unmapBuffer(bindTarget);
+		GFX.bindBuffer(bindTarget, 0);
+	}
+
+	/** Call after texture uploads that read from this buffer have been issued. */
+	void onUploadIssued() {
+		assert fence == 0;
+		fence = GFX.fenceSynch();
+	}
+
+	private void awaitFence() {
+		if (fence != 0) {
+			int status = GFX.clientWaitSync(fence, GFX.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_WAIT_NANOS);
+
+			// Overwriting pixels the driver may still read would corrupt the upload, so stall until it is done
+			while (status == GFX.GL_TIMEOUT_EXPIRED) {
+				status = GFX.clientWaitSync(fence, 0, FENCE_WAIT_NANOS);
+			}
+
+			assert status != GFX.GL_WAIT_FAILED;
+			GFX.deleteSync(fence);
+			fence = 0;
+		}
+	}
+
+	@Override
+	protected void onShutdown() {
+		if (fence != 0) {
+			GFX.deleteSync(fence);
+			fence = 0;
+		}
+	}
+}
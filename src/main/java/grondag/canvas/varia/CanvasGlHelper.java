@@ -34,6 +34,11 @@ import grondag.canvas.config.Configurator;
 public class CanvasGlHelper {
 	private static boolean supportsPersistentMapped = false;
 	private static boolean supportsKhrDebug = false;
+	private static boolean supportsMultiDrawIndirect = false;
+	private static boolean supportsProgramBinary = false;
+	private static boolean supportsParallelShaderCompile = false;
+	private static String vertexShaderLayerExtension = null;
+	private static String glIdentity = "";
 
 	private static String maxGlVersion = "3.2";
 
@@ -45,6 +50,36 @@ public class CanvasGlHelper {
 		return supportsKhrDebug;
 	}
 
+	/** True when glMultiDrawElementsIndirect is available - OpenGL 4.3 or ARB_multi_draw_indirect. */
+	public static boolean supportsMultiDrawIndirect() {
+		return supportsMultiDrawIndirect;
+	}
+
+	/** True when linked programs can be saved and restored with glGetProgramBinary/glProgramBinary. */
+	public static boolean supportsProgramBinary() {
+		return supportsProgramBinary;
+	}
+
+	/** True when compile and link completion can be polled without blocking via GL_COMPLETION_STATUS_KHR. */
+	public static boolean supportsParallelShaderCompile() {
+		return supportsParallelShaderCompile;
+	}
+
+	/** True when vertex shaders can write gl_Layer - ARB_shader_viewport_layer_array or AMD_vertex_shader_layer. */
+	public static boolean supportsVertexShaderLayer() {
+		return vertexShaderLayerExtension != null;
+	}
+
+	/** Name of the GLSL extension that enables gl_Layer in vertex shaders, or null if not supported. */
+	public static String vertexShaderLayerExtension() {
+		return vertexShaderLayerExtension;
+	}
+
+	/** Vendor, renderer and version strings of the GL context. Program binaries are only valid for an exact match. */
+	public static String glIdentity() {
+		return glIdentity;
+	}
+
 	public static String maxGlVersion() {
 		return maxGlVersion;
 	}
@@ -57,6 +92,19 @@ public class CanvasGlHelper {
 		final GLCapabilities caps = GL.getCapabilities();
 		supportsPersistentMapped = caps.glBufferStorage != 0;
 		supportsKhrDebug = caps.GL_KHR_debug;
+		supportsMultiDrawIndirect = caps.glMultiDrawElementsIndirect != 0;
+		supportsProgramBinary = caps.glProgramBinary != 0 && GFX.glGetInteger(GFX.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+		supportsParallelShaderCompile = caps.GL_KHR_parallel_shader_compile;
+
+		vertexShaderLayerExtension = caps.GL_ARB_shader_viewport_layer_array ? "GL_ARB_shader_viewport_layer_array"
+				: caps.GL_AMD_vertex_shader_layer ? "GL_AMD_vertex_shader_layer" : null;
+
+		if (supportsParallelShaderCompile) {
+			// let the driver decide how many threads to use
+			GFX.maxShaderCompilerThreadsKHR(0xFFFFFFFF);
+		}
+
+		glIdentity = GFX.getString(GFX.GL_VENDOR) + " | " + GFX.getString(GFX.GL_RENDERER) + " | " + GFX.getString(GFX.GL_VERSION);
 		maxGlVersion = maxGlVersion(caps);
 
 		if (Configurator.logMachineInfo) {
@@ -76,6 +124,10 @@ public class CanvasGlHelper {
 		log.info(String.format(" OpenGL (Available): %s", maxGlVersion));
 		log.info(String.format(" glBufferStorage: %s", caps.glBufferStorage == 0 ? "N" : "Y"));
 		log.info(String.format(" KHR_debug: %s", supportsKhrDebug() ? "Y" : "N"));
+		log.info(String.format(" glMultiDrawElementsIndirect: %s", supportsMultiDrawIndirect() ? "Y" : "N"));
+		log.info(String.format(" glProgramBinary: %s", supportsProgramBinary() ? "Y" : "N"));
+		log.info(String.format(" KHR_parallel_shader_compile: %s", supportsParallelShaderCompile() ? "Y" : "N"));
+		log.info(String.format(" Vertex shader layer: %s", supportsVertexShaderLayer() ? vertexShaderLayerExtension : "N"));
 		log.info(" (This message can be disabled by configuring logMachineInfo = false.)");
 		log.info("========================================================================");
 	}
@@ -30,6 +30,7 @@ import org.jetbrains.annotations.Nullable;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL46C;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 
@@ -200,6 +201,12 @@ public class GFX extends GL46C {
 				GlSymbolLookup.reverseLookup(textarget), texture, level));
 	}
 
+	public static void framebufferTexture(int target, int attachment, int texture, int level) {
+		glFramebufferTexture(target, attachment, texture, level);
+		assert logError(String.format("glFramebufferTexture(%s, %s, %d, %d)",
+				GlSymbolLookup.reverseLookup(target), GlSymbolLookup.reverseLookup(attachment), texture, level));
+	}
+
 	public static void framebufferTextureLayer(int target, int attachment, int texture, int level, int layer) {
 		glFramebufferTextureLayer(target, attachment, texture, level, layer);
 		assert logError(String.format("glFramebufferTextureLayer(%s, %s, %d, %d, %d)",
@@ -493,6 +500,41 @@ public class GFX extends GL46C {
 		glUseProgram(program);
 	}
 
+	public static int getUniformBlockIndex(int program, String uniformBlockName) {
+		final int result = glGetUniformBlockIndex(program, uniformBlockName);
+		assert logError(String.format("glGetUniformBlockIndex(%d, %s)", program, uniformBlockName));
+		return result;
+	}
+
+	public static void uniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding) {
+		glUniformBlockBinding(program, uniformBlockIndex, uniformBlockBinding);
+		assert logError(String.format("glUniformBlockBinding(%d, %d, %d)", program, uniformBlockIndex, uniformBlockBinding));
+	}
+
+	public static void programParameteri(int program, int pname, int value) {
+		glProgramParameteri(program, pname, value);
+		assert logError(String.format("glProgramParameteri(%d, %s)", program, GlSymbolLookup.reverseLookup(pname)));
+	}
+
+	public static void getProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary) {
+		glGetProgramBinary(program, length, binaryFormat, binary);
+		assert logError(String.format("glGetProgramBinary(%d)", program));
+	}
+
+	/** Errors are expected when the driver rejects a cached binary, so they are cleared instead of logged. */
+	public static void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+		glProgramBinary(program, binaryFormat, binary);
+		glGetError();
+	}
+
+	/** Same value for KHR and ARB variants of parallel shader compile. */
+	public static final int GL_COMPLETION_STATUS_KHR = KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
+
+	public static void maxShaderCompilerThreadsKHR(int count) {
+		KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(count);
+		assert logError("glMaxShaderCompilerThreadsKHR");
+	}
+
 	public static void linkProgram(int program) {
 		glLinkProgram(program);
 		assert logError(String.format("glLinkProgram(%d)", program));
@@ -595,6 +637,12 @@ public class GFX extends GL46C {
 				GlSymbolLookup.reverseLookup(mode), count, GlSymbolLookup.reverseLookup(type), indices, baseVertex));
 	}
 
+	public static void drawElementsInstancedBaseVertex(int mode, int count, int type, long indices, int instanceCount, int baseVertex) {
+		glDrawElementsInstancedBaseVertex(mode, count, type, indices, instanceCount, baseVertex);
+		assert logError(String.format("glDrawElementsInstancedBaseVertex(%s, %d, %s, %d, %d, %d)",
+				GlSymbolLookup.reverseLookup(mode), count, GlSymbolLookup.reverseLookup(type), indices, instanceCount, baseVertex));
+	}
+
 	private static boolean scissorTest = false;
 	public static void disableScissorTest() {
 		if (scissorTest) {
@@ -881,6 +929,16 @@ public class GFX extends GL46C {
 		assert logError("glMultiDrawElementsBaseVertex");
 	}
 
+	public static void multiDrawElementsIndirect(int mode, int type, long indirect, int drawcount, int stride) {
+		glMultiDrawElementsIndirect(mode, type, indirect, drawcount, stride);
+		assert logError("glMultiDrawElementsIndirect");
+	}
+
+	public static void bindBufferRange(int target, int index, int buffer, long offset, long size) {
+		glBindBufferRange(target, index, buffer, offset, size);
+		assert logError(String.format("glBindBufferRange(%s, %d, %d, %d, %d)", GlSymbolLookup.reverseLookup(target), index, buffer, offset, size));
+	}
+
 	public static void bufferSubData(int target, long offsetBytes, long sizeBytes, ByteBuffer data) {
 		nglBufferSubData(target, offsetBytes, sizeBytes, memAddress(data));
 		assert logError("nglBufferSubData");
@@ -898,6 +956,11 @@ public class GFX extends GL46C {
 		return result;
 	}
 
+	public static void deleteSync(long synch) {
+		glDeleteSync(synch);
+		assert logError("glDeleteSync");
+	}
+
 	public static void bufferStorage(int target, long size, int flags) {
 		glBufferStorage(target, size, flags);
 		assert logError("glBufferStorage");
@@ -1,11 +1,16 @@
 #include frex:shaders/api/header.glsl
 #define DEPTH_PASS
+//#define _CV_LAYERED_SHADOW
 #include canvas:shaders/internal/flags.glsl
 #include frex:shaders/api/material.glsl
 #include frex:shaders/api/fragment.glsl
 #include frex:shaders/api/sampler.glsl
 #include canvas:shaders/internal/program.glsl
 
+#ifdef _CV_LAYERED_SHADOW
+flat in int _cvv_cascade;
+#endif
+
 #include canvas:apitarget
 
 /******************************************************
@@ -1,5 +1,6 @@
 #include frex:shaders/api/header.glsl
 #define DEPTH_PASS
+//#define _CV_LAYERED_SHADOW
 #include frex:shaders/api/context.glsl
 #include frex:shaders/api/vertex.glsl
 #include frex:shaders/api/sampler.glsl
@@ -7,6 +8,10 @@
 #include canvas:shaders/internal/vertex.glsl
 #include canvas:shaders/internal/program.glsl
 
+#ifdef _CV_LAYERED_SHADOW
+flat out int _cvv_cascade;
+#endif
+
 #include canvas:apitarget
 
 /******************************************************
@@ -33,4 +38,10 @@ void main() {
 
 	// pipeline shader handles additional writes/out variables
 	frx_pipelineVertex();
+
+#ifdef _CV_LAYERED_SHADOW
+	// all cascades in one pass - instance index is the cascade
+	gl_Layer = gl_InstanceID;
+	_cvv_cascade = gl_InstanceID;
+#endif
 }
@@ -11,7 +11,10 @@ vec4 in_tangent;
 // This avoid a uniform update per draw call.
 #ifdef _CV_VERTEX_TERRAIN
 
-uniform int[182] _cvu_sectors_int;
+// 182 packed sector ints, four per vector - layout must match UniformBlocks
+layout(std140) uniform _cvu_sector_data {
+	ivec4 _cvu_sectors[46];
+};
 
 // High bits store sign for normal and tangent vector z components
 in ivec4 in_region;
@@ -28,7 +31,8 @@ vec3 in_vertex;
 
 void _cv_prepareForVertex() {
 	// Mask out the bits for vector signs
-	int packedSector = _cvu_sectors_int[(in_region.x & 0x1FFF) >> 1];
+	int sectorIndex = (in_region.x & 0x1FFF) >> 1;
+	int packedSector = _cvu_sectors[sectorIndex >> 2][sectorIndex & 3];
 	packedSector = (in_region.x & 1) == 1 ? ((packedSector >> 16) & 0xFFFF) : (packedSector & 0xFFFF);
 
 	// These are relative to the sector origin, which will be near the camera position
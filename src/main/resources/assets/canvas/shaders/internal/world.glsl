@@ -81,10 +81,13 @@
 #define _CV_PLAYER_FLAGS_INDEX 1
 #define _CV_CONDITION_FLAGS_START 2
 
-// update each frame
-uniform vec4[32] _cvu_world;
-uniform uint[1] _cvu_world_uint;
-uniform uint[4] _cvu_flags;
+// update each frame - layout must match UniformBlocks
+layout(std140) uniform _cvu_frame_data {
+	vec4 _cvu_world[32];
+	uvec4 _cvu_world_uint;
+	uvec4 _cvu_flags;
+	mat3 _cvu_normal_model_matrix;
+};
 
 #define _CV_MODEL_TO_WORLD 0
 #define _CV_MODEL_TO_CAMERA 1
@@ -92,7 +95,6 @@ uniform uint[4] _cvu_flags;
 // updated each invocation as needed
 uniform vec4[2] _cvu_model_origin;
 uniform int _cvu_model_origin_type;
-uniform mat3 _cvu_normal_model_matrix;
 uniform vec2 _cvu_fog_info;
 
 #define _CV_MAT_VIEW 0
@@ -117,7 +119,9 @@ uniform vec2 _cvu_fog_info;
 #define _CV_MAT_CLEAN_VIEW_PROJ_INVERSE 23
 #define _CV_MAT_CLEAN_VIEW_PROJ_LAST 24
 
-uniform mat4[25] _cvu_matrix;
+layout(std140) uniform _cvu_matrix_data {
+	mat4 _cvu_matrix[25];
+};
 
 uniform mat4 _cvu_guiViewProjMatrix;
 
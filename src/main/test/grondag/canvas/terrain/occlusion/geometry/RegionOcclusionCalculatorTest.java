@@ -0,0 +1,316 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion.geometry;
+
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.INTERIOR_STATE_COUNT;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.interiorIndex;
+import static grondag.canvas.terrain.util.RenderRegionStateIndexer.regionIndex;
+
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import org.junit.jupiter.api.Test;
+
+import net.minecraft.world.level.block.state.BlockState;
+
+import io.vram.frex.api.model.util.FaceUtil;
+
+/**
+ * Compares the word-parallel exterior fill with the per-position queue fill it replaced.
+ * Advanced culling must mark the same exterior visible positions, and face culling
+ * must produce the same mutual face mask.
+ */
+class RegionOcclusionCalculatorTest {
+	private static final int REGION_COUNT = 2000;
+
+	/** Covering region index and covered interior index, in the same face order as the calculator. */
+	private static final int[] COVERING = new int[16 * 16 * 6];
+	private static final int[] COVERED = new int[16 * 16 * 6];
+
+	static {
+		int n = 0;
+
+		for (int face = 0; face < 6; ++face) {
+			for (int i = 0; i < 16; i++) {
+				for (int j = 0; j < 16; j++) {
+					switch (face) {
+						case 0 -> {
+							COVERING[n] = regionIndex(-1, i, j);
+							COVERED[n] = interiorIndex(0, i, j);
+						}
+						case 1 -> {
+							COVERING[n] = regionIndex(16, i, j);
+							COVERED[n] = interiorIndex(15, i, j);
+						}
+						case 2 -> {
+							COVERING[n] = regionIndex(i, j, -1);
+							COVERED[n] = interiorIndex(i, j, 0);
+						}
+						case 3 -> {
+							COVERING[n] = regionIndex(i, j, 16);
+							COVERED[n] = interiorIndex(i, j, 15);
+						}
+						case 4 -> {
+							COVERING[n] = regionIndex(i, -1, j);
+							COVERED[n] = interiorIndex(i, 0, j);
+						}
+						default -> {
+							COVERING[n] = regionIndex(i, 16, j);
+							COVERED[n] = interiorIndex(i, 15, j);
+						}
+					}
+
+					++n;
+				}
+			}
+		}
+	}
+
+	@Test
+	void test() {
+		final Random random = new Random(42);
+		final TestCalculator advanced = new TestCalculator(true);
+		final TestCalculator faces = new TestCalculator(false);
+		final boolean[] closed = new boolean[INTERIOR_STATE_COUNT];
+		final boolean[] coveringClosed = new boolean[COVERING.length];
+
+		for (int n = 0; n < REGION_COUNT; ++n) {
+			if ((n & 1) == 0) {
+				randomRegion(random, closed, coveringClosed);
+			} else {
+				caveRegion(random, closed, coveringClosed);
+			}
+
+			final ReferenceFill reference = new ReferenceFill(closed, coveringClosed);
+
+			if (reference.openCount == 0) {
+				continue;
+			}
+
+			load(advanced, closed, coveringClosed);
+			advanced.build(false);
+			reference.fill(true);
+
+			for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+				assert advanced.isExteriorVisible(i) == reference.visited[i] : "exterior visibility differs at " + i + " in region " + n;
+			}
+
+			load(faces, closed, coveringClosed);
+			final long mutualFaceMask = faces.build(false).mutalFaceMask();
+			reference.fill(false);
+
+			assert mutualFaceMask == reference.mutualFaceMask : "mutual face mask differs in region " + n;
+		}
+	}
+
+	private static void load(TestCalculator calculator, boolean[] closed, boolean[] coveringClosed) {
+		calculator.prepareEmpty();
+
+		for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+			calculator.setVisibility(i, closed[i], closed[i]);
+		}
+
+		for (int i = 0; i < COVERING.length; ++i) {
+			if (coveringClosed[i]) {
+				calculator.setVisibility(COVERING[i], false, true);
+			}
+		}
+	}
+
+	private static void randomRegion(Random random, boolean[] closed, boolean[] coveringClosed) {
+		final float density = random.nextFloat();
+
+		for (int i = 0; i < closed.length; ++i) {
+			closed[i] = random.nextFloat() < density;
+		}
+
+		final float coveringDensity = random.nextFloat();
+
+		for (int i = 0; i < coveringClosed.length; ++i) {
+			coveringClosed[i] = random.nextFloat() < coveringDensity;
+		}
+	}
+
+	/** Solid region with a few spherical voids, which gives long winding fills. */
+	private static void caveRegion(Random random, boolean[] closed, boolean[] coveringClosed) {
+		for (int i = 0; i < closed.length; ++i) {
+			closed[i] = true;
+		}
+
+		final int caves = 1 + random.nextInt(12);
+
+		for (int c = 0; c < caves; ++c) {
+			final int cx = random.nextInt(16);
+			final int cy = random.nextInt(16);
+			final int cz = random.nextInt(16);
+			final int r = 1 + random.nextInt(5);
+
+			for (int i = 0; i < closed.length; ++i) {
+				final int dx = (i & 15) - cx;
+				final int dy = ((i >> 4) & 15) - cy;
+				final int dz = ((i >> 8) & 15) - cz;
+
+				if (dx * dx + dy * dy + dz * dz <= r * r) {
+					closed[i] = false;
+				}
+			}
+		}
+
+		final boolean openNeighbors = random.nextBoolean();
+
+		for (int i = 0; i < coveringClosed.length; ++i) {
+			coveringClosed[i] = !openNeighbors || random.nextInt(4) != 0;
+		}
+	}
+
+	private static class TestCalculator extends RegionOcclusionCalculator {
+		private final boolean advanced;
+
+		TestCalculator(boolean advanced) {
+			this.advanced = advanced;
+		}
+
+		@Override
+		protected boolean advancedTerrainCulling() {
+			return advanced;
+		}
+
+		@Override
+		protected BlockState blockStateAtIndex(int regionIndex) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected boolean closedAtRelativePos(BlockState blockState, int regionIndex) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/** The queue fill from before the word-parallel fill, kept as the reference result. */
+	private static class ReferenceFill {
+		private final boolean[] closed;
+		private final boolean[] coveringClosed;
+		private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+		final boolean[] visited = new boolean[INTERIOR_STATE_COUNT];
+		final int openCount;
+		private boolean trackFaces;
+		private int visitedFacesMask;
+		long mutualFaceMask;
+
+		ReferenceFill(boolean[] closed, boolean[] coveringClosed) {
+			this.closed = closed;
+			this.coveringClosed = coveringClosed;
+			int openCount = 0;
+
+			for (final boolean c : closed) {
+				if (!c) {
+					++openCount;
+				}
+			}
+
+			this.openCount = openCount;
+		}
+
+		void fill(boolean advanced) {
+			trackFaces = !advanced;
+			mutualFaceMask = 0;
+			visitedFacesMask = 0;
+
+			for (int i = 0; i < INTERIOR_STATE_COUNT; ++i) {
+				visited[i] = false;
+			}
+
+			for (int i = 0; i < COVERING.length; ++i) {
+				if (trackFaces && (i & 0xFF) == 0 && visitedFacesMask != 0) {
+					mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
+					visitedFacesMask = 0;
+				}
+
+				if (!coveringClosed[i] && setVisited(COVERED[i])) {
+					queue.enqueue(COVERED[i]);
+
+					while (!queue.isEmpty()) {
+						visit(queue.dequeueInt());
+					}
+				}
+			}
+
+			if (trackFaces && visitedFacesMask != 0) {
+				mutualFaceMask |= OcclusionResult.buildMutualFaceMask(visitedFacesMask);
+			}
+		}
+
+		/** True if the position was not visited before and is open. */
+		private boolean setVisited(int index) {
+			if (visited[index]) {
+				return false;
+			}
+
+			visited[index] = true;
+
+			if (closed[index]) {
+				return false;
+			}
+
+			if (trackFaces) {
+				trackVisitedFaces(index);
+			}
+
+			return true;
+		}
+
+		private void enqueueIfUnvisited(int index) {
+			if (setVisited(index)) {
+				queue.enqueue(index);
+			}
+		}
+
+		private void visit(int xyz4) {
+			final int x = xyz4 & 0xF;
+			final int y = (xyz4 >> 4) & 0xF;
+			final int z = (xyz4 >> 8) & 0xF;
+
+			if (x != 0) enqueueIfUnvisited(xyz4 - 1);
+			if (x != 15) enqueueIfUnvisited(xyz4 + 1);
+			if (y != 0) enqueueIfUnvisited(xyz4 - 0x10);
+			if (y != 15) enqueueIfUnvisited(xyz4 + 0x10);
+			if (z != 0) enqueueIfUnvisited(xyz4 - 0x100);
+			if (z != 15) enqueueIfUnvisited(xyz4 + 0x100);
+		}
+
+		/** Edge and corner positions count only for the first matching face. */
+		private void trackVisitedFaces(int xyz4) {
+			final int x = xyz4 & 0xF;
+			final int y = (xyz4 >> 4) & 0xF;
+			final int z = (xyz4 >> 8) & 0xF;
+
+			if (x == 0) {
+				visitedFacesMask |= FaceUtil.WEST_FLAG;
+			} else if (x == 15) {
+				visitedFacesMask |= FaceUtil.EAST_FLAG;
+			} else if (y == 0) {
+				visitedFacesMask |= FaceUtil.DOWN_FLAG;
+			} else if (y == 15) {
+				visitedFacesMask |= FaceUtil.UP_FLAG;
+			} else if (z == 0) {
+				visitedFacesMask |= FaceUtil.NORTH_FLAG;
+			} else if (z == 15) {
+				visitedFacesMask |= FaceUtil.SOUTH_FLAG;
+			}
+		}
+	}
+}